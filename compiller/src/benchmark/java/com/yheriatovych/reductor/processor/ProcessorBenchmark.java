@@ -0,0 +1,198 @@
+package com.yheriatovych.reductor.processor;
+
+import com.google.testing.compile.JavaFileObjects;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+/**
+ * Measures throughput of {@link ReductorAnnotationProcessor} on synthetic sources.
+ * <p>
+ * For every size N the benchmark generates N {@code @ActionCreator} interfaces,
+ * N {@code @AutoReducer} reducers validated against them and N {@code @CombinedState} interfaces nested as binary tree,
+ * compiles them with compile-testing and reports time spent in processor, total compilation time and peak heap usage.
+ * <p>
+ * Usage: {@code ./gradlew :compiller:benchmark -Psizes=100,1000,10000}
+ */
+public class ProcessorBenchmark {
+    private static final int ACTIONS_PER_CREATOR = 4;
+
+    public static void main(String[] args) {
+        String sizes = args.length > 0 ? args[0] : "100,1000,10000";
+        boolean codecs = args.length > 1 && Boolean.parseBoolean(args[1]);
+
+        //warm up JIT, results are not reported
+        run(100, codecs);
+
+        System.out.println(String.format("%8s %8s %14s %10s %10s", "N", "sources", "processor ms", "total ms", "heap MB"));
+        for (String size : sizes.split(",")) {
+            int n = Integer.parseInt(size.trim());
+            Result result = run(n, codecs);
+            System.out.println(String.format("%8d %8d %14d %10d %10d", n, result.sources, result.processorMillis, result.totalMillis, result.peakHeapBytes / (1024 * 1024)));
+        }
+    }
+
+    private static Result run(int n, boolean codecs) {
+        List<JavaFileObject> sources = generateSources(n);
+        TimingProcessor processor = new TimingProcessor(new ReductorAnnotationProcessor());
+
+        System.gc();
+        resetPeakHeapUsage();
+        long start = System.nanoTime();
+        assertAbout(javaSources()).that(sources)
+                .withCompilerOptions("-Xlint:-processing", "-A" + Env.OPTION_CODECS + "=" + codecs)
+                .processedWith(processor)
+                .compilesWithoutError();
+        long totalNanos = System.nanoTime() - start;
+
+        return new Result(sources.size(), processor.nanos / 1000000, totalNanos / 1000000, peakHeapUsage());
+    }
+
+    static List<JavaFileObject> generateSources(int n) {
+        List<JavaFileObject> sources = new ArrayList<>(n * 3);
+        for (int i = 0; i < n; i++) {
+            sources.add(actionCreator(i));
+            sources.add(reducer(i));
+            sources.add(combinedState(i, n));
+        }
+        return sources;
+    }
+
+    private static JavaFileObject actionCreator(int i) {
+        StringBuilder source = new StringBuilder()
+                .append("package bench.p").append(i).append(";\n")
+                .append("import com.yheriatovych.reductor.Action;\n")
+                .append("import com.yheriatovych.reductor.annotations.ActionCreator;\n")
+                .append("@ActionCreator\n")
+                .append("public interface Actions").append(i).append(" {\n");
+        for (int a = 0; a < ACTIONS_PER_CREATOR; a++) {
+            source.append("    @ActionCreator.Action(\"ACTION_").append(i).append('_').append(a).append("\")\n")
+                    .append("    Action action").append(a).append("(int index, String value);\n");
+        }
+        source.append("}\n");
+        return JavaFileObjects.forSourceString("bench.p" + i + ".Actions" + i, source.toString());
+    }
+
+    private static JavaFileObject reducer(int i) {
+        StringBuilder source = new StringBuilder()
+                .append("package bench.p").append(i).append(";\n")
+                .append("import com.yheriatovych.reductor.Reducer;\n")
+                .append("import com.yheriatovych.reductor.annotations.AutoReducer;\n")
+                .append("@AutoReducer\n")
+                .append("public abstract class Reducer").append(i).append(" implements Reducer<String> {\n")
+                .append("    @AutoReducer.InitialState\n")
+                .append("    String initialState() {\n")
+                .append("        return \"\";\n")
+                .append("    }\n");
+        for (int a = 0; a < ACTIONS_PER_CREATOR; a++) {
+            source.append("    @AutoReducer.Action(value = \"ACTION_").append(i).append('_').append(a).append("\", from = Actions").append(i).append(".class)\n")
+                    .append("    String action").append(a).append("(String state, int index, String value) {\n")
+                    .append("        return value;\n")
+                    .append("    }\n");
+        }
+        source.append("}\n");
+        return JavaFileObjects.forSourceString("bench.p" + i + ".Reducer" + i, source.toString());
+    }
+
+    private static JavaFileObject combinedState(int i, int n) {
+        StringBuilder source = new StringBuilder()
+                .append("package bench.p").append(i).append(";\n")
+                .append("import com.yheriatovych.reductor.annotations.CombinedState;\n")
+                .append("@CombinedState\n")
+                .append("public interface State").append(i).append(" {\n")
+                .append("    String value();\n")
+                .append("    int counter();\n");
+        //states are nested as binary tree: state i has children 2i+1 and 2i+2
+        for (int child = 2 * i + 1; child <= 2 * i + 2 && child < n; child++) {
+            source.append("    bench.p").append(child).append(".State").append(child).append(" child").append(child).append("();\n");
+        }
+        source.append("}\n");
+        return JavaFileObjects.forSourceString("bench.p" + i + ".State" + i, source.toString());
+    }
+
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static class Result {
+        final int sources;
+        final long processorMillis;
+        final long totalMillis;
+        final long peakHeapBytes;
+
+        Result(int sources, long processorMillis, long totalMillis, long peakHeapBytes) {
+            this.sources = sources;
+            this.processorMillis = processorMillis;
+            this.totalMillis = totalMillis;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+    }
+
+    /**
+     * Delegating processor which accumulates time spent in {@link Processor#process(Set, RoundEnvironment)}.
+     */
+    private static class TimingProcessor extends AbstractProcessor {
+        private final Processor delegate;
+        long nanos;
+
+        TimingProcessor(Processor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void init(ProcessingEnvironment processingEnv) {
+            super.init(processingEnv);
+            long start = System.nanoTime();
+            delegate.init(processingEnv);
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return delegate.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return delegate.getSupportedOptions();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return delegate.getSupportedSourceVersion();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            long start = System.nanoTime();
+            boolean result = delegate.process(annotations, roundEnv);
+            nanos += System.nanoTime() - start;
+            return result;
+        }
+    }
+}
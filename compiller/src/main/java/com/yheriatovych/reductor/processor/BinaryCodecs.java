@@ -0,0 +1,86 @@
+package com.yheriatovych.reductor.processor;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.yheriatovych.reductor.codec.Codec;
+import com.yheriatovych.reductor.codec.Codecs;
+
+import java.nio.charset.Charset;
+
+/**
+ * Helpers to emit code of generated binary codecs.
+ * <p>
+ * Primitives are written inline with {@link java.nio.ByteBuffer} methods,
+ * boxed primitives and strings use codecs from {@link Codecs},
+ * all other types need codec to be provided at runtime.
+ */
+public class BinaryCodecs {
+
+    public static TypeName codecType(TypeName valueType) {
+        return ParameterizedTypeName.get(ClassName.get(Codec.class), valueType);
+    }
+
+    /**
+     * @return expression of built-in codec for given type or null if codec should be provided by user
+     */
+    public static CodeBlock builtInCodec(TypeName type) {
+        String field = null;
+        if (type.equals(ClassName.get(String.class))) field = "STRING";
+        else if (type.equals(TypeName.BOOLEAN.box())) field = "BOOLEAN";
+        else if (type.equals(TypeName.BYTE.box())) field = "BYTE";
+        else if (type.equals(TypeName.SHORT.box())) field = "SHORT";
+        else if (type.equals(TypeName.CHAR.box())) field = "CHARACTER";
+        else if (type.equals(TypeName.INT.box())) field = "INTEGER";
+        else if (type.equals(TypeName.LONG.box())) field = "LONG";
+        else if (type.equals(TypeName.FLOAT.box())) field = "FLOAT";
+        else if (type.equals(TypeName.DOUBLE.box())) field = "DOUBLE";
+
+        return field == null
+                ? null
+                : CodeBlock.of("$T.$L", Codecs.class, field);
+    }
+
+    /**
+     * @return expression to write primitive value to buffer named "buffer"
+     */
+    public static CodeBlock writePrimitive(TypeName type, CodeBlock value) {
+        if (type.equals(TypeName.BOOLEAN)) return CodeBlock.of("buffer.put($L ? (byte) 1 : (byte) 0)", value);
+        if (type.equals(TypeName.BYTE)) return CodeBlock.of("buffer.put($L)", value);
+        if (type.equals(TypeName.SHORT)) return CodeBlock.of("buffer.putShort($L)", value);
+        if (type.equals(TypeName.CHAR)) return CodeBlock.of("buffer.putChar($L)", value);
+        if (type.equals(TypeName.INT)) return CodeBlock.of("buffer.putInt($L)", value);
+        if (type.equals(TypeName.LONG)) return CodeBlock.of("buffer.putLong($L)", value);
+        if (type.equals(TypeName.FLOAT)) return CodeBlock.of("buffer.putFloat($L)", value);
+        if (type.equals(TypeName.DOUBLE)) return CodeBlock.of("buffer.putDouble($L)", value);
+        throw new IllegalArgumentException(type + " is not primitive");
+    }
+
+    /**
+     * @return expression to read primitive value from buffer named "buffer"
+     */
+    public static CodeBlock readPrimitive(TypeName type) {
+        if (type.equals(TypeName.BOOLEAN)) return CodeBlock.of("buffer.get() != 0");
+        if (type.equals(TypeName.BYTE)) return CodeBlock.of("buffer.get()");
+        if (type.equals(TypeName.SHORT)) return CodeBlock.of("buffer.getShort()");
+        if (type.equals(TypeName.CHAR)) return CodeBlock.of("buffer.getChar()");
+        if (type.equals(TypeName.INT)) return CodeBlock.of("buffer.getInt()");
+        if (type.equals(TypeName.LONG)) return CodeBlock.of("buffer.getLong()");
+        if (type.equals(TypeName.FLOAT)) return CodeBlock.of("buffer.getFloat()");
+        if (type.equals(TypeName.DOUBLE)) return CodeBlock.of("buffer.getDouble()");
+        throw new IllegalArgumentException(type + " is not primitive");
+    }
+
+    /**
+     * 64-bit FNV-1a hash of schema description, used as SCHEMA_HASH of generated codecs.
+     */
+    public static long schemaHash(String schema) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : schema.getBytes(Charset.forName("UTF-8"))) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
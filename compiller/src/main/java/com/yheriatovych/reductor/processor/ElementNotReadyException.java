@@ -1,4 +0,0 @@
-package com.yheriatovych.reductor.processor;
-
-public class ElementNotReadyException extends RuntimeException {
-}
@@ -7,18 +7,28 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
+import java.util.HashMap;
+import java.util.Map;
 
 public class Env {
+    /**
+     * Processor option to enable generation of binary codecs for combined states and action creators.
+     */
+    public static final String OPTION_CODECS = "reductor.codecs";
+
     private final Types types;
     private final Elements elements;
     private final Messager messager;
     private final Filer filer;
+    private final Map<String, String> options;
+    private final Map<Class<?>, TypeMirror> typeMirrors = new HashMap<>();
 
-    public Env(Types types, Elements elements, Messager messager, Filer filer) {
+    public Env(Types types, Elements elements, Messager messager, Filer filer, Map<String, String> options) {
         this.types = types;
         this.elements = elements;
         this.messager = messager;
         this.filer = filer;
+        this.options = options;
     }
 
     public void printError(Element element, String message, Object... args) {
@@ -41,12 +51,30 @@ public class Env {
         return elements.getPackageOf(element).getQualifiedName().toString();
     }
 
+    /**
+     * Returns {@link TypeMirror} for given class.
+     * Lookups are cached until {@link #clearTypeCache()} is called at the end of processing round,
+     * as type mirrors are not guaranteed to be the same between rounds.
+     */
     public TypeMirror asType(Class<?> clazz) {
-        return elements.getTypeElement(clazz.getCanonicalName())
-                .asType();
+        TypeMirror typeMirror = typeMirrors.get(clazz);
+        if (typeMirror == null) {
+            typeMirror = elements.getTypeElement(clazz.getCanonicalName())
+                    .asType();
+            typeMirrors.put(clazz, typeMirror);
+        }
+        return typeMirror;
+    }
+
+    public void clearTypeCache() {
+        typeMirrors.clear();
     }
 
     public Elements getElements() {
         return elements;
     }
+
+    public boolean isOptionEnabled(String option) {
+        return Boolean.parseBoolean(options.get(option));
+    }
 }
@@ -5,32 +5,48 @@ import com.google.auto.service.AutoService;
 import com.yheriatovych.reductor.processor.actioncreator.ActionCreatorProcessingStep;
 import com.yheriatovych.reductor.processor.autoreducer.AutoReducerProcessingStep;
 import com.yheriatovych.reductor.processor.combinedstate.CombinedStateProcessingStep;
-import com.yheriatovych.reductor.processor.actioncreator.ActionCreatorElement;
+import com.yheriatovych.reductor.processor.actioncreator.ActionCreatorRegistry;
 
 import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Set;
 
 @AutoService(Processor.class)
 public class ReductorAnnotationProcessor extends BasicAnnotationProcessor {
+    private Env env;
+    private ActionCreatorRegistry actionCreators;
+
     @Override
     protected Iterable<? extends ProcessingStep> initSteps() {
-        Env env = new Env(processingEnv.getTypeUtils(),
+        env = new Env(processingEnv.getTypeUtils(),
                 processingEnv.getElementUtils(),
                 processingEnv.getMessager(),
-                processingEnv.getFiler());
+                processingEnv.getFiler(),
+                processingEnv.getOptions());
 
-        Map<String, ActionCreatorElement> knownActionCreators = new HashMap<>();
+        actionCreators = new ActionCreatorRegistry(env);
 
         return Arrays.asList(
                 new CombinedStateProcessingStep(env),
-                new ActionCreatorProcessingStep(env, knownActionCreators),
-                new AutoReducerProcessingStep(env, knownActionCreators)
+                new ActionCreatorProcessingStep(env, actionCreators),
+                new AutoReducerProcessingStep(env, actionCreators)
         );
     }
 
+    @Override
+    protected void postRound(RoundEnvironment roundEnv) {
+        env.clearTypeCache();
+        actionCreators.clear();
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(Env.OPTION_CODECS);
+    }
+
     @Override
     public SourceVersion getSupportedSourceVersion() {
         return SourceVersion.latestSupported();
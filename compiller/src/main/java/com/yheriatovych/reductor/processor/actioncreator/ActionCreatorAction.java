@@ -17,11 +17,19 @@ public class ActionCreatorAction {
     public final String methodName;
     public final List<? extends VariableElement> arguments;
     public final List<TypeName> argumentTypes;
+    public final boolean compactable;
+    /**
+     * Indices of arguments which are part of compaction key.
+     */
+    public final List<Integer> compactionKey;
 
-    private ActionCreatorAction(String actionType, String methodName, List<? extends VariableElement> arguments) {
+    private ActionCreatorAction(String actionType, String methodName, List<? extends VariableElement> arguments,
+                                boolean compactable, List<Integer> compactionKey) {
         this.actionType = actionType;
         this.methodName = methodName;
         this.arguments = arguments;
+        this.compactable = compactable;
+        this.compactionKey = compactionKey;
         this.argumentTypes = new ArrayList<>(arguments.size());
         for (VariableElement argument : arguments) {
             argumentTypes.add(TypeName.get(argument.asType()));
@@ -38,6 +46,25 @@ public class ActionCreatorAction {
             throw new ValidationException(element, "Action creator %s should return %s", element, Action.class.getSimpleName());
         }
 
-        return new ActionCreatorAction(annotation.value(), element.getSimpleName().toString(), element.getParameters());
+        List<? extends VariableElement> parameters = element.getParameters();
+        List<Integer> compactionKey = new ArrayList<>();
+        if (annotation.compactionKey().length != 0 && !annotation.compactable()) {
+            throw new ValidationException(element, "compactionKey of %s can be used only with compactable = true", element);
+        }
+        for (String keyArgument : annotation.compactionKey()) {
+            int index = -1;
+            for (int i = 0; i < parameters.size(); i++) {
+                if (parameters.get(i).getSimpleName().contentEquals(keyArgument)) {
+                    index = i;
+                }
+            }
+            if (index == -1) {
+                throw new ValidationException(element, "Compaction key argument \"%s\" is not found in %s", keyArgument, element);
+            }
+            compactionKey.add(index);
+        }
+
+        return new ActionCreatorAction(annotation.value(), element.getSimpleName().toString(), parameters,
+                annotation.compactable(), compactionKey);
     }
 }
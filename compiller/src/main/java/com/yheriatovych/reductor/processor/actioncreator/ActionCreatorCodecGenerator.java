@@ -0,0 +1,275 @@
+package com.yheriatovych.reductor.processor.actioncreator;
+
+import com.squareup.javapoet.*;
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.codec.ActionCodec;
+import com.yheriatovych.reductor.codec.Codecs;
+import com.yheriatovych.reductor.codec.CompactionPolicy;
+import com.yheriatovych.reductor.processor.Env;
+import com.yheriatovych.reductor.processor.ValidationException;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.yheriatovych.reductor.processor.BinaryCodecs.*;
+
+/**
+ * Emits binary {@link ActionCodec} for {@link com.yheriatovych.reductor.annotations.ActionCreator} interface.
+ * <p>
+ * Every action is written as short index of action creator method followed by action values.
+ * Codecs for values of types without built-in codec should be provided with generated Builder.
+ * If some actions are {@link com.yheriatovych.reductor.annotations.ActionCreator.Action#compactable()},
+ * codec also implements {@link CompactionPolicy}.
+ */
+public class ActionCreatorCodecGenerator {
+
+    public static void emitCodec(Env env, ActionCreatorElement creatorElement) throws IOException, ValidationException {
+        ClassName codecClassName = ClassName.bestGuess(creatorElement.getName(env) + "_Codec");
+
+        List<CodecArgument> codecArguments = new ArrayList<>();
+        StringBuilder schema = new StringBuilder(creatorElement.getName(env)).append('{');
+        Set<String> actionTypes = new HashSet<>();
+        for (ActionCreatorAction action : creatorElement.actions) {
+            if (!actionTypes.add(action.actionType)) {
+                throw new ValidationException(creatorElement.getTypeElement(), "Action type \"%s\" is declared more than once in %s", action.actionType, creatorElement.getName(env));
+            }
+            schema.append(action.actionType).append('(');
+            for (int i = 0; i < action.arguments.size(); i++) {
+                TypeName argumentType = action.argumentTypes.get(i);
+                if (!argumentType.isPrimitive()) {
+                    codecArguments.add(new CodecArgument(action, action.arguments.get(i), argumentType));
+                }
+                schema.append(argumentType).append(';');
+            }
+            schema.append(')');
+        }
+        schema.append('}');
+
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE);
+        List<FieldSpec> codecFields = new ArrayList<>();
+        for (CodecArgument argument : codecArguments) {
+            TypeName codecType = codecType(argument.type);
+            codecFields.add(FieldSpec.builder(codecType, argument.codecName, Modifier.PRIVATE, Modifier.FINAL).build());
+            constructorBuilder.addParameter(codecType, argument.codecName)
+                    .addStatement("this.$N = $N", argument.codecName, argument.codecName);
+        }
+
+        CodeBlock.Builder acceptsBlock = CodeBlock.builder()
+                .beginControlFlow("switch (actionType)");
+        CodeBlock.Builder writeBlock = CodeBlock.builder()
+                .beginControlFlow("switch (action.type)");
+        CodeBlock.Builder readBlock = CodeBlock.builder()
+                .addStatement("short index = buffer.getShort()")
+                .beginControlFlow("switch (index)");
+        boolean hasParameterizedArgs = false;
+        for (int index = 0; index < creatorElement.actions.size(); index++) {
+            ActionCreatorAction action = creatorElement.actions.get(index);
+            acceptsBlock.add("case $S:\n", action.actionType);
+
+            writeBlock.add("case $S:\n", action.actionType)
+                    .indent()
+                    .addStatement("buffer.putShort((short) $L)", index);
+            readBlock.add("case $L:\n", index)
+                    .indent()
+                    .add("return $T.create($S", Action.class, action.actionType);
+            for (int i = 0; i < action.arguments.size(); i++) {
+                TypeName argumentType = action.argumentTypes.get(i);
+                CodeBlock value = CodeBlock.of("($T) action.getValue($L)", argumentType, i);
+                if (argumentType.isPrimitive()) {
+                    writeBlock.addStatement("$L", writePrimitive(argumentType, value));
+                    readBlock.add(", $L", readPrimitive(argumentType));
+                } else {
+                    String codecName = getCodecName(action, action.arguments.get(i));
+                    writeBlock.addStatement("$N.write($L, buffer)", codecName, value);
+                    readBlock.add(", $N.read(buffer)", codecName);
+                    hasParameterizedArgs |= argumentType instanceof ParameterizedTypeName;
+                }
+            }
+            writeBlock.addStatement("return")
+                    .unindent();
+            readBlock.add(");\n")
+                    .unindent();
+        }
+        if (!creatorElement.actions.isEmpty()) {
+            acceptsBlock.indent()
+                    .addStatement("return true")
+                    .unindent();
+        }
+        acceptsBlock.add("default:\n")
+                .indent()
+                .addStatement("return false")
+                .unindent()
+                .endControlFlow();
+        writeBlock.add("default:\n")
+                .indent()
+                .addStatement("throw new $T($S + action.type)", IllegalArgumentException.class, "Unknown action type for " + codecClassName.simpleName() + ": ")
+                .unindent()
+                .endControlFlow();
+        readBlock.add("default:\n")
+                .indent()
+                .addStatement("throw new $T($S + index)", IllegalStateException.class, "Unknown action index for " + codecClassName.simpleName() + ": ")
+                .unindent()
+                .endControlFlow();
+
+        MethodSpec.Builder writeMethodBuilder = MethodSpec.methodBuilder("write")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(Action.class, "action")
+                .addParameter(ByteBuffer.class, "buffer")
+                .addCode(writeBlock.build());
+        if (hasParameterizedArgs) {
+            writeMethodBuilder.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                    .addMember("value", "$S", "unchecked")
+                    .build());
+        }
+
+        ClassName builderClassName = codecClassName.nestedClass("Builder");
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(codecClassName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(ActionCodec.class)
+                .addOriginatingElement(creatorElement.getTypeElement())
+                .addField(FieldSpec.builder(long.class, "SCHEMA_HASH", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$LL", schemaHash(schema.toString()))
+                        .build())
+                .addFields(codecFields)
+                .addMethod(constructorBuilder.build())
+                .addMethod(MethodSpec.methodBuilder("accepts")
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(Override.class)
+                        .returns(boolean.class)
+                        .addParameter(String.class, "actionType")
+                        .addCode(acceptsBlock.build())
+                        .build())
+                .addMethod(writeMethodBuilder.build())
+                .addMethod(MethodSpec.methodBuilder("read")
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(Override.class)
+                        .returns(Action.class)
+                        .addParameter(ByteBuffer.class, "buffer")
+                        .addCode(readBlock.build())
+                        .build());
+
+        MethodSpec compactionKeyMethod = createCompactionKeyMethod(creatorElement.actions);
+        if (compactionKeyMethod != null) {
+            typeSpecBuilder.addSuperinterface(CompactionPolicy.class)
+                    .addMethod(compactionKeyMethod);
+        }
+
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("builder")
+                        .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                        .returns(builderClassName)
+                        .addStatement("return new $T()", builderClassName)
+                        .build())
+                .addType(createCodecBuilder(codecArguments, codecClassName, builderClassName));
+
+        JavaFile.builder(creatorElement.getPackageName(env), typeSpecBuilder.build())
+                .build()
+                .writeTo(env.getFiler());
+    }
+
+    /**
+     * @return implementation of {@link CompactionPolicy#compactionKey(Action)} or null if there are no compactable actions
+     */
+    private static MethodSpec createCompactionKeyMethod(List<ActionCreatorAction> actions) {
+        CodeBlock.Builder block = CodeBlock.builder()
+                .beginControlFlow("switch (action.type)");
+        boolean hasCompactableActions = false;
+        for (ActionCreatorAction action : actions) {
+            if (!action.compactable) continue;
+            hasCompactableActions = true;
+
+            block.add("case $S:\n", action.actionType)
+                    .indent();
+            if (action.compactionKey.isEmpty()) {
+                block.addStatement("return action.type");
+            } else {
+                CodeBlock.Builder keyValues = CodeBlock.builder().add("action.type");
+                for (int index : action.compactionKey) {
+                    keyValues.add(", action.getValue($L)", index);
+                }
+                block.addStatement("return $T.asList($L)", Arrays.class, keyValues.build());
+            }
+            block.unindent();
+        }
+        if (!hasCompactableActions) return null;
+
+        block.add("default:\n")
+                .indent()
+                .addStatement("return null")
+                .unindent()
+                .endControlFlow();
+        return MethodSpec.methodBuilder("compactionKey")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(Object.class)
+                .addParameter(Action.class, "action")
+                .addCode(block.build())
+                .build();
+    }
+
+    private static TypeSpec createCodecBuilder(List<CodecArgument> arguments, ClassName codecClassName, ClassName builderClassName) {
+        TypeSpec.Builder builder = TypeSpec.classBuilder(builderClassName)
+                .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build());
+
+        MethodSpec.Builder buildMethodBuilder = MethodSpec.methodBuilder("build")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(codecClassName);
+
+        StringBuilder constructorArgs = new StringBuilder();
+        for (CodecArgument argument : arguments) {
+            TypeName codecType = codecType(argument.type);
+            String name = argument.codecName;
+            builder.addField(FieldSpec.builder(codecType, name, Modifier.PRIVATE).build());
+            builder.addMethod(MethodSpec.methodBuilder(name)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(builderClassName)
+                    .addParameter(codecType, name)
+                    .addStatement("this.$N = $N", name, name)
+                    .addStatement("return this")
+                    .build());
+
+            //provided codecs are not required to handle nulls, so they are wrapped
+            CodeBlock builtInCodec = builtInCodec(argument.type);
+            if (builtInCodec != null) {
+                buildMethodBuilder.addStatement("$T $NValue = $N != null ? $T.nullable($N) : $L", codecType, name, name, Codecs.class, name, builtInCodec);
+            } else {
+                buildMethodBuilder.beginControlFlow("if ($N == null)", name)
+                        .addStatement("throw new $T($S)", IllegalStateException.class, name + " should not be null")
+                        .endControlFlow()
+                        .addStatement("$T $NValue = $T.nullable($N)", codecType, name, Codecs.class, name);
+            }
+
+            if (constructorArgs.length() != 0) constructorArgs.append(", ");
+            constructorArgs.append(name).append("Value");
+        }
+        buildMethodBuilder.addStatement("return new $T(" + constructorArgs + ")", codecClassName);
+
+        return builder.addMethod(buildMethodBuilder.build()).build();
+    }
+
+    private static String getCodecName(ActionCreatorAction action, VariableElement argument) {
+        String argumentName = argument.getSimpleName().toString();
+        return action.methodName + Character.toUpperCase(argumentName.charAt(0)) + argumentName.substring(1) + "Codec";
+    }
+
+    private static class CodecArgument {
+        final TypeName type;
+        final String codecName;
+
+        CodecArgument(ActionCreatorAction action, VariableElement argument, TypeName type) {
+            this.type = type;
+            this.codecName = getCodecName(action, argument);
+        }
+    }
+}
@@ -55,6 +55,10 @@ public class ActionCreatorElement {
         return env.getElements().getBinaryName(typeElement).toString();
     }
 
+    public TypeElement getTypeElement() {
+        return typeElement;
+    }
+
     public TypeMirror getType() {
         return typeElement.asType();
     }
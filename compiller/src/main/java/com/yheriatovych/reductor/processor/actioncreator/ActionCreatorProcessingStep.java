@@ -12,26 +12,27 @@ import javax.lang.model.element.*;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.Collections;
-import java.util.Map;
 import java.util.Set;
 
 public class ActionCreatorProcessingStep implements BasicAnnotationProcessor.ProcessingStep {
 
     private final Env env;
-    private final Map<String, ActionCreatorElement> knownActionCreators;
+    private final ActionCreatorRegistry actionCreators;
 
-    public ActionCreatorProcessingStep(Env env, Map<String, ActionCreatorElement> knownActionCreators) {
+    public ActionCreatorProcessingStep(Env env, ActionCreatorRegistry actionCreators) {
         this.env = env;
-        this.knownActionCreators = knownActionCreators;
+        this.actionCreators = actionCreators;
     }
 
     @Override
     public Set<Element> process(SetMultimap<Class<? extends Annotation>, Element> elementsByAnnotation) {
         for (Element element : elementsByAnnotation.values()) {
             try {
-                ActionCreatorElement creatorElement = ActionCreatorElement.parse(element, env);
-                knownActionCreators.put(env.getElements().getBinaryName((TypeElement) element).toString(), creatorElement);
+                ActionCreatorElement creatorElement = actionCreators.get((TypeElement) element);
                 emitActionCreator(creatorElement, env);
+                if (env.isOptionEnabled(Env.OPTION_CODECS)) {
+                    ActionCreatorCodecGenerator.emitCodec(env, creatorElement);
+                }
             } catch (ValidationException ve) {
                 env.printError(ve.getElement(), ve.getMessage());
             } catch (Exception e) {
@@ -46,7 +47,8 @@ public class ActionCreatorProcessingStep implements BasicAnnotationProcessor.Pro
         ClassName className = ClassName.bestGuess(creatorElement.getName(env) + "_AutoImpl");
         TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(className)
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addSuperinterface(TypeName.get(creatorElement.getType()));
+                .addSuperinterface(TypeName.get(creatorElement.getType()))
+                .addOriginatingElement(creatorElement.getTypeElement());
 
         for (ActionCreatorAction action : creatorElement.actions) {
             MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(action.methodName)
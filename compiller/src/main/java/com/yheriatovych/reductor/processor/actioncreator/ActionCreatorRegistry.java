@@ -0,0 +1,40 @@
+package com.yheriatovych.reductor.processor.actioncreator;
+
+import com.yheriatovych.reductor.processor.Env;
+import com.yheriatovych.reductor.processor.ValidationException;
+
+import javax.lang.model.element.TypeElement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lookup of parsed {@link ActionCreatorElement}s.
+ * <p>
+ * Action creators are parsed on demand from their {@link TypeElement},
+ * so they are resolved the same way when they are part of current compilation and when they come from classpath
+ * (e.g. when only reducer is recompiled by incremental compilation).
+ * Parsed elements are cached by binary name until {@link #clear()} is called at the end of processing round,
+ * as elements and type mirrors they hold are not valid in later rounds.
+ */
+public class ActionCreatorRegistry {
+    private final Env env;
+    private final Map<String, ActionCreatorElement> actionCreators = new HashMap<>();
+
+    public ActionCreatorRegistry(Env env) {
+        this.env = env;
+    }
+
+    public ActionCreatorElement get(TypeElement typeElement) throws ValidationException {
+        String name = env.getElements().getBinaryName(typeElement).toString();
+        ActionCreatorElement creatorElement = actionCreators.get(name);
+        if (creatorElement == null) {
+            creatorElement = ActionCreatorElement.parse(typeElement, env);
+            actionCreators.put(name, creatorElement);
+        }
+        return creatorElement;
+    }
+
+    public void clear() {
+        actionCreators.clear();
+    }
+}
@@ -4,10 +4,10 @@ import com.google.auto.common.BasicAnnotationProcessor;
 import com.google.common.collect.SetMultimap;
 import com.squareup.javapoet.*;
 import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.RoutedReducer;
 import com.yheriatovych.reductor.annotations.AutoReducer;
-import com.yheriatovych.reductor.processor.ElementNotReadyException;
 import com.yheriatovych.reductor.processor.Env;
-import com.yheriatovych.reductor.processor.actioncreator.ActionCreatorElement;
+import com.yheriatovych.reductor.processor.actioncreator.ActionCreatorRegistry;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
@@ -20,11 +20,11 @@ import java.util.*;
 public class AutoReducerProcessingStep implements BasicAnnotationProcessor.ProcessingStep{
 
     private final Env env;
-    private final Map<String, ActionCreatorElement> knownActionCreators;
+    private final ActionCreatorRegistry actionCreators;
 
-    public AutoReducerProcessingStep(Env env, Map<String, ActionCreatorElement> knownActionCreators) {
+    public AutoReducerProcessingStep(Env env, ActionCreatorRegistry actionCreators) {
         this.env = env;
-        this.knownActionCreators = knownActionCreators;
+        this.actionCreators = actionCreators;
     }
 
     @Override
@@ -34,30 +34,29 @@ public class AutoReducerProcessingStep implements BasicAnnotationProcessor.Proce
 
     @Override
     public Set<Element> process(SetMultimap<Class<? extends Annotation>, Element> elementsByAnnotation) {
-        Set<Element> delayed = new HashSet<>();
         for (Element stringReducer : elementsByAnnotation.values()) {
             try {
-                StringReducerElement reducerElement = StringReducerElement.parseStringReducerElement(stringReducer, knownActionCreators, env);
+                StringReducerElement reducerElement = StringReducerElement.parseStringReducerElement(stringReducer, actionCreators, env);
                 emitGeneratedClass(reducerElement, reducerElement.getPackageName(env), reducerElement.originalElement);
             } catch (com.yheriatovych.reductor.processor.ValidationException ve) {
                 env.printError(ve.getElement(), ve.getMessage());
-            } catch (ElementNotReadyException e){
-                delayed.add(stringReducer);
             } catch (Exception e) {
                 e.printStackTrace();
                 env.printError(stringReducer, "Internal processor error:\n %s", e.getMessage());
             }
         }
-        return delayed;
+        return Collections.emptySet();
     }
 
     private void emitGeneratedClass(StringReducerElement reducerElement, String packageName, TypeElement originalTypeElement) throws IOException {
         String name = reducerElement.getSimpleName() + "Impl";
+        TypeName stateTypeName = TypeName.get(reducerElement.stateType);
         TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(name)
                 .addModifiers(Modifier.PUBLIC)
-                .superclass(TypeName.get(originalTypeElement.asType()));
+                .superclass(TypeName.get(originalTypeElement.asType()))
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(RoutedReducer.class), stateTypeName))
+                .addOriginatingElement(originalTypeElement);
 
-        TypeName stateTypeName = TypeName.get(reducerElement.stateType);
         MethodSpec.Builder reduceMethodBuilder = MethodSpec.methodBuilder("reduce")
                 .addModifiers(Modifier.PUBLIC)
                 .returns(stateTypeName)
@@ -77,25 +76,31 @@ public class AutoReducerProcessingStep implements BasicAnnotationProcessor.Proce
 
         for (ReduceAction action : reducerElement.actions) {
             final List<VariableElement> args = action.args;
-            reduceBodyBuilder
-                    .add("case $S:", action.action)
-                    .indent()
-                    .add("\n");
-            if (args.size() == 0) {
-                if (args.size() == 0) {
-                    reduceBodyBuilder.addStatement("return $N(state)", action.getMethodName());
-                }
-            } else {
+            if (action.draftType == null) {
                 reduceBodyBuilder
+                        .add("case $S:", action.action)
+                        .indent()
+                        .add("\n")
                         .add("return $N(state", action.getMethodName());
-
-                for (int i = 0; i < args.size(); i++) {
-                    final VariableElement arg = args.get(i);
-                    reduceBodyBuilder.add(", ($T) action.getValue($L)", arg.asType(), i);
+                emitActionValues(reduceBodyBuilder, args);
+                reduceBodyBuilder.unindent();
+            } else {
+                reduceBodyBuilder
+                        .add("case $S: {\n", action.action)
+                        .indent();
+                if (reducerElement.initMethod == null) {
+                    //there is no state to draft, the same as other handlers receive null
+                    reduceBodyBuilder.addStatement("if (state == null) return null");
                 }
-                reduceBodyBuilder.add(");\n");
+                reduceBodyBuilder
+                        .addStatement("$T draft = state.draft()", action.draftType)
+                        .add("$N(draft", action.getMethodName());
+                emitActionValues(reduceBodyBuilder, args);
+                reduceBodyBuilder
+                        .addStatement("return draft.finish()")
+                        .unindent()
+                        .add("}\n");
             }
-            reduceBodyBuilder.unindent();
 
             MethodSpec.Builder actionCreatorMethodBuilder = MethodSpec.methodBuilder(action.getMethodName())
                     .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
@@ -125,7 +130,8 @@ public class AutoReducerProcessingStep implements BasicAnnotationProcessor.Proce
                                 .unindent()
                                 .endControlFlow()
                                 .build())
-                        .build());
+                        .build())
+                .addMethod(emitHandlesMethod(reducerElement));
 
         TypeSpec actionCreator = emitActionCreator(reducerElement);
         if (actionCreator != null) {
@@ -137,6 +143,43 @@ public class AutoReducerProcessingStep implements BasicAnnotationProcessor.Proce
         javaFile.writeTo(env.getFiler());
     }
 
+    private static void emitActionValues(CodeBlock.Builder builder, List<VariableElement> args) {
+        for (int i = 0; i < args.size(); i++) {
+            final VariableElement arg = args.get(i);
+            builder.add(", ($T) action.getValue($L)", arg.asType(), i);
+        }
+        builder.add(");\n");
+    }
+
+    private MethodSpec emitHandlesMethod(StringReducerElement reducerElement) {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("handles")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addAnnotation(Override.class)
+                .addParameter(String.class, "actionType");
+
+        if (reducerElement.actions.isEmpty()) {
+            return builder.addStatement("return false").build();
+        }
+
+        CodeBlock.Builder switchBuilder = CodeBlock.builder()
+                .beginControlFlow("switch (actionType)");
+        for (ReduceAction action : reducerElement.actions) {
+            switchBuilder.add("case $S:\n", action.action);
+        }
+        return builder.addCode(switchBuilder
+                .indent()
+                .addStatement("return true")
+                .unindent()
+                .add("default:\n")
+                .indent()
+                .addStatement("return false")
+                .unindent()
+                .endControlFlow()
+                .build())
+                .build();
+    }
+
     private List<MethodSpec> emitConstructorAsSuper(List<AutoReducerConstructor> constructors) {
         List<MethodSpec> methodSpecs = new ArrayList<>();
         for (AutoReducerConstructor constructor : constructors) {
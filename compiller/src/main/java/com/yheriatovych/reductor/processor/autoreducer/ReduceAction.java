@@ -2,21 +2,23 @@ package com.yheriatovych.reductor.processor.autoreducer;
 
 import com.google.auto.common.MoreElements;
 import com.google.auto.common.MoreTypes;
+import com.yheriatovych.reductor.Draftable;
 import com.yheriatovych.reductor.annotations.ActionCreator;
 import com.yheriatovych.reductor.annotations.AutoReducer;
 import com.yheriatovych.reductor.processor.*;
 import com.yheriatovych.reductor.processor.actioncreator.ActionCreatorElement;
+import com.yheriatovych.reductor.processor.actioncreator.ActionCreatorRegistry;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
-import javax.lang.model.util.Elements;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class ReduceAction {
 
@@ -24,23 +26,31 @@ public class ReduceAction {
     public final List<VariableElement> args;
     public final ExecutableElement executableElement;
     public final boolean generateActionCreator;
+    //type of draft the handler mutates, null if handler returns new state
+    public final TypeMirror draftType;
 
-    private ReduceAction(String action, List<VariableElement> args, ExecutableElement executableElement, boolean generateActionCreator) {
+    private ReduceAction(String action, List<VariableElement> args, ExecutableElement executableElement, boolean generateActionCreator, TypeMirror draftType) {
         this.executableElement = executableElement;
         this.args = args;
         this.action = action;
         this.generateActionCreator = generateActionCreator;
+        this.draftType = draftType;
     }
 
-    public static ReduceAction parseReduceAction(Env env, TypeMirror stateType, ExecutableElement element, Map<String, ActionCreatorElement> knownActionCreators) throws ValidationException {
+    public static ReduceAction parseReduceAction(Env env, TypeMirror stateType, ExecutableElement element, ActionCreatorRegistry actionCreators) throws ValidationException {
         AutoReducer.Action action = element.getAnnotation(AutoReducer.Action.class);
         if (action == null) return null;
 
         String actionNameConstant = action.value();
         boolean generateActionCreator = action.generateActionCreator();
-        TypeMirror actionCreatorType = getCreator(action, env.getElements(), env, element);
+        TypeMirror actionCreatorType = getCreator(action, env);
 
-        ValidationUtils.validateReturnsState(env, stateType, element);
+        TypeMirror draftType = element.getReturnType().getKind() == TypeKind.VOID
+                ? findDraftType(env, stateType)
+                : null;
+        if (draftType == null) {
+            ValidationUtils.validateReturnsState(env, stateType, element);
+        }
         ValidationUtils.validateIsNotPrivate(element);
 
         List<? extends VariableElement> parameters = element.getParameters();
@@ -54,23 +64,41 @@ public class ReduceAction {
             args.add(argumentVariable);
         }
         VariableElement firstParam = parameters.get(0);
-        if (!env.getTypes().isAssignable(stateType, firstParam.asType())) {
+        if (draftType != null) {
+            if (!env.getTypes().isAssignable(draftType, firstParam.asType())) {
+                throw new ValidationException(firstParam, "First parameter %s of method %s should have the same type as draft of state (%s)", firstParam, element, draftType);
+            }
+        } else if (!env.getTypes().isAssignable(stateType, firstParam.asType())) {
             throw new ValidationException(firstParam, "First parameter %s of method %s should have the same type as state (%s)", firstParam, element, stateType);
         }
 
         if (actionCreatorType != null) {
-            validateActionCreator(element, actionNameConstant, actionCreatorType, args, knownActionCreators, env);
+            validateActionCreator(element, actionNameConstant, actionCreatorType, args, actionCreators, env);
         }
 
-        return new ReduceAction(actionNameConstant, args, element, generateActionCreator);
+        return new ReduceAction(actionNameConstant, args, element, generateActionCreator, draftType);
     }
 
-    private static TypeMirror getCreator(AutoReducer.Action action, Elements elements, Env env, ExecutableElement element) {
+    /**
+     * @return type argument D of {@link Draftable} implemented by state type, null if state is not draftable
+     */
+    private static TypeMirror findDraftType(Env env, TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) return null;
+        if (env.getTypes().isSameType(env.getTypes().erasure(type), env.getTypes().erasure(env.asType(Draftable.class)))) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            return typeArguments.size() == 2 ? typeArguments.get(1) : null;
+        }
+        for (TypeMirror supertype : env.getTypes().directSupertypes(type)) {
+            TypeMirror draftType = findDraftType(env, supertype);
+            if (draftType != null) return draftType;
+        }
+        return null;
+    }
+
+    private static TypeMirror getCreator(AutoReducer.Action action, Env env) {
         TypeMirror typeMirror;
         try {
-            Class<?> fromClass = action.from();
-            String className = fromClass.getCanonicalName();
-            typeMirror = elements.getTypeElement(className).asType();
+            typeMirror = env.asType(action.from());
         } catch (MirroredTypeException mte) {
             typeMirror = mte.getTypeMirror();
         }
@@ -85,16 +113,18 @@ public class ReduceAction {
                                               String actionName,
                                               TypeMirror actionCreator,
                                               ArrayList<VariableElement> args,
-                                              Map<String, ActionCreatorElement> knownActionCreators,
+                                              ActionCreatorRegistry actionCreators,
                                               Env env) throws ValidationException {
         Element actionCreatorElement = MoreTypes.asElement(actionCreator);
         if (!MoreElements.isAnnotationPresent(actionCreatorElement, ActionCreator.class)) {
             throw new ValidationException(element, "Action creator %s should be annotated with @%s", actionCreator, ActionCreator.class.getSimpleName());
         }
 
-        ActionCreatorElement creatorElement = knownActionCreators.get(env.getElements().getBinaryName((TypeElement) actionCreatorElement).toString());
-        if(creatorElement == null) {
-            throw new ElementNotReadyException();
+        ActionCreatorElement creatorElement;
+        try {
+            creatorElement = actionCreators.get(MoreElements.asType(actionCreatorElement));
+        } catch (ValidationException ve) {
+            throw new ValidationException(element, "Action creator %s is not valid: %s", actionCreator, ve.getMessage());
         }
         if(!creatorElement.hasAction(actionName, args)){
             throw new ValidationException(element, "Cannot find action creator for action \"%s\" and args %s in interface %s", actionName, toString(args), creatorElement.getName(env));
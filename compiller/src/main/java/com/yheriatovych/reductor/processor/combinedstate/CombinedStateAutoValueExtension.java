@@ -28,10 +28,17 @@ public class CombinedStateAutoValueExtension extends AutoValueExtension {
         boolean isApplicable = typeElement.getAnnotation(CombinedState.class) != null;
         if (isApplicable) {
             ProcessingEnvironment processingEnvironment = context.processingEnvironment();
-            Env env = new Env(processingEnvironment.getTypeUtils(), processingEnvironment.getElementUtils(), processingEnvironment.getMessager(), processingEnvironment.getFiler());
+            Env env = new Env(processingEnvironment.getTypeUtils(), processingEnvironment.getElementUtils(), processingEnvironment.getMessager(), processingEnvironment.getFiler(), processingEnvironment.getOptions());
             try {
                 CombinedStateElement combinedStateElement = CombinedStateElement.parseAutoValueCombinedElement(typeElement, context.properties());
-                CombinedStateProcessingStep.emmitCombinedReducer(env, combinedStateElement, ClassName.get(context.packageName(), "AutoValue_" + context.autoValueClass().getSimpleName()));
+                ClassName stateClassName = ClassName.get(context.packageName(), "AutoValue_" + context.autoValueClass().getSimpleName());
+                CombinedStateProcessingStep.emmitCombinedReducer(env, combinedStateElement, stateClassName);
+                if (combinedStateElement.differ) {
+                    CombinedStateDifferGenerator.emitDiffer(env, combinedStateElement, stateClassName);
+                }
+                if (env.isOptionEnabled(Env.OPTION_CODECS)) {
+                    CombinedStateCodecGenerator.emitCodec(env, combinedStateElement, stateClassName);
+                }
             } catch (ValidationException ve) {
                 env.printError(ve.getElement(), ve.getMessage());
             } catch (Exception e) {
@@ -0,0 +1,206 @@
+package com.yheriatovych.reductor.processor.combinedstate;
+
+import com.squareup.javapoet.*;
+import com.yheriatovych.reductor.LazyState;
+import com.yheriatovych.reductor.codec.Codec;
+import com.yheriatovych.reductor.codec.Codecs;
+import com.yheriatovych.reductor.processor.Env;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.yheriatovych.reductor.processor.BinaryCodecs.*;
+
+/**
+ * Emits binary {@link Codec} for {@link com.yheriatovych.reductor.annotations.CombinedState}.
+ * <p>
+ * Properties are written in declaration order. Codecs for properties of types without built-in codec
+ * should be provided with generated Builder, nested combined states use their own generated codecs by default.
+ * <p>
+ * Codec of lazy combined state writes flag per property and writes only initialized sub-states,
+ * not initialized ones are read as {@link LazyState#deferred()} and populated by reducer.
+ */
+public class CombinedStateCodecGenerator {
+    private static final String CODEC_SUFFIX = "Codec";
+
+    public static ClassName getCodecClassName(Env env, TypeElement stateTypeElement) {
+        return ClassName.get(env.getPackageName(stateTypeElement), stateTypeElement.getSimpleName() + CODEC_SUFFIX);
+    }
+
+    public static void emitCodec(Env env, CombinedStateElement combinedStateElement, ClassName stateClassName) throws IOException {
+        TypeElement stateTypeElement = combinedStateElement.stateTypeElement;
+        ClassName codecClassName = getCodecClassName(env, stateTypeElement);
+        TypeName stateTypeName = TypeName.get(stateTypeElement.asType());
+
+        List<StateProperty> codecProperties = new ArrayList<>();
+        StringBuilder schema = new StringBuilder(combinedStateElement.lazy ? "lazy " : "")
+                .append(stateTypeElement.getQualifiedName()).append('{');
+        for (StateProperty property : combinedStateElement.properties) {
+            if (!property.stateType.getKind().isPrimitive()) {
+                codecProperties.add(property);
+            }
+            schema.append(property.name).append(':').append(TypeName.get(property.stateType)).append(';');
+        }
+        schema.append('}');
+
+        CodeBlock.Builder schemaHash = CodeBlock.builder().add("$LL", schemaHash(schema.toString()));
+        for (StateProperty property : codecProperties) {
+            TypeElement nestedState = property.getCombinedStateElement();
+            if (nestedState != null) {
+                schemaHash.add(" * 31 + $T.SCHEMA_HASH", getCodecClassName(env, nestedState));
+            }
+        }
+
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE);
+        List<FieldSpec> codecFields = new ArrayList<>();
+        for (StateProperty property : codecProperties) {
+            TypeName codecType = codecType(TypeName.get(property.stateType));
+            String fieldName = getCodecFieldName(property);
+            codecFields.add(FieldSpec.builder(codecType, fieldName, Modifier.PRIVATE, Modifier.FINAL).build());
+            constructorBuilder.addParameter(codecType, fieldName)
+                    .addStatement("this.$N = $N", fieldName, fieldName);
+        }
+
+        MethodSpec.Builder writeMethodBuilder = MethodSpec.methodBuilder("write")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(stateTypeName, "value")
+                .addParameter(ByteBuffer.class, "buffer");
+        MethodSpec.Builder readMethodBuilder = MethodSpec.methodBuilder("read")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(stateTypeName)
+                .addParameter(ByteBuffer.class, "buffer");
+
+        StringBuilder args = new StringBuilder();
+        for (StateProperty property : combinedStateElement.properties) {
+            TypeName propertyType = TypeName.get(property.stateType);
+            if (combinedStateElement.lazy) {
+                addLazyProperty(writeMethodBuilder, readMethodBuilder, property, stateClassName);
+            } else {
+                CodeBlock value = CodeBlock.of("value.$N()", property.name);
+                if (propertyType.isPrimitive()) {
+                    writeMethodBuilder.addStatement("$L", writePrimitive(propertyType, value));
+                    readMethodBuilder.addStatement("$T $N = $L", propertyType, property.name, readPrimitive(propertyType));
+                } else {
+                    String codecField = getCodecFieldName(property);
+                    writeMethodBuilder.addStatement("$N.write($L, buffer)", codecField, value);
+                    readMethodBuilder.addStatement("$T $N = $N.read(buffer)", propertyType, property.name, codecField);
+                }
+            }
+
+            if (args.length() != 0) args.append(", ");
+            args.append(property.name);
+        }
+        if (combinedStateElement.lazy) {
+            readMethodBuilder.addStatement("return new $T($L)", stateClassName, args);
+        } else {
+            readMethodBuilder.addStatement("return $L", CombinedStateProcessingStep.newState(stateClassName, combinedStateElement.interned, args.toString()));
+        }
+
+        ClassName builderClassName = codecClassName.nestedClass("Builder");
+        MethodSpec builderFactoryMethod = MethodSpec.methodBuilder("builder")
+                .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                .returns(builderClassName)
+                .addStatement("return new $T()", builderClassName)
+                .build();
+
+        TypeSpec typeSpec = TypeSpec.classBuilder(codecClassName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(codecType(stateTypeName))
+                .addOriginatingElement(stateTypeElement)
+                .addField(FieldSpec.builder(long.class, "SCHEMA_HASH", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(schemaHash.build())
+                        .build())
+                .addFields(codecFields)
+                .addMethod(constructorBuilder.build())
+                .addMethod(writeMethodBuilder.build())
+                .addMethod(readMethodBuilder.build())
+                .addMethod(builderFactoryMethod)
+                .addType(createCodecBuilder(env, codecProperties, codecClassName, builderClassName))
+                .build();
+
+        JavaFile.builder(codecClassName.packageName(), typeSpec)
+                .build()
+                .writeTo(env.getFiler());
+    }
+
+    private static void addLazyProperty(MethodSpec.Builder writeMethodBuilder, MethodSpec.Builder readMethodBuilder, StateProperty property, ClassName stateClassName) {
+        TypeName propertyType = TypeName.get(property.stateType);
+        TypeName lazyType = ParameterizedTypeName.get(ClassName.get(LazyState.class), propertyType.box());
+        CodeBlock value = CodeBlock.of("$N.get()", property.name);
+        CodeBlock readValue = propertyType.isPrimitive()
+                ? readPrimitive(propertyType)
+                : CodeBlock.of("$N.read(buffer)", getCodecFieldName(property));
+
+        //holders of generated implementation are written as is, so sub-states are not initialized by encoding
+        writeMethodBuilder.addStatement("$T $N = value instanceof $T ? (($T) value).$N : $T.of(value.$N())",
+                lazyType, property.name, stateClassName, stateClassName, property.name, LazyState.class, property.name)
+                .beginControlFlow("if ($N.isInitialized())", property.name)
+                .addStatement("buffer.put((byte) 1)")
+                .addStatement("$L", propertyType.isPrimitive()
+                        ? writePrimitive(propertyType, value)
+                        : CodeBlock.of("$N.write($L, buffer)", getCodecFieldName(property), value))
+                .nextControlFlow("else")
+                .addStatement("buffer.put((byte) 0)")
+                .endControlFlow();
+        readMethodBuilder.addStatement("$T $N = buffer.get() != 0 ? $T.<$T>of($L) : $T.<$T>deferred()",
+                lazyType, property.name, LazyState.class, propertyType.box(), readValue, LazyState.class, propertyType.box());
+    }
+
+    private static TypeSpec createCodecBuilder(Env env, List<StateProperty> properties, ClassName codecClassName, ClassName builderClassName) {
+        TypeSpec.Builder builder = TypeSpec.classBuilder(builderClassName)
+                .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build());
+
+        MethodSpec.Builder buildMethodBuilder = MethodSpec.methodBuilder("build")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(codecClassName);
+
+        StringBuilder constructorArgs = new StringBuilder();
+        for (StateProperty property : properties) {
+            TypeName propertyType = TypeName.get(property.stateType);
+            TypeName codecType = codecType(propertyType);
+            String name = getCodecFieldName(property);
+            builder.addField(FieldSpec.builder(codecType, name, Modifier.PRIVATE).build());
+            builder.addMethod(MethodSpec.methodBuilder(name)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(builderClassName)
+                    .addParameter(codecType, name)
+                    .addStatement("this.$N = $N", name, name)
+                    .addStatement("return this")
+                    .build());
+
+            //provided and nested codecs are not required to handle nulls, so they are wrapped
+            CodeBlock builtInCodec = builtInCodec(propertyType);
+            TypeElement nestedState = property.getCombinedStateElement();
+            if (builtInCodec != null) {
+                buildMethodBuilder.addStatement("$T $NValue = $N != null ? $T.nullable($N) : $L", codecType, name, name, Codecs.class, name, builtInCodec);
+            } else if (nestedState != null) {
+                buildMethodBuilder.addStatement("$T $NValue = $T.nullable($N != null ? $N : $T.builder().build())", codecType, name, Codecs.class, name, name, getCodecClassName(env, nestedState));
+            } else {
+                buildMethodBuilder.beginControlFlow("if ($N == null)", name)
+                        .addStatement("throw new $T($S)", IllegalStateException.class, name + " should not be null")
+                        .endControlFlow()
+                        .addStatement("$T $NValue = $T.nullable($N)", codecType, name, Codecs.class, name);
+            }
+
+            if (constructorArgs.length() != 0) constructorArgs.append(", ");
+            constructorArgs.append(name).append("Value");
+        }
+        buildMethodBuilder.addStatement("return new $T(" + constructorArgs + ")", codecClassName);
+
+        return builder.addMethod(buildMethodBuilder.build()).build();
+    }
+
+    private static String getCodecFieldName(StateProperty property) {
+        return property.name + CODEC_SUFFIX;
+    }
+}
@@ -0,0 +1,194 @@
+package com.yheriatovych.reductor.processor.combinedstate;
+
+import com.squareup.javapoet.*;
+import com.yheriatovych.reductor.LazyState;
+import com.yheriatovych.reductor.annotations.CombinedState;
+import com.yheriatovych.reductor.diff.Differ;
+import com.yheriatovych.reductor.diff.Patch;
+import com.yheriatovych.reductor.processor.Env;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emits {@link Differ} implementation for {@link com.yheriatovych.reductor.annotations.CombinedState}.
+ * <p>
+ * Generated differ compares properties by reference and descends only into changed ones.
+ * Non-primitive properties can be compared with pluggable differs set in generated Builder,
+ * nested combined states with {@code differ = true} use their own generated differs by default.
+ * <p>
+ * Differ of lazy combined state compares {@link LazyState} holders of generated implementation by reference
+ * and skips sub-states which are not initialized in both states, so diffing does not initialize them.
+ */
+public class CombinedStateDifferGenerator {
+    private static final String DIFFER_SUFFIX = "Differ";
+
+    public static ClassName getDifferClassName(Env env, TypeElement stateTypeElement) {
+        return ClassName.get(env.getPackageName(stateTypeElement), stateTypeElement.getSimpleName() + DIFFER_SUFFIX);
+    }
+
+    public static void emitDiffer(Env env, CombinedStateElement combinedStateElement, ClassName stateClassName) throws IOException {
+        TypeElement stateTypeElement = combinedStateElement.stateTypeElement;
+        ClassName differClassName = getDifferClassName(env, stateTypeElement);
+        TypeName stateTypeName = TypeName.get(stateTypeElement.asType());
+
+        List<StateProperty> differProperties = new ArrayList<>();
+        for (StateProperty property : combinedStateElement.properties) {
+            if (!property.stateType.getKind().isPrimitive()) {
+                differProperties.add(property);
+            }
+        }
+
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE);
+        List<FieldSpec> differFields = new ArrayList<>();
+        for (StateProperty property : differProperties) {
+            TypeName differType = getDifferTypeName(property);
+            String fieldName = getDifferFieldName(property);
+            differFields.add(FieldSpec.builder(differType, fieldName, Modifier.PRIVATE, Modifier.FINAL).build());
+            constructorBuilder.addParameter(differType, fieldName)
+                    .addStatement("this.$N = $N", fieldName, fieldName);
+        }
+
+        MethodSpec rootDiffMethod = MethodSpec.methodBuilder("diff")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(Patch.class)
+                .addParameter(stateTypeName, "previous")
+                .addParameter(stateTypeName, "next")
+                .addStatement("$T patch = $T.builder()", Patch.Builder.class, Patch.class)
+                .addStatement("diff(\"\", previous, next, patch)")
+                .addStatement("return patch.build()")
+                .build();
+
+        MethodSpec.Builder diffMethodBuilder = MethodSpec.methodBuilder("diff")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(String.class, "path")
+                .addParameter(stateTypeName, "previous")
+                .addParameter(stateTypeName, "next")
+                .addParameter(Patch.Builder.class, "patch")
+                .addStatement("if (previous == next) return")
+                .beginControlFlow("if (previous == null || next == null)")
+                .addStatement("patch.changed(path, previous, next)")
+                .addStatement("return")
+                .endControlFlow();
+
+        if (combinedStateElement.lazy) {
+            //holders are the same if sub-state was not changed, comparing values would initialize them
+            diffMethodBuilder.addCode("\n")
+                    .beginControlFlow("if (previous instanceof $T && next instanceof $T)", stateClassName, stateClassName)
+                    .addStatement("$T previousImpl = ($T) previous", stateClassName, stateClassName)
+                    .addStatement("$T nextImpl = ($T) next", stateClassName, stateClassName);
+            for (StateProperty property : combinedStateElement.properties) {
+                diffMethodBuilder.addCode("\n")
+                        .beginControlFlow("if (previousImpl.$N != nextImpl.$N && (previousImpl.$N.isInitialized() || nextImpl.$N.isInitialized()))",
+                                property.name, property.name, property.name, property.name);
+                addPropertyDiff(diffMethodBuilder, property,
+                        CodeBlock.of("previousImpl.$N.get()", property.name),
+                        CodeBlock.of("nextImpl.$N.get()", property.name));
+                diffMethodBuilder.endControlFlow();
+            }
+            diffMethodBuilder.addStatement("return")
+                    .endControlFlow();
+        }
+
+        for (StateProperty property : combinedStateElement.properties) {
+            diffMethodBuilder.addCode("\n");
+            addPropertyDiff(diffMethodBuilder, property,
+                    CodeBlock.of("previous.$N()", property.name),
+                    CodeBlock.of("next.$N()", property.name));
+        }
+
+        ClassName builderClassName = differClassName.nestedClass("Builder");
+        MethodSpec builderFactoryMethod = MethodSpec.methodBuilder("builder")
+                .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                .returns(builderClassName)
+                .addStatement("return new $T()", builderClassName)
+                .build();
+
+        TypeSpec typeSpec = TypeSpec.classBuilder(differClassName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Differ.class), stateTypeName))
+                .addOriginatingElement(stateTypeElement)
+                .addFields(differFields)
+                .addMethod(constructorBuilder.build())
+                .addMethod(rootDiffMethod)
+                .addMethod(diffMethodBuilder.build())
+                .addMethod(builderFactoryMethod)
+                .addType(createDifferBuilder(env, differProperties, differClassName, builderClassName))
+                .build();
+
+        JavaFile.builder(differClassName.packageName(), typeSpec)
+                .build()
+                .writeTo(env.getFiler());
+    }
+
+    private static void addPropertyDiff(MethodSpec.Builder diffMethodBuilder, StateProperty property, CodeBlock previous, CodeBlock next) {
+        TypeName propertyType = TypeName.get(property.stateType);
+        diffMethodBuilder.addStatement("$T $N = $L", propertyType, property.name, previous)
+                .addStatement("$T $NNext = $L", propertyType, property.name, next)
+                .beginControlFlow("if ($N != $NNext)", property.name, property.name);
+        if (property.stateType.getKind().isPrimitive()) {
+            diffMethodBuilder.addStatement("patch.changed($T.path(path, $S), $N, $NNext)", Patch.class, property.name, property.name, property.name);
+        } else {
+            String differField = getDifferFieldName(property);
+            diffMethodBuilder.beginControlFlow("if ($N != null)", differField)
+                    .addStatement("$N.diff($T.path(path, $S), $N, $NNext, patch)", differField, Patch.class, property.name, property.name, property.name)
+                    .nextControlFlow("else")
+                    .addStatement("patch.changed($T.path(path, $S), $N, $NNext)", Patch.class, property.name, property.name, property.name)
+                    .endControlFlow();
+        }
+        diffMethodBuilder.endControlFlow();
+    }
+
+    private static TypeSpec createDifferBuilder(Env env, List<StateProperty> properties, ClassName differClassName, ClassName builderClassName) {
+        TypeSpec.Builder builder = TypeSpec.classBuilder(builderClassName)
+                .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build());
+
+        MethodSpec.Builder buildMethodBuilder = MethodSpec.methodBuilder("build")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(differClassName);
+
+        StringBuilder constructorArgs = new StringBuilder();
+        for (StateProperty property : properties) {
+            TypeName differType = getDifferTypeName(property);
+            String name = getDifferFieldName(property);
+            builder.addField(FieldSpec.builder(differType, name, Modifier.PRIVATE).build());
+            builder.addMethod(MethodSpec.methodBuilder(name)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(builderClassName)
+                    .addParameter(differType, name)
+                    .addStatement("this.$N = $N", name, name)
+                    .addStatement("return this")
+                    .build());
+
+            //nested combined states with generated differs are compared with them unless overridden
+            TypeElement nestedState = property.getCombinedStateElement();
+            if (nestedState != null && nestedState.getAnnotation(CombinedState.class).differ()) {
+                buildMethodBuilder.beginControlFlow("if ($N == null)", name)
+                        .addStatement("$N = $T.builder().build()", name, getDifferClassName(env, nestedState))
+                        .endControlFlow();
+            }
+
+            if (constructorArgs.length() != 0) constructorArgs.append(", ");
+            constructorArgs.append(name);
+        }
+        buildMethodBuilder.addStatement("return new $T(" + constructorArgs + ")", differClassName);
+
+        return builder.addMethod(buildMethodBuilder.build()).build();
+    }
+
+    private static String getDifferFieldName(StateProperty property) {
+        return property.name + DIFFER_SUFFIX;
+    }
+
+    private static TypeName getDifferTypeName(StateProperty property) {
+        return ParameterizedTypeName.get(ClassName.get(Differ.class), TypeName.get(property.stateType));
+    }
+}
@@ -16,11 +16,21 @@ import java.util.Map;
 public class CombinedStateElement {
     public final TypeElement stateTypeElement;
     public final List<StateProperty> properties;
+    public final boolean lazy;
+    public final boolean interned;
+    public final boolean wide;
+    public final boolean sliced;
+    public final boolean differ;
 
 
-    public CombinedStateElement(TypeElement stateTypeElement, List<StateProperty> getters) {
+    public CombinedStateElement(TypeElement stateTypeElement, List<StateProperty> getters, boolean lazy, boolean interned, boolean wide, boolean sliced, boolean differ) {
         this.stateTypeElement = stateTypeElement;
         properties = getters;
+        this.lazy = lazy;
+        this.interned = interned;
+        this.wide = wide;
+        this.sliced = sliced;
+        this.differ = differ;
     }
 
     public static CombinedStateElement parseCombinedElement(TypeElement typeElement) throws ValidationException {
@@ -43,7 +53,17 @@ public class CombinedStateElement {
             }
         }
 
-        return new CombinedStateElement(typeElement, properties);
+        CombinedState annotation = typeElement.getAnnotation(CombinedState.class);
+        if (annotation.lazy() && annotation.interned()) {
+            throw new ValidationException(typeElement, "Lazy @%s cannot be interned", CombinedState.class.getSimpleName());
+        }
+        if (annotation.wide() && (annotation.lazy() || annotation.interned())) {
+            throw new ValidationException(typeElement, "Wide @%s cannot be lazy or interned", CombinedState.class.getSimpleName());
+        }
+        if (annotation.lazy() && annotation.sliced()) {
+            throw new ValidationException(typeElement, "Lazy @%s cannot be sliced", CombinedState.class.getSimpleName());
+        }
+        return new CombinedStateElement(typeElement, properties, annotation.lazy(), annotation.interned(), annotation.wide(), annotation.sliced(), annotation.differ());
     }
 
     public TypeName getCombinedReducerActionType() {
@@ -51,6 +71,16 @@ public class CombinedStateElement {
     }
 
     public static CombinedStateElement parseAutoValueCombinedElement(TypeElement typeElement, Map<String, ExecutableElement> autoValueProperties) throws ValidationException {
+        if (typeElement.getAnnotation(CombinedState.class).lazy()) {
+            throw new ValidationException(typeElement, "Lazy @%s is supported only for interfaces", CombinedState.class.getSimpleName());
+        }
+        if (typeElement.getAnnotation(CombinedState.class).interned()) {
+            throw new ValidationException(typeElement, "Interned @%s is supported only for interfaces", CombinedState.class.getSimpleName());
+        }
+        if (typeElement.getAnnotation(CombinedState.class).wide()) {
+            throw new ValidationException(typeElement, "Wide @%s is supported only for interfaces", CombinedState.class.getSimpleName());
+        }
+
         List<StateProperty> properties = new ArrayList<>();
 
         for (String propertyName : autoValueProperties.keySet()) {
@@ -62,6 +92,7 @@ public class CombinedStateElement {
             }
         }
 
-        return new CombinedStateElement(typeElement, properties);
+        CombinedState annotation = typeElement.getAnnotation(CombinedState.class);
+        return new CombinedStateElement(typeElement, properties, false, false, false, annotation.sliced(), annotation.differ());
     }
 }
@@ -3,7 +3,11 @@ package com.yheriatovych.reductor.processor.combinedstate;
 import com.google.auto.common.BasicAnnotationProcessor;
 import com.google.common.collect.SetMultimap;
 import com.squareup.javapoet.*;
+import com.yheriatovych.reductor.Interner;
+import com.yheriatovych.reductor.PrefetchingReducer;
 import com.yheriatovych.reductor.Reducer;
+import com.yheriatovych.reductor.SliceRouter;
+import com.yheriatovych.reductor.SlicedReducer;
 import com.yheriatovych.reductor.annotations.CombinedState;
 import com.yheriatovych.reductor.processor.Env;
 import com.yheriatovych.reductor.processor.Utils;
@@ -18,12 +22,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static com.yheriatovych.reductor.processor.Utils.*;
 
 public class CombinedStateProcessingStep implements BasicAnnotationProcessor.ProcessingStep {
 
-    private static final String REDUCER_SUFFIX = "Reducer";
+    static final String REDUCER_SUFFIX = "Reducer";
+    static final AnnotationSpec SUPPRESS_UNCHECKED = AnnotationSpec.builder(SuppressWarnings.class)
+            .addMember("value", "$S", "unchecked")
+            .build();
+    private static final String INIT_EXECUTOR = "initExecutor";
     private final Env env;
 
     public CombinedStateProcessingStep(Env env) {
@@ -45,8 +54,23 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
                 CombinedStateElement combinedStateElement = CombinedStateElement.parseCombinedElement(combinedStateTypeElement);
                 if (combinedStateElement == null) continue;
 
-                ClassName stateClassName = emmitCombinedStateImplementation(combinedStateElement);
-                emmitCombinedReducer(env, combinedStateElement, stateClassName);
+                ClassName stateClassName;
+                if (combinedStateElement.lazy) {
+                    stateClassName = LazyCombinedStateGenerator.emitImplementation(env, combinedStateElement);
+                    LazyCombinedStateGenerator.emitReducer(env, combinedStateElement, stateClassName);
+                } else if (combinedStateElement.wide) {
+                    stateClassName = WideCombinedStateGenerator.emitImplementation(env, combinedStateElement);
+                    WideCombinedStateGenerator.emitReducer(env, combinedStateElement, stateClassName);
+                } else {
+                    stateClassName = emmitCombinedStateImplementation(combinedStateElement);
+                    emmitCombinedReducer(env, combinedStateElement, stateClassName);
+                }
+                if (combinedStateElement.differ) {
+                    CombinedStateDifferGenerator.emitDiffer(env, combinedStateElement, stateClassName);
+                }
+                if (env.isOptionEnabled(Env.OPTION_CODECS)) {
+                    CombinedStateCodecGenerator.emitCodec(env, combinedStateElement, stateClassName);
+                }
             } catch (ValidationException ve) {
                 env.printError(ve.getElement(), ve.getMessage());
             } catch (Exception e) {
@@ -82,18 +106,248 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
         }
 
 
-        TypeSpec typeSpec = TypeSpec.classBuilder(combinedStateElement.stateTypeElement.getSimpleName().toString() + "Impl")
+        String packageName = env.getPackageName(combinedStateElement.stateTypeElement);
+        ClassName implClassName = ClassName.get(packageName, combinedStateElement.stateTypeElement.getSimpleName().toString() + "Impl");
+        if (combinedStateElement.interned) {
+            addInterning(implClassName, combinedStateElement.properties, constructorBuilder, fieldSpecs, methodSpecs);
+        }
+
+        TypeSpec typeSpec = TypeSpec.classBuilder(implClassName)
                 .addSuperinterface(TypeName.get(combinedStateElement.stateTypeElement.asType()))
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(combinedStateElement.stateTypeElement)
                 .addMethod(constructorBuilder.build())
                 .addMethods(methodSpecs)
                 .addFields(fieldSpecs)
                 .build();
 
-        JavaFile javaFile = JavaFile.builder(env.getPackageName(combinedStateElement.stateTypeElement), typeSpec)
+        JavaFile javaFile = JavaFile.builder(packageName, typeSpec)
                 .build();
         javaFile.writeTo(env.getFiler());
-        return ClassName.get(javaFile.packageName, typeSpec.name);
+        return implClassName;
+    }
+
+    /**
+     * Cache hashCode in constructor, implement structural equals
+     * and add static factory {@code create} which returns canonical instance from {@link Interner}.
+     */
+    private static void addInterning(ClassName implClassName, List<StateProperty> properties,
+                                     MethodSpec.Builder constructorBuilder, List<FieldSpec> fieldSpecs, List<MethodSpec> methodSpecs) {
+        constructorBuilder.addStatement("int hashCode = 1");
+        StringBuilder equalsCondition = new StringBuilder("hashCode == that.hashCode");
+        List<Object> equalsArgs = new ArrayList<>();
+        for (StateProperty property : properties) {
+            String name = property.name;
+            switch (property.stateType.getKind()) {
+                case BOOLEAN:
+                    constructorBuilder.addStatement("hashCode = 31 * hashCode + ($N ? 1231 : 1237)", name);
+                    equalsCondition.append("\n&& $N == that.$N");
+                    break;
+                case LONG:
+                    constructorBuilder.addStatement("hashCode = 31 * hashCode + (int) ($N ^ ($N >>> 32))", name, name);
+                    equalsCondition.append("\n&& $N == that.$N");
+                    break;
+                case FLOAT:
+                    constructorBuilder.addStatement("hashCode = 31 * hashCode + $T.floatToIntBits($N)", Float.class, name);
+                    equalsCondition.append("\n&& $T.floatToIntBits($N) == $T.floatToIntBits(that.$N)");
+                    Collections.addAll(equalsArgs, Float.class, name, Float.class, name);
+                    continue;
+                case DOUBLE:
+                    constructorBuilder.addStatement("long $NBits = $T.doubleToLongBits($N)", name, Double.class, name);
+                    constructorBuilder.addStatement("hashCode = 31 * hashCode + (int) ($NBits ^ ($NBits >>> 32))", name, name);
+                    equalsCondition.append("\n&& $T.doubleToLongBits($N) == $T.doubleToLongBits(that.$N)");
+                    Collections.addAll(equalsArgs, Double.class, name, Double.class, name);
+                    continue;
+                case BYTE:
+                case SHORT:
+                case CHAR:
+                case INT:
+                    constructorBuilder.addStatement("hashCode = 31 * hashCode + $N", name);
+                    equalsCondition.append("\n&& $N == that.$N");
+                    break;
+                default:
+                    constructorBuilder.addStatement("hashCode = 31 * hashCode + ($N != null ? $N.hashCode() : 0)", name, name);
+                    equalsCondition.append("\n&& ($N != null ? $N.equals(that.$N) : that.$N == null)");
+                    Collections.addAll(equalsArgs, name, name, name, name);
+                    continue;
+            }
+            Collections.addAll(equalsArgs, name, name);
+        }
+        constructorBuilder.addStatement("this.hashCode = hashCode");
+
+        TypeName interner = ParameterizedTypeName.get(ClassName.get(Interner.class), implClassName);
+        fieldSpecs.add(0, FieldSpec.builder(interner, "INTERNER", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.weak()", Interner.class)
+                .build());
+        fieldSpecs.add(FieldSpec.builder(int.class, "hashCode", Modifier.PRIVATE, Modifier.FINAL)
+                .build());
+
+        MethodSpec constructor = constructorBuilder.build();
+        methodSpecs.add(0, MethodSpec.methodBuilder("create")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(implClassName)
+                .addParameters(constructor.parameters)
+                .addStatement("return INTERNER.intern(new $T($L))", implClassName, join(", ", map(constructor.parameters, new Utils.Func1<ParameterSpec, String>() {
+                    @Override
+                    public String call(ParameterSpec parameter) {
+                        return parameter.name;
+                    }
+                })))
+                .build());
+
+        methodSpecs.add(MethodSpec.methodBuilder("equals")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addParameter(Object.class, "o")
+                .addStatement("if (this == o) return true")
+                .addStatement("if (!(o instanceof $T)) return false", implClassName)
+                .addStatement("$T that = ($T) o", implClassName, implClassName)
+                .addStatement("return " + equalsCondition, equalsArgs.toArray())
+                .build());
+        methodSpecs.add(MethodSpec.methodBuilder("hashCode")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(int.class)
+                .addStatement("return hashCode")
+                .build());
+    }
+
+    /**
+     * @return expression which creates new instance of combined state implementation
+     */
+    static CodeBlock newState(ClassName stateClassName, boolean interned, String args) {
+        return interned
+                ? CodeBlock.of("$T.create(" + args + ")", stateClassName)
+                : CodeBlock.of("new $T(" + args + ")", stateClassName);
+    }
+
+    static CodeBlock newState(ClassName stateClassName, boolean interned, CodeBlock args) {
+        return interned
+                ? CodeBlock.of("$T.create($L)", stateClassName, args)
+                : CodeBlock.of("new $T($L)", stateClassName, args);
+    }
+
+    /**
+     * Casting properties of parameterized types from {@link Object} is unchecked.
+     */
+    static boolean isUncheckedCast(StateProperty property) {
+        TypeName type = TypeName.get(property.stateType);
+        return type instanceof ParameterizedTypeName || type instanceof TypeVariableName;
+    }
+
+    static TypeName reducerInterface(CombinedStateElement combinedStateElement) {
+        return ParameterizedTypeName.get(ClassName.get(combinedStateElement.sliced ? SlicedReducer.class : Reducer.class),
+                TypeName.get(combinedStateElement.stateTypeElement.asType()));
+    }
+
+    /**
+     * Add {@link SlicedReducer} methods which do not depend on layout of state implementation:
+     * {@code sliceCount}, {@code sliceOf} and {@code reduceSlice}.
+     */
+    static void addSliceRouting(Env env, TypeSpec.Builder typeSpecBuilder, CombinedStateElement combinedStateElement) {
+        List<StateProperty> properties = combinedStateElement.properties;
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("sliceCount")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(int.class)
+                .addStatement("return $L", properties.size())
+                .build());
+
+        CodeBlock.Builder reducers = CodeBlock.builder();
+        for (StateProperty property : properties) {
+            reducers.add(", $N", property.name + REDUCER_SUFFIX);
+        }
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("sliceOf")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(int.class)
+                .addParameter(String.class, "actionType")
+                .addStatement("return $T.route(actionType$L)", SliceRouter.class, reducers.build())
+                .build());
+
+        MethodSpec.Builder reduceSlice = MethodSpec.methodBuilder("reduceSlice")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(Object.class)
+                .addParameter(int.class, "slice")
+                .addParameter(Object.class, "value")
+                .addParameter(combinedStateElement.getCombinedReducerActionType(), "action");
+        CodeBlock.Builder body = CodeBlock.builder().beginControlFlow("switch (slice)");
+        boolean unchecked = false;
+        for (int i = 0; i < properties.size(); i++) {
+            StateProperty property = properties.get(i);
+            body.add("case $L:\n", i)
+                    .indent()
+                    .addStatement("return $N.reduce(($T) value, action)", property.name + REDUCER_SUFFIX, property.boxedStateType(env))
+                    .unindent();
+            unchecked |= isUncheckedCast(property);
+        }
+        if (unchecked) {
+            reduceSlice.addAnnotation(SUPPRESS_UNCHECKED);
+        }
+        typeSpecBuilder.addMethod(reduceSlice.addCode(body.add(defaultSliceCase()).endControlFlow().build()).build());
+    }
+
+    static CodeBlock defaultSliceCase() {
+        return CodeBlock.builder()
+                .add("default:\n")
+                .indent()
+                .addStatement("throw new $T($S + slice)", IndexOutOfBoundsException.class, "Slice: ")
+                .unindent()
+                .build();
+    }
+
+    private static void addSliceAccessors(Env env, TypeSpec.Builder typeSpecBuilder, CombinedStateElement combinedStateElement, ClassName stateClassName) {
+        List<StateProperty> properties = combinedStateElement.properties;
+        TypeName stateTypeName = TypeName.get(combinedStateElement.stateTypeElement.asType());
+
+        CodeBlock.Builder getSliceBody = CodeBlock.builder().beginControlFlow("switch (slice)");
+        CodeBlock.Builder withSliceBody = CodeBlock.builder().beginControlFlow("switch (slice)");
+        boolean unchecked = false;
+        for (int i = 0; i < properties.size(); i++) {
+            StateProperty property = properties.get(i);
+            getSliceBody.add("case $L:\n", i)
+                    .indent()
+                    .addStatement("return state.$N()", property.name)
+                    .unindent();
+
+            CodeBlock.Builder args = CodeBlock.builder();
+            for (int j = 0; j < properties.size(); j++) {
+                if (j != 0) args.add(", ");
+                if (j == i) {
+                    args.add("($T) value", properties.get(j).boxedStateType(env));
+                } else {
+                    args.add("state.$N()", properties.get(j).name);
+                }
+            }
+            withSliceBody.add("case $L:\n", i)
+                    .indent()
+                    .addStatement("return $L", newState(stateClassName, combinedStateElement.interned, args.build()))
+                    .unindent();
+            unchecked |= isUncheckedCast(property);
+        }
+
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("getSlice")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(Object.class)
+                .addParameter(stateTypeName, "state")
+                .addParameter(int.class, "slice")
+                .addCode(getSliceBody.add(defaultSliceCase()).endControlFlow().build())
+                .build());
+
+        MethodSpec.Builder withSlice = MethodSpec.methodBuilder("withSlice")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(stateTypeName)
+                .addParameter(stateTypeName, "state")
+                .addParameter(int.class, "slice")
+                .addParameter(Object.class, "value");
+        if (unchecked) {
+            withSlice.addAnnotation(SUPPRESS_UNCHECKED);
+        }
+        typeSpecBuilder.addMethod(withSlice.addCode(withSliceBody.add(defaultSliceCase()).endControlFlow().build()).build());
     }
 
     public static void emmitCombinedReducer(final Env env, CombinedStateElement combinedStateElement, ClassName stateClassName) throws IOException {
@@ -110,10 +364,9 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
         List<StateProperty> properties = combinedStateElement.properties;
 
         TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(combinedReducerClassName)
-                .addSuperinterface(ParameterizedTypeName.get(
-                        ClassName.get(Reducer.class),
-                        combinedReducerReturnTypeName))
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+                .addSuperinterface(reducerInterface(combinedStateElement))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(combinedStateElement.stateTypeElement);
 
         List<FieldSpec> reducerFields = new ArrayList<>();
         MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
@@ -146,11 +399,11 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
                 .addParameter(reducerActionType, actionParam)
                 .addCode(emitDestructuringBlock(properties, env)).addCode("\n")
                 .addCode(dispatchingBlockBuilder).addCode("\n")
-                .addCode(CombinedStateProcessingStep.emitReturnBlock(stateClassName, properties))
+                .addCode(CombinedStateProcessingStep.emitReturnBlock(stateClassName, combinedStateElement.interned, properties))
                 .build();
 
         ClassName builderClassName = ClassName.get(combinedReducerClassName.packageName(), combinedReducerClassName.simpleName(), "Builder");
-        TypeSpec reducerBuilderTypeSpec = CombinedStateProcessingStep.createReducerBuilder(combinedStateElement, combinedReducerClassName, builderClassName);
+        TypeSpec reducerBuilderTypeSpec = CombinedStateProcessingStep.createReducerBuilder(combinedStateElement, combinedReducerClassName, builderClassName, true);
 
 
         MethodSpec builderFactoryMethod = MethodSpec.methodBuilder("builder")
@@ -162,7 +415,12 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
         typeSpecBuilder
                 .addMethod(constructorBuilder.build())
                 .addFields(reducerFields)
-                .addMethod(reduceMethodSpec)
+                .addMethod(reduceMethodSpec);
+        if (combinedStateElement.sliced) {
+            addSliceRouting(env, typeSpecBuilder, combinedStateElement);
+            addSliceAccessors(env, typeSpecBuilder, combinedStateElement, stateClassName);
+        }
+        typeSpecBuilder
                 .addMethod(builderFactoryMethod)
                 .addType(reducerBuilderTypeSpec);
 
@@ -189,7 +447,7 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
         return destructuringBlock.build();
     }
 
-    private static CodeBlock emitReturnBlock(ClassName stateClassName, List<StateProperty> properties) {
+    private static CodeBlock emitReturnBlock(ClassName stateClassName, boolean interned, List<StateProperty> properties) {
         StringBuilder equalsCondition = new StringBuilder();
         for (StateProperty property : properties) {
             equalsCondition.append(String.format("\n && %s == %sNext", property.name, property.name));
@@ -205,12 +463,15 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
                 .beginControlFlow("if (state != null" + equalsCondition + ")")
                 .addStatement("return state")
                 .nextControlFlow("else")
-                .addStatement("return new $T(" + args + ")", stateClassName)
+                .addStatement("return $L", newState(stateClassName, interned, args))
                 .endControlFlow()
                 .build();
     }
 
-    private static TypeSpec createReducerBuilder(CombinedStateElement combinedStateElement, ClassName combinedReducerClassName, ClassName builderClassName) {
+    static TypeSpec createReducerBuilder(CombinedStateElement combinedStateElement, ClassName combinedReducerClassName, ClassName builderClassName, boolean parallelInit) {
+        //there is nothing to initialize in parallel without sub-states
+        parallelInit &= !combinedStateElement.properties.isEmpty();
+
         TypeSpec.Builder builder = TypeSpec.classBuilder(builderClassName).addModifiers(Modifier.STATIC, Modifier.PUBLIC);
 
         builder.addMethod(MethodSpec.constructorBuilder()
@@ -234,12 +495,24 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
             builder.addMethod(setter);
         }
 
+        if (parallelInit) {
+            builder.addField(Executor.class, INIT_EXECUTOR, Modifier.PRIVATE);
+            builder.addMethod(MethodSpec.methodBuilder(INIT_EXECUTOR)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(builderClassName)
+                    .addParameter(Executor.class, INIT_EXECUTOR)
+                    .addStatement("this.$N = $N", INIT_EXECUTOR, INIT_EXECUTOR)
+                    .addStatement("return this")
+                    .build());
+        }
+
         MethodSpec.Builder buildMethodBuilder = MethodSpec.methodBuilder("build")
                 .addModifiers(Modifier.PUBLIC)
                 .returns(combinedReducerClassName);
 
         ClassName exception = ClassName.get(IllegalStateException.class);
         StringBuilder constructorArgs = new StringBuilder();
+        CodeBlock.Builder prefetchingArgs = CodeBlock.builder();
         for (StateProperty property : combinedStateElement.properties) {
             String name = property.name + REDUCER_SUFFIX;
             buildMethodBuilder.beginControlFlow("if ($N == null)", name);
@@ -247,8 +520,14 @@ public class CombinedStateProcessingStep implements BasicAnnotationProcessor.Pro
             buildMethodBuilder.endControlFlow();
 
             if (constructorArgs.length() != 0) constructorArgs.append(", ");
+            prefetchingArgs.add("$L$T.prefetch($N, $N)", constructorArgs.length() != 0 ? ", " : "", PrefetchingReducer.class, name, INIT_EXECUTOR);
             constructorArgs.append(name);
         }
+        if (parallelInit) {
+            buildMethodBuilder.beginControlFlow("if ($N != null)", INIT_EXECUTOR)
+                    .addStatement("return new $T($L)", combinedReducerClassName, prefetchingArgs.build())
+                    .endControlFlow();
+        }
         buildMethodBuilder.addStatement("return new $T(" + constructorArgs.toString() + ")", combinedReducerClassName);
 
         builder.addMethod(buildMethodBuilder.build());
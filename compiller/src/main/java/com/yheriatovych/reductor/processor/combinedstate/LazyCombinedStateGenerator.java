@@ -0,0 +1,155 @@
+package com.yheriatovych.reductor.processor.combinedstate;
+
+import com.squareup.javapoet.*;
+import com.yheriatovych.reductor.LazyState;
+import com.yheriatovych.reductor.Reducer;
+import com.yheriatovych.reductor.processor.Env;
+
+import javax.lang.model.element.Modifier;
+import java.io.IOException;
+import java.util.List;
+
+import static com.yheriatovych.reductor.processor.combinedstate.CombinedStateProcessingStep.REDUCER_SUFFIX;
+
+/**
+ * Emits implementation and reducer for {@link com.yheriatovych.reductor.annotations.CombinedState} with {@code lazy = true}.
+ * <p>
+ * Generated implementation holds every property as {@link LazyState},
+ * generated reducer delegates to {@link LazyState#reduce(LazyState, Reducer, com.yheriatovych.reductor.Action)}
+ * so sub-states are initialized only when they are needed.
+ */
+public class LazyCombinedStateGenerator {
+    private static final String IMPL_SUFFIX = "Impl";
+
+    public static ClassName emitImplementation(Env env, CombinedStateElement combinedStateElement) throws IOException {
+        ClassName implClassName = ClassName.get(env.getPackageName(combinedStateElement.stateTypeElement),
+                combinedStateElement.stateTypeElement.getSimpleName() + IMPL_SUFFIX);
+
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(implClassName)
+                .addSuperinterface(TypeName.get(combinedStateElement.stateTypeElement.asType()))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(combinedStateElement.stateTypeElement);
+
+        MethodSpec.Builder valuesConstructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC);
+        MethodSpec.Builder lazyConstructorBuilder = MethodSpec.constructorBuilder();
+        CodeBlock.Builder lazyArgs = CodeBlock.builder();
+        String separator = "";
+        for (StateProperty property : combinedStateElement.properties) {
+            TypeName lazyType = getLazyStateTypeName(property);
+            typeSpecBuilder.addField(lazyType, property.name, Modifier.FINAL);
+
+            valuesConstructorBuilder.addParameter(TypeName.get(property.stateType), property.name);
+            lazyConstructorBuilder.addParameter(lazyType, property.name)
+                    .addStatement("this.$N = $N", property.name, property.name);
+
+            lazyArgs.add("$L$T.of($N)", separator, LazyState.class, property.name);
+            separator = ", ";
+        }
+        valuesConstructorBuilder.addStatement("this($L)", lazyArgs.build());
+
+        typeSpecBuilder.addMethod(valuesConstructorBuilder.build())
+                .addMethod(lazyConstructorBuilder.build());
+
+        for (StateProperty property : combinedStateElement.properties) {
+            typeSpecBuilder.addMethod(MethodSpec.methodBuilder(property.name)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(TypeName.get(property.stateType))
+                    .addAnnotation(Override.class)
+                    .addStatement("return $N.get()", property.name)
+                    .build());
+        }
+
+        JavaFile.builder(implClassName.packageName(), typeSpecBuilder.build())
+                .build()
+                .writeTo(env.getFiler());
+        return implClassName;
+    }
+
+    public static void emitReducer(Env env, CombinedStateElement combinedStateElement, ClassName stateClassName) throws IOException {
+        String packageName = env.getPackageName(combinedStateElement.stateTypeElement);
+        ClassName combinedReducerClassName = ClassName.get(packageName, combinedStateElement.stateTypeElement.getSimpleName() + REDUCER_SUFFIX);
+        TypeName stateTypeName = TypeName.get(combinedStateElement.stateTypeElement.asType());
+        List<StateProperty> properties = combinedStateElement.properties;
+
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(combinedReducerClassName)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Reducer.class), stateTypeName))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(combinedStateElement.stateTypeElement);
+
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE);
+        for (StateProperty property : properties) {
+            String reducerFieldName = property.name + REDUCER_SUFFIX;
+            TypeName subReducerType = property.getReducerInterfaceTypeName();
+            typeSpecBuilder.addField(subReducerType, reducerFieldName, Modifier.PRIVATE, Modifier.FINAL);
+            constructorBuilder.addParameter(subReducerType, reducerFieldName)
+                    .addStatement("this.$N = $N", reducerFieldName, reducerFieldName);
+        }
+
+        CodeBlock.Builder reduceBody = CodeBlock.builder();
+        for (StateProperty property : properties) {
+            reduceBody.addStatement("$T $N = null", getLazyStateTypeName(property), property.name);
+        }
+        reduceBody.add("\n")
+                .beginControlFlow("if (state instanceof $T)", stateClassName)
+                .addStatement("$T stateImpl = ($T) state", stateClassName, stateClassName);
+        for (StateProperty property : properties) {
+            reduceBody.addStatement("$N = stateImpl.$N", property.name, property.name);
+        }
+        reduceBody.nextControlFlow("else if (state != null)");
+        for (StateProperty property : properties) {
+            reduceBody.addStatement("$N = $T.of(state.$N())", property.name, LazyState.class, property.name);
+        }
+        reduceBody.endControlFlow()
+                .add("\n");
+
+        StringBuilder equalsCondition = new StringBuilder();
+        StringBuilder args = new StringBuilder();
+        for (StateProperty property : properties) {
+            reduceBody.addStatement("$T $NNext = $T.reduce($N, $N, action)", getLazyStateTypeName(property), property.name,
+                    LazyState.class, property.name, property.name + REDUCER_SUFFIX);
+
+            equalsCondition.append(String.format("\n && %s == %sNext", property.name, property.name));
+            if (args.length() != 0) args.append(", ");
+            args.append(property.name).append("Next");
+        }
+        reduceBody.add("\n")
+                .add("//If all values are the same there is no need to create an object\n")
+                .beginControlFlow("if (state != null" + equalsCondition + ")")
+                .addStatement("return state")
+                .nextControlFlow("else")
+                .addStatement("return new $T(" + args + ")", stateClassName)
+                .endControlFlow();
+
+        MethodSpec reduceMethodSpec = MethodSpec.methodBuilder("reduce")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(stateTypeName)
+                .addParameter(stateTypeName, "state")
+                .addParameter(combinedStateElement.getCombinedReducerActionType(), "action")
+                .addCode(reduceBody.build())
+                .build();
+
+        ClassName builderClassName = combinedReducerClassName.nestedClass("Builder");
+        MethodSpec builderFactoryMethod = MethodSpec.methodBuilder("builder")
+                .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                .returns(builderClassName)
+                .addStatement("return new $T()", builderClassName)
+                .build();
+
+        typeSpecBuilder
+                .addMethod(constructorBuilder.build())
+                .addMethod(reduceMethodSpec)
+                .addMethod(builderFactoryMethod)
+                .addType(CombinedStateProcessingStep.createReducerBuilder(combinedStateElement, combinedReducerClassName, builderClassName, false));
+
+        JavaFile.builder(packageName, typeSpecBuilder.build())
+                .build()
+                .writeTo(env.getFiler());
+    }
+
+    private static TypeName getLazyStateTypeName(StateProperty property) {
+        return ParameterizedTypeName.get(ClassName.get(LazyState.class), TypeName.get(property.stateType).box());
+    }
+}
@@ -5,6 +5,7 @@ import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.yheriatovych.reductor.Reducer;
+import com.yheriatovych.reductor.annotations.CombinedState;
 import com.yheriatovych.reductor.processor.Env;
 import com.yheriatovych.reductor.processor.ValidationException;
 
@@ -12,6 +13,7 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
@@ -59,6 +61,18 @@ public class StateProperty {
         return stateProperty;
     }
 
+    /**
+     * @return type element of nested {@link CombinedState} if property is combined state itself, null otherwise
+     */
+    public TypeElement getCombinedStateElement() {
+        if (stateType.getKind() != TypeKind.DECLARED) return null;
+
+        TypeElement typeElement = MoreTypes.asTypeElement(stateType);
+        return typeElement.getAnnotation(CombinedState.class) != null
+                ? typeElement
+                : null;
+    }
+
     public TypeName getReducerInterfaceTypeName() {
         TypeName stateType = TypeName.get(this.stateType);
         if (stateType.isPrimitive()) {
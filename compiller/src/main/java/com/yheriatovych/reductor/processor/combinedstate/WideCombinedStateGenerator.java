@@ -0,0 +1,179 @@
+package com.yheriatovych.reductor.processor.combinedstate;
+
+import com.squareup.javapoet.*;
+import com.yheriatovych.reductor.StateTrie;
+import com.yheriatovych.reductor.processor.Env;
+
+import javax.lang.model.element.Modifier;
+import java.io.IOException;
+import java.util.List;
+
+import static com.yheriatovych.reductor.processor.combinedstate.CombinedStateProcessingStep.REDUCER_SUFFIX;
+import static com.yheriatovych.reductor.processor.combinedstate.CombinedStateProcessingStep.SUPPRESS_UNCHECKED;
+import static com.yheriatovych.reductor.processor.combinedstate.CombinedStateProcessingStep.isUncheckedCast;
+
+/**
+ * Emits implementation and reducer for {@link com.yheriatovych.reductor.annotations.CombinedState} with {@code wide = true}.
+ * <p>
+ * Generated implementation keeps properties in {@link StateTrie} at the index of their accessor,
+ * generated reducer writes sub-states through {@link StateTrie.Editor} so only chunks of changed properties are copied.
+ */
+public class WideCombinedStateGenerator {
+    private static final String IMPL_SUFFIX = "Impl";
+    private static final String TRIE = "trie";
+
+    public static ClassName emitImplementation(Env env, CombinedStateElement combinedStateElement) throws IOException {
+        ClassName implClassName = ClassName.get(env.getPackageName(combinedStateElement.stateTypeElement),
+                combinedStateElement.stateTypeElement.getSimpleName() + IMPL_SUFFIX);
+        TypeName stateTypeName = TypeName.get(combinedStateElement.stateTypeElement.asType());
+        List<StateProperty> properties = combinedStateElement.properties;
+
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(implClassName)
+                .addSuperinterface(stateTypeName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(combinedStateElement.stateTypeElement)
+                .addField(StateTrie.class, TRIE, Modifier.PRIVATE, Modifier.FINAL);
+
+        MethodSpec.Builder valuesConstructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC);
+        CodeBlock.Builder values = CodeBlock.builder();
+        CodeBlock.Builder accessors = CodeBlock.builder();
+        String separator = "";
+        for (StateProperty property : properties) {
+            valuesConstructorBuilder.addParameter(TypeName.get(property.stateType), property.name);
+            values.add("$L$N", separator, property.name);
+            accessors.add("$Lstate.$N()", separator, property.name);
+            separator = ", ";
+        }
+        valuesConstructorBuilder.addStatement("this.$N = $T.of($L)", TRIE, StateTrie.class, values.build());
+
+        typeSpecBuilder.addMethod(valuesConstructorBuilder.build())
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(StateTrie.class, TRIE)
+                        .addStatement("this.$N = $N", TRIE, TRIE)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("trieOf")
+                        .addModifiers(Modifier.STATIC)
+                        .returns(StateTrie.class)
+                        .addParameter(stateTypeName, "state")
+                        .beginControlFlow("if (state instanceof $T)", implClassName)
+                        .addStatement("return (($T) state).$N", implClassName, TRIE)
+                        .endControlFlow()
+                        .addStatement("return $T.of($L)", StateTrie.class, accessors.build())
+                        .build());
+
+        for (int i = 0; i < properties.size(); i++) {
+            StateProperty property = properties.get(i);
+            MethodSpec.Builder accessor = MethodSpec.methodBuilder(property.name)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(TypeName.get(property.stateType))
+                    .addAnnotation(Override.class)
+                    .addStatement("return ($T) $N.get($L)", property.boxedStateType(env), TRIE, i);
+            if (isUncheckedCast(property)) {
+                accessor.addAnnotation(SUPPRESS_UNCHECKED);
+            }
+            typeSpecBuilder.addMethod(accessor.build());
+        }
+
+        JavaFile.builder(implClassName.packageName(), typeSpecBuilder.build())
+                .build()
+                .writeTo(env.getFiler());
+        return implClassName;
+    }
+
+    public static void emitReducer(Env env, CombinedStateElement combinedStateElement, ClassName stateClassName) throws IOException {
+        String packageName = env.getPackageName(combinedStateElement.stateTypeElement);
+        ClassName combinedReducerClassName = ClassName.get(packageName, combinedStateElement.stateTypeElement.getSimpleName() + REDUCER_SUFFIX);
+        TypeName stateTypeName = TypeName.get(combinedStateElement.stateTypeElement.asType());
+        List<StateProperty> properties = combinedStateElement.properties;
+
+        TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(combinedReducerClassName)
+                .addSuperinterface(CombinedStateProcessingStep.reducerInterface(combinedStateElement))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(combinedStateElement.stateTypeElement);
+
+        MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE);
+        for (StateProperty property : properties) {
+            String reducerFieldName = property.name + REDUCER_SUFFIX;
+            TypeName subReducerType = property.getReducerInterfaceTypeName();
+            typeSpecBuilder.addField(subReducerType, reducerFieldName, Modifier.PRIVATE, Modifier.FINAL);
+            constructorBuilder.addParameter(subReducerType, reducerFieldName)
+                    .addStatement("this.$N = $N", reducerFieldName, reducerFieldName);
+        }
+
+        MethodSpec.Builder reduceMethodBuilder = MethodSpec.methodBuilder("reduce")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(stateTypeName)
+                .addParameter(stateTypeName, "state")
+                .addParameter(combinedStateElement.getCombinedReducerActionType(), "action");
+
+        CodeBlock.Builder reduceBody = CodeBlock.builder()
+                .addStatement("$T $N = state == null ? $T.empty($L) : $T.trieOf(state)", StateTrie.class, TRIE,
+                        StateTrie.class, properties.size(), stateClassName)
+                .addStatement("$T draft = $N.draft()", StateTrie.Editor.class, TRIE);
+        boolean unchecked = false;
+        for (int i = 0; i < properties.size(); i++) {
+            StateProperty property = properties.get(i);
+            reduceBody.addStatement("draft.set($L, $N.reduce(($T) $N.get($L), action))",
+                    i, property.name + REDUCER_SUFFIX, property.boxedStateType(env), TRIE, i);
+            unchecked |= isUncheckedCast(property);
+        }
+        if (unchecked) {
+            reduceMethodBuilder.addAnnotation(SUPPRESS_UNCHECKED);
+        }
+        reduceBody.addStatement("$T next = draft.finish()", StateTrie.class)
+                .add("\n")
+                .add("//If all values are the same there is no need to create an object\n")
+                .beginControlFlow("if (state != null && next == $N)", TRIE)
+                .addStatement("return state")
+                .nextControlFlow("else")
+                .addStatement("return new $T(next)", stateClassName)
+                .endControlFlow();
+
+        ClassName builderClassName = combinedReducerClassName.nestedClass("Builder");
+        MethodSpec builderFactoryMethod = MethodSpec.methodBuilder("builder")
+                .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+                .returns(builderClassName)
+                .addStatement("return new $T()", builderClassName)
+                .build();
+
+        typeSpecBuilder
+                .addMethod(constructorBuilder.build())
+                .addMethod(reduceMethodBuilder.addCode(reduceBody.build()).build());
+        if (combinedStateElement.sliced) {
+            CombinedStateProcessingStep.addSliceRouting(env, typeSpecBuilder, combinedStateElement);
+            addSliceAccessors(typeSpecBuilder, stateTypeName, stateClassName);
+        }
+        typeSpecBuilder
+                .addMethod(builderFactoryMethod)
+                .addType(CombinedStateProcessingStep.createReducerBuilder(combinedStateElement, combinedReducerClassName, builderClassName, true));
+
+        JavaFile.builder(packageName, typeSpecBuilder.build())
+                .build()
+                .writeTo(env.getFiler());
+    }
+
+    private static void addSliceAccessors(TypeSpec.Builder typeSpecBuilder, TypeName stateTypeName, ClassName stateClassName) {
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("getSlice")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(Object.class)
+                .addParameter(stateTypeName, "state")
+                .addParameter(int.class, "slice")
+                .addStatement("return $T.trieOf(state).get(slice)", stateClassName)
+                .build());
+        typeSpecBuilder.addMethod(MethodSpec.methodBuilder("withSlice")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .returns(stateTypeName)
+                .addParameter(stateTypeName, "state")
+                .addParameter(int.class, "slice")
+                .addParameter(Object.class, "value")
+                .addStatement("$T $N = $T.trieOf(state)", StateTrie.class, TRIE, stateClassName)
+                .addStatement("$T next = $N.draft().set(slice, value).finish()", StateTrie.class, TRIE)
+                .addStatement("return next == $N ? state : new $T(next)", TRIE, stateClassName)
+                .build());
+    }
+}
@@ -39,6 +39,53 @@ public class ActionCreatorValidateReducerTest {
                 .compilesWithoutError();
     }
 
+    @Test
+    public void testReducerValidationWithActionCreatorFromClasspath() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import com.yheriatovych.reductor.annotations.AutoReducer;\n" +
+                "import com.yheriatovych.reductor.processor.fixtures.PrecompiledActions;\n" +
+                "\n" +
+                "@AutoReducer\n" +
+                "public abstract class Foobar implements Reducer<String> {\n" +
+                "    @AutoReducer.Action(value = \"PRECOMPILED\", from = PrecompiledActions.class)\n" +
+                "    String handle(String state, int foo, String bar) {\n" +
+                "        return state;\n" +
+                "    }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutError();
+    }
+
+    @Test
+    public void testActionCreatorFromClasspathNotFoundForAction() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import com.yheriatovych.reductor.annotations.AutoReducer;\n" +
+                "import com.yheriatovych.reductor.processor.fixtures.PrecompiledActions;\n" +
+                "\n" +
+                "@AutoReducer\n" +
+                "public abstract class Foobar implements Reducer<String> {\n" +
+                "    @AutoReducer.Action(value = \"PRECOMPILED\", from = PrecompiledActions.class)\n" +
+                "    String handle(String state, int foo) {\n" +
+                "        return state;\n" +
+                "    }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .failsToCompile()
+                .withErrorContaining("Cannot find action creator for action \"PRECOMPILED\" and args [int] in interface com.yheriatovych.reductor.processor.fixtures.PrecompiledActions")
+                .in(source)
+                .onLine(10);
+    }
+
     @Test
     public void testActionCreatorNotAnnotated() {
         JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
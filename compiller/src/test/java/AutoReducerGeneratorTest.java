@@ -4,9 +4,11 @@ import com.yheriatovych.reductor.processor.ReductorAnnotationProcessor;
 import org.junit.Test;
 
 import javax.tools.JavaFileObject;
+import java.util.Arrays;
 
 import static com.google.common.truth.Truth.assertAbout;
 import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
 
 public class AutoReducerGeneratorTest {
     @Test
@@ -27,10 +29,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  @Override\n" +
                 "  public String reduce(String state, Action action) {\n" +
                 "    switch (action.type) {\n" +
@@ -41,6 +44,16 @@ public class AutoReducerGeneratorTest {
                 "    }\n" +
                 "  }\n" +
                 "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    switch (actionType) {\n" +
+                "      case \"ACTION_1\":\n" +
+                "        return true;\n" +
+                "      default:\n" +
+                "        return false;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
                 "  public static class ActionCreator {\n" +
                 "    public static Action uppercase() {\n" +
                 "      return Action.create(\"ACTION_1\");\n" +
@@ -74,10 +87,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  @Override\n" +
                 "  public String reduce(String state, Action action) {\n" +
                 "    switch (action.type) {\n" +
@@ -88,6 +102,16 @@ public class AutoReducerGeneratorTest {
                 "    }\n" +
                 "  }\n" +
                 "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    switch (actionType) {\n" +
+                "      case \"ACTION_1\":\n" +
+                "        return true;\n" +
+                "      default:\n" +
+                "        return false;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
                 "  public static class ActionCreator {\n" +
                 "    public static Action append(int number) {\n" +
                 "      return Action.create(\"ACTION_1\", number);\n" +
@@ -121,10 +145,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  @Override\n" +
                 "  public String reduce(String state, Action action) {\n" +
                 "    switch (action.type) {\n" +
@@ -135,6 +160,16 @@ public class AutoReducerGeneratorTest {
                 "    }\n" +
                 "  }\n" +
                 "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    switch (actionType) {\n" +
+                "      case \"ACTION_1\":\n" +
+                "        return true;\n" +
+                "      default:\n" +
+                "        return false;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
                 "  public static class ActionCreator {\n" +
                 "    public static Action append(int number, String suffix) {\n" +
                 "      return Action.create(\"ACTION_1\", number, suffix);\n" +
@@ -167,10 +202,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  public FoobarReducerImpl(int foo, String bar) {\n" +
                 "    super(foo, bar);\n" +
                 "  }\n" +
@@ -182,6 +218,11 @@ public class AutoReducerGeneratorTest {
                 "        return state;\n" +
                 "    }\n" +
                 "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    return false;\n" +
+                "  }\n" +
                 "}");
 
         assertAbout(javaSource()).that(source)
@@ -209,10 +250,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  @Override\n" +
                 "  public String reduce(String state, Action action) {\n" +
                 "    switch (action.type) {\n" +
@@ -220,6 +262,11 @@ public class AutoReducerGeneratorTest {
                 "        return state;\n" +
                 "    }\n" +
                 "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    return false;\n" +
+                "  }\n" +
                 "}");
 
         assertAbout(javaSource()).that(source)
@@ -251,10 +298,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  public FoobarReducerImpl(int a) {\n" +
                 "    super(a);\n" +
                 "  }\n" +
@@ -266,6 +314,11 @@ public class AutoReducerGeneratorTest {
                 "        return state;\n" +
                 "    }\n" +
                 "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    return false;\n" +
+                "  }\n" +
                 "}");
 
         assertAbout(javaSource()).that(source)
@@ -297,10 +350,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  public FoobarReducerImpl(int a) {\n" +
                 "    super(a);\n" +
                 "  }\n" +
@@ -312,6 +366,11 @@ public class AutoReducerGeneratorTest {
                 "        return state;\n" +
                 "    }\n" +
                 "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    return false;\n" +
+                "  }\n" +
                 "}");
 
         assertAbout(javaSource()).that(source)
@@ -340,10 +399,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  @Override\n" +
                 "  public String reduce(String state, Action action) {\n" +
                 "    if (state == null) {\n" +
@@ -355,6 +415,11 @@ public class AutoReducerGeneratorTest {
                 "        return state;\n" +
                 "    }\n" +
                 "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    return false;\n" +
+                "  }\n" +
                 "}");
 
         assertAbout(javaSource()).that(source)
@@ -383,10 +448,11 @@ public class AutoReducerGeneratorTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducerImpl", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "\n" +
-                "public class FoobarReducerImpl extends FoobarReducer {\n" +
+                "public class FoobarReducerImpl extends FoobarReducer implements RoutedReducer<String> {\n" +
                 "  @Override\n" +
                 "  public String reduce(String state, Action action) {\n" +
                 "    if (state == null) {\n" +
@@ -398,6 +464,11 @@ public class AutoReducerGeneratorTest {
                 "        return state;\n" +
                 "    }\n" +
                 "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    return false;\n" +
+                "  }\n" +
                 "}");
 
         assertAbout(javaSource()).that(source)
@@ -407,4 +478,181 @@ public class AutoReducerGeneratorTest {
                 .and()
                 .generatesSources(generatedPojo);
     }
+
+    @Test
+    public void testGeneratedReducerForDraftActionHandler() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.CounterReducer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import com.yheriatovych.reductor.annotations.AutoReducer;\n" +
+                "\n" +
+                "@AutoReducer\n" +
+                "public abstract class CounterReducer implements Reducer<Counter>{\n" +
+                "    @AutoReducer.Action(\"ADD\")\n" +
+                "    void add(Counter.Builder draft, int amount) {\n" +
+                "        draft.value += amount;\n" +
+                "    }\n" +
+                "\n" +
+                "    @AutoReducer.Action(\"RESET\")\n" +
+                "    Counter reset(Counter state) {\n" +
+                "        return new Counter(0);\n" +
+                "    }\n" +
+                "}");
+
+        JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.CounterReducerImpl", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "\n" +
+                "public class CounterReducerImpl extends CounterReducer implements RoutedReducer<Counter> {\n" +
+                "  @Override\n" +
+                "  public Counter reduce(Counter state, Action action) {\n" +
+                "    switch (action.type) {\n" +
+                "      case \"ADD\": {\n" +
+                "        if (state == null) return null;\n" +
+                "        Counter.Builder draft = state.draft();\n" +
+                "        add(draft, (int) action.getValue(0));\n" +
+                "        return draft.finish();\n" +
+                "      }\n" +
+                "      case \"RESET\":\n" +
+                "        return reset(state);\n" +
+                "      default:\n" +
+                "        return state;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    switch (actionType) {\n" +
+                "      case \"ADD\":\n" +
+                "      case \"RESET\":\n" +
+                "        return true;\n" +
+                "      default:\n" +
+                "        return false;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class ActionCreator {\n" +
+                "    public static Action add(int amount) {\n" +
+                "      return Action.create(\"ADD\", amount);\n" +
+                "    }\n" +
+                "\n" +
+                "    public static Action reset() {\n" +
+                "      return Action.create(\"RESET\");\n" +
+                "    }\n" +
+                "  }\n" +
+                "}");
+
+        assertAbout(javaSources()).that(Arrays.asList(counterSource(), source))
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedPojo);
+    }
+
+    @Test
+    public void testGeneratedReducerForDraftActionHandlerWithInitialState() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.CounterReducer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import com.yheriatovych.reductor.annotations.AutoReducer;\n" +
+                "\n" +
+                "@AutoReducer\n" +
+                "public abstract class CounterReducer implements Reducer<Counter>{\n" +
+                "    @AutoReducer.InitialState\n" +
+                "    Counter initialState() {\n" +
+                "        return new Counter(0);\n" +
+                "    }\n" +
+                "\n" +
+                "    @AutoReducer.Action(\"ADD\")\n" +
+                "    void add(Counter.Builder draft, int amount) {\n" +
+                "        draft.value += amount;\n" +
+                "    }\n" +
+                "}");
+
+        JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.CounterReducerImpl", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.RoutedReducer;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "\n" +
+                "public class CounterReducerImpl extends CounterReducer implements RoutedReducer<Counter> {\n" +
+                "  @Override\n" +
+                "  public Counter reduce(Counter state, Action action) {\n" +
+                "    if (state == null) {\n" +
+                "      state = initialState();\n" +
+                "    }\n" +
+                "\n" +
+                "    switch (action.type) {\n" +
+                "      case \"ADD\": {\n" +
+                "        Counter.Builder draft = state.draft();\n" +
+                "        add(draft, (int) action.getValue(0));\n" +
+                "        return draft.finish();\n" +
+                "      }\n" +
+                "      default:\n" +
+                "        return state;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean handles(String actionType) {\n" +
+                "    switch (actionType) {\n" +
+                "      case \"ADD\":\n" +
+                "        return true;\n" +
+                "      default:\n" +
+                "        return false;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class ActionCreator {\n" +
+                "    public static Action add(int amount) {\n" +
+                "      return Action.create(\"ADD\", amount);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}");
+
+        assertAbout(javaSources()).that(Arrays.asList(counterSource(), source))
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedPojo);
+    }
+
+    private static JavaFileObject counterSource() {
+        return JavaFileObjects.forSourceString("test.Counter", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Draft;\n" +
+                "import com.yheriatovych.reductor.Draftable;\n" +
+                "\n" +
+                "public class Counter implements Draftable<Counter, Counter.Builder> {\n" +
+                "    final int value;\n" +
+                "\n" +
+                "    Counter(int value) {\n" +
+                "        this.value = value;\n" +
+                "    }\n" +
+                "\n" +
+                "    @Override\n" +
+                "    public Builder draft() {\n" +
+                "        return new Builder(value);\n" +
+                "    }\n" +
+                "\n" +
+                "    public static class Builder implements Draft<Counter> {\n" +
+                "        int value;\n" +
+                "\n" +
+                "        Builder(int value) {\n" +
+                "            this.value = value;\n" +
+                "        }\n" +
+                "\n" +
+                "        @Override\n" +
+                "        public Counter finish() {\n" +
+                "            return new Counter(value);\n" +
+                "        }\n" +
+                "    }\n" +
+                "}");
+    }
 }
@@ -154,6 +154,28 @@ public class AutoReducerValidationTest {
                 .in(source).onLine(9);
     }
 
+    @Test
+    public void testFailIfVoidHandlerStateIsNotDraftable() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.FoobarReducer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import com.yheriatovych.reductor.annotations.AutoReducer;\n" +
+                "\n" +
+                "@AutoReducer\n" +
+                "public abstract class FoobarReducer implements Reducer<String>{\n" +
+                "    @AutoReducer.Action(\"ACTION_1\")\n" +
+                "    void handleAction(String state) {\n" +
+                "    }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .failsToCompile()
+                .withErrorContaining("Method handleAction(java.lang.String) should return type assignable to state type java.lang.String")
+                .in(source).onLine(9);
+    }
+
     @Test
     public void testGeneratedReducerWithMatchingConstructor() {
         JavaFileObject source = JavaFileObjects.forSourceString("test.FoobarReducer", "package test;\n" +
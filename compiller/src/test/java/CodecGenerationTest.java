@@ -0,0 +1,560 @@
+import com.google.testing.compile.JavaFileObjects;
+import com.yheriatovych.reductor.processor.ReductorAnnotationProcessor;
+import org.junit.Test;
+
+import javax.tools.JavaFileObject;
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class CodecGenerationTest {
+    @Test
+    public void testCombinedStateCodecGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "@CombinedState\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    String bar();\n" +
+                "    List<String> items();\n" +
+                "    Child child();\n" +
+                "}");
+
+        JavaFileObject childSource = JavaFileObjects.forSourceString("test.Child", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState\n" +
+                "public interface Child {\n" +
+                "    boolean checked();\n" +
+                "}");
+
+        JavaFileObject generatedCodec = JavaFileObjects.forSourceString("test.FoobarCodec", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.codec.Codec;\n" +
+                "import com.yheriatovych.reductor.codec.Codecs;\n" +
+                "import java.lang.IllegalStateException;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.nio.ByteBuffer;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "public final class FoobarCodec implements Codec<Foobar> {\n" +
+                "  public static final long SCHEMA_HASH = 4576827593969970406L * 31 + ChildCodec.SCHEMA_HASH;\n" +
+                "\n" +
+                "  private final Codec<String> barCodec;\n" +
+                "\n" +
+                "  private final Codec<List<String>> itemsCodec;\n" +
+                "\n" +
+                "  private final Codec<Child> childCodec;\n" +
+                "\n" +
+                "  private FoobarCodec(Codec<String> barCodec, Codec<List<String>> itemsCodec, Codec<Child> childCodec) {\n" +
+                "    this.barCodec = barCodec;\n" +
+                "    this.itemsCodec = itemsCodec;\n" +
+                "    this.childCodec = childCodec;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public void write(Foobar value, ByteBuffer buffer) {\n" +
+                "    buffer.putInt(value.foo());\n" +
+                "    barCodec.write(value.bar(), buffer);\n" +
+                "    itemsCodec.write(value.items(), buffer);\n" +
+                "    childCodec.write(value.child(), buffer);\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Foobar read(ByteBuffer buffer) {\n" +
+                "    int foo = buffer.getInt();\n" +
+                "    String bar = barCodec.read(buffer);\n" +
+                "    List<String> items = itemsCodec.read(buffer);\n" +
+                "    Child child = childCodec.read(buffer);\n" +
+                "    return new FoobarImpl(foo, bar, items, child);\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Codec<String> barCodec;\n" +
+                "\n" +
+                "    private Codec<List<String>> itemsCodec;\n" +
+                "\n" +
+                "    private Codec<Child> childCodec;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barCodec(Codec<String> barCodec) {\n" +
+                "      this.barCodec = barCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder itemsCodec(Codec<List<String>> itemsCodec) {\n" +
+                "      this.itemsCodec = itemsCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder childCodec(Codec<Child> childCodec) {\n" +
+                "      this.childCodec = childCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarCodec build() {\n" +
+                "      Codec<String> barCodecValue = barCodec != null ? Codecs.nullable(barCodec) : Codecs.STRING;\n" +
+                "      if (itemsCodec == null) {\n" +
+                "        throw new IllegalStateException(\"itemsCodec should not be null\");\n" +
+                "      }\n" +
+                "      Codec<List<String>> itemsCodecValue = Codecs.nullable(itemsCodec);\n" +
+                "      Codec<Child> childCodecValue = Codecs.nullable(childCodec != null ? childCodec : ChildCodec.builder().build());\n" +
+                "      return new FoobarCodec(barCodecValue, itemsCodecValue, childCodecValue);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}"
+);
+
+        assertAbout(javaSources()).that(Arrays.asList(source, childSource))
+                .withCompilerOptions("-Xlint:-processing", "-Areductor.codecs=true")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedCodec);
+    }
+
+    @Test
+    public void testActionCreatorCodecGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.CounterActions", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.annotations.ActionCreator;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "@ActionCreator\n" +
+                "public interface CounterActions {\n" +
+                "    @ActionCreator.Action(\"ADD\")\n" +
+                "    Action add(int value, String label);\n" +
+                "\n" +
+                "    @ActionCreator.Action(\"SET_ALL\")\n" +
+                "    Action setAll(List<String> items);\n" +
+                "\n" +
+                "    @ActionCreator.Action(\"RESET\")\n" +
+                "    Action reset();\n" +
+                "}");
+
+        JavaFileObject generatedCodec = JavaFileObjects.forSourceString("test.CounterActions_Codec", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.codec.ActionCodec;\n" +
+                "import com.yheriatovych.reductor.codec.Codec;\n" +
+                "import com.yheriatovych.reductor.codec.Codecs;\n" +
+                "import java.lang.IllegalArgumentException;\n" +
+                "import java.lang.IllegalStateException;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.lang.SuppressWarnings;\n" +
+                "import java.nio.ByteBuffer;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "public final class CounterActions_Codec implements ActionCodec {\n" +
+                "  public static final long SCHEMA_HASH = 50732902443581635L;\n" +
+                "\n" +
+                "  private final Codec<String> addLabelCodec;\n" +
+                "\n" +
+                "  private final Codec<List<String>> setAllItemsCodec;\n" +
+                "\n" +
+                "  private CounterActions_Codec(Codec<String> addLabelCodec, Codec<List<String>> setAllItemsCodec) {\n" +
+                "    this.addLabelCodec = addLabelCodec;\n" +
+                "    this.setAllItemsCodec = setAllItemsCodec;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean accepts(String actionType) {\n" +
+                "    switch (actionType) {\n" +
+                "      case \"ADD\":\n" +
+                "      case \"SET_ALL\":\n" +
+                "      case \"RESET\":\n" +
+                "        return true;\n" +
+                "      default:\n" +
+                "        return false;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  @SuppressWarnings(\"unchecked\")\n" +
+                "  public void write(Action action, ByteBuffer buffer) {\n" +
+                "    switch (action.type) {\n" +
+                "      case \"ADD\":\n" +
+                "        buffer.putShort((short) 0);\n" +
+                "        buffer.putInt((int) action.getValue(0));\n" +
+                "        addLabelCodec.write((String) action.getValue(1), buffer);\n" +
+                "        return;\n" +
+                "      case \"SET_ALL\":\n" +
+                "        buffer.putShort((short) 1);\n" +
+                "        setAllItemsCodec.write((List<String>) action.getValue(0), buffer);\n" +
+                "        return;\n" +
+                "      case \"RESET\":\n" +
+                "        buffer.putShort((short) 2);\n" +
+                "        return;\n" +
+                "      default:\n" +
+                "        throw new IllegalArgumentException(\"Unknown action type for CounterActions_Codec: \" + action.type);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Action read(ByteBuffer buffer) {\n" +
+                "    short index = buffer.getShort();\n" +
+                "    switch (index) {\n" +
+                "      case 0:\n" +
+                "        return Action.create(\"ADD\", buffer.getInt(), addLabelCodec.read(buffer));\n" +
+                "      case 1:\n" +
+                "        return Action.create(\"SET_ALL\", setAllItemsCodec.read(buffer));\n" +
+                "      case 2:\n" +
+                "        return Action.create(\"RESET\");\n" +
+                "      default:\n" +
+                "        throw new IllegalStateException(\"Unknown action index for CounterActions_Codec: \" + index);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Codec<String> addLabelCodec;\n" +
+                "\n" +
+                "    private Codec<List<String>> setAllItemsCodec;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder addLabelCodec(Codec<String> addLabelCodec) {\n" +
+                "      this.addLabelCodec = addLabelCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder setAllItemsCodec(Codec<List<String>> setAllItemsCodec) {\n" +
+                "      this.setAllItemsCodec = setAllItemsCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public CounterActions_Codec build() {\n" +
+                "      Codec<String> addLabelCodecValue = addLabelCodec != null ? Codecs.nullable(addLabelCodec) : Codecs.STRING;\n" +
+                "      if (setAllItemsCodec == null) {\n" +
+                "        throw new IllegalStateException(\"setAllItemsCodec should not be null\");\n" +
+                "      }\n" +
+                "      Codec<List<String>> setAllItemsCodecValue = Codecs.nullable(setAllItemsCodec);\n" +
+                "      return new CounterActions_Codec(addLabelCodecValue, setAllItemsCodecValue);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}"
+);
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing", "-Areductor.codecs=true")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedCodec);
+    }
+
+    @Test
+    public void testDuplicatedActionTypeFailsCodecGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.CounterActions", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.annotations.ActionCreator;\n" +
+                "\n" +
+                "@ActionCreator\n" +
+                "public interface CounterActions {\n" +
+                "    @ActionCreator.Action(\"ADD\")\n" +
+                "    Action add(int value);\n" +
+                "\n" +
+                "    @ActionCreator.Action(\"ADD\")\n" +
+                "    Action addTwice(int value);\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing", "-Areductor.codecs=true")
+                .processedWith(new ReductorAnnotationProcessor())
+                .failsToCompile()
+                .withErrorContaining("Action type \"ADD\" is declared more than once in test.CounterActions")
+                .in(source).onLine(7);
+    }
+
+    @Test
+    public void testCompactableActionCodecGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.FilterActions", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.annotations.ActionCreator;\n" +
+                "\n" +
+                "@ActionCreator\n" +
+                "public interface FilterActions {\n" +
+                "    @ActionCreator.Action(value = \"SET_FILTER\", compactable = true)\n" +
+                "    Action setFilter(int filter);\n" +
+                "\n" +
+                "    @ActionCreator.Action(value = \"REPLACE\", compactable = true, compactionKey = \"id\")\n" +
+                "    Action replace(String text, long id);\n" +
+                "\n" +
+                "    @ActionCreator.Action(\"ADD\")\n" +
+                "    Action add(String text);\n" +
+                "}");
+
+        JavaFileObject generatedCodec = JavaFileObjects.forSourceString("test.FilterActions_Codec", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.codec.ActionCodec;\n" +
+                "import com.yheriatovych.reductor.codec.Codec;\n" +
+                "import com.yheriatovych.reductor.codec.Codecs;\n" +
+                "import com.yheriatovych.reductor.codec.CompactionPolicy;\n" +
+                "import java.lang.IllegalArgumentException;\n" +
+                "import java.lang.IllegalStateException;\n" +
+                "import java.lang.Object;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.nio.ByteBuffer;\n" +
+                "import java.util.Arrays;\n" +
+                "\n" +
+                "public final class FilterActions_Codec implements ActionCodec, CompactionPolicy {\n" +
+                "  public static final long SCHEMA_HASH = 8154345923524588386L;\n" +
+                "\n" +
+                "  private final Codec<String> replaceTextCodec;\n" +
+                "\n" +
+                "  private final Codec<String> addTextCodec;\n" +
+                "\n" +
+                "  private FilterActions_Codec(Codec<String> replaceTextCodec, Codec<String> addTextCodec) {\n" +
+                "    this.replaceTextCodec = replaceTextCodec;\n" +
+                "    this.addTextCodec = addTextCodec;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean accepts(String actionType) {\n" +
+                "    switch (actionType) {\n" +
+                "      case \"SET_FILTER\":\n" +
+                "      case \"REPLACE\":\n" +
+                "      case \"ADD\":\n" +
+                "        return true;\n" +
+                "      default:\n" +
+                "        return false;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public void write(Action action, ByteBuffer buffer) {\n" +
+                "    switch (action.type) {\n" +
+                "      case \"SET_FILTER\":\n" +
+                "        buffer.putShort((short) 0);\n" +
+                "        buffer.putInt((int) action.getValue(0));\n" +
+                "        return;\n" +
+                "      case \"REPLACE\":\n" +
+                "        buffer.putShort((short) 1);\n" +
+                "        replaceTextCodec.write((String) action.getValue(0), buffer);\n" +
+                "        buffer.putLong((long) action.getValue(1));\n" +
+                "        return;\n" +
+                "      case \"ADD\":\n" +
+                "        buffer.putShort((short) 2);\n" +
+                "        addTextCodec.write((String) action.getValue(0), buffer);\n" +
+                "        return;\n" +
+                "      default:\n" +
+                "        throw new IllegalArgumentException(\"Unknown action type for FilterActions_Codec: \" + action.type);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Action read(ByteBuffer buffer) {\n" +
+                "    short index = buffer.getShort();\n" +
+                "    switch (index) {\n" +
+                "      case 0:\n" +
+                "        return Action.create(\"SET_FILTER\", buffer.getInt());\n" +
+                "      case 1:\n" +
+                "        return Action.create(\"REPLACE\", replaceTextCodec.read(buffer), buffer.getLong());\n" +
+                "      case 2:\n" +
+                "        return Action.create(\"ADD\", addTextCodec.read(buffer));\n" +
+                "      default:\n" +
+                "        throw new IllegalStateException(\"Unknown action index for FilterActions_Codec: \" + index);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Object compactionKey(Action action) {\n" +
+                "    switch (action.type) {\n" +
+                "      case \"SET_FILTER\":\n" +
+                "        return action.type;\n" +
+                "      case \"REPLACE\":\n" +
+                "        return Arrays.asList(action.type, action.getValue(1));\n" +
+                "      default:\n" +
+                "        return null;\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Codec<String> replaceTextCodec;\n" +
+                "\n" +
+                "    private Codec<String> addTextCodec;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder replaceTextCodec(Codec<String> replaceTextCodec) {\n" +
+                "      this.replaceTextCodec = replaceTextCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder addTextCodec(Codec<String> addTextCodec) {\n" +
+                "      this.addTextCodec = addTextCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FilterActions_Codec build() {\n" +
+                "      Codec<String> replaceTextCodecValue = replaceTextCodec != null ? Codecs.nullable(replaceTextCodec) : Codecs.STRING;\n" +
+                "      Codec<String> addTextCodecValue = addTextCodec != null ? Codecs.nullable(addTextCodec) : Codecs.STRING;\n" +
+                "      return new FilterActions_Codec(replaceTextCodecValue, addTextCodecValue);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing", "-Areductor.codecs=true")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedCodec);
+    }
+
+    @Test
+    public void testUnknownCompactionKeyArgument() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.FilterActions", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.annotations.ActionCreator;\n" +
+                "\n" +
+                "@ActionCreator\n" +
+                "public interface FilterActions {\n" +
+                "    @ActionCreator.Action(value = \"REPLACE\", compactable = true, compactionKey = \"key\")\n" +
+                "    Action replace(String text, long id);\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing", "-Areductor.codecs=true")
+                .processedWith(new ReductorAnnotationProcessor())
+                .failsToCompile()
+                .withErrorContaining("Compaction key argument \"key\" is not found in replace(java.lang.String,long)")
+                .in(source).onLine(9);
+    }
+
+    @Test
+    public void testCompactionKeyWithoutCompactable() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.FilterActions", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.annotations.ActionCreator;\n" +
+                "\n" +
+                "@ActionCreator\n" +
+                "public interface FilterActions {\n" +
+                "    @ActionCreator.Action(value = \"REPLACE\", compactionKey = \"id\")\n" +
+                "    Action replace(String text, long id);\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .failsToCompile()
+                .withErrorContaining("compactionKey of replace(java.lang.String,long) can be used only with compactable = true")
+                .in(source).onLine(9);
+    }
+    @Test
+    public void testLazyCombinedStateCodecGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState(lazy = true, differ = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    String bar();\n" +
+                "}");
+
+        JavaFileObject generatedCodec = JavaFileObjects.forSourceString("test.FoobarCodec", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.LazyState;\n" +
+                "import com.yheriatovych.reductor.codec.Codec;\n" +
+                "import com.yheriatovych.reductor.codec.Codecs;\n" +
+                "import java.lang.Integer;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.nio.ByteBuffer;\n" +
+                "\n" +
+                "public final class FoobarCodec implements Codec<Foobar> {\n" +
+                "  public static final long SCHEMA_HASH = 4244553393845413109L;\n" +
+                "\n" +
+                "  private final Codec<String> barCodec;\n" +
+                "\n" +
+                "  private FoobarCodec(Codec<String> barCodec) {\n" +
+                "    this.barCodec = barCodec;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public void write(Foobar value, ByteBuffer buffer) {\n" +
+                "    LazyState<Integer> foo = value instanceof FoobarImpl ? ((FoobarImpl) value).foo : LazyState.of(value.foo());\n" +
+                "    if (foo.isInitialized()) {\n" +
+                "      buffer.put((byte) 1);\n" +
+                "      buffer.putInt(foo.get());\n" +
+                "    } else {\n" +
+                "      buffer.put((byte) 0);\n" +
+                "    }\n" +
+                "    LazyState<String> bar = value instanceof FoobarImpl ? ((FoobarImpl) value).bar : LazyState.of(value.bar());\n" +
+                "    if (bar.isInitialized()) {\n" +
+                "      buffer.put((byte) 1);\n" +
+                "      barCodec.write(bar.get(), buffer);\n" +
+                "    } else {\n" +
+                "      buffer.put((byte) 0);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Foobar read(ByteBuffer buffer) {\n" +
+                "    LazyState<Integer> foo = buffer.get() != 0 ? LazyState.<Integer>of(buffer.getInt()) : LazyState.<Integer>deferred();\n" +
+                "    LazyState<String> bar = buffer.get() != 0 ? LazyState.<String>of(barCodec.read(buffer)) : LazyState.<String>deferred();\n" +
+                "    return new FoobarImpl(foo, bar);\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Codec<String> barCodec;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barCodec(Codec<String> barCodec) {\n" +
+                "      this.barCodec = barCodec;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarCodec build() {\n" +
+                "      Codec<String> barCodecValue = barCodec != null ? Codecs.nullable(barCodec) : Codecs.STRING;\n" +
+                "      return new FoobarCodec(barCodecValue);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}"
+);
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing", "-Areductor.codecs=true")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedCodec);
+    }
+}
@@ -0,0 +1,338 @@
+import com.google.auto.value.processor.AutoValueProcessor;
+import com.google.testing.compile.JavaFileObjects;
+import com.yheriatovych.reductor.processor.ReductorAnnotationProcessor;
+import org.junit.Test;
+
+import javax.tools.JavaFileObject;
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+
+public class CombinedStateDifferTest {
+    @Test
+    public void testDifferGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "@CombinedState(differ = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    List<String> bar();\n" +
+                "    Child child();\n" +
+                "}");
+
+        JavaFileObject childSource = JavaFileObjects.forSourceString("test.Child", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState(differ = true)\n" +
+                "public interface Child {\n" +
+                "    String name();\n" +
+                "}");
+
+        JavaFileObject generatedDiffer = JavaFileObjects.forSourceString("test.FoobarDiffer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.diff.Differ;\n" +
+                "import com.yheriatovych.reductor.diff.Patch;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "public final class FoobarDiffer implements Differ<Foobar> {\n" +
+                "  private final Differ<List<String>> barDiffer;\n" +
+                "\n" +
+                "  private final Differ<Child> childDiffer;\n" +
+                "\n" +
+                "  private FoobarDiffer(Differ<List<String>> barDiffer, Differ<Child> childDiffer) {\n" +
+                "    this.barDiffer = barDiffer;\n" +
+                "    this.childDiffer = childDiffer;\n" +
+                "  }\n" +
+                "\n" +
+                "  public Patch diff(Foobar previous, Foobar next) {\n" +
+                "    Patch.Builder patch = Patch.builder();\n" +
+                "    diff(\"\", previous, next, patch);\n" +
+                "    return patch.build();\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public void diff(String path, Foobar previous, Foobar next, Patch.Builder patch) {\n" +
+                "    if (previous == next) return;\n" +
+                "    if (previous == null || next == null) {\n" +
+                "      patch.changed(path, previous, next);\n" +
+                "      return;\n" +
+                "    }\n" +
+                "\n" +
+                "    int foo = previous.foo();\n" +
+                "    int fooNext = next.foo();\n" +
+                "    if (foo != fooNext) {\n" +
+                "      patch.changed(Patch.path(path, \"foo\"), foo, fooNext);\n" +
+                "    }\n" +
+                "\n" +
+                "    List<String> bar = previous.bar();\n" +
+                "    List<String> barNext = next.bar();\n" +
+                "    if (bar != barNext) {\n" +
+                "      if (barDiffer != null) {\n" +
+                "        barDiffer.diff(Patch.path(path, \"bar\"), bar, barNext, patch);\n" +
+                "      } else {\n" +
+                "        patch.changed(Patch.path(path, \"bar\"), bar, barNext);\n" +
+                "      }\n" +
+                "    }\n" +
+                "\n" +
+                "    Child child = previous.child();\n" +
+                "    Child childNext = next.child();\n" +
+                "    if (child != childNext) {\n" +
+                "      if (childDiffer != null) {\n" +
+                "        childDiffer.diff(Patch.path(path, \"child\"), child, childNext, patch);\n" +
+                "      } else {\n" +
+                "        patch.changed(Patch.path(path, \"child\"), child, childNext);\n" +
+                "      }\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Differ<List<String>> barDiffer;\n" +
+                "\n" +
+                "    private Differ<Child> childDiffer;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barDiffer(Differ<List<String>> barDiffer) {\n" +
+                "      this.barDiffer = barDiffer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder childDiffer(Differ<Child> childDiffer) {\n" +
+                "      this.childDiffer = childDiffer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarDiffer build() {\n" +
+                "      if (childDiffer == null) {\n" +
+                "        childDiffer = ChildDiffer.builder().build();\n" +
+                "      }\n" +
+                "      return new FoobarDiffer(barDiffer, childDiffer);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}"
+);
+
+        assertAbout(javaSources()).that(Arrays.asList(source, childSource))
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedDiffer);
+    }
+
+    @Test
+    public void testAutoValueDifferGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.google.auto.value.AutoValue;\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "import java.util.Date;\n" +
+                "\n" +
+                "@CombinedState(differ = true)\n" +
+                "@AutoValue\n" +
+                "public abstract class Foobar {\n" +
+                "    abstract long foo();\n" +
+                "    abstract Date bar();\n" +
+                "}");
+
+        JavaFileObject generatedDiffer = JavaFileObjects.forSourceString("test.FoobarDiffer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.diff.Differ;\n" +
+                "import com.yheriatovych.reductor.diff.Patch;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.util.Date;\n" +
+                "\n" +
+                "public final class FoobarDiffer implements Differ<Foobar> {\n" +
+                "  private final Differ<Date> barDiffer;\n" +
+                "\n" +
+                "  private FoobarDiffer(Differ<Date> barDiffer) {\n" +
+                "    this.barDiffer = barDiffer;\n" +
+                "  }\n" +
+                "\n" +
+                "  public Patch diff(Foobar previous, Foobar next) {\n" +
+                "    Patch.Builder patch = Patch.builder();\n" +
+                "    diff(\"\", previous, next, patch);\n" +
+                "    return patch.build();\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public void diff(String path, Foobar previous, Foobar next, Patch.Builder patch) {\n" +
+                "    if (previous == next) return;\n" +
+                "    if (previous == null || next == null) {\n" +
+                "      patch.changed(path, previous, next);\n" +
+                "      return;\n" +
+                "    }\n" +
+                "\n" +
+                "    long foo = previous.foo();\n" +
+                "    long fooNext = next.foo();\n" +
+                "    if (foo != fooNext) {\n" +
+                "      patch.changed(Patch.path(path, \"foo\"), foo, fooNext);\n" +
+                "    }\n" +
+                "\n" +
+                "    Date bar = previous.bar();\n" +
+                "    Date barNext = next.bar();\n" +
+                "    if (bar != barNext) {\n" +
+                "      if (barDiffer != null) {\n" +
+                "        barDiffer.diff(Patch.path(path, \"bar\"), bar, barNext, patch);\n" +
+                "      } else {\n" +
+                "        patch.changed(Patch.path(path, \"bar\"), bar, barNext);\n" +
+                "      }\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Differ<Date> barDiffer;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barDiffer(Differ<Date> barDiffer) {\n" +
+                "      this.barDiffer = barDiffer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarDiffer build() {\n" +
+                "      return new FoobarDiffer(barDiffer);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}"
+);
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new AutoValueProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedDiffer);
+    }
+    @Test
+    public void testLazyDifferGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState(lazy = true, differ = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    String bar();\n" +
+                "}");
+
+        JavaFileObject generatedDiffer = JavaFileObjects.forSourceString("test.FoobarDiffer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.diff.Differ;\n" +
+                "import com.yheriatovych.reductor.diff.Patch;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "\n" +
+                "public final class FoobarDiffer implements Differ<Foobar> {\n" +
+                "  private final Differ<String> barDiffer;\n" +
+                "\n" +
+                "  private FoobarDiffer(Differ<String> barDiffer) {\n" +
+                "    this.barDiffer = barDiffer;\n" +
+                "  }\n" +
+                "\n" +
+                "  public Patch diff(Foobar previous, Foobar next) {\n" +
+                "    Patch.Builder patch = Patch.builder();\n" +
+                "    diff(\"\", previous, next, patch);\n" +
+                "    return patch.build();\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public void diff(String path, Foobar previous, Foobar next, Patch.Builder patch) {\n" +
+                "    if (previous == next) return;\n" +
+                "    if (previous == null || next == null) {\n" +
+                "      patch.changed(path, previous, next);\n" +
+                "      return;\n" +
+                "    }\n" +
+                "\n" +
+                "    if (previous instanceof FoobarImpl && next instanceof FoobarImpl) {\n" +
+                "      FoobarImpl previousImpl = (FoobarImpl) previous;\n" +
+                "      FoobarImpl nextImpl = (FoobarImpl) next;\n" +
+                "\n" +
+                "      if (previousImpl.foo != nextImpl.foo && (previousImpl.foo.isInitialized() || nextImpl.foo.isInitialized())) {\n" +
+                "        int foo = previousImpl.foo.get();\n" +
+                "        int fooNext = nextImpl.foo.get();\n" +
+                "        if (foo != fooNext) {\n" +
+                "          patch.changed(Patch.path(path, \"foo\"), foo, fooNext);\n" +
+                "        }\n" +
+                "      }\n" +
+                "\n" +
+                "      if (previousImpl.bar != nextImpl.bar && (previousImpl.bar.isInitialized() || nextImpl.bar.isInitialized())) {\n" +
+                "        String bar = previousImpl.bar.get();\n" +
+                "        String barNext = nextImpl.bar.get();\n" +
+                "        if (bar != barNext) {\n" +
+                "          if (barDiffer != null) {\n" +
+                "            barDiffer.diff(Patch.path(path, \"bar\"), bar, barNext, patch);\n" +
+                "          } else {\n" +
+                "            patch.changed(Patch.path(path, \"bar\"), bar, barNext);\n" +
+                "          }\n" +
+                "        }\n" +
+                "      }\n" +
+                "      return;\n" +
+                "    }\n" +
+                "\n" +
+                "    int foo = previous.foo();\n" +
+                "    int fooNext = next.foo();\n" +
+                "    if (foo != fooNext) {\n" +
+                "      patch.changed(Patch.path(path, \"foo\"), foo, fooNext);\n" +
+                "    }\n" +
+                "\n" +
+                "    String bar = previous.bar();\n" +
+                "    String barNext = next.bar();\n" +
+                "    if (bar != barNext) {\n" +
+                "      if (barDiffer != null) {\n" +
+                "        barDiffer.diff(Patch.path(path, \"bar\"), bar, barNext, patch);\n" +
+                "      } else {\n" +
+                "        patch.changed(Patch.path(path, \"bar\"), bar, barNext);\n" +
+                "      }\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Differ<String> barDiffer;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barDiffer(Differ<String> barDiffer) {\n" +
+                "      this.barDiffer = barDiffer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarDiffer build() {\n" +
+                "      return new FoobarDiffer(barDiffer);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}"
+);
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedDiffer);
+    }
+}
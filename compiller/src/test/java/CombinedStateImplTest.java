@@ -132,4 +132,111 @@ public class CombinedStateImplTest {
                 .and()
                 .generatesSources(generatedPojo);
     }
+
+    @Test
+    public void testInternedImplGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState(interned = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    String bar();\n" +
+                "    float baz();\n" +
+                "}");
+
+        JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarImpl", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Interner;\n" +
+                "import java.lang.Float;\n" +
+                "import java.lang.Object;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "\n" +
+                "public final class FoobarImpl implements Foobar {\n" +
+                "  private static final Interner<FoobarImpl> INTERNER = Interner.weak();\n" +
+                "\n" +
+                "  private final int foo;\n" +
+                "\n" +
+                "  private final String bar;\n" +
+                "\n" +
+                "  private final float baz;\n" +
+                "\n" +
+                "  private final int hashCode;\n" +
+                "\n" +
+                "  public FoobarImpl(int foo, String bar, float baz) {\n" +
+                "    this.foo = foo;\n" +
+                "    this.bar = bar;\n" +
+                "    this.baz = baz;\n" +
+                "    int hashCode = 1;\n" +
+                "    hashCode = 31 * hashCode + foo;\n" +
+                "    hashCode = 31 * hashCode + (bar != null ? bar.hashCode() : 0);\n" +
+                "    hashCode = 31 * hashCode + Float.floatToIntBits(baz);\n" +
+                "    this.hashCode = hashCode;\n" +
+                "  }\n" +
+                "\n" +
+                "  public static FoobarImpl create(int foo, String bar, float baz) {\n" +
+                "    return INTERNER.intern(new FoobarImpl(foo, bar, baz));\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public int foo() {\n" +
+                "    return foo;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public String bar() {\n" +
+                "    return bar;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public float baz() {\n" +
+                "    return baz;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public boolean equals(Object o) {\n" +
+                "    if (this == o) return true;\n" +
+                "    if (!(o instanceof FoobarImpl)) return false;\n" +
+                "    FoobarImpl that = (FoobarImpl) o;\n" +
+                "    return hashCode == that.hashCode\n" +
+                "        && foo == that.foo\n" +
+                "        && (bar != null ? bar.equals(that.bar) : that.bar == null)\n" +
+                "        && Float.floatToIntBits(baz) == Float.floatToIntBits(that.baz);\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public int hashCode() {\n" +
+                "    return hashCode;\n" +
+                "  }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedPojo);
+    }
+
+    @Test
+    public void testLazyCombinedStateCannotBeInterned() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState(lazy = true, interned = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .failsToCompile()
+                .withErrorContaining("Lazy @CombinedState cannot be interned")
+                .in(source)
+                .onLine(6);
+    }
 }
@@ -82,11 +82,13 @@ public class CombinedStateReducerTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.PrefetchingReducer;\n" +
                 "import com.yheriatovych.reductor.Reducer;\n" +
                 "import java.lang.IllegalStateException;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "import java.util.Date;\n" +
+                "import java.util.concurrent.Executor;\n" +
                 "\n" +
                 "public final class FoobarReducer implements Reducer<Foobar> {\n" +
                 "  private final Reducer<String> fooReducer;\n" +
@@ -130,6 +132,8 @@ public class CombinedStateReducerTest {
                 "\n" +
                 "    private Reducer<Date> barReducer;\n" +
                 "\n" +
+                "    private Executor initExecutor;\n" +
+                "\n" +
                 "    private Builder() {\n" +
                 "    }\n" +
                 "\n" +
@@ -143,6 +147,11 @@ public class CombinedStateReducerTest {
                 "      return this;\n" +
                 "    }\n" +
                 "\n" +
+                "    public Builder initExecutor(Executor initExecutor) {\n" +
+                "      this.initExecutor = initExecutor;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
                 "    public FoobarReducer build() {\n" +
                 "      if (fooReducer == null) {\n" +
                 "        throw new IllegalStateException(\"fooReducer should not be null\");\n" +
@@ -150,6 +159,9 @@ public class CombinedStateReducerTest {
                 "      if (barReducer == null) {\n" +
                 "        throw new IllegalStateException(\"barReducer should not be null\");\n" +
                 "      }\n" +
+                "      if (initExecutor != null) {\n" +
+                "        return new FoobarReducer(PrefetchingReducer.prefetch(fooReducer, initExecutor), PrefetchingReducer.prefetch(barReducer, initExecutor));\n" +
+                "      }\n" +
                 "      return new FoobarReducer(fooReducer, barReducer);\n" +
                 "    }\n" +
                 "  }\n" +
@@ -178,11 +190,13 @@ public class CombinedStateReducerTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducer", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.PrefetchingReducer;\n" +
                 "import com.yheriatovych.reductor.Reducer;\n" +
                 "import java.lang.Boolean;\n" +
                 "import java.lang.IllegalStateException;\n" +
                 "import java.lang.Integer;\n" +
                 "import java.lang.Override;\n" +
+                "import java.util.concurrent.Executor;\n" +
                 "\n" +
                 "public final class FoobarReducer implements Reducer<Foobar> {\n" +
                 "  private final Reducer<Integer> fooReducer;\n" +
@@ -226,6 +240,8 @@ public class CombinedStateReducerTest {
                 "\n" +
                 "    private Reducer<Boolean> barReducer;\n" +
                 "\n" +
+                "    private Executor initExecutor;\n" +
+                "\n" +
                 "    private Builder() {\n" +
                 "    }\n" +
                 "\n" +
@@ -239,6 +255,11 @@ public class CombinedStateReducerTest {
                 "      return this;\n" +
                 "    }\n" +
                 "\n" +
+                "    public Builder initExecutor(Executor initExecutor) {\n" +
+                "      this.initExecutor = initExecutor;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
                 "    public FoobarReducer build() {\n" +
                 "      if (fooReducer == null) {\n" +
                 "        throw new IllegalStateException(\"fooReducer should not be null\");\n" +
@@ -246,6 +267,9 @@ public class CombinedStateReducerTest {
                 "      if (barReducer == null) {\n" +
                 "        throw new IllegalStateException(\"barReducer should not be null\");\n" +
                 "      }\n" +
+                "      if (initExecutor != null) {\n" +
+                "        return new FoobarReducer(PrefetchingReducer.prefetch(fooReducer, initExecutor), PrefetchingReducer.prefetch(barReducer, initExecutor));\n" +
+                "      }\n" +
                 "      return new FoobarReducer(fooReducer, barReducer);\n" +
                 "    }\n" +
                 "  }\n" +
@@ -277,11 +301,13 @@ public class CombinedStateReducerTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.PrefetchingReducer;\n" +
                 "import com.yheriatovych.reductor.Reducer;\n" +
                 "import java.lang.IllegalStateException;\n" +
                 "import java.lang.Override;\n" +
                 "import java.lang.String;\n" +
                 "import java.util.Date;\n" +
+                "import java.util.concurrent.Executor;\n" +
                 "\n" +
                 "public final class FoobarReducer implements Reducer<Foobar> {\n" +
                 "  private final Reducer<String> fooReducer;\n" +
@@ -325,6 +351,8 @@ public class CombinedStateReducerTest {
                 "\n" +
                 "    private Reducer<Date> barReducer;\n" +
                 "\n" +
+                "    private Executor initExecutor;\n" +
+                "\n" +
                 "    private Builder() {\n" +
                 "    }\n" +
                 "\n" +
@@ -338,6 +366,11 @@ public class CombinedStateReducerTest {
                 "      return this;\n" +
                 "    }\n" +
                 "\n" +
+                "    public Builder initExecutor(Executor initExecutor) {\n" +
+                "      this.initExecutor = initExecutor;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
                 "    public FoobarReducer build() {\n" +
                 "      if (fooReducer == null) {\n" +
                 "        throw new IllegalStateException(\"fooReducer should not be null\");\n" +
@@ -345,6 +378,9 @@ public class CombinedStateReducerTest {
                 "      if (barReducer == null) {\n" +
                 "        throw new IllegalStateException(\"barReducer should not be null\");\n" +
                 "      }\n" +
+                "      if (initExecutor != null) {\n" +
+                "        return new FoobarReducer(PrefetchingReducer.prefetch(fooReducer, initExecutor), PrefetchingReducer.prefetch(barReducer, initExecutor));\n" +
+                "      }\n" +
                 "      return new FoobarReducer(fooReducer, barReducer);\n" +
                 "    }\n" +
                 "  }\n" +
@@ -397,6 +433,7 @@ public class CombinedStateReducerTest {
         JavaFileObject generatedPojo = JavaFileObjects.forSourceString("test.FoobarReducer", "package test;\n" +
                 "\n" +
                 "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.PrefetchingReducer;\n" +
                 "import com.yheriatovych.reductor.Reducer;\n" +
                 "import java.lang.Boolean;\n" +
                 "import java.lang.Character;\n" +
@@ -405,6 +442,7 @@ public class CombinedStateReducerTest {
                 "import java.lang.Integer;\n" +
                 "import java.lang.Object;\n" +
                 "import java.lang.Override;\n" +
+                "import java.util.concurrent.Executor;\n" +
                 "\n" +
                 "public final class FoobarReducer implements Reducer<Foobar> {\n" +
                 "  private final Reducer<Integer> intValueReducer;\n" +
@@ -475,6 +513,8 @@ public class CombinedStateReducerTest {
                 "\n" +
                 "    private Reducer<Object> objectValueReducer;\n" +
                 "\n" +
+                "    private Executor initExecutor;\n" +
+                "\n" +
                 "    private Builder() {\n" +
                 "    }\n" +
                 "\n" +
@@ -503,6 +543,11 @@ public class CombinedStateReducerTest {
                 "      return this;\n" +
                 "    }\n" +
                 "\n" +
+                "    public Builder initExecutor(Executor initExecutor) {\n" +
+                "      this.initExecutor = initExecutor;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
                 "    public FoobarReducer build() {\n" +
                 "      if (intValueReducer == null) {\n" +
                 "        throw new IllegalStateException(\"intValueReducer should not be null\");\n" +
@@ -519,6 +564,9 @@ public class CombinedStateReducerTest {
                 "      if (objectValueReducer == null) {\n" +
                 "        throw new IllegalStateException(\"objectValueReducer should not be null\");\n" +
                 "      }\n" +
+                "      if (initExecutor != null) {\n" +
+                "        return new FoobarReducer(PrefetchingReducer.prefetch(intValueReducer, initExecutor), PrefetchingReducer.prefetch(doubleValueReducer, initExecutor), PrefetchingReducer.prefetch(booleanValueReducer, initExecutor), PrefetchingReducer.prefetch(charValueReducer, initExecutor), PrefetchingReducer.prefetch(objectValueReducer, initExecutor));\n" +
+                "      }\n" +
                 "      return new FoobarReducer(intValueReducer, doubleValueReducer, booleanValueReducer, charValueReducer, objectValueReducer);\n" +
                 "    }\n" +
                 "  }\n" +
@@ -531,4 +579,167 @@ public class CombinedStateReducerTest {
                 .and()
                 .generatesSources(generatedPojo);
     }
+
+    @Test
+    public void testSlicedReducerGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "@CombinedState(sliced = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    List<String> bar();\n" +
+                "}");
+
+        JavaFileObject generatedReducer = JavaFileObjects.forSourceString("test.FoobarReducer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.PrefetchingReducer;\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import com.yheriatovych.reductor.SliceRouter;\n" +
+                "import com.yheriatovych.reductor.SlicedReducer;\n" +
+                "import java.lang.IllegalStateException;\n" +
+                "import java.lang.IndexOutOfBoundsException;\n" +
+                "import java.lang.Integer;\n" +
+                "import java.lang.Object;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.lang.SuppressWarnings;\n" +
+                "import java.util.List;\n" +
+                "import java.util.concurrent.Executor;\n" +
+                "\n" +
+                "public final class FoobarReducer implements SlicedReducer<Foobar> {\n" +
+                "  private final Reducer<Integer> fooReducer;\n" +
+                "\n" +
+                "  private final Reducer<List<String>> barReducer;\n" +
+                "\n" +
+                "  private FoobarReducer(Reducer<Integer> fooReducer, Reducer<List<String>> barReducer) {\n" +
+                "    this.fooReducer = fooReducer;\n" +
+                "    this.barReducer = barReducer;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Foobar reduce(Foobar state, Action action) {\n" +
+                "    Integer foo = null;\n" +
+                "    List<String> bar = null;\n" +
+                "\n" +
+                "    if (state != null) {\n" +
+                "      foo = state.foo();\n" +
+                "      bar = state.bar();\n" +
+                "    }\n" +
+                "\n" +
+                "    Integer fooNext = fooReducer.reduce(foo, action);\n" +
+                "    List<String> barNext = barReducer.reduce(bar, action);\n" +
+                "\n" +
+                "    //If all values are the same there is no need to create an object\n" +
+                "    if (state != null\n" +
+                "     && foo == fooNext\n" +
+                "     && bar == barNext) {\n" +
+                "      return state;\n" +
+                "    } else {\n" +
+                "      return new FoobarImpl(fooNext, barNext);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public int sliceCount() {\n" +
+                "    return 2;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public int sliceOf(String actionType) {\n" +
+                "    return SliceRouter.route(actionType, fooReducer, barReducer);\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  @SuppressWarnings(\"unchecked\")\n" +
+                "  public Object reduceSlice(int slice, Object value, Action action) {\n" +
+                "    switch (slice) {\n" +
+                "      case 0:\n" +
+                "        return fooReducer.reduce((Integer) value, action);\n" +
+                "      case 1:\n" +
+                "        return barReducer.reduce((List<String>) value, action);\n" +
+                "      default:\n" +
+                "        throw new IndexOutOfBoundsException(\"Slice: \" + slice);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Object getSlice(Foobar state, int slice) {\n" +
+                "    switch (slice) {\n" +
+                "      case 0:\n" +
+                "        return state.foo();\n" +
+                "      case 1:\n" +
+                "        return state.bar();\n" +
+                "      default:\n" +
+                "        throw new IndexOutOfBoundsException(\"Slice: \" + slice);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  @SuppressWarnings(\"unchecked\")\n" +
+                "  public Foobar withSlice(Foobar state, int slice, Object value) {\n" +
+                "    switch (slice) {\n" +
+                "      case 0:\n" +
+                "        return new FoobarImpl((Integer) value, state.bar());\n" +
+                "      case 1:\n" +
+                "        return new FoobarImpl(state.foo(), (List<String>) value);\n" +
+                "      default:\n" +
+                "        throw new IndexOutOfBoundsException(\"Slice: \" + slice);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Reducer<Integer> fooReducer;\n" +
+                "\n" +
+                "    private Reducer<List<String>> barReducer;\n" +
+                "\n" +
+                "    private Executor initExecutor;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder fooReducer(Reducer<Integer> fooReducer) {\n" +
+                "      this.fooReducer = fooReducer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barReducer(Reducer<List<String>> barReducer) {\n" +
+                "      this.barReducer = barReducer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder initExecutor(Executor initExecutor) {\n" +
+                "      this.initExecutor = initExecutor;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarReducer build() {\n" +
+                "      if (fooReducer == null) {\n" +
+                "        throw new IllegalStateException(\"fooReducer should not be null\");\n" +
+                "      }\n" +
+                "      if (barReducer == null) {\n" +
+                "        throw new IllegalStateException(\"barReducer should not be null\");\n" +
+                "      }\n" +
+                "      if (initExecutor != null) {\n" +
+                "        return new FoobarReducer(PrefetchingReducer.prefetch(fooReducer, initExecutor), PrefetchingReducer.prefetch(barReducer, initExecutor));\n" +
+                "      }\n" +
+                "      return new FoobarReducer(fooReducer, barReducer);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedReducer);
+    }
 }
@@ -0,0 +1,169 @@
+import com.google.auto.value.processor.AutoValueProcessor;
+import com.google.testing.compile.JavaFileObjects;
+import com.yheriatovych.reductor.processor.ReductorAnnotationProcessor;
+import org.junit.Test;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+
+public class LazyCombinedStateTest {
+    @Test
+    public void testLazyCombinedStateGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "@CombinedState(lazy = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    List<String> bar();\n" +
+                "}");
+
+        JavaFileObject generatedImpl = JavaFileObjects.forSourceString("test.FoobarImpl", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.LazyState;\n" +
+                "import java.lang.Integer;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "public final class FoobarImpl implements Foobar {\n" +
+                "  final LazyState<Integer> foo;\n" +
+                "\n" +
+                "  final LazyState<List<String>> bar;\n" +
+                "\n" +
+                "  public FoobarImpl(int foo, List<String> bar) {\n" +
+                "    this(LazyState.of(foo), LazyState.of(bar));\n" +
+                "  }\n" +
+                "\n" +
+                "  FoobarImpl(LazyState<Integer> foo, LazyState<List<String>> bar) {\n" +
+                "    this.foo = foo;\n" +
+                "    this.bar = bar;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public int foo() {\n" +
+                "    return foo.get();\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public List<String> bar() {\n" +
+                "    return bar.get();\n" +
+                "  }\n" +
+                "}");
+
+        JavaFileObject generatedReducer = JavaFileObjects.forSourceString("test.FoobarReducer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.LazyState;\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import java.lang.IllegalStateException;\n" +
+                "import java.lang.Integer;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "public final class FoobarReducer implements Reducer<Foobar> {\n" +
+                "  private final Reducer<Integer> fooReducer;\n" +
+                "\n" +
+                "  private final Reducer<List<String>> barReducer;\n" +
+                "\n" +
+                "  private FoobarReducer(Reducer<Integer> fooReducer, Reducer<List<String>> barReducer) {\n" +
+                "    this.fooReducer = fooReducer;\n" +
+                "    this.barReducer = barReducer;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public Foobar reduce(Foobar state, Action action) {\n" +
+                "    LazyState<Integer> foo = null;\n" +
+                "    LazyState<List<String>> bar = null;\n" +
+                "\n" +
+                "    if (state instanceof FoobarImpl) {\n" +
+                "      FoobarImpl stateImpl = (FoobarImpl) state;\n" +
+                "      foo = stateImpl.foo;\n" +
+                "      bar = stateImpl.bar;\n" +
+                "    } else if (state != null) {\n" +
+                "      foo = LazyState.of(state.foo());\n" +
+                "      bar = LazyState.of(state.bar());\n" +
+                "    }\n" +
+                "\n" +
+                "    LazyState<Integer> fooNext = LazyState.reduce(foo, fooReducer, action);\n" +
+                "    LazyState<List<String>> barNext = LazyState.reduce(bar, barReducer, action);\n" +
+                "\n" +
+                "    //If all values are the same there is no need to create an object\n" +
+                "    if (state != null\n" +
+                "     && foo == fooNext\n" +
+                "     && bar == barNext) {\n" +
+                "      return state;\n" +
+                "    } else {\n" +
+                "      return new FoobarImpl(fooNext, barNext);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Reducer<Integer> fooReducer;\n" +
+                "\n" +
+                "    private Reducer<List<String>> barReducer;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder fooReducer(Reducer<Integer> fooReducer) {\n" +
+                "      this.fooReducer = fooReducer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barReducer(Reducer<List<String>> barReducer) {\n" +
+                "      this.barReducer = barReducer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarReducer build() {\n" +
+                "      if (fooReducer == null) {\n" +
+                "        throw new IllegalStateException(\"fooReducer should not be null\");\n" +
+                "      }\n" +
+                "      if (barReducer == null) {\n" +
+                "        throw new IllegalStateException(\"barReducer should not be null\");\n" +
+                "      }\n" +
+                "      return new FoobarReducer(fooReducer, barReducer);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedImpl, generatedReducer);
+    }
+
+    @Test
+    public void testLazyAutoValueCombinedStateIsNotSupported() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.google.auto.value.AutoValue;\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState(lazy = true)\n" +
+                "@AutoValue\n" +
+                "public abstract class Foobar {\n" +
+                "    public abstract int foo();\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor(), new AutoValueProcessor())
+                .failsToCompile()
+                .withErrorContaining("Lazy @CombinedState is supported only for interfaces")
+                .in(source)
+                .onLine(8);
+    }
+}
@@ -0,0 +1,175 @@
+import com.google.testing.compile.JavaFileObjects;
+import com.yheriatovych.reductor.processor.ReductorAnnotationProcessor;
+import org.junit.Test;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+
+public class WideCombinedStateTest {
+    @Test
+    public void testWideCombinedStateGeneration() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "@CombinedState(wide = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "    List<String> bar();\n" +
+                "}");
+
+        JavaFileObject generatedImpl = JavaFileObjects.forSourceString("test.FoobarImpl", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.StateTrie;\n" +
+                "import java.lang.Integer;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.lang.SuppressWarnings;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "public final class FoobarImpl implements Foobar {\n" +
+                "  private final StateTrie trie;\n" +
+                "\n" +
+                "  public FoobarImpl(int foo, List<String> bar) {\n" +
+                "    this.trie = StateTrie.of(foo, bar);\n" +
+                "  }\n" +
+                "\n" +
+                "  FoobarImpl(StateTrie trie) {\n" +
+                "    this.trie = trie;\n" +
+                "  }\n" +
+                "\n" +
+                "  static StateTrie trieOf(Foobar state) {\n" +
+                "    if (state instanceof FoobarImpl) {\n" +
+                "      return ((FoobarImpl) state).trie;\n" +
+                "    }\n" +
+                "    return StateTrie.of(state.foo(), state.bar());\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  public int foo() {\n" +
+                "    return (Integer) trie.get(0);\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  @SuppressWarnings(\"unchecked\")\n" +
+                "  public List<String> bar() {\n" +
+                "    return (List<String>) trie.get(1);\n" +
+                "  }\n" +
+                "}");
+
+        JavaFileObject generatedReducer = JavaFileObjects.forSourceString("test.FoobarReducer", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.Action;\n" +
+                "import com.yheriatovych.reductor.PrefetchingReducer;\n" +
+                "import com.yheriatovych.reductor.Reducer;\n" +
+                "import com.yheriatovych.reductor.StateTrie;\n" +
+                "import java.lang.IllegalStateException;\n" +
+                "import java.lang.Integer;\n" +
+                "import java.lang.Override;\n" +
+                "import java.lang.String;\n" +
+                "import java.lang.SuppressWarnings;\n" +
+                "import java.util.List;\n" +
+                "import java.util.concurrent.Executor;\n" +
+                "\n" +
+                "public final class FoobarReducer implements Reducer<Foobar> {\n" +
+                "  private final Reducer<Integer> fooReducer;\n" +
+                "\n" +
+                "  private final Reducer<List<String>> barReducer;\n" +
+                "\n" +
+                "  private FoobarReducer(Reducer<Integer> fooReducer, Reducer<List<String>> barReducer) {\n" +
+                "    this.fooReducer = fooReducer;\n" +
+                "    this.barReducer = barReducer;\n" +
+                "  }\n" +
+                "\n" +
+                "  @Override\n" +
+                "  @SuppressWarnings(\"unchecked\")\n" +
+                "  public Foobar reduce(Foobar state, Action action) {\n" +
+                "    StateTrie trie = state == null ? StateTrie.empty(2) : FoobarImpl.trieOf(state);\n" +
+                "    StateTrie.Editor draft = trie.draft();\n" +
+                "    draft.set(0, fooReducer.reduce((Integer) trie.get(0), action));\n" +
+                "    draft.set(1, barReducer.reduce((List<String>) trie.get(1), action));\n" +
+                "    StateTrie next = draft.finish();\n" +
+                "\n" +
+                "    //If all values are the same there is no need to create an object\n" +
+                "    if (state != null && next == trie) {\n" +
+                "      return state;\n" +
+                "    } else {\n" +
+                "      return new FoobarImpl(next);\n" +
+                "    }\n" +
+                "  }\n" +
+                "\n" +
+                "  public static Builder builder() {\n" +
+                "    return new Builder();\n" +
+                "  }\n" +
+                "\n" +
+                "  public static class Builder {\n" +
+                "    private Reducer<Integer> fooReducer;\n" +
+                "\n" +
+                "    private Reducer<List<String>> barReducer;\n" +
+                "\n" +
+                "    private Executor initExecutor;\n" +
+                "\n" +
+                "    private Builder() {\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder fooReducer(Reducer<Integer> fooReducer) {\n" +
+                "      this.fooReducer = fooReducer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder barReducer(Reducer<List<String>> barReducer) {\n" +
+                "      this.barReducer = barReducer;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public Builder initExecutor(Executor initExecutor) {\n" +
+                "      this.initExecutor = initExecutor;\n" +
+                "      return this;\n" +
+                "    }\n" +
+                "\n" +
+                "    public FoobarReducer build() {\n" +
+                "      if (fooReducer == null) {\n" +
+                "        throw new IllegalStateException(\"fooReducer should not be null\");\n" +
+                "      }\n" +
+                "      if (barReducer == null) {\n" +
+                "        throw new IllegalStateException(\"barReducer should not be null\");\n" +
+                "      }\n" +
+                "      if (initExecutor != null) {\n" +
+                "        return new FoobarReducer(PrefetchingReducer.prefetch(fooReducer, initExecutor), PrefetchingReducer.prefetch(barReducer, initExecutor));\n" +
+                "      }\n" +
+                "      return new FoobarReducer(fooReducer, barReducer);\n" +
+                "    }\n" +
+                "  }\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .compilesWithoutWarnings()
+                .and()
+                .generatesSources(generatedImpl, generatedReducer);
+    }
+
+    @Test
+    public void testWideCombinedStateCannotBeLazy() {
+        JavaFileObject source = JavaFileObjects.forSourceString("test.Foobar", "package test;\n" +
+                "\n" +
+                "import com.yheriatovych.reductor.annotations.CombinedState;\n" +
+                "\n" +
+                "@CombinedState(wide = true, lazy = true)\n" +
+                "public interface Foobar {\n" +
+                "    int foo();\n" +
+                "}");
+
+        assertAbout(javaSource()).that(source)
+                .withCompilerOptions("-Xlint:-processing")
+                .processedWith(new ReductorAnnotationProcessor())
+                .failsToCompile()
+                .withErrorContaining("Wide @CombinedState cannot be lazy or interned")
+                .in(source)
+                .onLine(6);
+    }
+}
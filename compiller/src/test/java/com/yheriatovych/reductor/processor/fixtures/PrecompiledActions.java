@@ -0,0 +1,14 @@
+package com.yheriatovych.reductor.processor.fixtures;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.annotations.ActionCreator;
+
+/**
+ * Action creator which is already compiled when tests are run,
+ * used to check that reducers can be validated against action creators from classpath.
+ */
+@ActionCreator
+public interface PrecompiledActions {
+    @ActionCreator.Action("PRECOMPILED")
+    Action precompiled(int foo, String bar);
+}
@@ -12,12 +12,12 @@ import android.widget.*;
 import com.yheriatovych.reductor.Actions;
 import com.yheriatovych.reductor.Cancelable;
 import com.yheriatovych.reductor.Store;
+import com.yheriatovych.reductor.UndoableReducer;
 import com.yheriatovych.reductor.example.model.AppState;
 import com.yheriatovych.reductor.example.model.Note;
 import com.yheriatovych.reductor.example.model.NotesFilter;
 import com.yheriatovych.reductor.example.reductor.filter.FilterActions;
 import com.yheriatovych.reductor.example.reductor.notelist.NotesActions;
-import com.yheriatovych.reductor.example.reductor.utils.UndoableReducer;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -27,6 +27,7 @@ public class MainActivity extends AppCompatActivity {
     private AtomicInteger idGenerator = new AtomicInteger();
     private Cancelable mCancelable;
     private NotesActions notesActions;
+    private AppState shownState;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,11 +42,11 @@ public class MainActivity extends AppCompatActivity {
         RecyclerView recyclerView = (RecyclerView) findViewById(R.id.recyclerview);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
-        final TodoAdapter adapter = new TodoAdapter(store.getState().notes(),
+        final TodoAdapter adapter = new TodoAdapter(store.getState().getFilteredNotes(),
                 note -> store.dispatch(notesActions.toggle(note.id)));
 
         new ItemTouchHelper(new NoteTouchCallback(position -> {
-            Note note = store.getState().notes().get(position);
+            Note note = adapter.getNote(position);
             store.dispatch(notesActions.remove(note.id));
         })).attachToRecyclerView(recyclerView);
 
@@ -54,7 +55,8 @@ public class MainActivity extends AppCompatActivity {
         recyclerView.setAdapter(adapter);
 
         mCancelable = store.forEach(state -> {
-            adapter.setNotes(state.getFilteredNotes());
+            adapter.setNotes(state.getFilteredNotes(), shownState == null ? null : state.getFilteredNotesChanges(shownState));
+            shownState = state;
             spinner.setSelection(state.filter().ordinal());
         });
 
@@ -90,7 +92,7 @@ public class MainActivity extends AppCompatActivity {
         menu.add(R.string.undo)
                 .setIcon(R.drawable.ic_undo_24dp)
                 .setOnMenuItemClickListener(menuItem -> {
-                    store.dispatch(UndoableReducer.pop());
+                    store.dispatch(UndoableReducer.undo());
                     return true;
                 })
                 .setShowAsAction(MenuItem.SHOW_AS_ACTION_ALWAYS);
@@ -0,0 +1,34 @@
+package com.yheriatovych.reductor.example;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.yheriatovych.reductor.collections.EntityMap;
+import com.yheriatovych.reductor.collections.IndexedMap;
+import com.yheriatovych.reductor.collections.IndexedReducer;
+import com.yheriatovych.reductor.example.model.Note;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Reads notes from JSON object keeping their order and rebuilds indexes.
+ */
+class NotesDeserializer implements JsonDeserializer<IndexedMap<Integer, Note>> {
+    private final IndexedReducer<Integer, Note> reducer;
+
+    NotesDeserializer(IndexedReducer<Integer, Note> reducer) {
+        this.reducer = reducer;
+    }
+
+    @Override
+    public IndexedMap<Integer, Note> deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+        EntityMap<Integer, Note> notes = EntityMap.empty();
+        for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+            Note note = context.deserialize(entry.getValue(), Note.class);
+            notes = notes.plus(Integer.valueOf(entry.getKey()), note);
+        }
+        return reducer.index(notes);
+    }
+}
@@ -8,13 +8,16 @@ import com.facebook.stetho.inspector.console.RuntimeReplFactory;
 import com.facebook.stetho.rhino.JsRuntimeReplFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.yheriatovych.reductor.Store;
+import com.yheriatovych.reductor.UndoableReducer;
+import com.yheriatovych.reductor.collections.IndexedMap;
 import com.yheriatovych.reductor.example.model.AppState;
 import com.yheriatovych.reductor.example.model.AppStateReducer;
+import com.yheriatovych.reductor.example.model.Note;
 import com.yheriatovych.reductor.example.reductor.filter.NotesFilterReducer;
 import com.yheriatovych.reductor.example.reductor.notelist.NotesListReducer;
 import com.yheriatovych.reductor.example.reductor.utils.SetStateReducer;
-import com.yheriatovych.reductor.example.reductor.utils.UndoableReducer;
 import org.mozilla.javascript.BaseFunction;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
@@ -25,6 +28,8 @@ public class ReductorApp extends Application {
     public Store<AppState> store;
     Gson gson = new GsonBuilder()
             .registerTypeAdapterFactory(MyAdapterFactory.create())
+            .registerTypeAdapter(new TypeToken<IndexedMap<Integer, Note>>() {
+            }.getType(), new NotesDeserializer(NotesListReducer.create()))
             .create();
 
     @Override
@@ -37,7 +42,7 @@ public class ReductorApp extends Application {
                 .build();
         store = Store.create(
                 new SetStateReducer<>(
-                        new UndoableReducer<>(vanillaReducer)));
+                        UndoableReducer.builder(vanillaReducer).build()));
 
         Stetho.initialize(Stetho.newInitializerBuilder(this)
                 .enableWebKitInspector(() -> new Stetho.DefaultInspectorModulesBuilder(ReductorApp.this)
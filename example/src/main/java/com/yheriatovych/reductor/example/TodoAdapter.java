@@ -6,6 +6,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
+import com.yheriatovych.reductor.diff.ListPatch;
 import com.yheriatovych.reductor.example.model.Note;
 import rx.functions.Action1;
 
@@ -44,10 +45,41 @@ class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.NoteViewHolder> {
         return notes.get(position).id;
     }
 
-    public void setNotes(List<Note> notes) {
+    public Note getNote(int position) {
+        return notes.get(position);
+    }
+
+    /**
+     * @param changes operations turning current notes into new ones, null to find them with {@link DiffUtil}
+     */
+    public void setNotes(List<Note> notes, ListPatch<Note> changes) {
         List<Note> oldNotes = this.notes;
         this.notes = notes;
-        DiffUtil.calculateDiff(new NotesDiffCallback(oldNotes, notes), false).dispatchUpdatesTo(this);
+        if (changes == null) {
+            DiffUtil.calculateDiff(new NotesDiffCallback(oldNotes, notes), false).dispatchUpdatesTo(this);
+            return;
+        }
+        changes.dispatchTo(new ListPatch.Callback<Note>() {
+            @Override
+            public void inserted(int position, Note element) {
+                notifyItemInserted(position);
+            }
+
+            @Override
+            public void removed(int position, Note element) {
+                notifyItemRemoved(position);
+            }
+
+            @Override
+            public void moved(int from, int to, Note element) {
+                notifyItemMoved(from, to);
+            }
+
+            @Override
+            public void changed(int position, Note previous, Note next) {
+                notifyItemChanged(position);
+            }
+        });
     }
 
     static class NoteViewHolder extends RecyclerView.ViewHolder {
@@ -4,15 +4,16 @@ import com.google.auto.value.AutoValue;
 import com.google.gson.Gson;
 import com.google.gson.TypeAdapter;
 import com.yheriatovych.reductor.annotations.CombinedState;
-import com.yheriatovych.reductor.example.Utils;
-import org.pcollections.ConsPStack;
+import com.yheriatovych.reductor.collections.IndexedMap;
+import com.yheriatovych.reductor.diff.ListPatch;
+import com.yheriatovych.reductor.example.reductor.notelist.NotesListReducer;
 
 import java.util.List;
 
 @CombinedState
 @AutoValue
 public abstract class AppState {
-    public abstract List<Note> notes();
+    public abstract IndexedMap<Integer, Note> notes();
 
     public abstract NotesFilter filter();
 
@@ -21,11 +22,32 @@ public abstract class AppState {
     }
 
     public List<Note> getFilteredNotes() {
-        List<Note> notes = this.notes();
-        NotesFilter filter = this.filter();
-        return Utils.filter(ConsPStack.from(notes), note ->
-                filter == NotesFilter.ALL
-                        || filter == NotesFilter.CHECKED && note.checked
-                        || filter == NotesFilter.UNCHECKED && !note.checked);
+        IndexedMap<Integer, Note> notes = this.notes();
+        switch (filter()) {
+            case CHECKED:
+                return notes.index(NotesListReducer.BY_CHECKED).get(true);
+            case UNCHECKED:
+                return notes.index(NotesListReducer.BY_CHECKED).get(false);
+            default:
+                return notes.index(NotesListReducer.ALL).values();
+        }
+    }
+
+    /**
+     * @return operations turning filtered notes of previous state into filtered notes of this state,
+     * null if they cannot be tracked (e.g. filter is changed)
+     */
+    public ListPatch<Note> getFilteredNotesChanges(AppState previous) {
+        if (previous.filter() != filter()) return null;
+        IndexedMap<Integer, Note> notes = this.notes();
+        IndexedMap<Integer, Note> previousNotes = previous.notes();
+        switch (filter()) {
+            case CHECKED:
+                return notes.index(NotesListReducer.BY_CHECKED).changesSince(previousNotes.index(NotesListReducer.BY_CHECKED), true);
+            case UNCHECKED:
+                return notes.index(NotesListReducer.BY_CHECKED).changesSince(previousNotes.index(NotesListReducer.BY_CHECKED), false);
+            default:
+                return notes.index(NotesListReducer.ALL).changesSince(previousNotes.index(NotesListReducer.ALL));
+        }
     }
 }
@@ -1,14 +1,31 @@
 package com.yheriatovych.reductor.example.model;
 
+import com.yheriatovych.reductor.Interner;
+
 public class Note {
+    private static final Interner<Note> NOTES = Interner.weak();
+
     public final int id;
     public final String note;
     public final boolean checked;
+    //cached, as notes are hashed on every intern
+    private final int hashCode;
 
     public Note(int id, String note, boolean checked) {
         this.id = id;
         this.note = note;
         this.checked = checked;
+        int result = id;
+        result = 31 * result + (note != null ? note.hashCode() : 0);
+        result = 31 * result + (checked ? 1 : 0);
+        this.hashCode = result;
+    }
+
+    /**
+     * @return canonical instance of note, so equal notes (e.g. toggled twice) share one instance
+     */
+    public static Note create(int id, String note, boolean checked) {
+        return NOTES.intern(new Note(id, note, checked));
     }
 
     @Override
@@ -23,6 +40,7 @@ public class Note {
 
         Note note1 = (Note) o;
 
+        if (hashCode != note1.hashCode) return false;
         if (id != note1.id) return false;
         if (checked != note1.checked) return false;
         return note != null ? note.equals(note1.note) : note1.note == null;
@@ -31,9 +49,6 @@ public class Note {
 
     @Override
     public int hashCode() {
-        int result = id;
-        result = 31 * result + (note != null ? note.hashCode() : 0);
-        result = 31 * result + (checked ? 1 : 0);
-        return result;
+        return hashCode;
     }
 }
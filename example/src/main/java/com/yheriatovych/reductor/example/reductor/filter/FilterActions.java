@@ -8,6 +8,6 @@ import com.yheriatovych.reductor.example.model.NotesFilter;
 public interface FilterActions {
     String SET_FILTER = "SET_FILTER";
 
-    @ActionCreator.Action(SET_FILTER)
+    @ActionCreator.Action(value = SET_FILTER, compactable = true)
     Action setFilter(NotesFilter filter);
 }
@@ -1,54 +1,29 @@
 package com.yheriatovych.reductor.example.reductor.notelist;
 
-import com.yheriatovych.reductor.Reducer;
-import com.yheriatovych.reductor.annotations.AutoReducer;
-import com.yheriatovych.reductor.annotations.AutoReducer.Action;
+import com.yheriatovych.reductor.collections.FilterIndex;
+import com.yheriatovych.reductor.collections.GroupIndex;
+import com.yheriatovych.reductor.collections.Index;
+import com.yheriatovych.reductor.collections.IndexedReducer;
+import com.yheriatovych.reductor.collections.KeyedReducer;
 import com.yheriatovych.reductor.example.model.Note;
-import org.pcollections.TreePVector;
 
-import java.util.List;
+public final class NotesListReducer {
+    public static final FilterIndex<Integer, Note> ALL = Index.filter(note -> true);
+    public static final GroupIndex<Integer, Note, Boolean> BY_CHECKED = Index.groupBy(note -> note.checked);
 
-@AutoReducer
-public abstract class NotesListReducer implements Reducer<List<Note>> {
-
-    @AutoReducer.InitialState
-    List<Note> initialState() {
-        return TreePVector.empty();
-    }
-
-    @Action(value = NotesActions.ADD_ACTION,
-            from = NotesActions.class,
-            generateActionCreator = false)
-    public List<Note> add(List<Note> state, int id, String content) {
-        return TreePVector.from(state).plus(new Note(id, content, false));
-    }
-
-    @Action(value = NotesActions.TOGGLE,
-            from = NotesActions.class,
-            generateActionCreator = false)
-    public List<Note> toggle(List<Note> notes, int noteId) {
-        for (int i = 0; i < notes.size(); i++) {
-            Note note = notes.get(i);
-            if (note.id == noteId)
-                return TreePVector.from(notes).with(i, new Note(noteId, note.note, !note.checked));
-        }
-        return notes;
-    }
-
-    @Action(value = NotesActions.REMOVE_ITEM,
-            from = NotesActions.class,
-            generateActionCreator = false)
-    public List<Note> remove(List<Note> notes, int id) {
-        for (int i = 0, notesSize = notes.size(); i < notesSize; i++) {
-            Note note = notes.get(i);
-            if (note.id == id) {
-                return TreePVector.from(notes).minus(i);
-            }
-        }
-        return notes;
+    private NotesListReducer() {
     }
 
-    public static NotesListReducer create() {
-        return new NotesListReducerImpl();
+    public static IndexedReducer<Integer, Note> create() {
+        KeyedReducer<Integer, Note> notesReducer = KeyedReducer.<Integer, Note>builder(KeyedReducer.keyAt(0))
+                .add(NotesActions.ADD_ACTION, action -> Note.create((int) action.getValue(0), (String) action.getValue(1), false))
+                .remove(NotesActions.REMOVE_ITEM)
+                .update(NotesActions.TOGGLE)
+                .entityReducer((note, action) -> Note.create(note.id, note.note, !note.checked))
+                .build();
+        return IndexedReducer.builder(notesReducer)
+                .index(ALL)
+                .index(BY_CHECKED)
+                .build();
     }
 }
@@ -0,0 +1,13 @@
+package com.yheriatovych.reductor;
+
+/**
+ * Source of monotonic time, can be replaced in tests to control time.
+ */
+public interface Clock {
+    Clock SYSTEM = System::nanoTime;
+
+    /**
+     * @return current time in nanoseconds, only differences between values are meaningful
+     */
+    long nanoTime();
+}
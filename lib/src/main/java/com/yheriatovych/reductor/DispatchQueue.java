@@ -0,0 +1,531 @@
+package com.yheriatovych.reductor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of actions of store created with {@link Store#createQueued(Reducer, DispatchQueue, Middleware[])}.
+ * <p>
+ * {@link Store#dispatch(Object)} only enqueues action, queued actions are drained on {@code executor}
+ * one at a time through middlewares and reducer. Actions dispatched while draining
+ * (e.g. by middleware) are enqueued too and drained by the same loop.
+ * <p>
+ * Action types can declare {@link Merger}: before being dispatched, adjacent queued actions of such type
+ * are folded into one, e.g. bursts of {@code INCREMENT(1)} into single {@code INCREMENT(n)}
+ * or repeated {@code SET_FILTER} into the last one.
+ * <p>
+ * Actions can be routed by type to separate {@link Lane}s, which are drained in weighted round-robin order:
+ * up to {@code weight} actions of a lane are dispatched before moving to the next non-empty lane,
+ * so a burst of background actions doesn't delay user interaction actions for long.
+ * Action dispatched with {@link #withDeadline(Object, long)} is dropped (or replaced with {@link Fallback})
+ * if it's not dispatched before deadline.
+ * <p>
+ * Usage:
+ * <pre><code>
+ * DispatchQueue queue = DispatchQueue.builder(mainThreadExecutor)
+ *         .merge(INCREMENT, (previous, next) -&gt; Action.create(INCREMENT, (int) previous.getValue(0) + (int) next.getValue(0)))
+ *         .merge(SET_FILTER, DispatchQueue.KEEP_LAST)
+ *         .lane("ui", 8)
+ *         .lane("sync", 1)
+ *         .route(SYNC_ITEM, "sync")
+ *         .build();
+ * Store&lt;AppState&gt; store = Store.createQueued(reducer, queue);
+ * store.dispatch(DispatchQueue.withDeadline(syncItem, 5000));
+ * </code></pre>
+ */
+public final class DispatchQueue {
+    /**
+     * Lane of actions whose type is not routed to another lane.
+     */
+    public static final String DEFAULT_LANE = "default";
+
+    /**
+     * Merger which replaces action with the next one of the same type.
+     */
+    public static final Merger KEEP_LAST = (previous, next) -> next;
+
+    private final Executor executor;
+    private final Clock clock;
+    private final Map<String, Merger> mergers;
+    private final Lane[] lanes;
+    private final Map<String, Lane> lanesByName;
+    private final Map<String, Lane> routes;
+    private final Lane defaultLane;
+    private final Fallback fallback;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final Runnable drain = this::drain;
+    private volatile Middleware.NextDispatcher dispatcher;
+    //weighted round-robin position, changed only by draining thread
+    private int currentLane;
+    private int credit;
+
+    private DispatchQueue(Builder builder) {
+        this.executor = builder.executor;
+        this.clock = builder.clock;
+        this.mergers = new HashMap<>(builder.mergers);
+        this.fallback = builder.fallback;
+
+        Map<String, Integer> weights = new LinkedHashMap<>(builder.lanes);
+        if (!weights.containsKey(DEFAULT_LANE)) weights.put(DEFAULT_LANE, 1);
+        lanes = new Lane[weights.size()];
+        lanesByName = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            Lane lane = new Lane(entry.getKey(), entry.getValue());
+            lanes[i++] = lane;
+            lanesByName.put(lane.name, lane);
+        }
+        defaultLane = lanesByName.get(DEFAULT_LANE);
+        routes = new HashMap<>();
+        for (Map.Entry<String, String> route : builder.routes.entrySet()) {
+            Lane lane = lanesByName.get(route.getValue());
+            if (lane == null) {
+                throw new IllegalStateException(String.format("Action type %s is routed to unknown lane %s", route.getKey(), route.getValue()));
+            }
+            routes.put(route.getKey(), lane);
+        }
+        credit = lanes[0].weight;
+    }
+
+    /**
+     * @param executor executor to drain actions on, e.g. main thread executor
+     */
+    public static Builder builder(Executor executor) {
+        return new Builder(executor);
+    }
+
+    /**
+     * Wrap action to be dispatched to queued store with deadline.
+     * If action is still queued after deadline, it's dropped or replaced with result of {@link Fallback}.
+     * <p>
+     * Only stores created with {@link Store#createQueued(Reducer, DispatchQueue, Middleware[])} accept wrapped actions.
+     *
+     * @param action        action to dispatch
+     * @param timeoutMillis time since dispatch after which action expires
+     * @return object to pass to {@link Store#dispatch(Object)}
+     */
+    public static Object withDeadline(Object action, long timeoutMillis) {
+        return new Deadline(action, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    void bind(Middleware.NextDispatcher dispatcher) {
+        if (this.dispatcher != null) {
+            throw new IllegalStateException("DispatchQueue is already used by another store");
+        }
+        this.dispatcher = dispatcher;
+    }
+
+    void enqueue(Object action) {
+        long now = clock.nanoTime();
+        Entry entry;
+        if (action instanceof Deadline) {
+            Deadline deadline = (Deadline) action;
+            entry = new Entry(laneOf(deadline.action), deadline.action, now, true, now + deadline.timeoutNanos);
+        } else {
+            entry = new Entry(laneOf(action), action, now, false, 0);
+        }
+        entry.lane.entries.add(entry);
+        entry.lane.depth.incrementAndGet();
+        entry.lane.enqueued.incrementAndGet();
+        enqueued.incrementAndGet();
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            } catch (RuntimeException | Error e) {
+                //e.g. executor is shut down, next dispatch should try to schedule drain again
+                draining.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private Lane laneOf(Object action) {
+        if (!(action instanceof Action)) return defaultLane;
+        Lane lane = routes.get(((Action) action).type);
+        return lane != null ? lane : defaultLane;
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Entry entry = poll();
+                if (entry == null) {
+                    draining.set(false);
+                    //action could be enqueued after poll, but before draining flag was reset
+                    if (isEmpty() || !draining.compareAndSet(false, true)) return;
+                    continue;
+                }
+                Lane lane = entry.lane;
+                long now = clock.nanoTime();
+                lane.recordWait(now - entry.enqueuedNanos);
+                if (entry.isExpired(now)) {
+                    lane.expired.incrementAndGet();
+                    Object replacement = fallback != null ? fallback.onExpired(entry.action) : null;
+                    if (replacement != null) dispatcher.call(replacement);
+                    continue;
+                }
+                lane.dispatched.incrementAndGet();
+                dispatched.incrementAndGet();
+                dispatcher.call(coalesce(entry, now));
+            }
+        } catch (RuntimeException | Error e) {
+            draining.set(false);
+            if (!isEmpty()) {
+                try {
+                    scheduleDrain();
+                } catch (RuntimeException | Error rejected) {
+                    //queued actions are drained on next dispatch, failure of the action is reported instead
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Take next entry in weighted round-robin order.
+     */
+    private Entry poll() {
+        for (int i = 0; i <= lanes.length; i++) {
+            Lane lane = lanes[currentLane];
+            if (credit > 0) {
+                Entry entry = lane.entries.poll();
+                if (entry != null) {
+                    lane.depth.decrementAndGet();
+                    credit--;
+                    return entry;
+                }
+            }
+            currentLane = (currentLane + 1) % lanes.length;
+            credit = lanes[currentLane].weight;
+        }
+        return null;
+    }
+
+    private boolean isEmpty() {
+        for (Lane lane : lanes) {
+            if (lane.depth.get() > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fold following queued actions of the same type and lane into given one while they can be merged.
+     * Coalescing stops at expired action, so it's dropped (or replaced with {@link Fallback}) by drain loop.
+     */
+    private Object coalesce(Entry entry, long now) {
+        if (!(entry.action instanceof Action)) return entry.action;
+        Action result = (Action) entry.action;
+        Merger merger = mergers.get(result.type);
+        if (merger == null) return result;
+
+        Lane lane = entry.lane;
+        Entry next;
+        //only draining thread removes actions, so peeked entry is the one polled
+        while ((next = lane.entries.peek()) != null
+                && next.action instanceof Action
+                && ((Action) next.action).type.equals(result.type)
+                && !next.isExpired(now)) {
+            Action merged = merger.merge(result, (Action) next.action);
+            if (merged == null) break;
+            lane.entries.poll();
+            lane.depth.decrementAndGet();
+            lane.recordWait(now - next.enqueuedNanos);
+            lane.coalesced.incrementAndGet();
+            coalesced.incrementAndGet();
+            result = merged;
+        }
+        return result;
+    }
+
+    /**
+     * @return number of actions waiting in all lanes
+     */
+    public int size() {
+        int size = 0;
+        for (Lane lane : lanes) {
+            size += lane.depth();
+        }
+        return size;
+    }
+
+    /**
+     * @return number of dispatched actions put into the queue
+     */
+    public long enqueued() {
+        return enqueued.get();
+    }
+
+    /**
+     * @return number of actions passed to middlewares and reducer, coalesced action is counted once
+     */
+    public long dispatched() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return number of queued actions which were folded into preceding actions
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return lane with given name
+     * @throws IllegalArgumentException if there is no such lane
+     */
+    public Lane lane(String name) {
+        Lane lane = lanesByName.get(name);
+        if (lane == null) throw new IllegalArgumentException("Unknown lane " + name);
+        return lane;
+    }
+
+    /**
+     * @return all lanes in drain order
+     */
+    public List<Lane> lanes() {
+        List<Lane> list = new ArrayList<>(lanes.length);
+        Collections.addAll(list, lanes);
+        return list;
+    }
+
+    /**
+     * Separate queue of actions with its share of draining, exposes queue depth and wait time.
+     */
+    public static final class Lane {
+        private final String name;
+        private final int weight;
+        private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicLong enqueued = new AtomicLong();
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong expired = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private volatile long maxWaitNanos;
+
+        private Lane(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int weight() {
+            return weight;
+        }
+
+        /**
+         * @return number of actions waiting in the lane
+         */
+        public int depth() {
+            return depth.get();
+        }
+
+        public long enqueued() {
+            return enqueued.get();
+        }
+
+        /**
+         * @return number of actions passed to middlewares and reducer, coalesced action is counted once
+         */
+        public long dispatched() {
+            return dispatched.get();
+        }
+
+        /**
+         * @return number of actions which expired in the lane
+         */
+        public long expired() {
+            return expired.get();
+        }
+
+        /**
+         * @return number of actions of the lane which were folded into preceding actions
+         */
+        public long coalesced() {
+            return coalesced.get();
+        }
+
+        /**
+         * @return average time between enqueue and dispatch (coalescing or expiration) of actions
+         */
+        public long averageWaitNanos() {
+            long taken = dispatched.get() + coalesced.get() + expired.get();
+            return taken == 0 ? 0 : waitNanos.get() / taken;
+        }
+
+        public long maxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        //called only by draining thread
+        private void recordWait(long wait) {
+            waitNanos.addAndGet(wait);
+            if (wait > maxWaitNanos) maxWaitNanos = wait;
+        }
+
+        @Override
+        public String toString() {
+            return "Lane{" +
+                    "name='" + name + '\'' +
+                    ", weight=" + weight +
+                    ", depth=" + depth() +
+                    ", dispatched=" + dispatched() +
+                    ", coalesced=" + coalesced() +
+                    ", expired=" + expired() +
+                    ", averageWaitNanos=" + averageWaitNanos() +
+                    ", maxWaitNanos=" + maxWaitNanos +
+                    '}';
+        }
+    }
+
+    private static final class Entry {
+        final Lane lane;
+        final Object action;
+        final long enqueuedNanos;
+        final boolean hasDeadline;
+        final long deadlineNanos;
+
+        Entry(Lane lane, Object action, long enqueuedNanos, boolean hasDeadline, long deadlineNanos) {
+            this.lane = lane;
+            this.action = action;
+            this.enqueuedNanos = enqueuedNanos;
+            this.hasDeadline = hasDeadline;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        boolean isExpired(long now) {
+            return hasDeadline && now - deadlineNanos > 0;
+        }
+    }
+
+    private static final class Deadline {
+        final Object action;
+        final long timeoutNanos;
+
+        Deadline(Object action, long timeoutNanos) {
+            this.action = action;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Deadline{" +
+                    "action=" + action +
+                    ", timeoutNanos=" + timeoutNanos +
+                    '}';
+        }
+    }
+
+    /**
+     * Merge function of action type, see {@link Builder#merge(String, Merger)}.
+     */
+    public interface Merger {
+        /**
+         * @param previous queued action
+         * @param next     action of the same type queued right after previous
+         * @return single action equivalent to dispatching both actions in order, null if actions cannot be merged
+         */
+        Action merge(Action previous, Action next);
+    }
+
+    /**
+     * Handler of actions which expired in the queue, see {@link #withDeadline(Object, long)}.
+     */
+    public interface Fallback {
+        /**
+         * Called on draining thread.
+         *
+         * @param action expired action
+         * @return action to dispatch instead (without queueing), null to drop expired action
+         */
+        Object onExpired(Object action);
+    }
+
+    public static final class Builder {
+        private final Executor executor;
+        private final Map<String, Merger> mergers = new HashMap<>();
+        private final Map<String, Integer> lanes = new LinkedHashMap<>();
+        private final Map<String, String> routes = new HashMap<>();
+        private Clock clock = Clock.SYSTEM;
+        private Fallback fallback;
+
+        private Builder(Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * @param actionType type of actions to merge
+         * @param merger     merge function, should be pure
+         */
+        public Builder merge(String actionType, Merger merger) {
+            mergers.put(actionType, merger);
+            return this;
+        }
+
+        /**
+         * Declare lane, lanes are drained in order of declaration.
+         * {@link #DEFAULT_LANE} with weight 1 is added after declared lanes unless it's declared explicitly.
+         *
+         * @param name   name of the lane
+         * @param weight max number of actions dispatched from the lane before moving to the next lane
+         */
+        public Builder lane(String name, int weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight should be positive");
+            }
+            lanes.put(name, weight);
+            return this;
+        }
+
+        /**
+         * @param actionType type of actions to put into the lane
+         * @param lane       name of declared lane
+         */
+        public Builder route(String actionType, String lane) {
+            routes.put(actionType, lane);
+            return this;
+        }
+
+        /**
+         * @param fallback handler of expired actions (expired actions are dropped by default)
+         */
+        public Builder fallback(Fallback fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        /**
+         * @param clock clock to measure wait time and deadlines with ({@link Clock#SYSTEM} by default)
+         */
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public DispatchQueue build() {
+            if (executor == null) throw new IllegalStateException("executor is not set");
+            return new DispatchQueue(this);
+        }
+    }
+}
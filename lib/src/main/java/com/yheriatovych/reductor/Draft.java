@@ -0,0 +1,18 @@
+package com.yheriatovych.reductor;
+
+/**
+ * Mutable copy-on-write view of immutable state, see {@link Draftable}.
+ * <p>
+ * Draft copies parts of the state on the first write to them and then mutates the copies in place,
+ * so a batch of updates allocates once per touched part and untouched parts are shared with the original state.
+ *
+ * @param <State> type of immutable state
+ */
+public interface Draft<State> {
+    /**
+     * Produce immutable state with all changes applied. Draft cannot be used afterwards.
+     *
+     * @return new state, or the original state instance if draft was not changed
+     */
+    State finish();
+}
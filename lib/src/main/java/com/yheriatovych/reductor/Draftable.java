@@ -0,0 +1,17 @@
+package com.yheriatovych.reductor;
+
+/**
+ * Immutable state which can be updated through mutable {@link Draft}.
+ * <p>
+ * {@link com.yheriatovych.reductor.annotations.AutoReducer} handler methods can accept draft of such state
+ * instead of the state itself, see {@link com.yheriatovych.reductor.annotations.AutoReducer.Action}.
+ *
+ * @param <State> type of immutable state
+ * @param <D>     type of draft
+ */
+public interface Draftable<State, D extends Draft<State>> {
+    /**
+     * @return new draft initialized with this state
+     */
+    D draft();
+}
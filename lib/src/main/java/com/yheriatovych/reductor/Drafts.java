@@ -0,0 +1,32 @@
+package com.yheriatovych.reductor;
+
+/**
+ * Helpers to update {@link Draftable} states in mutable style:
+ *
+ * <pre>{@code
+ * PersistentVector<Note> next = Drafts.produce(notes, draft -> {
+ *     draft.set(0, first);
+ *     draft.add(note);
+ * });
+ * }</pre>
+ */
+public final class Drafts {
+    private Drafts() {
+    }
+
+    /**
+     * Mutation applied to draft.
+     */
+    public interface Recipe<D> {
+        void apply(D draft);
+    }
+
+    /**
+     * @return state with all changes of recipe applied, the same state instance if recipe changes nothing
+     */
+    public static <S, D extends Draft<S>> S produce(Draftable<S, D> state, Recipe<? super D> recipe) {
+        D draft = state.draft();
+        recipe.apply(draft);
+        return draft.finish();
+    }
+}
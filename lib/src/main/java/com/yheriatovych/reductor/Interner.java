@@ -0,0 +1,151 @@
+package com.yheriatovych.reductor;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Concurrent hash-consing table of immutable values.
+ * <p>
+ * {@link #intern(Object)} returns canonical instance equal to provided value,
+ * so structurally equal values share one instance and can be compared by reference.
+ * Canonical instances are weakly referenced and are removed from the table when they are not used anymore.
+ * <p>
+ * Interned values should be immutable and have cheap {@code hashCode}
+ * (e.g. computed once in constructor), as it's called on every {@link #intern(Object)} call.
+ * <p>
+ * Generated implementations of {@link com.yheriatovych.reductor.annotations.CombinedState#interned()} states
+ * are interned on construction. User value types can route construction through own interner:
+ * <pre><code>
+ * private static final Interner&lt;Note&gt; NOTES = Interner.weak();
+ *
+ * public static Note create(int id, String text) {
+ *     return NOTES.intern(new Note(id, text));
+ * }
+ * </code></pre>
+ *
+ * @param <T> type of values
+ */
+public final class Interner<T> {
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Segment<T>[] segments;
+
+    @SuppressWarnings("unchecked")
+    private Interner() {
+        segments = (Segment<T>[]) new Segment<?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * @return new interner which keeps only values referenced outside of it
+     */
+    public static <T> Interner<T> weak() {
+        return new Interner<>();
+    }
+
+    /**
+     * @param value value to intern, should not be null
+     * @return canonical instance equal to value, value itself if there is no such instance yet
+     */
+    public T intern(T value) {
+        if (value == null) throw new NullPointerException("value should not be null");
+        int hash = spread(value.hashCode());
+        return segments[hash & (SEGMENTS - 1)].intern(value, hash);
+    }
+
+    /**
+     * @return approximate number of canonical instances
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        return hash * 0x45d9f3b;
+    }
+
+    private static final class Entry<T> extends WeakReference<T> {
+        final int hash;
+        Entry<T> next;
+
+        Entry(T value, int hash, Entry<T> next, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    private static final class Segment<T> {
+        private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+        //guarded by this
+        private Entry<T>[] table = newTable(INITIAL_CAPACITY);
+        private int count;
+
+        @SuppressWarnings("unchecked")
+        private static <T> Entry<T>[] newTable(int capacity) {
+            return (Entry<T>[]) new Entry<?>[capacity];
+        }
+
+        synchronized T intern(T value, int hash) {
+            expunge();
+            //the lowest bits choose segment, so buckets are indexed by the highest ones
+            int index = (hash >>> 4) & (table.length - 1);
+            for (Entry<T> entry = table[index]; entry != null; entry = entry.next) {
+                if (entry.hash != hash) continue;
+                T candidate = entry.get();
+                if (candidate != null && (candidate == value || candidate.equals(value))) {
+                    return candidate;
+                }
+            }
+            table[index] = new Entry<>(value, hash, table[index], queue);
+            if (++count > table.length * 3 / 4) resize();
+            return value;
+        }
+
+        synchronized int size() {
+            expunge();
+            return count;
+        }
+
+        private void expunge() {
+            Object reference;
+            while ((reference = queue.poll()) != null) {
+                @SuppressWarnings("unchecked")
+                Entry<T> cleared = (Entry<T>) reference;
+                int index = (cleared.hash >>> 4) & (table.length - 1);
+                Entry<T> previous = null;
+                for (Entry<T> entry = table[index]; entry != null; previous = entry, entry = entry.next) {
+                    if (entry == cleared) {
+                        if (previous == null) table[index] = entry.next;
+                        else previous.next = entry.next;
+                        count--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void resize() {
+            Entry<T>[] newTable = newTable(table.length * 2);
+            for (Entry<T> head : table) {
+                Entry<T> entry = head;
+                while (entry != null) {
+                    Entry<T> next = entry.next;
+                    int index = (entry.hash >>> 4) & (newTable.length - 1);
+                    entry.next = newTable[index];
+                    newTable[index] = entry;
+                    entry = next;
+                }
+            }
+            table = newTable;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.yheriatovych.reductor;
+
+/**
+ * Holder of sub-state which may not be initialized yet.
+ * <p>
+ * Used by lazy {@link com.yheriatovych.reductor.annotations.CombinedState} implementations.
+ * Not yet initialized holder keeps the {@link Reducer} of sub-state and populates initial state
+ * (by reducing {@code null} with {@link Store#INIT_ACTION}) only when the value is accessed with {@link #get()}
+ * or when action which can change sub-state is dispatched.
+ *
+ * @param <T> type of sub-state
+ */
+public final class LazyState<T> {
+    private static final Action INIT = Action.create(Store.INIT_ACTION);
+    private static final LazyState<Object> DEFERRED = new LazyState<>(null, false, null);
+
+    private Reducer<T> initReducer;
+    private volatile boolean initialized;
+    private T value;
+
+    private LazyState(Reducer<T> initReducer, boolean initialized, T value) {
+        this.initReducer = initReducer;
+        this.value = value;
+        //volatile write last, so value is visible to readers which see holder as initialized
+        this.initialized = initialized;
+    }
+
+    /**
+     * @return holder of already known value
+     */
+    public static <T> LazyState<T> of(T value) {
+        return new LazyState<>(null, true, value);
+    }
+
+    /**
+     * @return holder which will populate initial state with given reducer on first access
+     */
+    public static <T> LazyState<T> uninitialized(Reducer<T> reducer) {
+        if (reducer == null) throw new NullPointerException("reducer should not be null");
+        return new LazyState<>(reducer, false, null);
+    }
+
+    /**
+     * @return holder of sub-state which was not initialized when state was encoded.
+     * Its reducer is not known, so it is replaced with holder of {@link #uninitialized(Reducer)} on next reduce
+     * (e.g. with {@link Store#INIT_ACTION} when {@link Store} is created)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> LazyState<T> deferred() {
+        return (LazyState<T>) DEFERRED;
+    }
+
+    /**
+     * Reduce sub-state held by {@code state} with given reducer.
+     * <p>
+     * Initialization is deferred (and the same holder is returned) if sub-state is not initialized yet and
+     * action is either {@link Store#INIT_ACTION} or is not handled by {@link RoutedReducer}.
+     * Otherwise sub-state is initialized and reduced as usual.
+     *
+     * @param state   holder of current sub-state, {@code null} or {@link #deferred()} means initial state is not populated yet
+     * @param reducer reducer of sub-state
+     * @param action  action to reduce
+     * @return holder of reduced state, the same instance is returned if sub-state is not changed
+     */
+    public static <T> LazyState<T> reduce(LazyState<T> state, Reducer<T> reducer, Action action) {
+        if (state == null || state == DEFERRED) {
+            state = uninitialized(reducer);
+        }
+        if (!state.isInitialized() && !affects(reducer, action)) {
+            return state;
+        }
+
+        T value = state.get();
+        T next = reducer.reduce(value, action);
+        return next == value ? state : of(next);
+    }
+
+    private static boolean affects(Reducer<?> reducer, Action action) {
+        if (Store.INIT_ACTION.equals(action.type)) return false;
+        return !(reducer instanceof RoutedReducer) || ((RoutedReducer<?>) reducer).handles(action.type);
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * @return sub-state, populating initial state if necessary
+     */
+    public T get() {
+        if (this == DEFERRED) {
+            throw new IllegalStateException("Deferred sub-state should be reduced before access");
+        }
+        if (!initialized) {
+            synchronized (this) {
+                if (!initialized) {
+                    value = initReducer.reduce(null, INIT);
+                    initReducer = null;
+                    initialized = true;
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return initialized
+                ? "LazyState{" + value + "}"
+                : "LazyState{uninitialized}";
+    }
+}
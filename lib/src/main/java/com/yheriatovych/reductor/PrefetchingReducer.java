@@ -0,0 +1,106 @@
+package com.yheriatovych.reductor;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * {@link Reducer} decorator which starts to compute initial state of wrapped reducer on provided {@link Executor}
+ * as soon as it's created.
+ * <p>
+ * If the first reduced action is {@link Store#INIT_ACTION} with {@code null} state, prefetched initial state is returned
+ * (waiting for it if necessary). Otherwise (e.g. store is created with non-null initial state) prefetching is cancelled.
+ * All other calls are delegated to wrapped reducer as is.
+ * <p>
+ * Used by generated {@link com.yheriatovych.reductor.annotations.CombinedState} reducers
+ * to initialize independent sub-states concurrently, so initialization takes as long as the slowest sub-state.
+ * If initial state computation is not started by executor yet, it's computed on the calling thread
+ * (so nested reducers sharing the same bounded executor cannot deadlock).
+ * If wrapped reducer is {@link RoutedReducer}, returned decorator is {@link RoutedReducer} too,
+ * so routing of actions to sub-states (e.g. slices of sliced store) is not changed by prefetching.
+ *
+ * @param <State> type of state
+ */
+public class PrefetchingReducer<State> implements Reducer<State> {
+    private final Reducer<State> reducer;
+    private volatile FutureTask<State> initialState;
+
+    private PrefetchingReducer(final Reducer<State> reducer, Executor executor) {
+        this.reducer = reducer;
+        this.initialState = new FutureTask<>(() -> reducer.reduce(null, Action.create(Store.INIT_ACTION)));
+        executor.execute(initialState);
+    }
+
+    /**
+     * Wrap reducer and start computing its initial state on executor.
+     *
+     * @param reducer  reducer to wrap, should be pure as it's called from executor thread
+     * @param executor executor to compute initial state on
+     * @return reducer which returns prefetched initial state, {@link RoutedReducer} if wrapped reducer is routed
+     */
+    public static <S> PrefetchingReducer<S> prefetch(Reducer<S> reducer, Executor executor) {
+        if (reducer == null) throw new NullPointerException("reducer should not be null");
+        if (executor == null) throw new NullPointerException("executor should not be null");
+        if (reducer instanceof RoutedReducer) {
+            return new Routed<>((RoutedReducer<S>) reducer, executor);
+        }
+        return new PrefetchingReducer<>(reducer, executor);
+    }
+
+    @Override
+    public final State reduce(State state, Action action) {
+        FutureTask<State> task = initialState != null ? takeInitialState() : null;
+        if (task != null) {
+            if (state == null && Store.INIT_ACTION.equals(action.type)) {
+                return await(task);
+            }
+            //prefetched state is not needed, don't keep it referenced (but don't interrupt user code computing it)
+            task.cancel(false);
+        }
+        return reducer.reduce(state, action);
+    }
+
+    private synchronized FutureTask<State> takeInitialState() {
+        FutureTask<State> task = initialState;
+        initialState = null;
+        return task;
+    }
+
+    private static <S> S await(FutureTask<S> task) {
+        //no-op if task is already running or completed
+        task.run();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException("Failed to populate initial state", cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Routed<State> extends PrefetchingReducer<State> implements RoutedReducer<State> {
+        private final RoutedReducer<State> reducer;
+
+        Routed(RoutedReducer<State> reducer, Executor executor) {
+            super(reducer, executor);
+            this.reducer = reducer;
+        }
+
+        @Override
+        public boolean handles(String actionType) {
+            return reducer.handles(actionType);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.yheriatovych.reductor;
+
+/**
+ * {@link Reducer} which can tell in advance whether action of given type may change the state.
+ * <p>
+ * Reducers generated for {@link com.yheriatovych.reductor.annotations.AutoReducer} implement this interface.
+ * It's used by lazy {@link com.yheriatovych.reductor.annotations.CombinedState} reducers
+ * to skip initialization of sub-states which are not affected by dispatched action.
+ */
+public interface RoutedReducer<State> extends Reducer<State> {
+    /**
+     * @param actionType {@link Action#type} of action to check
+     * @return false if action of given type will always be ignored by this reducer, true otherwise
+     */
+    boolean handles(String actionType);
+}
@@ -0,0 +1,28 @@
+package com.yheriatovych.reductor;
+
+/**
+ * Routing of actions to slices of {@link SlicedReducer} based on {@link RoutedReducer} sub-reducers.
+ */
+public final class SliceRouter {
+    private SliceRouter() {
+    }
+
+    /**
+     * @param actionType    {@link Action#type} of dispatched action
+     * @param sliceReducers sub-reducers in order of slices
+     * @return index of the only sub-reducer which may handle action, {@link SlicedReducer#UNKNOWN_SLICE}
+     * if action may be handled by multiple sub-reducers or by none of them.
+     * Sub-reducers which are not {@link RoutedReducer} may handle any action
+     */
+    public static int route(String actionType, Reducer<?>... sliceReducers) {
+        int slice = SlicedReducer.UNKNOWN_SLICE;
+        for (int i = 0; i < sliceReducers.length; i++) {
+            Reducer<?> reducer = sliceReducers[i];
+            if (!(reducer instanceof RoutedReducer) || ((RoutedReducer<?>) reducer).handles(actionType)) {
+                if (slice != SlicedReducer.UNKNOWN_SLICE) return SlicedReducer.UNKNOWN_SLICE;
+                slice = i;
+            }
+        }
+        return slice;
+    }
+}
@@ -0,0 +1,38 @@
+package com.yheriatovych.reductor;
+
+/**
+ * {@link Reducer} of state which consists of independent slices, each reduced by its own sub-reducer.
+ * <p>
+ * Reducers generated for {@link com.yheriatovych.reductor.annotations.CombinedState} with {@code sliced = true}
+ * implement this interface, slices are properties of combined state in order of accessors.
+ * It's used by {@link Store#createSliced(SlicedReducer, Middleware[])} to reduce actions
+ * which change different slices concurrently.
+ */
+public interface SlicedReducer<State> extends Reducer<State> {
+    /**
+     * Returned by {@link #sliceOf(String)} when action can change more than one slice or routing of action is unknown.
+     */
+    int UNKNOWN_SLICE = -1;
+
+    int sliceCount();
+
+    /**
+     * @param actionType {@link Action#type} of action to check
+     * @return index of the only slice which can be changed by action of given type, {@link #UNKNOWN_SLICE} otherwise
+     */
+    int sliceOf(String actionType);
+
+    Object getSlice(State state, int slice);
+
+    /**
+     * Reduce single slice, result of {@code getSlice(state, slice)} should be passed as value.
+     *
+     * @return next value of the slice, the same value if action doesn't change it
+     */
+    Object reduceSlice(int slice, Object value, Action action);
+
+    /**
+     * @return state with slice replaced by value
+     */
+    State withSlice(State state, int slice, Object value);
+}
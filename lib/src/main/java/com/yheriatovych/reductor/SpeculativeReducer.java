@@ -0,0 +1,266 @@
+package com.yheriatovych.reductor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reduces batches of actions (e.g. replayed from journal) with {@link SlicedReducer}, reducing slices in parallel.
+ * <p>
+ * Actions routed to a single slice (see {@link SlicedReducer#sliceOf(String)}) are reduced on {@code executor},
+ * one task per slice, speculating that actions with unknown routing ("barriers") do not change the slice.
+ * Then barriers are reduced in order on calling thread with the whole state, assembled from slice values
+ * speculated up to the barrier. If barrier changes a slice, speculation of this slice conflicts
+ * and its actions after the barrier are re-executed sequentially on calling thread.
+ * <p>
+ * Result is the same as reducing actions one by one, provided reducers are pure.
+ * Slice values are compared with {@code equals} to detect conflicts.
+ * {@link Stats} show the conflict rate, so it can be seen whether speculation pays off for given workload.
+ *
+ * @param <State> type of state
+ */
+public final class SpeculativeReducer<State> {
+    private final SlicedReducer<State> reducer;
+    private final Executor executor;
+    private final Stats stats;
+
+    public SpeculativeReducer(SlicedReducer<State> reducer, Executor executor) {
+        this(reducer, executor, new Stats());
+    }
+
+    /**
+     * @param stats counters to update, can be shared by multiple reducers
+     */
+    public SpeculativeReducer(SlicedReducer<State> reducer, Executor executor, Stats stats) {
+        this.reducer = reducer;
+        this.executor = executor;
+        this.stats = stats;
+    }
+
+    public Stats stats() {
+        return stats;
+    }
+
+    /**
+     * @return state after all actions are reduced in order
+     */
+    public State reduce(State state, Action[] actions) {
+        stats.batches.incrementAndGet();
+        stats.actions.addAndGet(actions.length);
+
+        int sliceCount = reducer.sliceCount();
+        int[] routes = new int[actions.length];
+        int[] sliceActions = new int[sliceCount];
+        int barrierCount = 0;
+        for (int i = 0; i < actions.length; i++) {
+            int slice = reducer.sliceOf(actions[i].type);
+            routes[i] = slice;
+            if (slice == SlicedReducer.UNKNOWN_SLICE) {
+                barrierCount++;
+            } else {
+                sliceActions[slice]++;
+            }
+        }
+
+        Lane[] lanes = new Lane[sliceCount];
+        int laneCount = 0;
+        if (state != null) {
+            for (int slice = 0; slice < sliceCount; slice++) {
+                if (sliceActions[slice] == 0) continue;
+                lanes[slice] = new Lane(slice, reducer.getSlice(state, slice), barrierCount);
+                laneCount++;
+            }
+        }
+        //nothing to reduce in parallel
+        if (laneCount < 2) {
+            for (Action action : actions) {
+                state = reducer.reduce(state, action);
+            }
+            return state;
+        }
+
+        speculate(lanes, laneCount, actions, routes);
+        for (Lane lane : lanes) {
+            if (lane != null) stats.speculatedActions.addAndGet(sliceActions[lane.slice]);
+        }
+
+        int barrier = 0;
+        for (int i = 0; i < actions.length; i++) {
+            if (routes[i] != SlicedReducer.UNKNOWN_SLICE) continue;
+
+            for (Lane lane : lanes) {
+                if (lane == null) continue;
+                Object value = lane.conflicted
+                        ? reexecute(lane, actions, routes, i)
+                        : lane.snapshots[barrier];
+                state = withSlice(state, lane.slice, value);
+            }
+            State next = reducer.reduce(state, actions[i]);
+            for (Lane lane : lanes) {
+                if (lane == null) continue;
+                Object value = reducer.getSlice(next, lane.slice);
+                if (!lane.conflicted && !same(value, reducer.getSlice(state, lane.slice))) {
+                    lane.conflicted = true;
+                    stats.conflicts.incrementAndGet();
+                }
+                if (lane.conflicted) {
+                    lane.value = value;
+                    lane.cursor = i + 1;
+                }
+            }
+            state = next;
+            barrier++;
+        }
+
+        for (Lane lane : lanes) {
+            if (lane == null) continue;
+            Object value = lane.conflicted
+                    ? reexecute(lane, actions, routes, actions.length)
+                    : lane.value;
+            state = withSlice(state, lane.slice, value);
+        }
+        return state;
+    }
+
+    private void speculate(Lane[] lanes, int laneCount, final Action[] actions, final int[] routes) {
+        final CountDownLatch done = new CountDownLatch(laneCount);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (final Lane lane : lanes) {
+            if (lane == null) continue;
+            executor.execute(() -> {
+                try {
+                    lane.speculate(reducer, actions, routes);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+    }
+
+    /**
+     * Sequentially reduce actions of conflicted lane from its cursor up to given position.
+     */
+    private Object reexecute(Lane lane, Action[] actions, int[] routes, int upTo) {
+        for (int i = lane.cursor; i < upTo; i++) {
+            if (routes[i] != lane.slice) continue;
+            lane.value = reducer.reduceSlice(lane.slice, lane.value, actions[i]);
+            stats.reexecutedActions.incrementAndGet();
+        }
+        lane.cursor = upTo;
+        return lane.value;
+    }
+
+    private State withSlice(State state, int slice, Object value) {
+        return same(value, reducer.getSlice(state, slice))
+                ? state
+                : reducer.withSlice(state, slice, value);
+    }
+
+    private static boolean same(Object a, Object b) {
+        return a == b || a != null && a.equals(b);
+    }
+
+    private static final class Lane {
+        final int slice;
+        //values of the slice right before every barrier
+        final Object[] snapshots;
+        Object value;
+        boolean conflicted;
+        //position of the next action to re-execute after conflict
+        int cursor;
+
+        Lane(int slice, Object value, int barrierCount) {
+            this.slice = slice;
+            this.value = value;
+            this.snapshots = new Object[barrierCount];
+        }
+
+        <S> void speculate(SlicedReducer<S> reducer, Action[] actions, int[] routes) {
+            int barrier = 0;
+            for (int i = 0; i < actions.length; i++) {
+                if (routes[i] == SlicedReducer.UNKNOWN_SLICE) {
+                    snapshots[barrier++] = value;
+                } else if (routes[i] == slice) {
+                    value = reducer.reduceSlice(slice, value, actions[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counters of {@link SpeculativeReducer}.
+     */
+    public static final class Stats {
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong actions = new AtomicLong();
+        private final AtomicLong speculatedActions = new AtomicLong();
+        private final AtomicLong conflicts = new AtomicLong();
+        private final AtomicLong reexecutedActions = new AtomicLong();
+
+        public long batches() {
+            return batches.get();
+        }
+
+        public long actions() {
+            return actions.get();
+        }
+
+        /**
+         * @return number of actions reduced speculatively in parallel
+         */
+        public long speculatedActions() {
+            return speculatedActions.get();
+        }
+
+        /**
+         * @return number of times a barrier changed a slice which was reduced speculatively
+         */
+        public long conflicts() {
+            return conflicts.get();
+        }
+
+        /**
+         * @return number of speculated actions which were reduced again after conflicts
+         */
+        public long reexecutedActions() {
+            return reexecutedActions.get();
+        }
+
+        /**
+         * @return share of speculated actions which were re-executed, 0 if nothing was speculated
+         */
+        public double conflictRate() {
+            long speculated = speculatedActions.get();
+            return speculated == 0 ? 0 : (double) reexecutedActions.get() / speculated;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "batches=" + batches() +
+                    ", actions=" + actions() +
+                    ", speculatedActions=" + speculatedActions() +
+                    ", conflicts=" + conflicts() +
+                    ", reexecutedActions=" + reexecutedActions() +
+                    '}';
+        }
+    }
+}
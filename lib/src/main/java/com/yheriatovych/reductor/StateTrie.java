@@ -0,0 +1,113 @@
+package com.yheriatovych.reductor;
+
+/**
+ * Persistent fixed-size array of combined state properties, stored as root array of 32-element chunks.
+ * <p>
+ * Used by implementations generated for {@link com.yheriatovych.reductor.annotations.CombinedState}
+ * with {@code wide = true}: updating a few properties copies the root array and touched chunks only,
+ * instead of every property of the state.
+ * Properties are updated through {@link Editor}, which returns this trie if no property is changed (by reference).
+ */
+public final class StateTrie implements Draftable<StateTrie, StateTrie.Editor> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final Object[][] chunks;
+    private final int size;
+
+    private StateTrie(Object[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * @return trie of {@code size} null properties
+     */
+    public static StateTrie empty(int size) {
+        Object[][] chunks = new Object[(size + MASK) >>> BITS][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Object[Math.min(WIDTH, size - (i << BITS))];
+        }
+        return new StateTrie(chunks, size);
+    }
+
+    public static StateTrie of(Object... values) {
+        StateTrie trie = empty(values.length);
+        for (int i = 0; i < values.length; i++) {
+            trie.chunks[i >>> BITS][i & MASK] = values[i];
+        }
+        return trie;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(int index) {
+        checkIndex(index, size);
+        return chunks[index >>> BITS][index & MASK];
+    }
+
+    /**
+     * @return new editor initialized with properties of this trie
+     */
+    @Override
+    public Editor draft() {
+        return new Editor(this);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * Draft of {@link StateTrie}, copies root array and every chunk at most once.
+     */
+    public static final class Editor implements Draft<StateTrie> {
+        private final StateTrie source;
+        //null until the first change
+        private Object[][] chunks;
+        private boolean[] copied;
+        private boolean finished;
+
+        private Editor(StateTrie source) {
+            this.source = source;
+        }
+
+        public Object get(int index) {
+            checkIndex(index, source.size);
+            Object[][] current = chunks == null ? source.chunks : chunks;
+            return current[index >>> BITS][index & MASK];
+        }
+
+        public Editor set(int index, Object value) {
+            if (finished) throw new IllegalStateException("Editor cannot be used after finish()");
+            if (get(index) == value) return this;
+
+            if (chunks == null) {
+                chunks = source.chunks.clone();
+                copied = new boolean[chunks.length];
+            }
+            int chunk = index >>> BITS;
+            if (!copied[chunk]) {
+                chunks[chunk] = chunks[chunk].clone();
+                copied[chunk] = true;
+            }
+            chunks[chunk][index & MASK] = value;
+            return this;
+        }
+
+        /**
+         * @return trie with all changes applied, the trie this editor was created from if nothing is changed
+         */
+        @Override
+        public StateTrie finish() {
+            if (finished) throw new IllegalStateException("Editor cannot be used after finish()");
+            finished = true;
+            return chunks == null ? source : new StateTrie(chunks, source.size);
+        }
+    }
+}
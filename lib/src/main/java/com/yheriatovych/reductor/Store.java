@@ -2,6 +2,7 @@ package com.yheriatovych.reductor;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * State container which dispatches actions with provided reducer
@@ -16,11 +17,23 @@ public class Store<State> {
     private final Reducer<State> reducer;
     private final Middleware.NextDispatcher dispatcher;
     private final List<StateChangeListener<State>> listeners = new CopyOnWriteArrayList<>();
+    //lock per slice of sliced store, null if all actions are serialized
+    private final ReentrantLock[] sliceLocks;
+    //queue of queued store, null if actions are dispatched synchronously
+    private final DispatchQueue queue;
     private volatile State state;
 
-    private Store(Reducer<State> reducer, State initialState, Middleware<State>[] middlewares) {
+    Store(Reducer<State> reducer, State initialState, Middleware<State>[] middlewares, boolean sliced, DispatchQueue queue) {
         this.reducer = reducer;
         this.state = initialState;
+        if (sliced) {
+            sliceLocks = new ReentrantLock[((SlicedReducer<State>) reducer).sliceCount()];
+            for (int i = 0; i < sliceLocks.length; i++) {
+                sliceLocks[i] = new ReentrantLock();
+            }
+        } else {
+            sliceLocks = null;
+        }
 
         Middleware.NextDispatcher nextDispatcher = this::dispatchAction;
         for (int i = middlewares.length - 1; i >= 0; i--) {
@@ -29,14 +42,22 @@ public class Store<State> {
             nextDispatcher = action -> middleware.dispatch(Store.this, action, finalNextDispatcher);
         }
         this.dispatcher = nextDispatcher;
+        this.queue = queue;
+        if (queue != null) {
+            queue.bind(nextDispatcher);
+        }
         dispatchAction(Action.create(INIT_ACTION));
     }
 
     private void dispatchAction(final Object actionObject) {
         if (actionObject instanceof Action) {
             final Action action = (Action) actionObject;
-            synchronized (this) {
-                state = reducer.reduce(state, action);
+            if (sliceLocks == null) {
+                synchronized (this) {
+                    state = reducer.reduce(state, action);
+                }
+            } else {
+                reduceSliced(action);
             }
             for (StateChangeListener<State> listener : listeners) {
                 listener.onStateChanged(state);
@@ -46,6 +67,41 @@ public class Store<State> {
         }
     }
 
+    private void reduceSliced(Action action) {
+        SlicedReducer<State> slicedReducer = (SlicedReducer<State>) reducer;
+        int slice = state == null ? SlicedReducer.UNKNOWN_SLICE : slicedReducer.sliceOf(action.type);
+        if (slice == SlicedReducer.UNKNOWN_SLICE) {
+            for (ReentrantLock lock : sliceLocks) {
+                lock.lock();
+            }
+            try {
+                synchronized (this) {
+                    state = reducer.reduce(state, action);
+                }
+            } finally {
+                for (int i = sliceLocks.length - 1; i >= 0; i--) {
+                    sliceLocks[i].unlock();
+                }
+            }
+            return;
+        }
+
+        ReentrantLock lock = sliceLocks[slice];
+        lock.lock();
+        try {
+            //other slices can be changed concurrently, but this one is changed only under its lock
+            Object previous = slicedReducer.getSlice(state, slice);
+            Object next = slicedReducer.reduceSlice(slice, previous, action);
+            if (next != previous) {
+                synchronized (this) {
+                    state = slicedReducer.withSlice(state, slice, next);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Create store with given {@link Reducer} and optional array of {@link Middleware}
      *
@@ -72,7 +128,63 @@ public class Store<State> {
      */
     @SafeVarargs
     public static <S> Store<S> create(Reducer<S> reducer, S initialState, Middleware<S>... middlewares) {
-        return new Store<>(reducer, initialState, middlewares);
+        return new Store<>(reducer, initialState, middlewares, false, null);
+    }
+
+    /**
+     * Create store which reduces actions changing different slices of state concurrently.
+     * <p>
+     * Action which can change only one slice (see {@link SlicedReducer#sliceOf(String)}) is reduced
+     * under lock of this slice and the result is merged into the state atomically.
+     * Other actions lock all slices, so they are serialized with every action.
+     * Listeners may be notified concurrently from threads which dispatch actions.
+     *
+     * @param reducer     SlicedReducer of type S, usually generated for {@code @CombinedState(sliced = true)}
+     * @param middlewares array of middlewares to be used to dispatch actions in the same order as provided
+     * @param <S>         type of state to hold and maintain
+     * @return Store initialised with initial state of reducer
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") //middlewares array is only read to build dispatch chain
+    public static <S> Store<S> createSliced(SlicedReducer<S> reducer, Middleware<S>... middlewares) {
+        return createSliced(reducer, null, middlewares);
+    }
+
+    /**
+     * Create sliced store with initial state, see {@link #createSliced(SlicedReducer, Middleware[])}
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") //middlewares array is only read to build dispatch chain
+    public static <S> Store<S> createSliced(SlicedReducer<S> reducer, S initialState, Middleware<S>... middlewares) {
+        return new Store<>(reducer, initialState, middlewares, true, null);
+    }
+
+    /**
+     * Create store which dispatches actions asynchronously through given {@link DispatchQueue}.
+     * <p>
+     * {@link #dispatch(Object)} only enqueues action, actions are passed to middlewares and reducer
+     * one at a time on executor of the queue, adjacent mergeable actions are coalesced before that.
+     * Listeners are notified on executor of the queue.
+     *
+     * @param reducer     Reducer of type S which will be used to dispatch actions
+     * @param queue       queue of actions, can be used by only one store
+     * @param middlewares array of middlewares to be used to dispatch actions in the same order as provided
+     * @param <S>         type of state to hold and maintain
+     * @return Store initialised with initial state of reducer
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") //middlewares array is only read to build dispatch chain
+    public static <S> Store<S> createQueued(Reducer<S> reducer, DispatchQueue queue, Middleware<S>... middlewares) {
+        return createQueued(reducer, null, queue, middlewares);
+    }
+
+    /**
+     * Create queued store with initial state, see {@link #createQueued(Reducer, DispatchQueue, Middleware[])}
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") //middlewares array is only read to build dispatch chain
+    public static <S> Store<S> createQueued(Reducer<S> reducer, S initialState, DispatchQueue queue, Middleware<S>... middlewares) {
+        return new Store<>(reducer, initialState, middlewares, false, queue);
     }
 
     /**
@@ -84,12 +196,17 @@ public class Store<State> {
 
     /**
      * Dispatch action through {@link Reducer} and store the next state
+     * (asynchronously for queued store, see {@link #createQueued(Reducer, DispatchQueue, Middleware[])})
      *
      * @param action action to be dispatched, usually instance of {@link Action}
      *               but custom {@link Middleware} can be used to support other types of actions
      */
     public void dispatch(final Object action) {
-        dispatcher.call(action);
+        if (queue != null) {
+            queue.enqueue(action);
+        } else {
+            dispatcher.call(action);
+        }
     }
 
     /**
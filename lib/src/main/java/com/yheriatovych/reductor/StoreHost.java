@@ -0,0 +1,658 @@
+package com.yheriatovych.reductor;
+
+import com.yheriatovych.reductor.codec.Codec;
+
+import java.io.Closeable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Host of many lightweight stores with the same reducer and middlewares, e.g. one store per user session.
+ * <p>
+ * Stores are identified by keys and sharded across a fixed set of single-threaded workers by key hash,
+ * so every store is changed only by its worker and needs no locks.
+ * {@link #dispatch(Object, Object)} enqueues action to the worker and returns immediately.
+ * <p>
+ * Live store is only a record of its key and state: actions are passed through single middleware chain
+ * and reducer shared by all stores. {@link Store} view of a hosted store is created only on demand,
+ * when it's passed to middlewares or requested with {@link #store(Object)}.
+ * Listeners subscribed to the view are dropped when the store is evicted.
+ * <p>
+ * If {@link Weigher} is set, weight of every store is accounted after its state changes,
+ * when worker has no more queued actions or every {@value #ACCOUNT_INTERVAL} actions under sustained load.
+ * Stores which are idle for {@code idleTimeoutMillis} or least recently used stores of a worker exceeding
+ * its share of {@code maxWeight} are evicted: state is encoded with {@link Codec} into {@link Snapshots}.
+ * Evicted store is re-hydrated from its snapshot when its key is accessed again.
+ * <p>
+ * Usage:
+ * <pre><code>
+ * StoreHost&lt;String, Session&gt; host = StoreHost.&lt;String, Session&gt;builder(sessionReducer, sessionCodec)
+ *         .middlewares(logger)
+ *         .idleTimeoutMillis(TimeUnit.MINUTES.toMillis(10))
+ *         .maxWeight(512 * 1024 * 1024)
+ *         .weigher(Session::estimatedSize)
+ *         .build();
+ * host.dispatch(sessionId, action);
+ * </code></pre>
+ *
+ * @param <K> type of keys
+ * @param <S> type of state of stores
+ */
+public final class StoreHost<K, S> implements Closeable {
+    static final int ACCOUNT_INTERVAL = 64;
+    private static final Middleware<?>[] NO_MIDDLEWARES = new Middleware<?>[0];
+
+    private final Reducer<S> reducer;
+    private final Codec<S> codec;
+    private final Weigher<S> weigher;
+    private final Listener<K, S> listener;
+    private final Snapshots<K> snapshots;
+    private final long idleTimeoutNanos;
+    private final long workerMaxWeight;
+    private final Dispatcher<HostedStore> dispatcher;
+    private final List<Worker> workers;
+    private final ScheduledExecutorService sweeper;
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicInteger liveStores = new AtomicInteger();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rehydrations = new AtomicLong();
+
+    private StoreHost(Builder<K, S> builder) {
+        this.reducer = builder.reducer;
+        this.codec = builder.codec;
+        this.weigher = builder.weigher;
+        this.listener = builder.listener;
+        this.snapshots = builder.snapshots != null ? builder.snapshots : new MemorySnapshots<K>();
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.idleTimeoutMillis);
+        this.workerMaxWeight = builder.maxWeight / builder.workers;
+
+        Dispatcher<HostedStore> dispatcher = this::reduce;
+        for (int i = builder.middlewares.length - 1; i >= 0; i--) {
+            final Middleware<S> middleware = builder.middlewares[i];
+            final Dispatcher<HostedStore> next = dispatcher;
+            dispatcher = (store, action) -> middleware.dispatch(store.view(), action, nextAction -> next.call(store, nextAction));
+        }
+        this.dispatcher = dispatcher;
+
+        workers = new ArrayList<>(builder.workers);
+        for (int i = 0; i < builder.workers; i++) {
+            workers.add(new Worker(i));
+        }
+        if (idleTimeoutNanos > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "StoreHost-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, builder.idleTimeoutMillis / 2);
+            sweeper.scheduleWithFixedDelay(() -> {
+                for (final Worker worker : workers) {
+                    worker.executor.execute(worker::evictIdle);
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    /**
+     * @param reducer reducer of every hosted store
+     * @param codec   codec to encode snapshots of evicted stores with
+     */
+    public static <K, S> Builder<K, S> builder(Reducer<S> reducer, Codec<S> codec) {
+        return new Builder<>(reducer, codec);
+    }
+
+    /**
+     * Dispatch action to store with given key asynchronously, the store is created or re-hydrated if needed.
+     * <p>
+     * When called on the worker of the key (e.g. from middleware or listener), action is dispatched synchronously.
+     * Exceptions thrown on asynchronous dispatch are passed to uncaught exception handler of worker thread.
+     *
+     * @param key    key of the store
+     * @param action action to be dispatched, usually instance of {@link Action}
+     */
+    public void dispatch(final K key, final Object action) {
+        final Worker worker = workerOf(key);
+        if (worker.isCurrent()) {
+            worker.dispatch(key, action);
+        } else {
+            worker.queuedDispatches.incrementAndGet();
+            worker.executor.execute(() -> {
+                try {
+                    worker.dispatch(key, action);
+                } finally {
+                    //reads queued after dispatches don't postpone accounting
+                    if (worker.queuedDispatches.decrementAndGet() == 0 || ++worker.sinceAccount >= ACCOUNT_INTERVAL) {
+                        worker.account();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Wait for actions already dispatched to the store and return its state.
+     *
+     * @return state of live store or store re-hydrated from snapshot, null if there is no store with given key
+     */
+    public S getState(final K key) {
+        final Worker worker = workerOf(key);
+        return worker.call(() -> {
+            HostedStore store = worker.store(key, false);
+            return store == null ? null : store.state;
+        });
+    }
+
+    /**
+     * Wait for actions already dispatched to the store and return {@link Store} view of it,
+     * the store is created or re-hydrated if needed.
+     * <p>
+     * Actions dispatched to the view are passed to {@link #dispatch(Object, Object)},
+     * listeners subscribed to the view are notified on worker thread until the store is evicted.
+     */
+    public Store<S> store(final K key) {
+        final Worker worker = workerOf(key);
+        return worker.call(() -> worker.store(key, true).view());
+    }
+
+    /**
+     * @return weight of live store with given key as of the last accounting, 0 if it's not live
+     */
+    public long weight(final K key) {
+        final Worker worker = workerOf(key);
+        return worker.call(() -> {
+            //lookup in insertion-ordered map does not change eviction order
+            HostedStore store = worker.stores.get(key);
+            return store == null ? 0L : store.weight;
+        });
+    }
+
+    /**
+     * @return accounted weight of all live stores
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    public int liveStores() {
+        return liveStores.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public long rehydrations() {
+        return rehydrations.get();
+    }
+
+    /**
+     * Evict stores which are idle for longer than {@code idleTimeoutMillis} now, instead of waiting for periodic sweep.
+     */
+    public void evictIdle() {
+        for (final Worker worker : workers) {
+            worker.call(() -> {
+                worker.evictIdle();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Evict all live stores into snapshots and stop workers.
+     */
+    @Override
+    public void close() {
+        if (sweeper != null) sweeper.shutdownNow();
+        for (final Worker worker : workers) {
+            if (worker.executor.isShutdown()) continue;
+            worker.executor.execute(worker::evictAll);
+            worker.executor.shutdown();
+        }
+        boolean interrupted = false;
+        for (Worker worker : workers) {
+            while (true) {
+                try {
+                    worker.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void reduce(HostedStore store, Object actionObject) {
+        if (!(actionObject instanceof Action)) {
+            throw new IllegalArgumentException(String.format("action %s of %s is not instance of %s, use custom Middleware to dispatch another types of actions", actionObject, actionObject.getClass(), Action.class));
+        }
+        S next = reducer.reduce(store.state, (Action) actionObject);
+        if (next != store.state) {
+            store.state = next;
+            store.worker.markDirty(store);
+        }
+        store.notifyListeners(next);
+        if (listener != null) {
+            listener.onStateChanged(store.key, next);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> Middleware<S>[] noMiddlewares() {
+        return (Middleware<S>[]) NO_MIDDLEWARES;
+    }
+
+    private interface Dispatcher<T> {
+        void call(T store, Object action);
+    }
+
+    private Worker workerOf(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return workers.get((hash & Integer.MAX_VALUE) % workers.size());
+    }
+
+    /**
+     * Single-threaded owner of a shard of stores.
+     */
+    private final class Worker {
+        final ThreadPoolExecutor executor;
+        //least recently used stores first, accessed store is moved to the end with its lastAccessNanos updated
+        final LinkedHashMap<K, HostedStore> stores = new LinkedHashMap<>();
+        //stores changed since last accounting
+        final List<HostedStore> dirty = new ArrayList<>();
+        volatile Thread thread;
+        long weight;
+        //actions dispatched since last accounting
+        int sinceAccount;
+        //dispatches submitted to executor and not completed yet
+        final AtomicInteger queuedDispatches = new AtomicInteger();
+        ByteBuffer scratch = ByteBuffer.allocate(256);
+
+        Worker(final int index) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+                Thread thread = new Thread(runnable, "StoreHost-worker-" + index);
+                thread.setDaemon(true);
+                Worker.this.thread = thread;
+                return thread;
+            });
+        }
+
+        boolean isCurrent() {
+            return Thread.currentThread() == thread;
+        }
+
+        <T> T call(Callable<T> callable) {
+            if (isCurrent()) {
+                try {
+                    return callable.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            Future<T> future = executor.submit(callable);
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return future.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IllegalStateException(cause);
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * @param create whether to create store if it's neither live nor has snapshot
+         * @return live store moved to the end of eviction order, null if there is no such store and create is false
+         */
+        HostedStore store(K key, boolean create) {
+            HostedStore store = stores.remove(key);
+            if (store == null) {
+                byte[] snapshot = snapshots.take(key);
+                S state;
+                if (snapshot != null) {
+                    state = codec.read(ByteBuffer.wrap(snapshot));
+                    rehydrations.incrementAndGet();
+                } else if (create) {
+                    state = reducer.reduce(null, Action.create(Store.INIT_ACTION));
+                } else {
+                    return null;
+                }
+                store = new HostedStore(this, key, state);
+                liveStores.incrementAndGet();
+                markDirty(store);
+            }
+            stores.put(key, store);
+            store.lastAccessNanos = System.nanoTime();
+            return store;
+        }
+
+        void dispatch(K key, Object action) {
+            dispatcher.call(store(key, true), action);
+        }
+
+        void markDirty(HostedStore store) {
+            //without weigher stores are not accounted
+            if (weigher != null && !store.dirty) {
+                store.dirty = true;
+                dirty.add(store);
+            }
+        }
+
+        /**
+         * Weigh changed stores and evict least recently used ones while worker is over its weight budget.
+         */
+        void account() {
+            sinceAccount = 0;
+            for (HostedStore store : dirty) {
+                store.dirty = false;
+                S state = store.state;
+                if (store.evicted || state == store.weighedState) continue;
+                long next = weigher.weigh(state);
+                addWeight(next - store.weight);
+                store.weight = next;
+                store.weighedState = state;
+            }
+            dirty.clear();
+
+            Iterator<HostedStore> iterator = stores.values().iterator();
+            while (weight > workerMaxWeight && stores.size() > 1) {
+                evict(iterator.next(), iterator);
+            }
+        }
+
+        void evictIdle() {
+            if (idleTimeoutNanos == 0) return;
+            long now = System.nanoTime();
+            Iterator<HostedStore> iterator = stores.values().iterator();
+            while (iterator.hasNext()) {
+                HostedStore store = iterator.next();
+                if (now - store.lastAccessNanos < idleTimeoutNanos) break;
+                evict(store, iterator);
+            }
+        }
+
+        void evictAll() {
+            Iterator<HostedStore> iterator = stores.values().iterator();
+            while (iterator.hasNext()) {
+                evict(iterator.next(), iterator);
+            }
+        }
+
+        private void evict(HostedStore store, Iterator<HostedStore> iterator) {
+            snapshots.put(store.key, encode(store.state));
+            iterator.remove();
+            store.evicted = true;
+            addWeight(-store.weight);
+            liveStores.decrementAndGet();
+            evictions.incrementAndGet();
+        }
+
+        private void addWeight(long delta) {
+            weight += delta;
+            StoreHost.this.weight.addAndGet(delta);
+        }
+
+        private byte[] encode(S state) {
+            while (true) {
+                scratch.clear();
+                try {
+                    codec.write(state, scratch);
+                    return Arrays.copyOf(scratch.array(), scratch.position());
+                } catch (BufferOverflowException e) {
+                    scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record of store hosted by {@link StoreHost}, changed only on its worker.
+     * Instance is dropped when store is evicted.
+     */
+    private final class HostedStore {
+        final Worker worker;
+        final K key;
+        volatile S state;
+        long weight;
+        //state weight is accounted for, null if not accounted yet
+        S weighedState;
+        long lastAccessNanos;
+        boolean dirty;
+        volatile boolean evicted;
+        //created on first subscription
+        private volatile List<Store.StateChangeListener<S>> listeners;
+        //created on first request, accessed only on worker
+        private View view;
+
+        HostedStore(Worker worker, K key, S state) {
+            this.worker = worker;
+            this.key = key;
+            this.state = state;
+        }
+
+        Store<S> view() {
+            if (view == null) view = new View(this);
+            return view;
+        }
+
+        synchronized Cancelable subscribe(Store.StateChangeListener<S> listener) {
+            if (listeners == null) listeners = new CopyOnWriteArrayList<>();
+            final List<Store.StateChangeListener<S>> list = listeners;
+            list.add(listener);
+            return () -> list.remove(listener);
+        }
+
+        void notifyListeners(S state) {
+            List<Store.StateChangeListener<S>> list = listeners;
+            if (list == null) return;
+            for (Store.StateChangeListener<S> listener : list) {
+                listener.onStateChanged(state);
+            }
+        }
+    }
+
+    /**
+     * {@link Store} view of hosted store, delegates to {@link StoreHost} and does not keep own state.
+     */
+    private final class View extends Store<S> {
+        private final HostedStore store;
+
+        View(HostedStore store) {
+            super((state, action) -> state, null, StoreHost.<S>noMiddlewares(), false, null);
+            this.store = store;
+        }
+
+        @Override
+        public S getState() {
+            return store.evicted ? StoreHost.this.getState(store.key) : store.state;
+        }
+
+        /**
+         * Pass action through middlewares and reducer if called on worker, otherwise (or if store is evicted)
+         * dispatch it with {@link StoreHost}.
+         */
+        @Override
+        public void dispatch(Object action) {
+            if (!store.evicted && store.worker.isCurrent()) {
+                dispatcher.call(store, action);
+            } else {
+                StoreHost.this.dispatch(store.key, action);
+            }
+        }
+
+        @Override
+        public Cancelable subscribe(StateChangeListener<S> listener) {
+            return store.subscribe(listener);
+        }
+    }
+
+    /**
+     * Estimates memory used by state of a store.
+     */
+    public interface Weigher<S> {
+        long weigh(S state);
+    }
+
+    /**
+     * Listener of all hosted stores, notified on worker thread after every reduced action.
+     */
+    public interface Listener<K, S> {
+        void onStateChanged(K key, S state);
+    }
+
+    /**
+     * Storage of encoded states of evicted stores, accessed concurrently from workers (for different keys).
+     */
+    public interface Snapshots<K> {
+        void put(K key, byte[] snapshot);
+
+        /**
+         * @return snapshot of given key removed from storage, null if there is no snapshot
+         */
+        byte[] take(K key);
+    }
+
+    private static final class MemorySnapshots<K> implements Snapshots<K> {
+        private final Map<K, byte[]> snapshots = new ConcurrentHashMap<>();
+
+        @Override
+        public void put(K key, byte[] snapshot) {
+            snapshots.put(key, snapshot);
+        }
+
+        @Override
+        public byte[] take(K key) {
+            return snapshots.remove(key);
+        }
+    }
+
+    public static final class Builder<K, S> {
+        private final Reducer<S> reducer;
+        private final Codec<S> codec;
+        private Middleware<S>[] middlewares = noMiddlewares();
+        private int workers = Runtime.getRuntime().availableProcessors();
+        private long idleTimeoutMillis;
+        private long maxWeight = Long.MAX_VALUE;
+        private Weigher<S> weigher;
+        private Listener<K, S> listener;
+        private Snapshots<K> snapshots;
+
+        private Builder(Reducer<S> reducer, Codec<S> codec) {
+            this.reducer = reducer;
+            this.codec = codec;
+        }
+
+        /**
+         * @param middlewares middlewares shared by all stores, in the same order as for {@link Store#create(Reducer, Middleware[])}
+         */
+        @SafeVarargs
+        @SuppressWarnings("unchecked")
+        public final Builder<K, S> middlewares(Middleware<S>... middlewares) {
+            Middleware<S>[] copy = (Middleware<S>[]) new Middleware<?>[middlewares.length];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = middlewares[i];
+            }
+            this.middlewares = copy;
+            return this;
+        }
+
+        /**
+         * @param workers number of worker threads (number of available processors by default)
+         */
+        public Builder<K, S> workers(int workers) {
+            if (workers <= 0) {
+                throw new IllegalArgumentException("workers should be positive");
+            }
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * @param idleTimeoutMillis time without dispatches or state reads after which store is evicted,
+         *                          0 to keep idle stores (default)
+         */
+        public Builder<K, S> idleTimeoutMillis(long idleTimeoutMillis) {
+            if (idleTimeoutMillis < 0) {
+                throw new IllegalArgumentException("idleTimeoutMillis should not be negative");
+            }
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param maxWeight total weight of live stores, split evenly between workers.
+         *                  Worker exceeding its share evicts its least recently used stores (unlimited by default).
+         *                  Requires {@link #weigher(Weigher)}
+         */
+        public Builder<K, S> maxWeight(long maxWeight) {
+            if (maxWeight <= 0) {
+                throw new IllegalArgumentException("maxWeight should be positive");
+            }
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        /**
+         * @param weigher weigher of states, should be cheap as it's called for every changed state on accounting.
+         *                Stores are not weighed if it's not set
+         */
+        public Builder<K, S> weigher(Weigher<S> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, S> listener(Listener<K, S> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @param snapshots storage of evicted stores (kept in memory by default)
+         */
+        public Builder<K, S> snapshots(Snapshots<K> snapshots) {
+            this.snapshots = snapshots;
+            return this;
+        }
+
+        public StoreHost<K, S> build() {
+            if (reducer == null) throw new IllegalStateException("reducer is not set");
+            if (codec == null) throw new IllegalStateException("codec is not set");
+            if (maxWeight != Long.MAX_VALUE && weigher == null) {
+                throw new IllegalStateException("maxWeight requires weigher");
+            }
+            return new StoreHost<>(this);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.yheriatovych.reductor;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Middleware which debounces, throttles or delays actions of registered types.
+ * <p>
+ * Timers are kept in hashed timer wheel: scheduling, rescheduling and cancelling a timer is O(1)
+ * and no executor task is created per action. Due timers are fired by {@link #tick()},
+ * called periodically by single task of {@link Builder#ticker(ScheduledExecutorService)} or manually
+ * (e.g. in tests together with {@link VirtualClock}). Timers fire with precision of {@code tickMillis}.
+ * <p>
+ * Timers are tracked per action type plus optional key extracted from {@link Action#values},
+ * so e.g. position updates of different items are throttled independently.
+ * Fired actions continue through the rest of middlewares and reducer of the store they were dispatched to,
+ * on thread which calls {@link #tick()}.
+ * <p>
+ * Usage:
+ * <pre><code>
+ * TimerMiddleware&lt;AppState&gt; timers = TimerMiddleware.&lt;AppState&gt;builder()
+ *         .debounce(SEARCH_QUERY, 300)
+ *         .throttle(ITEM_POSITION, 100, values -&gt; values[0])
+ *         .ticker(scheduledExecutor)
+ *         .build();
+ * Store&lt;AppState&gt; store = Store.create(reducer, timers);
+ * </code></pre>
+ *
+ * @param <S> type of state
+ */
+public final class TimerMiddleware<S> implements Middleware<S>, Closeable {
+    private static final int DEBOUNCE = 0;
+    private static final int THROTTLE = 1;
+    private static final int DELAY = 2;
+
+    private final Clock clock;
+    private final long tickNanos;
+    private final Map<String, Policy> policies;
+    private final Timer[] wheel;
+    private final int mask;
+    private final long startNanos;
+    //debounce and throttle timers by type and key
+    private final Map<TimerKey, Timer> timers = new HashMap<>();
+    private final ScheduledFuture<?> ticker;
+    //the last tick which was processed
+    private long currentTick;
+    private long sequence;
+    private int pending;
+
+    private TimerMiddleware(Builder<S> builder) {
+        this.clock = builder.clock;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(builder.tickMillis);
+        this.policies = new HashMap<>(builder.policies);
+        int wheelSize = Integer.highestOneBit(builder.wheelSize - 1) << 1;
+        this.wheel = new Timer[Math.max(wheelSize, 1)];
+        this.mask = wheel.length - 1;
+        this.startNanos = clock.nanoTime();
+        this.ticker = builder.ticker != null
+                ? builder.ticker.scheduleAtFixedRate(this::tick, builder.tickMillis, builder.tickMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    public static <S> Builder<S> builder() {
+        return new Builder<>();
+    }
+
+    @Override
+    public void dispatch(Store<S> store, Object action, NextDispatcher nextDispatcher) {
+        Policy policy = action instanceof Action ? policies.get(((Action) action).type) : null;
+        if (policy == null) {
+            nextDispatcher.call(action);
+            return;
+        }
+        Action timedAction = (Action) action;
+        boolean passThrough = false;
+        synchronized (this) {
+            long now = clock.nanoTime();
+            if (policy.kind == DELAY) {
+                schedule(new Timer(null, timedAction, nextDispatcher), now + policy.nanos);
+            } else {
+                TimerKey key = new TimerKey(timedAction.type, policy.keyExtractor != null ? policy.keyExtractor.key(timedAction.values) : null);
+                Timer timer = timers.get(key);
+                if (policy.kind == DEBOUNCE) {
+                    if (timer == null) {
+                        timer = new Timer(key, timedAction, nextDispatcher);
+                        timers.put(key, timer);
+                    } else {
+                        unlink(timer);
+                        timer.action = timedAction;
+                        timer.nextDispatcher = nextDispatcher;
+                    }
+                    schedule(timer, now + policy.nanos);
+                } else if (timer == null) {
+                    //leading action passes, following ones in the window are collapsed into the trailing one
+                    timer = new Timer(key, null, null);
+                    timers.put(key, timer);
+                    schedule(timer, now + policy.nanos);
+                    passThrough = true;
+                } else {
+                    timer.action = timedAction;
+                    timer.nextDispatcher = nextDispatcher;
+                }
+            }
+        }
+        if (passThrough) {
+            nextDispatcher.call(action);
+        }
+    }
+
+    /**
+     * Fire timers which are due by now according to the clock.
+     */
+    public void tick() {
+        List<Fired> fired = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.nanoTime();
+            long nowTick = (now - startNanos) / tickNanos;
+            if (nowTick <= currentTick) return;
+            //after one revolution every bucket is visited
+            long from = Math.max(currentTick + 1, nowTick - mask);
+            for (long tick = from; tick <= nowTick; tick++) {
+                expire(wheel[(int) (tick & mask)], nowTick, now, fired);
+            }
+            currentTick = nowTick;
+        }
+        if (fired.size() > 1) {
+            Collections.sort(fired, (a, b) -> a.deadlineTick != b.deadlineTick
+                    ? (a.deadlineTick < b.deadlineTick ? -1 : 1)
+                    : (a.sequence < b.sequence ? -1 : a.sequence == b.sequence ? 0 : 1));
+        }
+        for (Fired timer : fired) {
+            timer.nextDispatcher.call(timer.action);
+        }
+    }
+
+    private void expire(Timer timer, long nowTick, long now, List<Fired> fired) {
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.deadlineTick <= nowTick) {
+                unlink(timer);
+                if (timer.action != null) {
+                    fired.add(new Fired(timer));
+                }
+                if (timer.key != null) {
+                    Policy policy = policies.get(timer.key.type);
+                    if (policy.kind == THROTTLE && timer.action != null) {
+                        //trailing action starts a new window
+                        timer.action = null;
+                        timer.nextDispatcher = null;
+                        schedule(timer, now + policy.nanos);
+                    } else {
+                        timers.remove(timer.key);
+                    }
+                }
+            }
+            timer = next;
+        }
+    }
+
+    private void schedule(Timer timer, long deadlineNanos) {
+        long elapsed = deadlineNanos - startNanos;
+        long deadlineTick = (elapsed + tickNanos - 1) / tickNanos;
+        timer.deadlineTick = Math.max(deadlineTick, currentTick + 1);
+        timer.sequence = sequence++;
+        int bucket = (int) (timer.deadlineTick & mask);
+        timer.bucket = bucket;
+        timer.prev = null;
+        timer.next = wheel[bucket];
+        if (wheel[bucket] != null) wheel[bucket].prev = timer;
+        wheel[bucket] = timer;
+        pending++;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            wheel[timer.bucket] = timer.next;
+        }
+        if (timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+        pending--;
+    }
+
+    /**
+     * @return number of scheduled timers, including open throttle windows
+     */
+    public synchronized int pending() {
+        return pending;
+    }
+
+    /**
+     * Stop ticker task, scheduled actions are not fired anymore.
+     */
+    @Override
+    public void close() {
+        if (ticker != null) ticker.cancel(false);
+    }
+
+    /**
+     * Extracts key from {@link Action#values}, actions of the same type with different keys are timed independently.
+     */
+    public interface KeyExtractor {
+        Object key(Object[] values);
+    }
+
+    private static final class Policy {
+        final int kind;
+        final long nanos;
+        final KeyExtractor keyExtractor;
+
+        Policy(int kind, long millis, KeyExtractor keyExtractor) {
+            if (millis < 0) {
+                throw new IllegalArgumentException("duration should not be negative");
+            }
+            this.kind = kind;
+            this.nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+            this.keyExtractor = keyExtractor;
+        }
+    }
+
+    private static final class TimerKey {
+        final String type;
+        final Object key;
+
+        TimerKey(String type, Object key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TimerKey)) return false;
+            TimerKey other = (TimerKey) o;
+            return type.equals(other.type) && (key == null ? other.key == null : key.equals(other.key));
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new Object[]{type, key});
+        }
+    }
+
+    /**
+     * Entry of timer wheel bucket (doubly-linked list).
+     */
+    private static final class Timer {
+        final TimerKey key;
+        Action action;
+        NextDispatcher nextDispatcher;
+        long deadlineTick;
+        long sequence;
+        int bucket;
+        Timer prev;
+        Timer next;
+
+        Timer(TimerKey key, Action action, NextDispatcher nextDispatcher) {
+            this.key = key;
+            this.action = action;
+            this.nextDispatcher = nextDispatcher;
+        }
+    }
+
+    /**
+     * Action of fired timer, dispatched outside of the lock.
+     */
+    private static final class Fired {
+        final Action action;
+        final NextDispatcher nextDispatcher;
+        final long deadlineTick;
+        final long sequence;
+
+        Fired(Timer timer) {
+            this.action = timer.action;
+            this.nextDispatcher = timer.nextDispatcher;
+            this.deadlineTick = timer.deadlineTick;
+            this.sequence = timer.sequence;
+        }
+    }
+
+    public static final class Builder<S> {
+        private final Map<String, Policy> policies = new HashMap<>();
+        private Clock clock = Clock.SYSTEM;
+        private long tickMillis = 10;
+        private int wheelSize = 512;
+        private ScheduledExecutorService ticker;
+
+        private Builder() {
+        }
+
+        /**
+         * Dispatch only the last action of a burst, after no action of the same type (and key) for {@code millis}.
+         */
+        public Builder<S> debounce(String actionType, long millis) {
+            return debounce(actionType, millis, null);
+        }
+
+        public Builder<S> debounce(String actionType, long millis, KeyExtractor keyExtractor) {
+            policies.put(actionType, new Policy(DEBOUNCE, millis, keyExtractor));
+            return this;
+        }
+
+        /**
+         * Dispatch action immediately and open {@code millis} window,
+         * the last action dispatched within the window is dispatched when window ends.
+         */
+        public Builder<S> throttle(String actionType, long millis) {
+            return throttle(actionType, millis, null);
+        }
+
+        public Builder<S> throttle(String actionType, long millis, KeyExtractor keyExtractor) {
+            policies.put(actionType, new Policy(THROTTLE, millis, keyExtractor));
+            return this;
+        }
+
+        /**
+         * Dispatch every action after {@code millis}.
+         */
+        public Builder<S> delay(String actionType, long millis) {
+            policies.put(actionType, new Policy(DELAY, millis, null));
+            return this;
+        }
+
+        /**
+         * @param clock clock to measure time with ({@link Clock#SYSTEM} by default)
+         */
+        public Builder<S> clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * @param tickMillis duration of timer wheel tick, precision of timers (10ms by default)
+         */
+        public Builder<S> tickMillis(long tickMillis) {
+            if (tickMillis <= 0) {
+                throw new IllegalArgumentException("tickMillis should be positive");
+            }
+            this.tickMillis = tickMillis;
+            return this;
+        }
+
+        /**
+         * @param wheelSize number of buckets of timer wheel, rounded up to power of two (512 by default).
+         *                  Should cover typical timer duration in ticks
+         */
+        public Builder<S> wheelSize(int wheelSize) {
+            if (wheelSize <= 0) {
+                throw new IllegalArgumentException("wheelSize should be positive");
+            }
+            this.wheelSize = wheelSize;
+            return this;
+        }
+
+        /**
+         * @param ticker executor to call {@link #tick()} on every {@code tickMillis} with single periodic task,
+         *               if not set {@link #tick()} should be called manually
+         */
+        public Builder<S> ticker(ScheduledExecutorService ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public TimerMiddleware<S> build() {
+            return new TimerMiddleware<>(this);
+        }
+    }
+}
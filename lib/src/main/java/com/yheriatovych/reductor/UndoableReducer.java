@@ -0,0 +1,396 @@
+package com.yheriatovych.reductor;
+
+import com.yheriatovych.reductor.diff.Differ;
+import com.yheriatovych.reductor.diff.Patch;
+
+/**
+ * {@link Reducer} decorator which adds bounded undo/redo history to wrapped reducer.
+ * <p>
+ * History is kept in preallocated ring buffer of {@code capacity} steps, so dispatch does not allocate
+ * and the oldest steps are evicted when history is full or when {@code maxRetainedSize} is exceeded.
+ * Size of each undo and redo step is estimated with {@link Weigher}, by default every step weighs 1.
+ * When undo and redo steps together exceed {@code maxRetainedSize}, the oldest undo steps are evicted first,
+ * then the farthest redo steps.
+ * <p>
+ * Consecutive actions can be coalesced into one undo step by action type
+ * (e.g. typing into text field) and/or by time window between them.
+ * Actions which do not change the state (by reference) do not create undo steps.
+ * <p>
+ * By default history keeps references to previous states, which is cheap for immutable states
+ * as they share unchanged sub-values. When {@link Differ} and {@link Patcher} are available,
+ * history can keep inverse patches instead, so steps retain only changed sub-values.
+ * <p>
+ * History belongs to reducer instance, so every {@link Store} should use its own instance.
+ *
+ * @param <State> type of state
+ */
+public final class UndoableReducer<State> implements Reducer<State> {
+    public static final String UNDO = "@@reductor/UNDO";
+    public static final String REDO = "@@reductor/REDO";
+    public static final String CLEAR_HISTORY = "@@reductor/CLEAR_HISTORY";
+
+    /**
+     * Estimates memory retained by history step.
+     */
+    public interface Weigher<State> {
+        /**
+         * @param entry previous state or inverse patch kept by history step
+         * @param state state which entry restores the previous state from
+         * @return estimated size of the step, should not be negative
+         */
+        long weigh(Object entry, State state);
+    }
+
+    /**
+     * Applies patch produced by {@link Differ} to the state.
+     */
+    public interface Patcher<State> {
+        /**
+         * @param state state to apply patch to, equal to {@code previous} version of the patch
+         * @param patch changes to apply
+         * @return {@code next} version of the patch
+         */
+        State apply(State state, Patch patch);
+    }
+
+    private final Reducer<State> reducer;
+    private final int capacity;
+    private final long maxRetainedSize;
+    private final Weigher<State> weigher;
+    private final boolean groupByType;
+    private final long groupWindowNanos;
+    private final Differ<State> differ;
+    private final Patcher<State> patcher;
+    private final Clock clock;
+
+    //guarded by this
+    private final Object[] past;
+    private final long[] pastWeights;
+    private int pastHead;
+    private int pastSize;
+    private long retainedSize;
+    //stack of redo steps in ring buffer, the farthest step is at futureBottom
+    private final Object[] future;
+    private final long[] futureWeights;
+    private int futureBottom;
+    private int futureSize;
+    private String lastType;
+    private long lastTime;
+
+    private UndoableReducer(Builder<State> builder) {
+        this.reducer = builder.reducer;
+        this.capacity = builder.capacity;
+        this.maxRetainedSize = builder.maxRetainedSize;
+        this.weigher = builder.weigher;
+        this.groupByType = builder.groupByType;
+        this.groupWindowNanos = builder.groupWindowMillis < 0 ? -1 : builder.groupWindowMillis * 1_000_000;
+        this.differ = builder.differ;
+        this.patcher = builder.patcher;
+        this.clock = builder.clock;
+        this.past = new Object[capacity];
+        this.pastWeights = new long[capacity];
+        this.future = new Object[capacity];
+        this.futureWeights = new long[capacity];
+    }
+
+    public static <S> Builder<S> builder(Reducer<S> reducer) {
+        return new Builder<>(reducer);
+    }
+
+    /**
+     * @return action to restore the state before the last undo step
+     */
+    public static Action undo() {
+        return Action.create(UNDO);
+    }
+
+    /**
+     * @return action to reapply the last undone step
+     */
+    public static Action redo() {
+        return Action.create(REDO);
+    }
+
+    /**
+     * @return action to drop undo and redo history
+     */
+    public static Action clearHistory() {
+        return Action.create(CLEAR_HISTORY);
+    }
+
+    @Override
+    public synchronized State reduce(State state, Action action) {
+        switch (action.type) {
+            case UNDO:
+                return undo(state);
+            case REDO:
+                return redo(state);
+            case CLEAR_HISTORY:
+                clear();
+                return state;
+            case Store.INIT_ACTION:
+                return reducer.reduce(state, action);
+        }
+
+        State next = reducer.reduce(state, action);
+        if (next == state) return state;
+
+        long now = groupWindowNanos >= 0 ? clock.nanoTime() : 0;
+        boolean coalesce = pastSize > 0 && lastType != null
+                && (groupByType || groupWindowNanos >= 0)
+                && (!groupByType || action.type.equals(lastType))
+                && (groupWindowNanos < 0 || now - lastTime <= groupWindowNanos);
+        lastType = action.type;
+        lastTime = now;
+        clearFuture();
+        //coalesced action extends the last step, which still restores the state before the first action
+        if (!coalesce) {
+            pushPast(entry(next, state), next);
+        } else if (differ != null) {
+            //inverse patch of the last step does not revert changes made by coalesced action
+            State origin = restore(state, popPast());
+            pushPast(entry(next, origin), next);
+        }
+        return next;
+    }
+
+    private State undo(State state) {
+        if (pastSize == 0) return state;
+        State previous = restore(state, popPast());
+        pushFuture(entry(previous, state), previous);
+        lastType = null;
+        return previous;
+    }
+
+    private State redo(State state) {
+        if (futureSize == 0) return state;
+        State next = restore(state, popFuture());
+        pushPast(entry(next, state), next);
+        lastType = null;
+        return next;
+    }
+
+    /**
+     * @param from state which will be replaced
+     * @param to   state which will be restored with entry
+     */
+    private Object entry(State from, State to) {
+        if (differ == null) return to;
+        Patch.Builder patch = Patch.builder();
+        differ.diff("", from, to, patch);
+        return patch.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private State restore(State state, Object entry) {
+        return differ == null
+                ? (State) entry
+                : patcher.apply(state, (Patch) entry);
+    }
+
+    private void pushPast(Object entry, State state) {
+        if (pastSize == capacity) evictOldest();
+        long weight = weigher.weigh(entry, state);
+        past[pastHead] = entry;
+        pastWeights[pastHead] = weight;
+        pastHead = (pastHead + 1) % capacity;
+        pastSize++;
+        retainedSize += weight;
+        trim();
+    }
+
+    private Object popPast() {
+        pastHead = (pastHead - 1 + capacity) % capacity;
+        Object entry = past[pastHead];
+        past[pastHead] = null;
+        retainedSize -= pastWeights[pastHead];
+        pastSize--;
+        return entry;
+    }
+
+    private void evictOldest() {
+        int oldest = (pastHead - pastSize + capacity) % capacity;
+        past[oldest] = null;
+        retainedSize -= pastWeights[oldest];
+        pastSize--;
+    }
+
+    private void pushFuture(Object entry, State state) {
+        //every redo step is produced by undo of past step, so future never outgrows capacity
+        long weight = weigher.weigh(entry, state);
+        int top = (futureBottom + futureSize) % capacity;
+        future[top] = entry;
+        futureWeights[top] = weight;
+        futureSize++;
+        retainedSize += weight;
+        trim();
+    }
+
+    private Object popFuture() {
+        futureSize--;
+        int top = (futureBottom + futureSize) % capacity;
+        Object entry = future[top];
+        future[top] = null;
+        retainedSize -= futureWeights[top];
+        return entry;
+    }
+
+    private void evictFarthest() {
+        future[futureBottom] = null;
+        retainedSize -= futureWeights[futureBottom];
+        futureBottom = (futureBottom + 1) % capacity;
+        futureSize--;
+    }
+
+    private void trim() {
+        while (retainedSize > maxRetainedSize && pastSize > 0) {
+            evictOldest();
+        }
+        while (retainedSize > maxRetainedSize && futureSize > 0) {
+            evictFarthest();
+        }
+    }
+
+    private void clearFuture() {
+        while (futureSize > 0) {
+            popFuture();
+        }
+        futureBottom = 0;
+    }
+
+    private void clear() {
+        while (pastSize > 0) {
+            evictOldest();
+        }
+        pastHead = 0;
+        retainedSize = 0;
+        clearFuture();
+        lastType = null;
+    }
+
+    public synchronized boolean canUndo() {
+        return pastSize > 0;
+    }
+
+    public synchronized boolean canRedo() {
+        return futureSize > 0;
+    }
+
+    /**
+     * @return number of steps which can be undone
+     */
+    public synchronized int undoSize() {
+        return pastSize;
+    }
+
+    /**
+     * @return number of steps which can be redone
+     */
+    public synchronized int redoSize() {
+        return futureSize;
+    }
+
+    /**
+     * @return estimated size of undo and redo history, as computed by {@link Weigher}
+     */
+    public synchronized long retainedSize() {
+        return retainedSize;
+    }
+
+    public static final class Builder<S> {
+        private final Reducer<S> reducer;
+        private int capacity = 100;
+        private long maxRetainedSize = Long.MAX_VALUE;
+        private Weigher<S> weigher;
+        private boolean groupByType;
+        private long groupWindowMillis = -1;
+        private Differ<S> differ;
+        private Patcher<S> patcher;
+        private Clock clock = Clock.SYSTEM;
+
+        private Builder(Reducer<S> reducer) {
+            if (reducer == null) throw new NullPointerException("reducer should not be null");
+            this.reducer = reducer;
+        }
+
+        /**
+         * @param capacity maximum number of undo steps (100 by default)
+         */
+        public Builder<S> capacity(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity should be positive");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param maxRetainedSize maximum total size of undo and redo steps, the oldest undo steps
+         *                        and then the farthest redo steps are evicted to fit into it
+         *                        (unbounded by default)
+         * @param weigher         estimates size of undo step
+         */
+        public Builder<S> maxRetainedSize(long maxRetainedSize, Weigher<S> weigher) {
+            if (maxRetainedSize < 0) {
+                throw new IllegalArgumentException("maxRetainedSize should not be negative");
+            }
+            if (weigher == null) throw new NullPointerException("weigher should not be null");
+            this.maxRetainedSize = maxRetainedSize;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Coalesce consecutive actions of the same type into one undo step.
+         * Combined with {@link #groupWithinMillis(long)}, actions should also be dispatched within time window.
+         */
+        public Builder<S> groupByType() {
+            this.groupByType = true;
+            return this;
+        }
+
+        /**
+         * @param windowMillis coalesce action into the last undo step
+         *                     if it's dispatched within this time after the previous action
+         */
+        public Builder<S> groupWithinMillis(long windowMillis) {
+            if (windowMillis < 0) {
+                throw new IllegalArgumentException("windowMillis should not be negative");
+            }
+            this.groupWindowMillis = windowMillis;
+            return this;
+        }
+
+        /**
+         * Keep inverse patches in history instead of previous states.
+         * By default every step weighs as number of changes in its patch.
+         *
+         * @param differ  differ of the state, e.g. generated for {@link com.yheriatovych.reductor.annotations.CombinedState}
+         * @param patcher applies patches produced by differ
+         */
+        public Builder<S> patches(Differ<S> differ, Patcher<S> patcher) {
+            if (differ == null) throw new NullPointerException("differ should not be null");
+            if (patcher == null) throw new NullPointerException("patcher should not be null");
+            this.differ = differ;
+            this.patcher = patcher;
+            return this;
+        }
+
+        /**
+         * @param clock clock to measure grouping window with ({@link Clock#SYSTEM} by default)
+         */
+        public Builder<S> clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public UndoableReducer<S> build() {
+            if (weigher == null) {
+                weigher = differ == null
+                        ? (entry, state) -> 1
+                        : (entry, state) -> ((Patch) entry).size();
+            }
+            return new UndoableReducer<>(this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.yheriatovych.reductor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Clock} which moves only when {@link #advance(long, TimeUnit)} is called, useful in tests.
+ */
+public final class VirtualClock implements Clock {
+    private volatile long nanos;
+
+    @Override
+    public long nanoTime() {
+        return nanos;
+    }
+
+    public synchronized void advance(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration should not be negative");
+        }
+        nanos += unit.toNanos(duration);
+    }
+}
@@ -33,5 +33,22 @@ public @interface ActionCreator {
     @Target(ElementType.METHOD)
     @interface Action {
         String value();
+
+        /**
+         * Mark action as superseding earlier actions with the same compaction key,
+         * so only the latest of them is kept when action journal is compacted.
+         * <p>
+         * Compaction key consists of action type and values of {@link #compactionKey()} arguments.
+         * Generated binary codec implements {@link com.yheriatovych.reductor.codec.CompactionPolicy} for such actions.
+         */
+        boolean compactable() default false;
+
+        /**
+         * Names of action creator method parameters which are part of compaction key
+         * (for example id of replaced entity).
+         * Can be used only with {@link #compactable()} actions.
+         * By default compaction key is action type only.
+         */
+        String[] compactionKey() default {};
     }
 }
@@ -45,6 +45,10 @@ public @interface AutoReducer {
      * <li> can have additional arguments as action values
      * (they will be bundled an passed in {@link com.yheriatovych.reductor.Action#values} automatically)
      * </ul>
+     * <p>
+     * If state implements {@link com.yheriatovych.reductor.Draftable}, handler can instead return void
+     * and take draft of the state as first argument. The draft is created for every action
+     * and the next state is produced with {@link com.yheriatovych.reductor.Draft#finish()}.
      */
     @Target(ElementType.METHOD)
     @interface Action {
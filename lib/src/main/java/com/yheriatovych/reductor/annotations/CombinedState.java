@@ -28,4 +28,55 @@ import java.lang.annotation.Target;
  */
 @Target(ElementType.TYPE)
 public @interface CombinedState {
+    /**
+     * Generate lazy implementation and reducer.
+     * <p>
+     * Sub-states of lazy combined state are not initialized when store is created.
+     * Each sub-state is initialized on first access or when first action which can change it is dispatched
+     * (see {@link com.yheriatovych.reductor.RoutedReducer}).
+     * Sub-reducers of lazy combined state should be pure, as initialization may happen later or not happen at all.
+     * <p>
+     * Only supported for interfaces.
+     */
+    boolean lazy() default false;
+
+    /**
+     * Intern generated implementation with {@link com.yheriatovych.reductor.Interner}.
+     * <p>
+     * Generated implementation caches its {@code hashCode} and implements structural {@code equals},
+     * generated reducer creates new states with {@code XxxImpl.create(...)}, which returns canonical instance,
+     * so equal states (e.g. restored by undo or decoded from snapshot) share one instance.
+     * <p>
+     * Only supported for non-lazy interfaces.
+     */
+    boolean interned() default false;
+
+    /**
+     * Generate implementation for states with many properties.
+     * <p>
+     * Generated implementation keeps properties in {@link com.yheriatovych.reductor.StateTrie} of 32-property chunks
+     * instead of fields, so when a few sub-states are changed the reducer copies only touched chunks
+     * rather than calling constructor with every property. Accessors are unchanged.
+     * <p>
+     * Only supported for non-lazy, non-interned interfaces.
+     */
+    boolean wide() default false;
+
+    /**
+     * Generated reducer implements {@link com.yheriatovych.reductor.SlicedReducer} with properties as slices,
+     * so {@link com.yheriatovych.reductor.Store#createSliced(com.yheriatovych.reductor.SlicedReducer, com.yheriatovych.reductor.Middleware[])}
+     * can reduce actions which change different properties concurrently.
+     * Action is routed to a single property when exactly one sub-reducer handles it (see {@link com.yheriatovych.reductor.RoutedReducer}).
+     * <p>
+     * Not supported for lazy combined states.
+     */
+    boolean sliced() default false;
+
+    /**
+     * Generate {@link com.yheriatovych.reductor.diff.Differ} with the same name + "Differ" suffix,
+     * which compares properties by reference and produces {@link com.yheriatovych.reductor.diff.Patch} of changed paths.
+     * <p>
+     * Differ of lazy combined state does not initialize sub-states which are not initialized in both compared states.
+     */
+    boolean differ() default false;
 }
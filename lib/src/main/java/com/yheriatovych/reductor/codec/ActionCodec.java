@@ -0,0 +1,17 @@
+package com.yheriatovych.reductor.codec;
+
+import com.yheriatovych.reductor.Action;
+
+/**
+ * {@link Codec} for {@link Action} objects which is able to encode only a known set of action types.
+ * <p>
+ * Generated for every {@link com.yheriatovych.reductor.annotations.ActionCreator} interface.
+ * Several action codecs can be joined with {@link Codecs#union(ActionCodec...)}.
+ */
+public interface ActionCodec extends Codec<Action> {
+    /**
+     * @param actionType {@link Action#type} to check
+     * @return true if actions of given type can be written by this codec
+     */
+    boolean accepts(String actionType);
+}
@@ -0,0 +1,35 @@
+package com.yheriatovych.reductor.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoder/decoder of values of type T.
+ * <p>
+ * Codecs write directly to and read directly from {@link ByteBuffer}, without reflection or intermediate objects.
+ * Codecs for {@link com.yheriatovych.reductor.annotations.CombinedState} types and
+ * {@link com.yheriatovych.reductor.annotations.ActionCreator} actions are generated by the annotation processor
+ * when {@code reductor.codecs} processor option is enabled.
+ * <p>
+ * Codecs for common leaf types can be found in {@link Codecs}.
+ *
+ * @param <T> type of value to encode
+ */
+public interface Codec<T> {
+    /**
+     * Write value at current position of the buffer.
+     *
+     * @param value  value to write
+     * @param buffer buffer to write to
+     * @throws java.nio.BufferOverflowException if there is not enough space in buffer
+     */
+    void write(T value, ByteBuffer buffer);
+
+    /**
+     * Read value from current position of the buffer.
+     *
+     * @param buffer buffer to read from
+     * @return decoded value
+     * @throws java.nio.BufferUnderflowException if buffer ends before value is read
+     */
+    T read(ByteBuffer buffer);
+}
@@ -0,0 +1,355 @@
+package com.yheriatovych.reductor.codec;
+
+import com.yheriatovych.reductor.Action;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Built-in {@link Codec} implementations and combinators.
+ * <p>
+ * All codecs for boxed types and {@link String} accept null values.
+ */
+public final class Codecs {
+    private static final byte NULL = 0;
+    private static final byte NOT_NULL = 1;
+
+    private Codecs() {
+    }
+
+    public static final Codec<Boolean> BOOLEAN = new Codec<Boolean>() {
+        @Override
+        public void write(Boolean value, ByteBuffer buffer) {
+            buffer.put(value == null ? -1 : value ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        public Boolean read(ByteBuffer buffer) {
+            byte value = buffer.get();
+            return value == -1 ? null : value == 1;
+        }
+    };
+
+    public static final Codec<Byte> BYTE = nullable(new Codec<Byte>() {
+        @Override
+        public void write(Byte value, ByteBuffer buffer) {
+            buffer.put(value);
+        }
+
+        @Override
+        public Byte read(ByteBuffer buffer) {
+            return buffer.get();
+        }
+    });
+
+    public static final Codec<Short> SHORT = nullable(new Codec<Short>() {
+        @Override
+        public void write(Short value, ByteBuffer buffer) {
+            buffer.putShort(value);
+        }
+
+        @Override
+        public Short read(ByteBuffer buffer) {
+            return buffer.getShort();
+        }
+    });
+
+    public static final Codec<Character> CHARACTER = nullable(new Codec<Character>() {
+        @Override
+        public void write(Character value, ByteBuffer buffer) {
+            buffer.putChar(value);
+        }
+
+        @Override
+        public Character read(ByteBuffer buffer) {
+            return buffer.getChar();
+        }
+    });
+
+    public static final Codec<Integer> INTEGER = nullable(new Codec<Integer>() {
+        @Override
+        public void write(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    });
+
+    public static final Codec<Long> LONG = nullable(new Codec<Long>() {
+        @Override
+        public void write(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    });
+
+    public static final Codec<Float> FLOAT = nullable(new Codec<Float>() {
+        @Override
+        public void write(Float value, ByteBuffer buffer) {
+            buffer.putFloat(value);
+        }
+
+        @Override
+        public Float read(ByteBuffer buffer) {
+            return buffer.getFloat();
+        }
+    });
+
+    public static final Codec<Double> DOUBLE = nullable(new Codec<Double>() {
+        @Override
+        public void write(Double value, ByteBuffer buffer) {
+            buffer.putDouble(value);
+        }
+
+        @Override
+        public Double read(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+    });
+
+    /**
+     * Writes strings as length-prefixed UTF-8 without allocating intermediate byte arrays.
+     * Length -1 is used for null.
+     */
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public void write(String value, ByteBuffer buffer) {
+            if (value == null) {
+                buffer.putInt(-1);
+                return;
+            }
+            int length = value.length();
+            buffer.putInt(utf8Length(value));
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            int byteLength = buffer.getInt();
+            if (byteLength == -1) return null;
+
+            char[] chars = new char[byteLength];
+            int charCount = 0;
+            int end = buffer.position() + byteLength;
+            while (buffer.position() < end) {
+                int b = buffer.get() & 0xFF;
+                if (b < 0x80) {
+                    chars[charCount++] = (char) b;
+                } else if (b < 0xE0) {
+                    chars[charCount++] = (char) (((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+                } else if (b < 0xF0) {
+                    chars[charCount++] = (char) (((b & 0x0F) << 12) | ((buffer.get() & 0x3F) << 6) | (buffer.get() & 0x3F));
+                } else {
+                    int codePoint = ((b & 0x07) << 18) | ((buffer.get() & 0x3F) << 12)
+                            | ((buffer.get() & 0x3F) << 6) | (buffer.get() & 0x3F);
+                    chars[charCount++] = Character.highSurrogate(codePoint);
+                    chars[charCount++] = Character.lowSurrogate(codePoint);
+                }
+            }
+            return new String(chars, 0, charCount);
+        }
+    };
+
+    static int utf8Length(String value) {
+        int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Wrap codec to support null values by writing one byte presence flag before value.
+     *
+     * @param codec codec which does not support null values
+     * @param <T>   type of value
+     * @return codec which supports null values
+     */
+    public static <T> Codec<T> nullable(final Codec<T> codec) {
+        return new Codec<T>() {
+            @Override
+            public void write(T value, ByteBuffer buffer) {
+                if (value == null) {
+                    buffer.put(NULL);
+                } else {
+                    buffer.put(NOT_NULL);
+                    codec.write(value, buffer);
+                }
+            }
+
+            @Override
+            public T read(ByteBuffer buffer) {
+                return buffer.get() == NULL
+                        ? null
+                        : codec.read(buffer);
+            }
+        };
+    }
+
+    /**
+     * Create codec for lists. Decoded lists are unmodifiable.
+     *
+     * @param elementCodec codec for list elements
+     * @param <E>          type of list elements
+     * @return codec for lists of elements, supports null lists
+     */
+    public static <E> Codec<List<E>> list(final Codec<E> elementCodec) {
+        return new Codec<List<E>>() {
+            @Override
+            public void write(List<E> value, ByteBuffer buffer) {
+                if (value == null) {
+                    buffer.putInt(-1);
+                    return;
+                }
+                int size = value.size();
+                buffer.putInt(size);
+                for (int i = 0; i < size; i++) {
+                    elementCodec.write(value.get(i), buffer);
+                }
+            }
+
+            @Override
+            public List<E> read(ByteBuffer buffer) {
+                int size = buffer.getInt();
+                if (size == -1) return null;
+
+                List<E> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(elementCodec.read(buffer));
+                }
+                return Collections.unmodifiableList(list);
+            }
+        };
+    }
+
+    /**
+     * Wrap codec to write schema hash before every value and verify it on read.
+     * <p>
+     * Generated codecs expose their schema hash as {@code SCHEMA_HASH} constant.
+     *
+     * @param codec      codec to wrap
+     * @param schemaHash hash of schema used by codec
+     * @param <T>        type of value
+     * @return versioned codec
+     */
+    public static <T> Codec<T> versioned(final Codec<T> codec, final long schemaHash) {
+        return new Codec<T>() {
+            @Override
+            public void write(T value, ByteBuffer buffer) {
+                buffer.putLong(schemaHash);
+                codec.write(value, buffer);
+            }
+
+            @Override
+            public T read(ByteBuffer buffer) {
+                long hash = buffer.getLong();
+                if (hash != schemaHash) {
+                    throw new IllegalStateException(String.format(
+                            "Schema hash mismatch: expected %016x but found %016x", schemaHash, hash));
+                }
+                return codec.read(buffer);
+            }
+        };
+    }
+
+    /**
+     * Join several action codecs into one.
+     * <p>
+     * Every action is prefixed with one byte index of codec which accepts it.
+     * Returned codec implements {@link CompactionPolicy} by delegating to joined codecs implementing it.
+     *
+     * @param codecs action codecs to join, no more than 127
+     * @return codec which accepts actions accepted by any of provided codecs
+     */
+    public static ActionCodec union(final ActionCodec... codecs) {
+        if (codecs.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many action codecs: " + codecs.length);
+        }
+        return new UnionCodec(codecs);
+    }
+
+    private static class UnionCodec implements ActionCodec, CompactionPolicy {
+        private final ActionCodec[] codecs;
+
+        UnionCodec(ActionCodec[] codecs) {
+            this.codecs = codecs;
+        }
+
+        @Override
+        public boolean accepts(String actionType) {
+            return indexOf(actionType) != -1;
+        }
+
+        @Override
+        public void write(Action action, ByteBuffer buffer) {
+            int index = indexOf(action.type);
+            if (index == -1) {
+                throw new IllegalArgumentException(String.format("No codec accepts action %s", action));
+            }
+            buffer.put((byte) index);
+            codecs[index].write(action, buffer);
+        }
+
+        @Override
+        public Action read(ByteBuffer buffer) {
+            int index = buffer.get() & 0xFF;
+            if (index >= codecs.length) {
+                throw new IllegalStateException("Unknown codec index for union codec: " + index);
+            }
+            return codecs[index].read(buffer);
+        }
+
+        @Override
+        public Object compactionKey(Action action) {
+            int index = indexOf(action.type);
+            return index != -1 && codecs[index] instanceof CompactionPolicy
+                    ? ((CompactionPolicy) codecs[index]).compactionKey(action)
+                    : null;
+        }
+
+        private int indexOf(String actionType) {
+            for (int i = 0; i < codecs.length; i++) {
+                if (codecs[i].accepts(actionType)) return i;
+            }
+            return -1;
+        }
+    }
+}
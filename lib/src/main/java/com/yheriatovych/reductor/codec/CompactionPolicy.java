@@ -0,0 +1,19 @@
+package com.yheriatovych.reductor.codec;
+
+import com.yheriatovych.reductor.Action;
+
+/**
+ * Defines which actions supersede earlier ones, so earlier actions can be dropped from persisted action log.
+ * <p>
+ * Implemented by generated {@link ActionCodec} when some of
+ * {@link com.yheriatovych.reductor.annotations.ActionCreator.Action} are marked as
+ * {@link com.yheriatovych.reductor.annotations.ActionCreator.Action#compactable()}.
+ */
+public interface CompactionPolicy {
+    /**
+     * @param action action to get key for
+     * @return key object (with proper {@code equals} and {@code hashCode}) or null if action cannot be dropped.
+     * When several actions have equal keys, only the latest of them is needed to rebuild the state.
+     */
+    Object compactionKey(Action action);
+}
@@ -0,0 +1,24 @@
+package com.yheriatovych.reductor.diff;
+
+/**
+ * Computes the difference between two versions of the same immutable value.
+ * <p>
+ * Implementations should skip sub-values which are identical by reference,
+ * so the cost of a diff is proportional to the amount of changed data, not to the size of the value.
+ * <p>
+ * Differs for {@link com.yheriatovych.reductor.annotations.CombinedState} types are generated
+ * by the annotation processor with "Differ" suffix.
+ *
+ * @param <T> type of value to diff
+ */
+public interface Differ<T> {
+    /**
+     * Record every change between {@code previous} and {@code next} into {@code patch}.
+     *
+     * @param path     path of compared value inside of the root value, empty string for the root
+     * @param previous previous version of the value, may be null
+     * @param next     next version of the value, may be null
+     * @param patch    builder to collect changes
+     */
+    void diff(String path, T previous, T next, Patch.Builder patch);
+}
@@ -0,0 +1,57 @@
+package com.yheriatovych.reductor.diff;
+
+import java.util.List;
+
+/**
+ * {@link Differ} for {@link List} properties which compares lists element by element.
+ * <p>
+ * Elements at the same index are compared by reference. Changed elements are either reported as a whole
+ * or passed to optional element differ. Added and removed tail elements are reported
+ * with {@code null} as previous or next value.
+ *
+ * @param <E> type of list elements
+ */
+public class ListDiffer<E> implements Differ<List<E>> {
+    private final Differ<E> elementDiffer;
+
+    /**
+     * @param elementDiffer differ to compare changed elements, or null to report changed elements as a whole
+     */
+    public ListDiffer(Differ<E> elementDiffer) {
+        this.elementDiffer = elementDiffer;
+    }
+
+    public ListDiffer() {
+        this(null);
+    }
+
+    @Override
+    public void diff(String path, List<E> previous, List<E> next, Patch.Builder patch) {
+        if (previous == next) return;
+        if (previous == null || next == null) {
+            patch.changed(path, previous, next);
+            return;
+        }
+
+        int previousSize = previous.size();
+        int nextSize = next.size();
+        int commonSize = Math.min(previousSize, nextSize);
+        for (int i = 0; i < commonSize; i++) {
+            E previousElement = previous.get(i);
+            E nextElement = next.get(i);
+            if (previousElement == nextElement) continue;
+
+            if (elementDiffer != null) {
+                elementDiffer.diff(Patch.path(path, i), previousElement, nextElement, patch);
+            } else {
+                patch.changed(Patch.path(path, i), previousElement, nextElement);
+            }
+        }
+        for (int i = commonSize; i < previousSize; i++) {
+            patch.changed(Patch.path(path, i), previous.get(i), null);
+        }
+        for (int i = commonSize; i < nextSize; i++) {
+            patch.changed(Patch.path(path, i), null, next.get(i));
+        }
+    }
+}
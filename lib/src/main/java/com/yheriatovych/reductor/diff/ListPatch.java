@@ -0,0 +1,239 @@
+package com.yheriatovych.reductor.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Sequence of positional operations which turn previous version of a list into the next one.
+ * <p>
+ * Unlike {@link Patch}, operations are produced by the code which performs the update and knows exactly
+ * what is changed, so list consumers (e.g. UI adapters) can apply them one by one without diffing both lists.
+ * Positions of every operation are relative to the list with all preceding operations applied.
+ *
+ * @param <E> type of list elements
+ */
+public final class ListPatch<E> implements Iterable<ListPatch.Operation<E>> {
+    private static final ListPatch<?> EMPTY = new ListPatch<>(Collections.<Operation<Object>>emptyList());
+
+    private final List<Operation<E>> operations;
+
+    private ListPatch(List<Operation<E>> operations) {
+        this.operations = operations;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> ListPatch<E> empty() {
+        return (ListPatch<E>) EMPTY;
+    }
+
+    public static <E> Builder<E> builder() {
+        return new Builder<>();
+    }
+
+    public List<Operation<E>> getOperations() {
+        return operations;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    @Override
+    public Iterator<Operation<E>> iterator() {
+        return operations.iterator();
+    }
+
+    /**
+     * Notify callback about every operation in order.
+     */
+    public void dispatchTo(Callback<? super E> callback) {
+        for (Operation<E> operation : operations) {
+            switch (operation.type) {
+                case INSERT:
+                    callback.inserted(operation.position, operation.next);
+                    break;
+                case REMOVE:
+                    callback.removed(operation.position, operation.previous);
+                    break;
+                case MOVE:
+                    callback.moved(operation.position, operation.toPosition, operation.previous);
+                    break;
+                case CHANGE:
+                    callback.changed(operation.position, operation.previous, operation.next);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @param list previous version of the list
+     * @return new list with all operations applied
+     */
+    public List<E> apply(List<? extends E> list) {
+        List<E> result = new ArrayList<>(list);
+        for (Operation<E> operation : operations) {
+            switch (operation.type) {
+                case INSERT:
+                    result.add(operation.position, operation.next);
+                    break;
+                case REMOVE:
+                    result.remove(operation.position);
+                    break;
+                case MOVE:
+                    result.add(operation.toPosition, result.remove(operation.position));
+                    break;
+                case CHANGE:
+                    result.set(operation.position, operation.next);
+                    break;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ListPatch<?> patch = (ListPatch<?>) o;
+        return operations.equals(patch.operations);
+    }
+
+    @Override
+    public int hashCode() {
+        return operations.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ListPatch" + operations;
+    }
+
+    /**
+     * Receives operations of {@link ListPatch}, see {@link #dispatchTo(Callback)}.
+     */
+    public interface Callback<E> {
+        void inserted(int position, E element);
+
+        void removed(int position, E element);
+
+        /**
+         * Element is removed from {@code from} position and inserted at {@code to} position.
+         */
+        void moved(int from, int to, E element);
+
+        void changed(int position, E previous, E next);
+    }
+
+    public enum Type {
+        INSERT,
+        REMOVE,
+        MOVE,
+        CHANGE
+    }
+
+    /**
+     * Single operation of {@link ListPatch}.
+     * <p>
+     * {@code previous} is null for inserted elements and {@code next} is null for removed and moved elements.
+     * {@code toPosition} is used only by moves.
+     */
+    public static final class Operation<E> {
+        public final Type type;
+        public final int position;
+        public final int toPosition;
+        public final E previous;
+        public final E next;
+
+        public Operation(Type type, int position, int toPosition, E previous, E next) {
+            this.type = type;
+            this.position = position;
+            this.toPosition = toPosition;
+            this.previous = previous;
+            this.next = next;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Operation<?> operation = (Operation<?>) o;
+
+            if (type != operation.type) return false;
+            if (position != operation.position) return false;
+            if (toPosition != operation.toPosition) return false;
+            if (previous != null ? !previous.equals(operation.previous) : operation.previous != null) return false;
+            return next != null ? next.equals(operation.next) : operation.next == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + position;
+            result = 31 * result + toPosition;
+            result = 31 * result + (previous != null ? previous.hashCode() : 0);
+            result = 31 * result + (next != null ? next.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Operation{" +
+                    "type=" + type +
+                    ", position=" + position +
+                    (type == Type.MOVE ? ", toPosition=" + toPosition : "") +
+                    ", previous=" + previous +
+                    ", next=" + next +
+                    '}';
+        }
+    }
+
+    /**
+     * Builder of {@link ListPatch}, operations should be added in order they are performed.
+     */
+    public static final class Builder<E> {
+        private List<Operation<E>> operations;
+
+        private Builder() {
+        }
+
+        public Builder<E> inserted(int position, E element) {
+            return add(new Operation<>(Type.INSERT, position, position, null, element));
+        }
+
+        public Builder<E> removed(int position, E element) {
+            return add(new Operation<>(Type.REMOVE, position, position, element, null));
+        }
+
+        public Builder<E> moved(int from, int to, E element) {
+            return add(new Operation<>(Type.MOVE, from, to, element, null));
+        }
+
+        public Builder<E> changed(int position, E previous, E next) {
+            return add(new Operation<>(Type.CHANGE, position, position, previous, next));
+        }
+
+        private Builder<E> add(Operation<E> operation) {
+            if (operations == null) {
+                operations = new ArrayList<>();
+            }
+            operations.add(operation);
+            return this;
+        }
+
+        public ListPatch<E> build() {
+            if (operations == null) return empty();
+
+            ListPatch<E> patch = new ListPatch<>(Collections.unmodifiableList(operations));
+            operations = null;
+            return patch;
+        }
+    }
+}
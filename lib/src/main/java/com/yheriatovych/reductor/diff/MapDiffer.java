@@ -0,0 +1,58 @@
+package com.yheriatovych.reductor.diff;
+
+import java.util.Map;
+
+/**
+ * {@link Differ} for {@link Map} properties which compares maps entry by entry.
+ * <p>
+ * Path of every change is built from {@code String.valueOf(key)}.
+ * Changed values are either reported as a whole or passed to optional value differ.
+ *
+ * @param <K> type of map keys
+ * @param <V> type of map values
+ */
+public class MapDiffer<K, V> implements Differ<Map<K, V>> {
+    private final Differ<V> valueDiffer;
+
+    /**
+     * @param valueDiffer differ to compare changed values, or null to report changed values as a whole
+     */
+    public MapDiffer(Differ<V> valueDiffer) {
+        this.valueDiffer = valueDiffer;
+    }
+
+    public MapDiffer() {
+        this(null);
+    }
+
+    @Override
+    public void diff(String path, Map<K, V> previous, Map<K, V> next, Patch.Builder patch) {
+        if (previous == next) return;
+        if (previous == null || next == null) {
+            patch.changed(path, previous, next);
+            return;
+        }
+
+        for (Map.Entry<K, V> entry : previous.entrySet()) {
+            K key = entry.getKey();
+            V previousValue = entry.getValue();
+            V nextValue = next.get(key);
+            if (previousValue == nextValue) continue;
+
+            String valuePath = Patch.path(path, String.valueOf(key));
+            if (nextValue == null && !next.containsKey(key)) {
+                patch.changed(valuePath, previousValue, null);
+            } else if (valueDiffer != null) {
+                valueDiffer.diff(valuePath, previousValue, nextValue, patch);
+            } else {
+                patch.changed(valuePath, previousValue, nextValue);
+            }
+        }
+        for (Map.Entry<K, V> entry : next.entrySet()) {
+            K key = entry.getKey();
+            if (!previous.containsKey(key)) {
+                patch.changed(Patch.path(path, String.valueOf(key)), null, entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.yheriatovych.reductor.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * List of changes between two versions of a value, produced by {@link Differ}.
+ * <p>
+ * Every change is identified by path of the changed property, e.g. {@code "notes/3"} or {@code "filter"}.
+ */
+public final class Patch implements Iterable<Patch.Change> {
+    public static final char SEPARATOR = '/';
+
+    private static final Patch EMPTY = new Patch(Collections.<Change>emptyList());
+
+    private final List<Change> changes;
+
+    private Patch(List<Change> changes) {
+        this.changes = changes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Build path of the child property.
+     *
+     * @param parent path of the parent value, empty string for the root
+     * @param name   name of the child property
+     * @return path of the child property
+     */
+    public static String path(String parent, String name) {
+        return parent.isEmpty()
+                ? name
+                : parent + SEPARATOR + name;
+    }
+
+    /**
+     * Build path of the child element by index.
+     *
+     * @param parent path of the parent value, empty string for the root
+     * @param index  index of the child element
+     * @return path of the child element
+     */
+    public static String path(String parent, int index) {
+        return path(parent, String.valueOf(index));
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    @Override
+    public Iterator<Change> iterator() {
+        return changes.iterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Patch patch = (Patch) o;
+        return changes.equals(patch.changes);
+    }
+
+    @Override
+    public int hashCode() {
+        return changes.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Patch" + changes;
+    }
+
+    /**
+     * Single change of the value at given path.
+     * <p>
+     * {@code previous} is null for added values and {@code next} is null for removed values.
+     */
+    public static final class Change {
+        public final String path;
+        public final Object previous;
+        public final Object next;
+
+        public Change(String path, Object previous, Object next) {
+            this.path = path;
+            this.previous = previous;
+            this.next = next;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Change change = (Change) o;
+
+            if (!path.equals(change.path)) return false;
+            if (previous != null ? !previous.equals(change.previous) : change.previous != null) return false;
+            return next != null ? next.equals(change.next) : change.next == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (previous != null ? previous.hashCode() : 0);
+            result = 31 * result + (next != null ? next.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Change{" +
+                    "path='" + path + '\'' +
+                    ", previous=" + previous +
+                    ", next=" + next +
+                    '}';
+        }
+    }
+
+    public static final class Builder {
+        private List<Change> changes;
+
+        private Builder() {
+        }
+
+        public Builder changed(String path, Object previous, Object next) {
+            if (changes == null) {
+                changes = new ArrayList<>();
+            }
+            changes.add(new Change(path, previous, next));
+            return this;
+        }
+
+        public Patch build() {
+            if (changes == null) return EMPTY;
+
+            Patch patch = new Patch(Collections.unmodifiableList(changes));
+            changes = null;
+            return patch;
+        }
+    }
+}
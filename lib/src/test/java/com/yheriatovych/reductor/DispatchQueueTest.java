@@ -0,0 +1,274 @@
+package com.yheriatovych.reductor;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DispatchQueueTest {
+    private static final String ADD = "ADD";
+    private static final String SET = "SET";
+    private static final String OTHER = "OTHER";
+
+    private static final Reducer<Integer> REDUCER = (state, action) -> {
+        if (state == null) return 0;
+        switch (action.type) {
+            case ADD:
+                return state + (Integer) action.getValue(0);
+            case SET:
+                return (Integer) action.getValue(0);
+            default:
+                return state;
+        }
+    };
+
+    private static final DispatchQueue.Merger SUM = (previous, next) ->
+            Action.create(ADD, (Integer) previous.getValue(0) + (Integer) next.getValue(0));
+
+    //runs tasks only when asked, so actions pile up in the queue
+    private static class ManualExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private final ManualExecutor executor = new ManualExecutor();
+
+    @Test
+    public void testDispatchIsDeferredToExecutor() {
+        Store<Integer> store = Store.createQueued(REDUCER, DispatchQueue.builder(executor).build());
+        store.dispatch(Action.create(ADD, 1));
+        store.dispatch(Action.create(ADD, 2));
+
+        assertEquals(0, (int) store.getState());
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(3, (int) store.getState());
+    }
+
+    @Test
+    public void testQueueIsNotWedgedByRejectedDrain() {
+        final boolean[] rejecting = {true};
+        Store<Integer> store = Store.createQueued(REDUCER, DispatchQueue.builder(command -> {
+            if (rejecting[0]) throw new RejectedExecutionException();
+            executor.execute(command);
+        }).build());
+        try {
+            store.dispatch(Action.create(ADD, 1));
+            fail("drain should be rejected");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        rejecting[0] = false;
+        store.dispatch(Action.create(ADD, 2));
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(3, (int) store.getState());
+    }
+
+    @Test
+    public void testAdjacentActionsAreCoalesced() {
+        DispatchQueue queue = DispatchQueue.builder(executor)
+                .merge(ADD, SUM)
+                .merge(SET, DispatchQueue.KEEP_LAST)
+                .build();
+        final List<Object> reduced = new ArrayList<>();
+        Store<Integer> store = Store.createQueued(REDUCER, queue, (s, action, next) -> {
+            reduced.add(action);
+            next.call(action);
+        });
+        for (int i = 0; i < 1000; i++) {
+            store.dispatch(Action.create(ADD, 1));
+        }
+        store.dispatch(Action.create(OTHER));
+        store.dispatch(Action.create(SET, 5));
+        store.dispatch(Action.create(SET, 7));
+        store.dispatch(Action.create(ADD, 3));
+        assertEquals(1004, queue.size());
+        executor.runAll();
+
+        assertEquals(10, (int) store.getState());
+        assertEquals(4, reduced.size());
+        assertEquals(1000, ((Action) reduced.get(0)).getValue(0));
+        assertEquals(1004, queue.enqueued());
+        assertEquals(4, queue.dispatched());
+        assertEquals(1000, queue.coalesced());
+    }
+
+    @Test
+    public void testMergerCanRefuse() {
+        DispatchQueue queue = DispatchQueue.builder(executor)
+                //negative additions are not merged
+                .merge(ADD, (previous, next) -> (Integer) previous.getValue(0) < 0 || (Integer) next.getValue(0) < 0
+                        ? null
+                        : SUM.merge(previous, next))
+                .build();
+        final List<Integer> states = new ArrayList<>();
+        Store<Integer> store = Store.createQueued(REDUCER, queue);
+        store.subscribe(states::add);
+        store.dispatch(Action.create(ADD, 1));
+        store.dispatch(Action.create(ADD, 2));
+        store.dispatch(Action.create(ADD, -1));
+        store.dispatch(Action.create(ADD, 4));
+        executor.runAll();
+
+        assertEquals(6, (int) store.getState());
+        assertEquals(3, states.size());
+        assertEquals(3, (int) states.get(0));
+    }
+
+    @Test
+    public void testActionsDispatchedByMiddlewareAreQueued() {
+        DispatchQueue queue = DispatchQueue.builder(Runnable::run).build();
+        final List<String> order = new ArrayList<>();
+        Store<Integer> store = Store.createQueued(REDUCER, queue, (s, action, next) -> {
+            Action a = (Action) action;
+            order.add(a.type);
+            if (a.type.equals(OTHER)) s.dispatch(Action.create(ADD, 1));
+            next.call(action);
+            order.add("/" + a.type);
+        });
+        store.dispatch(Action.create(OTHER));
+
+        assertEquals(1, (int) store.getState());
+        assertEquals(4, order.size());
+        assertEquals("/" + OTHER, order.get(1));
+    }
+
+    @Test
+    public void testLanesAreDrainedByWeight() {
+        DispatchQueue queue = DispatchQueue.builder(executor)
+                .lane("ui", 2)
+                .lane("sync", 1)
+                .route(SET, "ui")
+                .route(ADD, "sync")
+                .build();
+        final List<Object> order = new ArrayList<>();
+        Store<Integer> store = Store.createQueued(REDUCER, queue, (s, action, next) -> {
+            order.add(((Action) action).getValue(0));
+            next.call(action);
+        });
+        for (int i = 1; i <= 4; i++) {
+            store.dispatch(Action.create(ADD, 10 * i));
+        }
+        for (int i = 1; i <= 3; i++) {
+            store.dispatch(Action.create(SET, i));
+        }
+        assertEquals(4, queue.lane("sync").depth());
+        assertEquals(3, queue.lane("ui").depth());
+        executor.runAll();
+
+        assertEquals(Arrays.<Object>asList(1, 2, 10, 3, 20, 30, 40), order);
+        assertEquals(0, queue.size());
+        assertEquals(3, queue.lanes().size());
+        assertEquals(DispatchQueue.DEFAULT_LANE, queue.lanes().get(2).name());
+    }
+
+    @Test
+    public void testExpiredActionsAreDropped() {
+        final long[] now = {0};
+        DispatchQueue queue = DispatchQueue.builder(executor)
+                .clock(() -> now[0])
+                .build();
+        Store<Integer> store = Store.createQueued(REDUCER, queue);
+        store.dispatch(DispatchQueue.withDeadline(Action.create(ADD, 1), 10));
+        store.dispatch(DispatchQueue.withDeadline(Action.create(ADD, 2), 30));
+        store.dispatch(Action.create(ADD, 4));
+        now[0] = TimeUnit.MILLISECONDS.toNanos(20);
+        executor.runAll();
+
+        assertEquals(6, (int) store.getState());
+        DispatchQueue.Lane lane = queue.lane(DispatchQueue.DEFAULT_LANE);
+        assertEquals(1, lane.expired());
+        assertEquals(2, lane.dispatched());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), lane.averageWaitNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), lane.maxWaitNanos());
+    }
+
+    @Test
+    public void testExpiredActionsAreNotCoalesced() {
+        final long[] now = {0};
+        DispatchQueue queue = DispatchQueue.builder(executor)
+                .clock(() -> now[0])
+                .merge(ADD, SUM)
+                .fallback(action -> Action.create(ADD, 100))
+                .build();
+        Store<Integer> store = Store.createQueued(REDUCER, queue);
+        store.dispatch(Action.create(ADD, 1));
+        store.dispatch(DispatchQueue.withDeadline(Action.create(ADD, 2), 10));
+        store.dispatch(Action.create(ADD, 4));
+        now[0] = TimeUnit.MILLISECONDS.toNanos(20);
+        executor.runAll();
+
+        //ADD 2 is replaced with fallback action instead of being folded into ADD 1
+        assertEquals(105, (int) store.getState());
+        DispatchQueue.Lane lane = queue.lane(DispatchQueue.DEFAULT_LANE);
+        assertEquals(1, lane.expired());
+        assertEquals(0, lane.coalesced());
+    }
+
+    @Test
+    public void testWaitOfCoalescedActionsIsAccounted() {
+        final long[] now = {0};
+        DispatchQueue queue = DispatchQueue.builder(executor)
+                .clock(() -> now[0])
+                .merge(ADD, SUM)
+                .build();
+        Store<Integer> store = Store.createQueued(REDUCER, queue);
+        store.dispatch(Action.create(ADD, 1));
+        store.dispatch(Action.create(ADD, 2));
+        now[0] = TimeUnit.MILLISECONDS.toNanos(15);
+        store.dispatch(Action.create(ADD, 4));
+        now[0] = TimeUnit.MILLISECONDS.toNanos(30);
+        executor.runAll();
+
+        assertEquals(7, (int) store.getState());
+        DispatchQueue.Lane lane = queue.lane(DispatchQueue.DEFAULT_LANE);
+        assertEquals(1, lane.dispatched());
+        assertEquals(2, lane.coalesced());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(25), lane.averageWaitNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(30), lane.maxWaitNanos());
+    }
+
+    @Test
+    public void testExpiredActionsAreReplacedWithFallback() {
+        final long[] now = {0};
+        DispatchQueue queue = DispatchQueue.builder(executor)
+                .clock(() -> now[0])
+                .fallback(action -> Action.create(SET, -1))
+                .build();
+        Store<Integer> store = Store.createQueued(REDUCER, queue);
+        store.dispatch(DispatchQueue.withDeadline(Action.create(ADD, 1), 10));
+        now[0] = TimeUnit.MILLISECONDS.toNanos(11);
+        executor.runAll();
+
+        assertEquals(-1, (int) store.getState());
+        assertEquals(0, queue.dispatched());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testQueueCannotBeShared() {
+        DispatchQueue queue = DispatchQueue.builder(executor).build();
+        Store.createQueued(REDUCER, queue);
+        Store.createQueued(REDUCER, queue);
+    }
+}
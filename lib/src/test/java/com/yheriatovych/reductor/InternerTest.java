@@ -0,0 +1,84 @@
+package com.yheriatovych.reductor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class InternerTest {
+
+    @Test
+    public void testEqualValuesShareInstance() {
+        Interner<String> interner = Interner.weak();
+        String first = new String("foo");
+        String second = new String("foo");
+        assertNotSame(first, second);
+
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        assertSame("bar", interner.intern("bar"));
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    public void testManyValues() {
+        Interner<Integer> interner = Interner.weak();
+        List<Integer> canonical = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            canonical.add(interner.intern(new Integer(i)));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertSame(canonical.get(i), interner.intern(new Integer(i)));
+        }
+        assertEquals(10000, interner.size());
+    }
+
+    @Test
+    public void testUnreferencedValuesAreRemoved() throws InterruptedException {
+        Interner<Object> interner = Interner.weak();
+        for (int i = 0; i < 1000; i++) {
+            interner.intern(new Object());
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (interner.size() > 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, interner.size());
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        final Interner<String> interner = Interner.weak();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> {
+                    List<String> values = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        values.add(interner.intern(String.valueOf(i)));
+                    }
+                    return values;
+                }));
+            }
+            List<String> expected = results.get(0).get();
+            for (Future<List<String>> result : results) {
+                List<String> values = result.get();
+                for (int i = 0; i < values.size(); i++) {
+                    assertSame(expected.get(i), values.get(i));
+                }
+            }
+            assertEquals(1000, interner.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.yheriatovych.reductor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyStateTest {
+    private static class CountingReducer implements RoutedReducer<Integer> {
+        int initCount;
+
+        @Override
+        public Integer reduce(Integer state, Action action) {
+            if (state == null) {
+                initCount++;
+                state = 0;
+            }
+            return "INC".equals(action.type) ? state + 1 : state;
+        }
+
+        @Override
+        public boolean handles(String actionType) {
+            return "INC".equals(actionType);
+        }
+    }
+
+    @Test
+    public void testInitActionDoesNotInitialize() {
+        CountingReducer reducer = new CountingReducer();
+
+        LazyState<Integer> state = LazyState.reduce(null, reducer, Action.create(Store.INIT_ACTION));
+
+        assertFalse(state.isInitialized());
+        assertEquals(0, reducer.initCount);
+    }
+
+    @Test
+    public void testNotHandledActionKeepsSameHolder() {
+        CountingReducer reducer = new CountingReducer();
+        LazyState<Integer> state = LazyState.uninitialized(reducer);
+
+        assertSame(state, LazyState.reduce(state, reducer, Action.create("OTHER")));
+        assertFalse(state.isInitialized());
+    }
+
+    @Test
+    public void testHandledActionInitializes() {
+        CountingReducer reducer = new CountingReducer();
+
+        LazyState<Integer> state = LazyState.reduce(LazyState.uninitialized(reducer), reducer, Action.create("INC"));
+
+        assertTrue(state.isInitialized());
+        assertEquals(1, (int) state.get());
+        assertEquals(1, reducer.initCount);
+    }
+
+    @Test
+    public void testGetInitializesOnce() {
+        CountingReducer reducer = new CountingReducer();
+        LazyState<Integer> state = LazyState.uninitialized(reducer);
+
+        assertEquals(0, (int) state.get());
+        assertEquals(0, (int) state.get());
+        assertEquals(1, reducer.initCount);
+    }
+
+    @Test
+    public void testNotRoutedReducerInitializesOnAnyAction() {
+        Reducer<String> reducer = (state, action) -> state == null ? "initial" : state;
+
+        LazyState<String> state = LazyState.reduce(null, reducer, Action.create("OTHER"));
+
+        assertTrue(state.isInitialized());
+        assertEquals("initial", state.get());
+    }
+
+    @Test
+    public void testDeferredIsReplacedWithUninitialized() {
+        CountingReducer reducer = new CountingReducer();
+
+        LazyState<Integer> state = LazyState.reduce(LazyState.<Integer>deferred(), reducer, Action.create(Store.INIT_ACTION));
+
+        assertFalse(state.isInitialized());
+        assertEquals(1, (int) LazyState.reduce(state, reducer, Action.create("INC")).get());
+        assertEquals(1, reducer.initCount);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDeferredCannotBeAccessed() {
+        LazyState.deferred().get();
+    }
+}
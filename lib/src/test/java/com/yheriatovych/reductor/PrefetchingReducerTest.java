@@ -0,0 +1,117 @@
+package com.yheriatovych.reductor;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrefetchingReducerTest {
+    private static final Action INIT = Action.create(Store.INIT_ACTION);
+
+    @Test
+    public void testInitialStatesAreComputedConcurrently() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        Reducer<String> reducer = (state, action) -> {
+            bothStarted.countDown();
+            try {
+                //would time out if initial states were computed one after another
+                assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return "initial";
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Reducer<String> first = PrefetchingReducer.prefetch(reducer, executor);
+            Reducer<String> second = PrefetchingReducer.prefetch(reducer, executor);
+
+            assertEquals("initial", first.reduce(null, INIT));
+            assertEquals("initial", second.reduce(null, INIT));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInitialStateIsComputedOnCallerThreadIfNotStarted() {
+        //executor which never runs tasks
+        Reducer<String> reducer = PrefetchingReducer.prefetch((state, action) -> "initial", command -> {});
+
+        assertEquals("initial", reducer.reduce(null, INIT));
+    }
+
+    @Test
+    public void testPrefetchedStateIsUsedOnce() {
+        final AtomicInteger calls = new AtomicInteger();
+        Reducer<Integer> reducer = PrefetchingReducer.prefetch((state, action) -> calls.incrementAndGet(), Runnable::run);
+
+        assertEquals(1, (int) reducer.reduce(null, INIT));
+        assertEquals(2, (int) reducer.reduce(null, INIT));
+        assertEquals(3, (int) reducer.reduce(5, Action.create("OTHER")));
+    }
+
+    @Test
+    public void testPrefetchingIsCancelledForNonNullInitialState() {
+        final AtomicInteger inits = new AtomicInteger();
+        final Runnable[] prefetch = new Runnable[1];
+        Reducer<Integer> reducer = PrefetchingReducer.prefetch((state, action) -> {
+            if (state == null) return inits.incrementAndGet();
+            return state + 1;
+        }, command -> prefetch[0] = command);
+
+        Store<Integer> store = Store.create(reducer, 10);
+        //task is cancelled, running it does nothing
+        prefetch[0].run();
+
+        assertEquals(11, (int) store.getState());
+        assertEquals(0, inits.get());
+        assertTrue(((Future<?>) prefetch[0]).isCancelled());
+    }
+
+    @Test
+    public void testRoutingIsForwarded() {
+        Reducer<Integer> left = PrefetchingReducer.prefetch(routed("LEFT"), Runnable::run);
+        Reducer<Integer> right = PrefetchingReducer.prefetch(routed("RIGHT"), Runnable::run);
+        Reducer<Integer> any = PrefetchingReducer.prefetch((state, action) -> 0, Runnable::run);
+
+        //the same slices as without prefetching
+        assertEquals(0, SliceRouter.route("LEFT", left, right));
+        assertEquals(1, SliceRouter.route("RIGHT", left, right));
+        assertEquals(SlicedReducer.UNKNOWN_SLICE, SliceRouter.route("OTHER", left, right));
+        assertEquals(SlicedReducer.UNKNOWN_SLICE, SliceRouter.route("LEFT", left, any));
+        assertTrue(left instanceof RoutedReducer);
+        assertFalse(any instanceof RoutedReducer);
+    }
+
+    private static RoutedReducer<Integer> routed(final String type) {
+        return new RoutedReducer<Integer>() {
+            @Override
+            public boolean handles(String actionType) {
+                return type.equals(actionType);
+            }
+
+            @Override
+            public Integer reduce(Integer state, Action action) {
+                return state == null ? 0 : state + 1;
+            }
+        };
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExceptionIsPropagated() {
+        Reducer<String> reducer = PrefetchingReducer.prefetch((state, action) -> {
+            throw new IllegalArgumentException();
+        }, Runnable::run);
+
+        reducer.reduce(null, INIT);
+    }
+}
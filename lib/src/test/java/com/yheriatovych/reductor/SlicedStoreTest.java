@@ -0,0 +1,167 @@
+package com.yheriatovych.reductor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlicedStoreTest {
+    private static final String LEFT = "LEFT";
+    private static final String RIGHT = "RIGHT";
+    private static final String BOTH = "BOTH";
+    private static final String NONE = "NONE";
+
+    private static class Counters {
+        final int left;
+        final int right;
+
+        Counters(int left, int right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private static class CountersReducer implements SlicedReducer<Counters> {
+        @Override
+        public Counters reduce(Counters state, Action action) {
+            if (state == null) return new Counters(0, 0);
+            Counters next = withSlice(state, 0, reduceSlice(0, state.left, action));
+            return withSlice(next, 1, reduceSlice(1, state.right, action));
+        }
+
+        @Override
+        public int sliceCount() {
+            return 2;
+        }
+
+        @Override
+        public int sliceOf(String actionType) {
+            switch (actionType) {
+                case LEFT:
+                    return 0;
+                case RIGHT:
+                    return 1;
+                default:
+                    return UNKNOWN_SLICE;
+            }
+        }
+
+        @Override
+        public Object getSlice(Counters state, int slice) {
+            return slice == 0 ? state.left : state.right;
+        }
+
+        @Override
+        public Object reduceSlice(int slice, Object value, Action action) {
+            boolean changed = action.type.equals(BOTH) || action.type.equals(slice == 0 ? LEFT : RIGHT);
+            return changed ? (Integer) value + 1 : value;
+        }
+
+        @Override
+        public Counters withSlice(Counters state, int slice, Object value) {
+            return slice == 0
+                    ? new Counters((Integer) value, state.right)
+                    : new Counters(state.left, (Integer) value);
+        }
+    }
+
+    @Test
+    public void testActionsOfDifferentSlicesAreReducedConcurrently() throws InterruptedException {
+        final CountDownLatch rightReduced = new CountDownLatch(1);
+        final CountDownLatch leftReduced = new CountDownLatch(1);
+        final Store<Counters> store = Store.createSliced(new CountersReducer() {
+            @Override
+            public Object reduceSlice(int slice, Object value, Action action) {
+                if (action.type.equals(LEFT)) {
+                    //would block forever if right slice waited for the left one
+                    try {
+                        assertTrue(rightReduced.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return super.reduceSlice(slice, value, action);
+            }
+        });
+
+        Thread left = new Thread(() -> {
+            store.dispatch(Action.create(LEFT));
+            leftReduced.countDown();
+        });
+        left.start();
+        store.dispatch(Action.create(RIGHT));
+        rightReduced.countDown();
+
+        assertTrue(leftReduced.await(5, TimeUnit.SECONDS));
+        assertEquals(1, store.getState().left);
+        assertEquals(1, store.getState().right);
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreMerged() throws InterruptedException {
+        final Store<Counters> store = Store.createSliced(new CountersReducer());
+        final String[] types = {LEFT, RIGHT, BOTH, NONE};
+        List<Thread> threads = new ArrayList<>();
+        for (final String type : types) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    store.dispatch(Action.create(type));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2000, store.getState().left);
+        assertEquals(2000, store.getState().right);
+    }
+
+    @Test
+    public void testUnchangedSliceKeepsState() {
+        Store<Counters> store = Store.createSliced(new CountersReducer() {
+            @Override
+            public int sliceOf(String actionType) {
+                return actionType.equals(NONE) ? 0 : super.sliceOf(actionType);
+            }
+        });
+        Counters state = store.getState();
+        store.dispatch(Action.create(NONE));
+
+        assertSame(state, store.getState());
+    }
+
+    @Test
+    public void testRouteToSingleHandlingReducer() {
+        RoutedReducer<Integer> left = routed(LEFT);
+        RoutedReducer<Integer> right = routed(RIGHT);
+        Reducer<Integer> unrouted = (state, action) -> state;
+
+        assertEquals(1, SliceRouter.route(RIGHT, left, right));
+        assertEquals(SlicedReducer.UNKNOWN_SLICE, SliceRouter.route(NONE, left, right));
+        assertEquals(SlicedReducer.UNKNOWN_SLICE, SliceRouter.route(LEFT, left, unrouted));
+        assertEquals(1, SliceRouter.route(NONE, left, unrouted));
+    }
+
+    private static RoutedReducer<Integer> routed(final String type) {
+        return new RoutedReducer<Integer>() {
+            @Override
+            public boolean handles(String actionType) {
+                return actionType.equals(type);
+            }
+
+            @Override
+            public Integer reduce(Integer state, Action action) {
+                return state;
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package com.yheriatovych.reductor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SpeculativeReducerTest {
+    private static final String[] ADD = {"ADD_0", "ADD_1", "ADD_2"};
+    //reads and writes all slices
+    private static final String ROTATE = "ROTATE";
+    //writes slice 0 only
+    private static final String MIX = "MIX";
+    //does not change anything
+    private static final String TOUCH = "TOUCH";
+
+    private static class SlotsReducer implements SlicedReducer<Integer[]> {
+        @Override
+        public Integer[] reduce(Integer[] state, Action action) {
+            if (state == null) return new Integer[]{0, 0, 0};
+            switch (action.type) {
+                case ROTATE:
+                    return new Integer[]{state[2], state[0], state[1]};
+                case MIX:
+                    return withSlice(state, 0, state[0] * 31 + state[1]);
+                case TOUCH:
+                    return state;
+                default:
+                    int slice = sliceOf(action.type);
+                    return withSlice(state, slice, reduceSlice(slice, state[slice], action));
+            }
+        }
+
+        @Override
+        public int sliceCount() {
+            return 3;
+        }
+
+        @Override
+        public int sliceOf(String actionType) {
+            int slice = Arrays.asList(ADD).indexOf(actionType);
+            return slice < 0 ? UNKNOWN_SLICE : slice;
+        }
+
+        @Override
+        public Object getSlice(Integer[] state, int slice) {
+            return state[slice];
+        }
+
+        @Override
+        public Object reduceSlice(int slice, Object value, Action action) {
+            //order-dependent, so misordered actions change the result
+            return action.type.equals(ADD[slice]) ? (Integer) value * 7 + (Integer) action.getValue(0) : value;
+        }
+
+        @Override
+        public Integer[] withSlice(Integer[] state, int slice, Object value) {
+            Integer[] next = state.clone();
+            next[slice] = (Integer) value;
+            return next;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private final SlotsReducer reducer = new SlotsReducer();
+    private final SpeculativeReducer<Integer[]> speculative = new SpeculativeReducer<>(reducer, executor);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Integer[] sequential(Integer[] state, Action[] actions) {
+        for (Action action : actions) {
+            state = reducer.reduce(state, action);
+        }
+        return state;
+    }
+
+    private static Action[] actions(Object... typesAndValues) {
+        Action[] actions = new Action[typesAndValues.length / 2];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = Action.create((String) typesAndValues[2 * i], typesAndValues[2 * i + 1]);
+        }
+        return actions;
+    }
+
+    @Test
+    public void testSameResultAsSequentialReduce() {
+        Random random = new Random(42);
+        String[] types = {ADD[0], ADD[1], ADD[2], ROTATE, MIX, TOUCH};
+        Integer[] initial = reducer.reduce(null, Action.create(Store.INIT_ACTION));
+        for (int batch = 0; batch < 50; batch++) {
+            Action[] actions = new Action[1 + random.nextInt(200)];
+            for (int i = 0; i < actions.length; i++) {
+                //barriers are rare
+                String type = random.nextInt(10) == 0 ? types[3 + random.nextInt(3)] : types[random.nextInt(3)];
+                actions[i] = Action.create(type, random.nextInt(100));
+            }
+            assertArrayEquals(sequential(initial, actions), speculative.reduce(initial, actions));
+        }
+        assertEquals(50, speculative.stats().batches());
+    }
+
+    @Test
+    public void testBarrierWhichKeepsSlicesDoesNotConflict() {
+        Integer[] initial = {1, 2, 3};
+        Action[] actions = actions(ADD[0], 1, ADD[1], 2, TOUCH, 0, ADD[0], 3, ADD[2], 4);
+
+        assertArrayEquals(sequential(initial, actions), speculative.reduce(initial, actions));
+        SpeculativeReducer.Stats stats = speculative.stats();
+        assertEquals(5, stats.actions());
+        assertEquals(4, stats.speculatedActions());
+        assertEquals(0, stats.conflicts());
+        assertEquals(0, stats.reexecutedActions());
+        assertEquals(0, stats.conflictRate(), 0);
+    }
+
+    @Test
+    public void testOnlyChangedSliceIsReexecuted() {
+        Integer[] initial = {1, 2, 3};
+        Action[] actions = actions(ADD[0], 1, ADD[1], 2, MIX, 0, ADD[0], 3, ADD[0], 4, ADD[1], 5);
+
+        assertArrayEquals(sequential(initial, actions), speculative.reduce(initial, actions));
+        SpeculativeReducer.Stats stats = speculative.stats();
+        assertEquals(5, stats.speculatedActions());
+        assertEquals(1, stats.conflicts());
+        //two ADD_0 after MIX
+        assertEquals(2, stats.reexecutedActions());
+        assertEquals(0.4, stats.conflictRate(), 1e-9);
+    }
+
+    @Test
+    public void testSingleSliceIsReducedSequentially() {
+        Integer[] initial = {1, 2, 3};
+        Action[] actions = actions(ADD[0], 1, ROTATE, 0, ADD[0], 3);
+
+        assertArrayEquals(sequential(initial, actions), speculative.reduce(initial, actions));
+        assertEquals(0, speculative.stats().speculatedActions());
+    }
+
+    @Test
+    public void testUnchangedStateIsKept() {
+        Integer[] initial = {0, 0, 3};
+        Action[] actions = actions(ADD[0], 0, ADD[1], 0, TOUCH, 0);
+
+        assertSame(initial, speculative.reduce(initial, actions));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSliceFailureIsRethrown() {
+        SpeculativeReducer<Integer[]> failing = new SpeculativeReducer<>(new SlotsReducer() {
+            @Override
+            public Object reduceSlice(int slice, Object value, Action action) {
+                if (slice == 1) throw new IllegalStateException();
+                return super.reduceSlice(slice, value, action);
+            }
+        }, executor);
+        failing.reduce(new Integer[]{1, 2, 3}, actions(ADD[0], 1, ADD[1], 2));
+    }
+}
@@ -0,0 +1,68 @@
+package com.yheriatovych.reductor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StateTrieTest {
+
+    private static StateTrie trieOfSize(int size) {
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = "value" + i;
+        }
+        return StateTrie.of(values);
+    }
+
+    @Test
+    public void testGet() {
+        StateTrie trie = trieOfSize(100);
+        assertEquals(100, trie.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value" + i, trie.get(i));
+        }
+        assertNull(StateTrie.empty(40).get(39));
+    }
+
+    @Test
+    public void testUnchangedEditorReturnsSameTrie() {
+        StateTrie trie = trieOfSize(100);
+        StateTrie.Editor editor = trie.draft();
+        editor.set(10, trie.get(10));
+        editor.set(70, trie.get(70));
+
+        assertSame(trie, editor.finish());
+    }
+
+    @Test
+    public void testEditorCopiesOnlyTouchedChunks() {
+        StateTrie trie = trieOfSize(100);
+        StateTrie next = trie.draft()
+                .set(3, "changed")
+                .set(5, "changed too")
+                .finish();
+
+        assertNotSame(trie, next);
+        assertEquals("changed", next.get(3));
+        assertEquals("changed too", next.get(5));
+        assertEquals("value3", trie.get(3));
+        for (int i = 32; i < 100; i++) {
+            assertSame(trie.get(i), next.get(i));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        trieOfSize(32).get(32);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEditorCannotBeUsedAfterFinish() {
+        StateTrie.Editor editor = trieOfSize(10).draft();
+        editor.finish();
+        editor.set(0, "changed");
+    }
+}
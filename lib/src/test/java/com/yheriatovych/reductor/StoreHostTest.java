@@ -0,0 +1,263 @@
+package com.yheriatovych.reductor;
+
+import com.yheriatovych.reductor.codec.Codecs;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StoreHostTest {
+    private static final String ADD = "ADD";
+    private static final String ADD_TWICE = "ADD_TWICE";
+
+    private static final Reducer<Integer> SUM = (state, action) -> {
+        if (state == null) return 0;
+        return ADD.equals(action.type) ? state + (Integer) action.getValue(0) : state;
+    };
+
+    //dispatches ADD_TWICE as two ADD actions through the hosted store
+    private static final Middleware<Integer> TWICE = (store, action, nextDispatcher) -> {
+        Action a = (Action) action;
+        if (ADD_TWICE.equals(a.type)) {
+            store.dispatch(Action.create(ADD, a.getValue(0)));
+            store.dispatch(Action.create(ADD, a.getValue(0)));
+        } else {
+            nextDispatcher.call(action);
+        }
+    };
+
+    private StoreHost<String, Integer> host;
+
+    @After
+    public void tearDown() {
+        if (host != null) host.close();
+    }
+
+    private static StoreHost.Builder<String, Integer> builder() {
+        return StoreHost.<String, Integer>builder(SUM, Codecs.INTEGER).workers(2);
+    }
+
+    @Test
+    public void testStoresAreIndependent() {
+        host = builder().middlewares(TWICE).build();
+        for (int i = 1; i <= 100; i++) {
+            host.dispatch("a", Action.create(ADD, i));
+            host.dispatch("b", Action.create(ADD_TWICE, i));
+        }
+
+        assertEquals(5050, (int) host.getState("a"));
+        assertEquals(10100, (int) host.getState("b"));
+        //reading unknown key does not create a store
+        assertNull(host.getState("c"));
+        assertEquals(2, host.liveStores());
+    }
+
+    @Test
+    public void testListenerIsNotifiedWithKey() {
+        final Map<String, Integer> states = new HashMap<>();
+        host = builder().workers(1).listener(states::put).build();
+        host.dispatch("a", Action.create(ADD, 1));
+        host.dispatch("b", Action.create(ADD, 2));
+        host.dispatch("a", Action.create(ADD, 3));
+        host.getState("a");
+
+        assertEquals(4, (int) states.get("a"));
+        assertEquals(2, (int) states.get("b"));
+    }
+
+    @Test
+    public void testIdleStoresAreEvictedAndRehydrated() throws InterruptedException {
+        host = builder().idleTimeoutMillis(10_000).build();
+        host.dispatch("a", Action.create(ADD, 1));
+        host.dispatch("b", Action.create(ADD, 2));
+        host.getState("b");
+        host.evictIdle();
+        assertEquals(2, host.liveStores());
+
+        host.close();
+        host = builder().idleTimeoutMillis(50).build();
+        host.dispatch("a", Action.create(ADD, 1));
+        host.dispatch("a", Action.create(ADD, 2));
+        host.getState("a");
+        Thread.sleep(100);
+        host.evictIdle();
+        assertEquals(0, host.liveStores());
+        assertEquals(0, host.weight());
+
+        host.dispatch("a", Action.create(ADD, 3));
+        assertEquals(6, (int) host.getState("a"));
+        //background sweep may evict it again
+        assertTrue(host.rehydrations() >= 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStoresAreEvictedOverMaxWeight() {
+        host = builder().workers(1).weigher(state -> 10).maxWeight(25).build();
+        host.dispatch("a", Action.create(ADD, 1));
+        host.dispatch("b", Action.create(ADD, 2));
+        host.dispatch("c", Action.create(ADD, 3));
+
+        assertEquals(10, host.weight("c"));
+        assertEquals(0, host.weight("a"));
+        assertEquals(2, host.liveStores());
+        assertEquals(20, host.weight());
+
+        host.dispatch("a", Action.create(ADD, 1));
+        assertEquals(2, (int) host.getState("a"));
+        assertEquals(10, host.weight("a"));
+        //b is the least recently used now
+        assertEquals(0, host.weight("b"));
+        assertEquals(2, host.evictions());
+    }
+
+    @Test
+    public void testStoresAreAccountedUnderSustainedLoad() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger liveStores = new AtomicInteger();
+        host = builder().workers(1).weigher(state -> 10).maxWeight(25).middlewares((store, action, nextDispatcher) -> {
+            String type = ((Action) action).type;
+            if ("BLOCK".equals(type)) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            } else if ("CHECK".equals(type)) {
+                liveStores.set(host.liveStores());
+            }
+            nextDispatcher.call(action);
+        }).build();
+        host.dispatch("a", Action.create("BLOCK"));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        //queue of the worker is never empty until the check
+        host.dispatch("b", Action.create(ADD, 1));
+        host.dispatch("c", Action.create(ADD, 1));
+        for (int i = 0; i < StoreHost.ACCOUNT_INTERVAL; i++) {
+            host.dispatch("a", Action.create(ADD, 1));
+        }
+        host.dispatch("a", Action.create("CHECK"));
+        host.dispatch("a", Action.create(ADD, 1));
+        release.countDown();
+
+        assertEquals(StoreHost.ACCOUNT_INTERVAL + 1, (int) host.getState("a"));
+        assertEquals(2, liveStores.get());
+    }
+
+    @Test
+    public void testWeightLookupKeepsIdleOrder() throws InterruptedException {
+        host = builder().workers(1).idleTimeoutMillis(200).build();
+        host.dispatch("a", Action.create(ADD, 1));
+        host.getState("a");
+        Thread.sleep(300);
+        host.dispatch("b", Action.create(ADD, 2));
+        host.getState("b");
+        host.weight("a");
+        host.evictIdle();
+
+        assertEquals(0, host.weight("a"));
+        assertEquals(1, host.liveStores());
+    }
+
+    @Test
+    public void testHostedStoreCanBeSubscribed() {
+        final List<Integer> states = new ArrayList<>();
+        host = builder().middlewares((store, action, nextDispatcher) -> {
+            if (store.getState() == 0) {
+                store.subscribe(states::add);
+            }
+            nextDispatcher.call(action);
+        }).build();
+        host.dispatch("a", Action.create(ADD, 1));
+        host.dispatch("a", Action.create(ADD, 2));
+        host.getState("a");
+
+        assertEquals(2, states.size());
+        assertEquals(3, (int) states.get(1));
+    }
+
+    @Test
+    public void testReadsDoNotEvict() {
+        host = builder().workers(1).weigher(state -> 10).maxWeight(25).build();
+        host.dispatch("a", Action.create(ADD, 1));
+        host.dispatch("b", Action.create(ADD, 2));
+        //created by read, accounted on the next dispatch
+        host.store("c");
+
+        assertEquals(10, host.weight("a"));
+        assertEquals(3, host.liveStores());
+        assertEquals(0, host.evictions());
+
+        host.dispatch("c", Action.create(ADD, 3));
+        assertEquals(3, (int) host.getState("c"));
+        assertEquals(2, host.liveStores());
+        assertEquals(0, host.weight("a"));
+    }
+
+    @Test
+    public void testStoresAreNotWeighedWithoutWeigher() {
+        host = builder().build();
+        host.dispatch("a", Action.create(ADD, 1));
+
+        assertEquals(0, host.weight("a"));
+        assertEquals(0, host.weight());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMaxWeightRequiresWeigher() {
+        builder().maxWeight(100).build();
+    }
+
+    @Test
+    public void testStoreViewCanBeSubscribed() throws InterruptedException {
+        host = builder().build();
+        Store<Integer> store = host.store("a");
+        final CountDownLatch notified = new CountDownLatch(1);
+        final AtomicInteger state = new AtomicInteger();
+        store.subscribe(next -> {
+            state.set(next);
+            notified.countDown();
+        });
+        store.dispatch(Action.create(ADD, 5));
+
+        assertTrue(notified.await(5, TimeUnit.SECONDS));
+        assertEquals(5, state.get());
+        assertEquals(5, (int) store.getState());
+        assertEquals(1, host.liveStores());
+    }
+
+    @Test
+    public void testCloseEvictsStoresToSnapshots() {
+        final Map<String, byte[]> storage = new HashMap<>();
+        StoreHost.Snapshots<String> snapshots = new StoreHost.Snapshots<String>() {
+            @Override
+            public synchronized void put(String key, byte[] snapshot) {
+                storage.put(key, snapshot);
+            }
+
+            @Override
+            public synchronized byte[] take(String key) {
+                return storage.remove(key);
+            }
+        };
+        host = builder().snapshots(snapshots).build();
+        host.dispatch("a", Action.create(ADD, 5));
+        host.close();
+        assertEquals(1, storage.size());
+
+        host = builder().snapshots(snapshots).build();
+        assertEquals(5, (int) host.getState("a"));
+        assertNull(storage.get("a"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.yheriatovych.reductor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerMiddlewareTest {
+    private static final String SEARCH = "SEARCH";
+    private static final String POSITION = "POSITION";
+    private static final String SAVE = "SAVE";
+    private static final String CLICK = "CLICK";
+
+    private final VirtualClock clock = new VirtualClock();
+    //values of reduced actions
+    private final List<Object> reduced = new ArrayList<>();
+    private final Reducer<Integer> reducer = (state, action) -> {
+        if (state == null) return 0;
+        reduced.add(action.values.length == 1 ? action.getValue(0) : Arrays.asList(action.values));
+        return state + 1;
+    };
+
+    private Store<Integer> store(TimerMiddleware<Integer> middleware) {
+        return Store.create(reducer, middleware);
+    }
+
+    private void advance(TimerMiddleware<?> middleware, long millis) {
+        clock.advance(millis, TimeUnit.MILLISECONDS);
+        middleware.tick();
+    }
+
+    @Test
+    public void testDebounceDispatchesLastActionAfterQuietPeriod() {
+        TimerMiddleware<Integer> middleware = TimerMiddleware.<Integer>builder()
+                .clock(clock)
+                .debounce(SEARCH, 300)
+                .build();
+        Store<Integer> store = store(middleware);
+        store.dispatch(Action.create(SEARCH, "r"));
+        advance(middleware, 100);
+        store.dispatch(Action.create(SEARCH, "re"));
+        advance(middleware, 100);
+        store.dispatch(Action.create(SEARCH, "red"));
+        advance(middleware, 200);
+        assertEquals(Collections.emptyList(), reduced);
+        assertEquals(1, middleware.pending());
+
+        advance(middleware, 100);
+        assertEquals(Collections.<Object>singletonList("red"), reduced);
+        assertEquals(0, middleware.pending());
+    }
+
+    @Test
+    public void testKeysAreTimedIndependently() {
+        TimerMiddleware<Integer> middleware = TimerMiddleware.<Integer>builder()
+                .clock(clock)
+                .debounce(POSITION, 50, values -> values[0])
+                .build();
+        Store<Integer> store = store(middleware);
+        store.dispatch(Action.create(POSITION, "a", 1));
+        store.dispatch(Action.create(POSITION, "b", 1));
+        store.dispatch(Action.create(POSITION, "a", 2));
+        advance(middleware, 50);
+
+        assertEquals(Arrays.<Object>asList(Arrays.asList("b", 1), Arrays.asList("a", 2)), reduced);
+    }
+
+    @Test
+    public void testThrottlePassesLeadingAndTrailingActions() {
+        TimerMiddleware<Integer> middleware = TimerMiddleware.<Integer>builder()
+                .clock(clock)
+                .throttle(POSITION, 100)
+                .build();
+        Store<Integer> store = store(middleware);
+        store.dispatch(Action.create(POSITION, 1));
+        assertEquals(Collections.<Object>singletonList(1), reduced);
+
+        advance(middleware, 10);
+        store.dispatch(Action.create(POSITION, 2));
+        advance(middleware, 40);
+        store.dispatch(Action.create(POSITION, 3));
+        advance(middleware, 50);
+        assertEquals(Arrays.<Object>asList(1, 3), reduced);
+
+        //trailing action opened a new window, which closes without actions
+        advance(middleware, 100);
+        assertEquals(0, middleware.pending());
+        store.dispatch(Action.create(POSITION, 4));
+        assertEquals(Arrays.<Object>asList(1, 3, 4), reduced);
+    }
+
+    @Test
+    public void testDelayKeepsEveryActionInOrder() {
+        TimerMiddleware<Integer> middleware = TimerMiddleware.<Integer>builder()
+                .clock(clock)
+                .delay(SAVE, 30)
+                .build();
+        Store<Integer> store = store(middleware);
+        store.dispatch(Action.create(SAVE, 1));
+        store.dispatch(Action.create(SAVE, 2));
+        store.dispatch(Action.create(CLICK, 0));
+        advance(middleware, 20);
+        store.dispatch(Action.create(SAVE, 3));
+        assertEquals(Collections.<Object>singletonList(0), reduced);
+
+        advance(middleware, 10);
+        assertEquals(Arrays.<Object>asList(0, 1, 2), reduced);
+        advance(middleware, 30);
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 3), reduced);
+    }
+
+    @Test
+    public void testTimersLongerThanWheelRevolution() {
+        TimerMiddleware<Integer> middleware = TimerMiddleware.<Integer>builder()
+                .clock(clock)
+                .tickMillis(10)
+                .wheelSize(4)
+                .delay(SAVE, 1000)
+                .delay(CLICK, 15)
+                .build();
+        Store<Integer> store = store(middleware);
+        store.dispatch(Action.create(SAVE, 1));
+        store.dispatch(Action.create(CLICK, 2));
+        advance(middleware, 500);
+        assertEquals(Collections.<Object>singletonList(2), reduced);
+
+        //clock jumps over several revolutions at once
+        advance(middleware, 5000);
+        assertEquals(Arrays.<Object>asList(2, 1), reduced);
+    }
+
+    @Test
+    public void testTickerFiresTimers() throws InterruptedException {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try (TimerMiddleware<Integer> middleware = TimerMiddleware.<Integer>builder()
+                .tickMillis(1)
+                .delay(SAVE, 20)
+                .ticker(executor)
+                .build()) {
+            Store<Integer> store = store(middleware);
+            final CountDownLatch saved = new CountDownLatch(1);
+            store.subscribe(state -> saved.countDown());
+            store.dispatch(Action.create(SAVE, 1));
+
+            assertTrue(saved.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.yheriatovych.reductor;
+
+import com.yheriatovych.reductor.diff.Differ;
+import com.yheriatovych.reductor.diff.Patch;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UndoableReducerTest {
+    private static final Reducer<Integer> SUM = (state, action) -> {
+        if (state == null) state = 0;
+        return "ADD".equals(action.type) ? state + (Integer) action.getValue(0) : state;
+    };
+
+    private static Store<Integer> dispatchAll(Reducer<Integer> reducer, int... values) {
+        Store<Integer> store = Store.create(reducer);
+        for (int value : values) {
+            store.dispatch(Action.create("ADD", value));
+        }
+        return store;
+    }
+
+    @Test
+    public void testUndoRedo() {
+        UndoableReducer<Integer> reducer = UndoableReducer.builder(SUM).build();
+        Store<Integer> store = dispatchAll(reducer, 1, 2, 3);
+        assertEquals(3, reducer.undoSize());
+
+        store.dispatch(UndoableReducer.undo());
+        store.dispatch(UndoableReducer.undo());
+        assertEquals(1, (int) store.getState());
+        assertEquals(2, reducer.redoSize());
+
+        store.dispatch(UndoableReducer.redo());
+        assertEquals(3, (int) store.getState());
+
+        //new action drops redo history
+        store.dispatch(Action.create("ADD", 10));
+        assertFalse(reducer.canRedo());
+        store.dispatch(UndoableReducer.redo());
+        assertEquals(13, (int) store.getState());
+    }
+
+    @Test
+    public void testUnchangedStateIsNotRecorded() {
+        UndoableReducer<Integer> reducer = UndoableReducer.builder(SUM).build();
+        Store<Integer> store = Store.create(reducer);
+        store.dispatch(Action.create("NOOP"));
+        assertFalse(reducer.canUndo());
+
+        store.dispatch(UndoableReducer.undo());
+        assertEquals(0, (int) store.getState());
+    }
+
+    @Test
+    public void testCapacityEvictsOldestSteps() {
+        UndoableReducer<Integer> reducer = UndoableReducer.builder(SUM)
+                .capacity(3)
+                .build();
+        Store<Integer> store = dispatchAll(reducer, 1, 2, 3, 4, 5);
+        assertEquals(3, reducer.undoSize());
+
+        for (int i = 0; i < 5; i++) {
+            store.dispatch(UndoableReducer.undo());
+        }
+        assertEquals(3, (int) store.getState());
+        assertEquals(3, reducer.redoSize());
+    }
+
+    @Test
+    public void testRetainedSizeBudget() {
+        UndoableReducer<Integer> reducer = UndoableReducer.builder(SUM)
+                .maxRetainedSize(9, (entry, state) -> (Integer) entry)
+                .build();
+        Store<Integer> store = dispatchAll(reducer, 1, 2, 3, 4);
+        //steps keep states 0, 1, 3 and 6, which do not fit into 9
+        assertEquals(2, reducer.undoSize());
+        assertEquals(9, reducer.retainedSize());
+
+        store.dispatch(UndoableReducer.clearHistory());
+        assertFalse(reducer.canUndo());
+        assertEquals(0, reducer.retainedSize());
+        assertEquals(10, (int) store.getState());
+    }
+
+    @Test
+    public void testRedoStepsAreCountedInRetainedSize() {
+        UndoableReducer<Integer> reducer = UndoableReducer.builder(SUM)
+                .maxRetainedSize(9, (entry, state) -> (Integer) entry)
+                .build();
+        Store<Integer> store = dispatchAll(reducer, 1, 2, 3);
+        assertEquals(4, reducer.retainedSize());
+
+        store.dispatch(UndoableReducer.undo());
+        store.dispatch(UndoableReducer.undo());
+        //undo steps keep state 0, redo steps keep states 6 and 3
+        assertEquals(9, reducer.retainedSize());
+
+        store.dispatch(UndoableReducer.undo());
+        //redo step to state 6 is the farthest one, it does not fit into 9
+        assertEquals(0, (int) store.getState());
+        assertEquals(2, reducer.redoSize());
+        assertEquals(4, reducer.retainedSize());
+
+        for (int i = 0; i < 3; i++) {
+            store.dispatch(UndoableReducer.redo());
+        }
+        assertEquals(3, (int) store.getState());
+    }
+
+    @Test
+    public void testGroupByType() {
+        UndoableReducer<Integer> reducer = UndoableReducer.builder(SUM)
+                .groupByType()
+                .build();
+        Store<Integer> store = dispatchAll(reducer, 1, 2);
+        store.dispatch(Action.create("SET"));
+        store.dispatch(Action.create("ADD", 3));
+        store.dispatch(Action.create("ADD", 4));
+        assertEquals(1, reducer.undoSize());
+
+        store.dispatch(UndoableReducer.undo());
+        assertEquals(0, (int) store.getState());
+        store.dispatch(UndoableReducer.redo());
+        assertEquals(10, (int) store.getState());
+    }
+
+    @Test
+    public void testGroupWithinTimeWindow() {
+        final long[] now = {0};
+        UndoableReducer<Integer> reducer = UndoableReducer.builder(SUM)
+                .groupWithinMillis(100)
+                .clock(() -> now[0])
+                .build();
+        Store<Integer> store = dispatchAll(reducer, 1, 2);
+        now[0] += 101_000_000;
+        store.dispatch(Action.create("ADD", 3));
+        assertEquals(2, reducer.undoSize());
+
+        store.dispatch(UndoableReducer.undo());
+        assertEquals(3, (int) store.getState());
+    }
+
+    private static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final Differ<Point> POINT_DIFFER = (path, previous, next, patch) -> {
+        if (previous.x != next.x) patch.changed(Patch.path(path, "x"), previous.x, next.x);
+        if (previous.y != next.y) patch.changed(Patch.path(path, "y"), previous.y, next.y);
+    };
+
+    private static final UndoableReducer.Patcher<Point> POINT_PATCHER = (state, patch) -> {
+        int x = state.x;
+        int y = state.y;
+        for (Patch.Change change : patch) {
+            if (change.path.equals("x")) x = (Integer) change.next;
+            if (change.path.equals("y")) y = (Integer) change.next;
+        }
+        return new Point(x, y);
+    };
+
+    private static final Reducer<Point> MOVE = (state, action) -> {
+        if (state == null) return new Point(0, 0);
+        switch (action.type) {
+            case "X":
+                return new Point((Integer) action.getValue(0), state.y);
+            case "Y":
+                return new Point(state.x, (Integer) action.getValue(0));
+            default:
+                return state;
+        }
+    };
+
+    @Test
+    public void testInversePatches() {
+        UndoableReducer<Point> reducer = UndoableReducer.builder(MOVE)
+                .patches(POINT_DIFFER, POINT_PATCHER)
+                .groupWithinMillis(1000)
+                .build();
+        Store<Point> store = Store.create(reducer);
+        store.dispatch(Action.create("X", 1));
+        store.dispatch(Action.create("Y", 2));
+        //coalesced step reverts both changes
+        assertEquals(2, reducer.retainedSize());
+
+        store.dispatch(UndoableReducer.undo());
+        assertEquals(0, store.getState().x);
+        assertEquals(0, store.getState().y);
+
+        store.dispatch(UndoableReducer.redo());
+        assertEquals(1, store.getState().x);
+        assertEquals(2, store.getState().y);
+        assertTrue(reducer.canUndo());
+    }
+}
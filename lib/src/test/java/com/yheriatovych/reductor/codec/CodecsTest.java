@@ -0,0 +1,156 @@
+package com.yheriatovych.reductor.codec;
+
+import com.yheriatovych.reductor.Action;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CodecsTest {
+
+    private static <T> T roundTrip(Codec<T> codec, T value) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        codec.write(value, buffer);
+        buffer.flip();
+        T result = codec.read(buffer);
+        assertFalse("buffer should be fully consumed", buffer.hasRemaining());
+        return result;
+    }
+
+    private static ActionCodec actionCodec(final String type) {
+        return new ActionCodec() {
+            @Override
+            public boolean accepts(String actionType) {
+                return actionType.equals(type);
+            }
+
+            @Override
+            public void write(Action action, ByteBuffer buffer) {
+                Codecs.INTEGER.write((Integer) action.getValue(0), buffer);
+            }
+
+            @Override
+            public Action read(ByteBuffer buffer) {
+                return Action.create(type, Codecs.INTEGER.read(buffer));
+            }
+        };
+    }
+
+    @Test
+    public void testBoxedPrimitives() {
+        assertEquals(true, roundTrip(Codecs.BOOLEAN, true));
+        assertEquals((byte) 7, (byte) roundTrip(Codecs.BYTE, (byte) 7));
+        assertEquals((short) -3, (short) roundTrip(Codecs.SHORT, (short) -3));
+        assertEquals('x', (char) roundTrip(Codecs.CHARACTER, 'x'));
+        assertEquals(42, (int) roundTrip(Codecs.INTEGER, 42));
+        assertEquals(Long.MAX_VALUE, (long) roundTrip(Codecs.LONG, Long.MAX_VALUE));
+        assertEquals(1.5f, roundTrip(Codecs.FLOAT, 1.5f), 0);
+        assertEquals(-2.25, roundTrip(Codecs.DOUBLE, -2.25), 0);
+    }
+
+    @Test
+    public void testNulls() {
+        assertNull(roundTrip(Codecs.BOOLEAN, null));
+        assertNull(roundTrip(Codecs.INTEGER, null));
+        assertNull(roundTrip(Codecs.STRING, null));
+        assertNull(roundTrip(Codecs.list(Codecs.STRING), null));
+    }
+
+    @Test
+    public void testStrings() {
+        assertEquals("", roundTrip(Codecs.STRING, ""));
+        assertEquals("hello", roundTrip(Codecs.STRING, "hello"));
+        String unicode = "\u00e9t\u00e9 \u4e2d\u6587 \ud83d\ude00";
+        assertEquals(unicode, roundTrip(Codecs.STRING, unicode));
+        assertEquals(unicode.getBytes(Charset.forName("UTF-8")).length, Codecs.utf8Length(unicode));
+    }
+
+    @Test
+    public void testList() {
+        List<String> list = Arrays.asList("a", null, "c");
+        assertEquals(list, roundTrip(Codecs.list(Codecs.STRING), list));
+    }
+
+    @Test
+    public void testVersioned() {
+        Codec<String> codec = Codecs.versioned(Codecs.STRING, 42L);
+        assertEquals("foo", roundTrip(codec, "foo"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testVersionedMismatch() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        Codecs.versioned(Codecs.STRING, 1L).write("foo", buffer);
+        buffer.flip();
+        Codecs.versioned(Codecs.STRING, 2L).read(buffer);
+    }
+
+    @Test
+    public void testUnion() {
+        ActionCodec codec = Codecs.union(actionCodec("A"), actionCodec("B"));
+
+        assertTrue(codec.accepts("A"));
+        assertTrue(codec.accepts("B"));
+        assertFalse(codec.accepts("C"));
+        assertEquals(Action.create("B", 5), roundTrip(codec, Action.create("B", 5)));
+    }
+
+    private static class CompactableCodec implements ActionCodec, CompactionPolicy {
+        private final ActionCodec codec = actionCodec("SET");
+
+        @Override
+        public boolean accepts(String actionType) {
+            return codec.accepts(actionType);
+        }
+
+        @Override
+        public void write(Action action, ByteBuffer buffer) {
+            codec.write(action, buffer);
+        }
+
+        @Override
+        public Action read(ByteBuffer buffer) {
+            return codec.read(buffer);
+        }
+
+        @Override
+        public Object compactionKey(Action action) {
+            return action.type;
+        }
+    }
+
+    @Test
+    public void testUnionCompactionKey() {
+        CompactionPolicy policy = (CompactionPolicy) Codecs.union(actionCodec("A"), new CompactableCodec());
+
+        assertEquals("SET", policy.compactionKey(Action.create("SET", 1)));
+        assertNull(policy.compactionKey(Action.create("A", 1)));
+        assertNull(policy.compactionKey(Action.create("C", 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnionRejectsUnknownAction() {
+        Codecs.union(actionCodec("A")).write(Action.create("C", 1), ByteBuffer.allocate(64));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnionRejectsUnknownIndex() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) 2).flip();
+        Codecs.union(actionCodec("A"), actionCodec("B")).read(buffer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnionRejectsNegativeIndex() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) -3).flip();
+        Codecs.union(actionCodec("A"), actionCodec("B")).read(buffer);
+    }
+}
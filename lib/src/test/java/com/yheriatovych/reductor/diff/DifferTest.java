@@ -0,0 +1,97 @@
+package com.yheriatovych.reductor.diff;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DifferTest {
+
+    private static <T> Patch diff(Differ<T> differ, T previous, T next) {
+        Patch.Builder builder = Patch.builder();
+        differ.diff("", previous, next, builder);
+        return builder.build();
+    }
+
+    @Test
+    public void testPath() {
+        assertEquals("foo", Patch.path("", "foo"));
+        assertEquals("foo/bar", Patch.path("foo", "bar"));
+        assertEquals("foo/3", Patch.path("foo", 3));
+    }
+
+    @Test
+    public void testSameListProducesEmptyPatch() {
+        List<String> list = Arrays.asList("a", "b");
+        assertTrue(diff(new ListDiffer<String>(), list, list).isEmpty());
+    }
+
+    @Test
+    public void testListDifferReportsOnlyChangedElements() {
+        String a = "a";
+        String c = "c";
+        List<String> previous = Arrays.asList(a, "b", c);
+        List<String> next = Arrays.asList(a, "B", c, "d");
+
+        Patch patch = diff(new ListDiffer<String>(), previous, next);
+
+        assertEquals(Arrays.asList(
+                new Patch.Change("1", "b", "B"),
+                new Patch.Change("3", null, "d")), patch.getChanges());
+    }
+
+    @Test
+    public void testListDifferReportsRemovedElements() {
+        Patch patch = diff(new ListDiffer<String>(), Arrays.asList("a", "b"), Collections.<String>emptyList());
+
+        assertEquals(Arrays.asList(
+                new Patch.Change("0", "a", null),
+                new Patch.Change("1", "b", null)), patch.getChanges());
+    }
+
+    @Test
+    public void testListDifferDelegatesToElementDiffer() {
+        Map<String, String> map1 = new HashMap<>();
+        map1.put("x", "1");
+        Map<String, String> map2 = new HashMap<>();
+        map2.put("x", "2");
+
+        Patch patch = diff(new ListDiffer<>(new MapDiffer<String, String>()),
+                Collections.singletonList(map1), Collections.singletonList(map2));
+
+        assertEquals(Collections.singletonList(new Patch.Change("0/x", "1", "2")), patch.getChanges());
+    }
+
+    @Test
+    public void testMapDiffer() {
+        Map<String, Integer> previous = new HashMap<>();
+        previous.put("removed", 1);
+        previous.put("changed", 2);
+        previous.put("same", 3);
+        Map<String, Integer> next = new HashMap<>(previous);
+        next.remove("removed");
+        next.put("changed", 20);
+        next.put("added", 4);
+
+        Patch patch = diff(new MapDiffer<String, Integer>(), previous, next);
+
+        assertEquals(3, patch.size());
+        assertTrue(patch.getChanges().contains(new Patch.Change("removed", 1, null)));
+        assertTrue(patch.getChanges().contains(new Patch.Change("changed", 2, 20)));
+        assertTrue(patch.getChanges().contains(new Patch.Change("added", null, 4)));
+    }
+
+    @Test
+    public void testNullValueReportedAsWhole() {
+        List<String> next = Collections.singletonList("a");
+        Patch patch = diff(new ListDiffer<String>(), null, next);
+
+        assertEquals(Collections.singletonList(new Patch.Change("", null, next)), patch.getChanges());
+    }
+}
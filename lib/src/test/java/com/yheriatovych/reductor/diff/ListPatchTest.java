@@ -0,0 +1,67 @@
+package com.yheriatovych.reductor.diff;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ListPatchTest {
+
+    @Test
+    public void testEmptyBuilder() {
+        ListPatch<String> patch = ListPatch.<String>builder().build();
+        assertTrue(patch.isEmpty());
+        assertSame(ListPatch.empty(), patch);
+    }
+
+    @Test
+    public void testApply() {
+        ListPatch<String> patch = ListPatch.<String>builder()
+                .removed(0, "a")
+                .inserted(2, "d")
+                .moved(0, 1, "b")
+                .changed(1, "b", "B")
+                .build();
+
+        assertEquals(Arrays.asList("c", "B", "d"), patch.apply(Arrays.asList("a", "b", "c")));
+    }
+
+    @Test
+    public void testDispatchTo() {
+        ListPatch<String> patch = ListPatch.<String>builder()
+                .inserted(0, "a")
+                .moved(0, 2, "a")
+                .changed(2, "a", "A")
+                .removed(1, "b")
+                .build();
+        List<String> calls = new ArrayList<>();
+        patch.dispatchTo(new ListPatch.Callback<String>() {
+            @Override
+            public void inserted(int position, String element) {
+                calls.add("inserted " + position + " " + element);
+            }
+
+            @Override
+            public void removed(int position, String element) {
+                calls.add("removed " + position + " " + element);
+            }
+
+            @Override
+            public void moved(int from, int to, String element) {
+                calls.add("moved " + from + " " + to + " " + element);
+            }
+
+            @Override
+            public void changed(int position, String previous, String next) {
+                calls.add("changed " + position + " " + previous + " " + next);
+            }
+        });
+
+        assertEquals(Arrays.asList("inserted 0 a", "moved 0 2 a", "changed 2 a A", "removed 1 b"), calls);
+    }
+}
@@ -0,0 +1,160 @@
+package com.yheriatovych.reductor.collections;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable aggregate of entities: count, sum, min and max of measured values,
+ * maintained by {@link AggregateIndex} and {@link GroupAggregateIndex}.
+ * <p>
+ * Measured values are kept in persistent order statistics tree, so adding or removing an entity
+ * takes O(log n) and {@link #min()}, {@link #max()} and {@link #valueAt(int)} are available without rescanning.
+ * Indexes keep the same instance while aggregate is not changed, so it can be compared by reference
+ * to skip recomputing values derived from it.
+ */
+public final class Aggregate {
+    static final Aggregate EMPTY = new Aggregate(0, 0, null);
+
+    private static final class Sample {
+        final long value;
+        final long sequence;
+
+        Sample(long value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Object> SAMPLE_ORDER = (a, b) -> {
+        Sample first = (Sample) a;
+        Sample second = (Sample) b;
+        int compare = Long.compare(first.value, second.value);
+        return compare != 0 ? compare : Long.compare(first.sequence, second.sequence);
+    };
+
+    private final int count;
+    private final long sum;
+    //measured values ordered by value, then by entity sequence, null if nothing is measured
+    private final SortedTree.Node samples;
+    //lazily computed, 0 if not computed yet
+    private int hash;
+
+    private Aggregate(int count, long sum, SortedTree.Node samples) {
+        this.count = count;
+        this.sum = sum;
+        this.samples = samples;
+    }
+
+    /**
+     * @return number of aggregated entities
+     */
+    public int count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return sum of measured values, 0 if there are no measured values
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @throws NoSuchElementException if there are no measured values
+     */
+    public long min() {
+        return valueAt(0);
+    }
+
+    /**
+     * @throws NoSuchElementException if there are no measured values
+     */
+    public long max() {
+        return valueAt(SortedTree.size(samples) - 1);
+    }
+
+    /**
+     * @param rank index of value in ascending order, e.g. {@code count() / 2} for median
+     * @throws NoSuchElementException if there are no measured values
+     */
+    public long valueAt(int rank) {
+        if (samples == null) throw new NoSuchElementException("There are no measured values");
+        return ((Sample) SortedTree.get(samples, rank).key).value;
+    }
+
+    /**
+     * @return true if both slots contribute the same sample, so replacing one with another does not change aggregate
+     */
+    static boolean sameSample(EntityMap.Slot<?, ?> previous, EntityMap.Slot<?, ?> next, Measure<Object> measure) {
+        return previous.sequence == next.sequence
+                && (measure == null || measure.measure(previous.getValue()) == measure.measure(next.getValue()));
+    }
+
+    Aggregate plus(EntityMap.Slot<?, ?> slot, Measure<Object> measure) {
+        if (measure == null) return new Aggregate(count + 1, sum, null);
+        long value = measure.measure(slot.getValue());
+        Sample sample = new Sample(value, slot.sequence);
+        return new Aggregate(count + 1, sum + value, SortedTree.put(samples, sample, sample, SAMPLE_ORDER));
+    }
+
+    Aggregate minus(EntityMap.Slot<?, ?> slot, Measure<Object> measure) {
+        if (count == 1) return EMPTY;
+        if (measure == null) return new Aggregate(count - 1, sum, null);
+        long value = measure.measure(slot.getValue());
+        Sample sample = new Sample(value, slot.sequence);
+        return new Aggregate(count - 1, sum - value, SortedTree.remove(samples, sample, SAMPLE_ORDER));
+    }
+
+    /**
+     * Aggregates are equal if they have the same count and the same measured values,
+     * so aggregates which differ only in e.g. median are not equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Aggregate)) return false;
+        Aggregate that = (Aggregate) o;
+        if (count != that.count || sum != that.sum) return false;
+        if ((samples == null) != (that.samples == null)) return false;
+        if (samples == null) return true;
+        if (SortedTree.size(samples) != SortedTree.size(that.samples)) return false;
+        Iterator<Sample> thatSamples = SortedTree.<Sample>values(that.samples).iterator();
+        for (Sample sample : SortedTree.<Sample>values(samples)) {
+            if (sample.value != thatSamples.next().value) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = count;
+            if (samples != null) {
+                for (Sample sample : SortedTree.<Sample>values(samples)) {
+                    result = 31 * result + (int) (sample.value ^ (sample.value >>> 32));
+                }
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (samples == null) return "Aggregate{count=" + count + "}";
+        return "Aggregate{count=" + count + ", sum=" + sum + ", min=" + min() + ", max=" + max() + "}";
+    }
+
+    /**
+     * Numeric value of entity to aggregate.
+     */
+    public interface Measure<V> {
+        long measure(V value);
+    }
+}
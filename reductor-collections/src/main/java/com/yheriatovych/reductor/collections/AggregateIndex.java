@@ -0,0 +1,38 @@
+package com.yheriatovych.reductor.collections;
+
+/**
+ * {@link Index} which aggregates all entities, see {@link Index#aggregate(Aggregate.Measure)}.
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public final class AggregateIndex<K, V> extends Index<K, V> {
+    private final Aggregate.Measure<Object> measure;
+    private final Aggregate aggregate;
+
+    AggregateIndex(Index<K, V> definition, Aggregate.Measure<Object> measure, Aggregate aggregate) {
+        super(definition);
+        this.measure = measure;
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * @return aggregate of all entities, the same instance while it is not changed
+     */
+    public Aggregate get() {
+        return aggregate;
+    }
+
+    @Override
+    AggregateIndex<K, V> update(EntityMap.Slot<K, V> previous, EntityMap.Slot<K, V> next, Object batch) {
+        if (previous != null && next != null && Aggregate.sameSample(previous, next, measure)) return this;
+        Aggregate newAggregate = aggregate;
+        if (previous != null) {
+            newAggregate = newAggregate.minus(previous, measure);
+        }
+        if (next != null) {
+            newAggregate = newAggregate.plus(next, measure);
+        }
+        return newAggregate == aggregate ? this : new AggregateIndex<>(definition, measure, newAggregate);
+    }
+}
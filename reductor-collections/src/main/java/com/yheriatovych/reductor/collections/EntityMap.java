@@ -0,0 +1,340 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Draft;
+import com.yheriatovych.reductor.Draftable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable map of entities which keeps insertion order, state of {@link KeyedReducer}.
+ * <p>
+ * Entries are stored in {@link PersistentVector} by insertion position and keys are indexed
+ * with {@link PersistentHashMap} from key to position, so lookup, update, insertion and removal take O(log n).
+ * Removed entries leave gaps which are compacted when they outnumber live entries,
+ * so removal is amortized O(log n) too.
+ * Updating value of existing key keeps its position.
+ * <p>
+ * Updates which do not change the map return the same instance.
+ * Batch updates should use {@link Builder} obtained with {@link #draft()}.
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public final class EntityMap<K, V> extends AbstractMap<K, V>
+        implements Draftable<EntityMap<K, V>, EntityMap.Builder<K, V>> {
+
+    /**
+     * Receives changes between two versions of {@link EntityMap}, see {@link #compare(EntityMap, EntityMap, Delta)}.
+     */
+    public interface Delta<K, V> {
+        void added(K key, V value);
+
+        void removed(K key, V value);
+
+        void updated(K key, V previous, V next);
+    }
+
+    /**
+     * Entry which remembers when its key was inserted, the sequence is kept when value is updated.
+     */
+    static final class Slot<K, V> extends SimpleImmutableEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        final long sequence;
+
+        Slot(K key, V value, long sequence) {
+            super(key, value);
+            this.sequence = sequence;
+        }
+    }
+
+    interface SlotChanges<K, V> {
+        /**
+         * @param previous slot of previous version, null if key is added
+         * @param next     slot of next version, null if key is removed
+         */
+        void changed(Slot<K, V> previous, Slot<K, V> next);
+    }
+
+    //minimal number of gaps to compact, so small maps are not rebuilt on every removal
+    private static final int MIN_COMPACTION_GAPS = 32;
+
+    private static final EntityMap<?, ?> EMPTY = new EntityMap<>(PersistentHashMap.empty(), PersistentVector.empty(), 0);
+
+    private final PersistentHashMap<K, Integer> positions;
+    //entries by insertion position, null for removed entries
+    private final PersistentVector<Slot<K, V>> entries;
+    private final long nextSequence;
+    private Set<Entry<K, V>> entrySet;
+
+    private EntityMap(PersistentHashMap<K, Integer> positions, PersistentVector<Slot<K, V>> entries, long nextSequence) {
+        this.positions = positions;
+        this.entries = entries;
+        this.nextSequence = nextSequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> EntityMap<K, V> empty() {
+        return (EntityMap<K, V>) EMPTY;
+    }
+
+    @Override
+    public int size() {
+        return positions.size();
+    }
+
+    @Override
+    public V get(Object key) {
+        Slot<K, V> slot = slot(key);
+        return slot == null ? null : slot.getValue();
+    }
+
+    Slot<K, V> slot(Object key) {
+        Integer position = positions.get(key);
+        return position == null ? null : entries.get(position);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return positions.containsKey(key);
+    }
+
+    /**
+     * @return map with value associated with key, appended to the end if key is new.
+     * This map if key is already associated with the same value (by reference)
+     */
+    public EntityMap<K, V> plus(K key, V value) {
+        if (key == null) throw new NullPointerException("key should not be null");
+        Integer position = positions.get(key);
+        if (position == null) {
+            return new EntityMap<>(positions.plus(key, entries.size()),
+                    entries.plus(new Slot<>(key, value, nextSequence)), nextSequence + 1);
+        }
+        Slot<K, V> slot = entries.get(position);
+        if (slot.getValue() == value) return this;
+        return new EntityMap<>(positions, entries.with(position, new Slot<>(key, value, slot.sequence)), nextSequence);
+    }
+
+    /**
+     * @return map without key, this map if there is no such key
+     */
+    public EntityMap<K, V> minus(Object key) {
+        Integer position = positions.get(key);
+        if (position == null) return this;
+
+        PersistentHashMap<K, Integer> newPositions = positions.minus(key);
+        if (newPositions.isEmpty()) return empty();
+        PersistentVector<Slot<K, V>> newEntries;
+        if (position == entries.size() - 1) {
+            newEntries = entries.minusLast();
+            while (newEntries.get(newEntries.size() - 1) == null) {
+                newEntries = newEntries.minusLast();
+            }
+        } else {
+            newEntries = entries.with(position, null);
+        }
+
+        int gaps = newEntries.size() - newPositions.size();
+        if (gaps >= MIN_COMPACTION_GAPS && gaps > newPositions.size()) {
+            return compact(newEntries, nextSequence);
+        }
+        return new EntityMap<>(newPositions, newEntries, nextSequence);
+    }
+
+    /**
+     * @return draft initialized with entries of this map
+     */
+    @Override
+    public Builder<K, V> draft() {
+        return new Builder<>(this);
+    }
+
+    private static <K, V> EntityMap<K, V> compact(PersistentVector<Slot<K, V>> entries, long nextSequence) {
+        PersistentHashMap.Builder<K, Integer> positions = PersistentHashMap.builder();
+        PersistentVector.Builder<Slot<K, V>> compacted = PersistentVector.builder();
+        for (Slot<K, V> entry : entries) {
+            if (entry == null) continue;
+            positions.put(entry.getKey(), compacted.size());
+            compacted.add(entry);
+        }
+        return new EntityMap<>(positions.build(), compacted.build(), nextSequence);
+    }
+
+    /**
+     * Report changes between two versions of the map.
+     * Versions are compared by trie nodes of entries, so if next version is derived from previous one
+     * the cost is proportional to the number of changes rather than to the size of the map.
+     * Values are compared by reference.
+     */
+    public static <K, V> void compare(EntityMap<K, V> previous, EntityMap<K, V> next, Delta<? super K, ? super V> delta) {
+        compareSlots(previous, next, (previousSlot, nextSlot) -> {
+            if (previousSlot == null) {
+                delta.added(nextSlot.getKey(), nextSlot.getValue());
+            } else if (nextSlot == null) {
+                delta.removed(previousSlot.getKey(), previousSlot.getValue());
+            } else if (previousSlot.getValue() != nextSlot.getValue()) {
+                delta.updated(previousSlot.getKey(), previousSlot.getValue(), nextSlot.getValue());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> void compareSlots(EntityMap<K, V> previous, EntityMap<K, V> next, SlotChanges<K, V> changes) {
+        if (previous == next) return;
+        PersistentVector.compare(previous.entries, next.entries, (index, previousEntry, nextEntry) -> {
+            //key which is present in both versions is always reported once, at its position in previous version
+            if (previousEntry != null) {
+                Slot<K, V> previousSlot = (Slot<K, V>) previousEntry;
+                Slot<K, V> nextSlot = next.slot(previousSlot.getKey());
+                if (nextSlot != previousSlot) {
+                    changes.changed(previousSlot, nextSlot);
+                }
+            }
+            if (nextEntry != null) {
+                Slot<K, V> nextSlot = (Slot<K, V>) nextEntry;
+                if (!previous.containsKey(nextSlot.getKey())) {
+                    changes.changed(null, nextSlot);
+                }
+            }
+        });
+    }
+
+    /**
+     * Mutable draft of {@link EntityMap}, updates follow the same rules as {@link #plus(Object, Object)}
+     * and {@link #minus(Object)} but mutate builders of the underlying collections in place.
+     */
+    public static final class Builder<K, V> implements Draft<EntityMap<K, V>> {
+        private final EntityMap<K, V> source;
+        private final PersistentHashMap.Builder<K, Integer> positions;
+        private final PersistentVector.Builder<Slot<K, V>> entries;
+        private long nextSequence;
+
+        private Builder(EntityMap<K, V> map) {
+            this.source = map;
+            this.positions = map.positions.toBuilder();
+            this.entries = map.entries.toBuilder();
+            this.nextSequence = map.nextSequence;
+        }
+
+        public int size() {
+            return positions.size();
+        }
+
+        public V get(Object key) {
+            Integer position = positions.get(key);
+            return position == null ? null : entries.get(position).getValue();
+        }
+
+        public boolean containsKey(Object key) {
+            return positions.get(key) != null;
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            if (key == null) throw new NullPointerException("key should not be null");
+            Integer position = positions.get(key);
+            if (position == null) {
+                positions.put(key, entries.size());
+                entries.add(new Slot<>(key, value, nextSequence++));
+                return this;
+            }
+            Slot<K, V> slot = entries.get(position);
+            if (slot.getValue() != value) {
+                entries.set(position, new Slot<>(key, value, slot.sequence));
+            }
+            return this;
+        }
+
+        public Builder<K, V> remove(Object key) {
+            Integer position = positions.get(key);
+            if (position == null) return this;
+
+            positions.remove(key);
+            if (position == entries.size() - 1) {
+                entries.removeLast();
+                while (entries.size() > 0 && entries.get(entries.size() - 1) == null) {
+                    entries.removeLast();
+                }
+            } else {
+                entries.set(position, null);
+            }
+            return this;
+        }
+
+        /**
+         * @return map with all changes applied, the map this draft was created from if nothing is changed
+         */
+        @Override
+        public EntityMap<K, V> finish() {
+            PersistentHashMap<K, Integer> newPositions = positions.finish();
+            PersistentVector<Slot<K, V>> newEntries = entries.finish();
+            if (newPositions == source.positions && newEntries == source.entries) return source;
+            if (newPositions.isEmpty()) return empty();
+
+            int gaps = newEntries.size() - newPositions.size();
+            if (gaps >= MIN_COMPACTION_GAPS && gaps > newPositions.size()) {
+                return compact(newEntries, nextSequence);
+            }
+            return new EntityMap<>(newPositions, newEntries, nextSequence);
+        }
+    }
+
+    /**
+     * Entries are iterated in insertion order.
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<K, V>(entries.iterator());
+                }
+
+                @Override
+                public int size() {
+                    return positions.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private static class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final Iterator<? extends Entry<K, V>> entries;
+        private Entry<K, V> next;
+
+        EntryIterator(Iterator<? extends Entry<K, V>> entries) {
+            this.entries = entries;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && entries.hasNext()) {
+                next = entries.next();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) throw new NoSuchElementException();
+            Entry<K, V> entry = next;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.ListPatch;
+
+import java.util.List;
+
+/**
+ * {@link Index} of entities matching predicate, see {@link Index#filter(Predicate)}.
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public final class FilterIndex<K, V> extends Index<K, V> {
+    private final Predicate<? super V> predicate;
+    //matching values by insertion sequence
+    private final SortedTree.Node root;
+    private final ListChanges<V> changes;
+
+    FilterIndex(Index<K, V> definition, Predicate<? super V> predicate, SortedTree.Node root, ListChanges<V> changes) {
+        super(definition);
+        this.predicate = predicate;
+        this.root = root;
+        this.changes = changes;
+    }
+
+    /**
+     * @return matching entities in insertion order, {@code get(index)} takes O(log n)
+     */
+    public List<V> values() {
+        return SortedTree.values(root);
+    }
+
+    public int size() {
+        return SortedTree.size(root);
+    }
+
+    /**
+     * @param previous previous version of this index
+     * @return operations turning {@code previous.values()} into {@link #values()},
+     * null if previous version is older than the last reduced action which changed this index
+     */
+    public ListPatch<V> changesSince(FilterIndex<K, V> previous) {
+        return ListChanges.since(previous.root, root, changes);
+    }
+
+    @Override
+    FilterIndex<K, V> update(EntityMap.Slot<K, V> previous, EntityMap.Slot<K, V> next, Object batch) {
+        boolean previousMatches = previous != null && predicate.test(previous.getValue());
+        boolean nextMatches = next != null && predicate.test(next.getValue());
+        if (!previousMatches && !nextMatches) return this;
+
+        ListChanges<V> newChanges = ListChanges.forBatch(changes, batch, root);
+        SortedTree.Node newRoot = root;
+        if (previousMatches && nextMatches && previous.sequence == next.sequence) {
+            newRoot = newChanges.changed(newRoot, previous.sequence, next.sequence,
+                    previous.getValue(), next.getValue(), SEQUENCE_ORDER);
+        } else {
+            if (previousMatches) {
+                newRoot = newChanges.removed(newRoot, previous.sequence, previous.getValue(), SEQUENCE_ORDER);
+            }
+            if (nextMatches) {
+                newRoot = newChanges.inserted(newRoot, next.sequence, next.getValue(), SEQUENCE_ORDER);
+            }
+        }
+        return new FilterIndex<>(definition, predicate, newRoot, newChanges);
+    }
+}
@@ -0,0 +1,65 @@
+package com.yheriatovych.reductor.collections;
+
+import java.util.Set;
+
+/**
+ * {@link Index} which aggregates entities of every group,
+ * see {@link Index#aggregateBy(Grouping, Aggregate.Measure)}.
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ * @param <G> type of groups
+ */
+public final class GroupAggregateIndex<K, V, G> extends Index<K, V> {
+    private final Grouping<? super V, G> grouping;
+    private final Aggregate.Measure<Object> measure;
+    //aggregates of non-empty groups
+    private final PersistentHashMap<G, Aggregate> groups;
+
+    GroupAggregateIndex(Index<K, V> definition, Grouping<? super V, G> grouping, Aggregate.Measure<Object> measure,
+                        PersistentHashMap<G, Aggregate> groups) {
+        super(definition);
+        this.grouping = grouping;
+        this.measure = measure;
+        this.groups = groups;
+    }
+
+    /**
+     * @return aggregate of the group, empty aggregate if there is no such group.
+     * The same instance is returned while aggregate of the group is not changed
+     */
+    public Aggregate get(G group) {
+        return get(groups, group);
+    }
+
+    /**
+     * @return non-empty groups
+     */
+    public Set<G> groups() {
+        return groups.keySet();
+    }
+
+    @Override
+    GroupAggregateIndex<K, V, G> update(EntityMap.Slot<K, V> previous, EntityMap.Slot<K, V> next, Object batch) {
+        G previousGroup = previous == null ? null : grouping.group(previous.getValue());
+        G nextGroup = next == null ? null : grouping.group(next.getValue());
+        if (previousGroup != null && previousGroup.equals(nextGroup) && Aggregate.sameSample(previous, next, measure)) {
+            return this;
+        }
+
+        PersistentHashMap<G, Aggregate> newGroups = groups;
+        if (previousGroup != null) {
+            Aggregate aggregate = newGroups.get(previousGroup).minus(previous, measure);
+            newGroups = aggregate.isEmpty() ? newGroups.minus(previousGroup) : newGroups.plus(previousGroup, aggregate);
+        }
+        if (nextGroup != null) {
+            newGroups = newGroups.plus(nextGroup, get(newGroups, nextGroup).plus(next, measure));
+        }
+        return newGroups == groups ? this : new GroupAggregateIndex<>(definition, grouping, measure, newGroups);
+    }
+
+    private static <G> Aggregate get(PersistentHashMap<G, Aggregate> groups, G group) {
+        Aggregate aggregate = groups.get(group);
+        return aggregate == null ? Aggregate.EMPTY : aggregate;
+    }
+}
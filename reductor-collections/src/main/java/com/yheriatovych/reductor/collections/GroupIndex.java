@@ -0,0 +1,98 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.ListPatch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link Index} of entities grouped by value of grouping function, see {@link Index#groupBy(Grouping)}.
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ * @param <G> type of groups
+ */
+public final class GroupIndex<K, V, G> extends Index<K, V> {
+    private final Grouping<? super V, G> grouping;
+    //values of every group by insertion sequence, empty groups are removed
+    private final PersistentHashMap<G, SortedTree.Node> groups;
+    //changes of groups updated by the last batch
+    private final Object batch;
+    private final PersistentHashMap<G, ListChanges<V>> changes;
+
+    GroupIndex(Index<K, V> definition, Grouping<? super V, G> grouping, PersistentHashMap<G, SortedTree.Node> groups,
+               Object batch, PersistentHashMap<G, ListChanges<V>> changes) {
+        super(definition);
+        this.grouping = grouping;
+        this.groups = groups;
+        this.batch = batch;
+        this.changes = changes;
+    }
+
+    /**
+     * @return entities of the group in insertion order, empty list if there is no such group.
+     * {@code get(index)} takes O(log n)
+     */
+    public List<V> get(G group) {
+        SortedTree.Node root = groups.get(group);
+        return root == null ? Collections.<V>emptyList() : SortedTree.<V>values(root);
+    }
+
+    /**
+     * @return non-empty groups
+     */
+    public Set<G> groups() {
+        return groups.keySet();
+    }
+
+    /**
+     * @param previous previous version of this index
+     * @return operations turning {@code previous.get(group)} into {@code get(group)},
+     * null if previous version is older than the last reduced action which changed this index
+     */
+    public ListPatch<V> changesSince(GroupIndex<K, V, G> previous, G group) {
+        SortedTree.Node previousRoot = previous.groups.get(group);
+        SortedTree.Node root = groups.get(group);
+        return ListChanges.since(previousRoot, root, changes.get(group));
+    }
+
+    @Override
+    GroupIndex<K, V, G> update(EntityMap.Slot<K, V> previous, EntityMap.Slot<K, V> next, Object batch) {
+        G previousGroup = previous == null ? null : grouping.group(previous.getValue());
+        G nextGroup = next == null ? null : grouping.group(next.getValue());
+        if (previousGroup == null && nextGroup == null) return this;
+
+        PersistentHashMap<G, SortedTree.Node> newGroups = groups;
+        PersistentHashMap<G, ListChanges<V>> newChanges = this.batch == batch
+                ? changes
+                : PersistentHashMap.<G, ListChanges<V>>empty();
+        if (previousGroup != null && previousGroup.equals(nextGroup) && previous.sequence == next.sequence) {
+            ListChanges<V> groupChanges = changesOf(newChanges, previousGroup, batch);
+            SortedTree.Node root = groupChanges.changed(groups.get(previousGroup), previous.sequence, next.sequence,
+                    previous.getValue(), next.getValue(), SEQUENCE_ORDER);
+            newGroups = newGroups.plus(previousGroup, root);
+            newChanges = newChanges.plus(previousGroup, groupChanges);
+        } else {
+            if (previousGroup != null) {
+                ListChanges<V> groupChanges = changesOf(newChanges, previousGroup, batch);
+                SortedTree.Node root = groupChanges.removed(newGroups.get(previousGroup), previous.sequence,
+                        previous.getValue(), SEQUENCE_ORDER);
+                newGroups = root == null ? newGroups.minus(previousGroup) : newGroups.plus(previousGroup, root);
+                newChanges = newChanges.plus(previousGroup, groupChanges);
+            }
+            if (nextGroup != null) {
+                ListChanges<V> groupChanges = changesOf(newChanges, nextGroup, batch);
+                SortedTree.Node root = groupChanges.inserted(newGroups.get(nextGroup), next.sequence,
+                        next.getValue(), SEQUENCE_ORDER);
+                newGroups = newGroups.plus(nextGroup, root);
+                newChanges = newChanges.plus(nextGroup, groupChanges);
+            }
+        }
+        return new GroupIndex<>(definition, grouping, newGroups, batch, newChanges);
+    }
+
+    private ListChanges<V> changesOf(PersistentHashMap<G, ListChanges<V>> changes, G group, Object batch) {
+        return ListChanges.forBatch(changes.get(group), batch, groups.get(group));
+    }
+}
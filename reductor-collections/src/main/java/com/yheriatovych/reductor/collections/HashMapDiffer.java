@@ -0,0 +1,152 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.Differ;
+import com.yheriatovych.reductor.diff.Patch;
+
+/**
+ * {@link Differ} for {@link PersistentHashMap} which reports the same changes as
+ * {@link com.yheriatovych.reductor.diff.MapDiffer}, but walks both tries together and skips nodes shared by both versions,
+ * so the cost of a diff is proportional to the number of updated nodes, not to the size of the map.
+ *
+ * @param <K> type of map keys
+ * @param <V> type of map values
+ */
+public class HashMapDiffer<K, V> implements Differ<PersistentHashMap<K, V>> {
+    private final Differ<V> valueDiffer;
+
+    /**
+     * @param valueDiffer differ to compare changed values, or null to report changed values as a whole
+     */
+    public HashMapDiffer(Differ<V> valueDiffer) {
+        this.valueDiffer = valueDiffer;
+    }
+
+    public HashMapDiffer() {
+        this(null);
+    }
+
+    @Override
+    public void diff(String path, PersistentHashMap<K, V> previous, PersistentHashMap<K, V> next, Patch.Builder patch) {
+        if (previous == next) return;
+        if (previous == null || next == null) {
+            patch.changed(path, previous, next);
+            return;
+        }
+        diffNodes(path, previous.root, next.root, 0, patch);
+    }
+
+    private void diffNodes(String path, PersistentHashMap.Node previous, PersistentHashMap.Node next, int shift, Patch.Builder patch) {
+        if (previous == next) return;
+        if (!(previous instanceof PersistentHashMap.BitmapNode) || !(next instanceof PersistentHashMap.BitmapNode)) {
+            diffSubtrees(path, previous, next, shift, patch);
+            return;
+        }
+
+        PersistentHashMap.BitmapNode previousNode = (PersistentHashMap.BitmapNode) previous;
+        PersistentHashMap.BitmapNode nextNode = (PersistentHashMap.BitmapNode) next;
+        int bits = previousNode.dataMap | previousNode.nodeMap | nextNode.dataMap | nextNode.nodeMap;
+        while (bits != 0) {
+            int bit = Integer.lowestOneBit(bits);
+            bits &= ~bit;
+
+            PersistentHashMap.Node previousChild = null;
+            PersistentHashMap.Node nextChild = null;
+            Object previousKey = null;
+            Object nextKey = null;
+            if ((previousNode.dataMap & bit) != 0) {
+                previousKey = previousNode.key(previousNode.dataIndex(bit));
+            } else if ((previousNode.nodeMap & bit) != 0) {
+                previousChild = previousNode.node(previousNode.nodeIndex(bit));
+            }
+            if ((nextNode.dataMap & bit) != 0) {
+                nextKey = nextNode.key(nextNode.dataIndex(bit));
+            } else if ((nextNode.nodeMap & bit) != 0) {
+                nextChild = nextNode.node(nextNode.nodeIndex(bit));
+            }
+
+            if (previousChild != null && nextChild != null) {
+                diffNodes(path, previousChild, nextChild, shift + PersistentHashMap.BITS, patch);
+            } else if (previousKey != null && nextKey != null && previousKey.equals(nextKey)) {
+                changed(path, previousKey,
+                        previousNode.value(previousNode.dataIndex(bit)), nextNode.value(nextNode.dataIndex(bit)), patch);
+            } else {
+                if (previousKey != null) {
+                    removedOrChanged(path, previousKey, previousNode.value(previousNode.dataIndex(bit)),
+                            nextChild, shift + PersistentHashMap.BITS, patch);
+                } else if (previousChild != null) {
+                    removedOrChanged(path, previousChild, nextKey != null ? nextNode : null, shift, patch);
+                }
+                if (nextKey != null) {
+                    added(path, nextKey, nextNode.value(nextNode.dataIndex(bit)),
+                            previousChild, shift + PersistentHashMap.BITS, patch);
+                } else if (nextChild != null) {
+                    added(path, nextChild, previousKey != null ? previousNode : null, shift, patch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compare subtrees at the same shift entry by entry.
+     */
+    private void diffSubtrees(String path, PersistentHashMap.Node previous, PersistentHashMap.Node next, int shift, Patch.Builder patch) {
+        removedOrChanged(path, previous, next, shift, patch);
+        added(path, next, previous, shift, patch);
+    }
+
+    /**
+     * Report every entry of previous subtree which is removed or changed in next subtree.
+     *
+     * @param shift shift of next subtree
+     */
+    private void removedOrChanged(String path, PersistentHashMap.Node previous, PersistentHashMap.Node next, int shift, Patch.Builder patch) {
+        for (int i = 0; i < previous.entryCount(); i++) {
+            removedOrChanged(path, previous.key(i), previous.value(i), next, shift, patch);
+        }
+        for (int i = 0; i < previous.nodeCount(); i++) {
+            removedOrChanged(path, previous.node(i), next, shift, patch);
+        }
+    }
+
+    private void removedOrChanged(String path, Object key, Object previousValue, PersistentHashMap.Node next, int shift, Patch.Builder patch) {
+        Object nextValue = next == null
+                ? PersistentHashMap.NOT_FOUND
+                : next.find(key, key.hashCode(), shift, PersistentHashMap.NOT_FOUND);
+        if (nextValue == PersistentHashMap.NOT_FOUND) {
+            patch.changed(Patch.path(path, String.valueOf(key)), previousValue, null);
+        } else {
+            changed(path, key, previousValue, nextValue, patch);
+        }
+    }
+
+    /**
+     * Report every entry of next subtree which is missing in previous subtree.
+     *
+     * @param shift shift of previous subtree
+     */
+    private void added(String path, PersistentHashMap.Node next, PersistentHashMap.Node previous, int shift, Patch.Builder patch) {
+        for (int i = 0; i < next.entryCount(); i++) {
+            added(path, next.key(i), next.value(i), previous, shift, patch);
+        }
+        for (int i = 0; i < next.nodeCount(); i++) {
+            added(path, next.node(i), previous, shift, patch);
+        }
+    }
+
+    private void added(String path, Object key, Object nextValue, PersistentHashMap.Node previous, int shift, Patch.Builder patch) {
+        if (previous == null || previous.find(key, key.hashCode(), shift, PersistentHashMap.NOT_FOUND) == PersistentHashMap.NOT_FOUND) {
+            patch.changed(Patch.path(path, String.valueOf(key)), null, nextValue);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void changed(String path, Object key, Object previousValue, Object nextValue, Patch.Builder patch) {
+        if (previousValue == nextValue) return;
+        String valuePath = Patch.path(path, String.valueOf(key));
+        if (valueDiffer != null) {
+            valueDiffer.diff(valuePath, (V) previousValue, (V) nextValue, patch);
+        } else {
+            patch.changed(valuePath, previousValue, nextValue);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.yheriatovych.reductor.collections;
+
+import java.util.Comparator;
+
+/**
+ * Immutable secondary index over entities of {@link EntityMap}, maintained by {@link IndexedReducer}.
+ * <p>
+ * Index is declared once with one of factory methods, which return empty index serving as index definition.
+ * {@link IndexedReducer} updates indexes from the changes of every reduced {@link EntityMap},
+ * so each changed entity costs O(log n) and nothing is rescanned.
+ * Current version of the index is accessed with {@link IndexedMap#index(Index)} by its definition:
+ *
+ * <pre>{@code
+ * static final GroupIndex<Integer, Note, Boolean> BY_CHECKED = Index.groupBy(note -> note.checked);
+ *
+ * List<Note> checked = state.notes().index(BY_CHECKED).get(true);
+ * }</pre>
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public abstract class Index<K, V> {
+
+    public interface Predicate<V> {
+        boolean test(V value);
+    }
+
+    public interface Grouping<V, G> {
+        /**
+         * @return group of value, or null to exclude value from the index
+         */
+        G group(V value);
+    }
+
+    static final Comparator<Object> SEQUENCE_ORDER = (a, b) -> Long.compare((Long) a, (Long) b);
+
+    final Index<K, V> definition;
+
+    Index(Index<K, V> definition) {
+        this.definition = definition == null ? this : definition;
+    }
+
+    /**
+     * @return index of entities matching predicate, in insertion order
+     */
+    public static <K, V> FilterIndex<K, V> filter(Predicate<? super V> predicate) {
+        if (predicate == null) throw new NullPointerException("predicate should not be null");
+        return new FilterIndex<>(null, predicate, null, null);
+    }
+
+    /**
+     * @return index of entities grouped by value of grouping function, each group is in insertion order
+     */
+    public static <K, V, G> GroupIndex<K, V, G> groupBy(Grouping<? super V, G> grouping) {
+        if (grouping == null) throw new NullPointerException("grouping should not be null");
+        return new GroupIndex<>(null, grouping, PersistentHashMap.<G, SortedTree.Node>empty(),
+                null, PersistentHashMap.<G, ListChanges<V>>empty());
+    }
+
+    /**
+     * @return index of entities sorted with comparator, equal entities are kept in insertion order
+     */
+    public static <K, V> SortedIndex<K, V> sortedBy(Comparator<? super V> comparator) {
+        if (comparator == null) throw new NullPointerException("comparator should not be null");
+        return new SortedIndex<>(null, comparator, null, null);
+    }
+
+    /**
+     * @param measure numeric value of entity to sum and order, or null to count entities only
+     * @return index of aggregate (count, sum, min and max) of all entities
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> AggregateIndex<K, V> aggregate(Aggregate.Measure<? super V> measure) {
+        return new AggregateIndex<>(null, (Aggregate.Measure<Object>) measure, Aggregate.EMPTY);
+    }
+
+    /**
+     * @param measure numeric value of entity to sum and order, or null to count entities only
+     * @return index of aggregates (count, sum, min and max) of entities in every group
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V, G> GroupAggregateIndex<K, V, G> aggregateBy(Grouping<? super V, G> grouping,
+                                                                    Aggregate.Measure<? super V> measure) {
+        if (grouping == null) throw new NullPointerException("grouping should not be null");
+        return new GroupAggregateIndex<>(null, grouping, (Aggregate.Measure<Object>) measure,
+                PersistentHashMap.<G, Aggregate>empty());
+    }
+
+    /**
+     * @param previous slot of entity before the change, null if entity is added
+     * @param next     slot of entity after the change, null if entity is removed
+     * @param batch    token which is the same for all changes of one reduced action
+     * @return updated index, this index if it is not affected by the change
+     */
+    abstract Index<K, V> update(EntityMap.Slot<K, V> previous, EntityMap.Slot<K, V> next, Object batch);
+}
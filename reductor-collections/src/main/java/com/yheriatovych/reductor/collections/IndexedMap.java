@@ -0,0 +1,63 @@
+package com.yheriatovych.reductor.collections;
+
+import java.util.AbstractMap;
+import java.util.Set;
+
+/**
+ * Immutable {@link EntityMap} together with its secondary indexes, state of {@link IndexedReducer}.
+ * <p>
+ * Map methods delegate to {@link #entities()}, indexes are accessed with {@link #index(Index)}.
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public final class IndexedMap<K, V> extends AbstractMap<K, V> {
+    private final EntityMap<K, V> entities;
+    private final Index<K, V>[] indexes;
+
+    IndexedMap(EntityMap<K, V> entities, Index<K, V>[] indexes) {
+        this.entities = entities;
+        this.indexes = indexes;
+    }
+
+    public EntityMap<K, V> entities() {
+        return entities;
+    }
+
+    /**
+     * @param definition index returned by one of {@link Index} factory methods and registered in {@link IndexedReducer}
+     * @return version of the index for entities of this map
+     * @throws IllegalArgumentException if index is not registered
+     */
+    @SuppressWarnings("unchecked")
+    public <I extends Index<K, V>> I index(I definition) {
+        for (Index<K, V> index : indexes) {
+            if (index.definition == definition) return (I) index;
+        }
+        throw new IllegalArgumentException("Index " + definition + " is not registered");
+    }
+
+    Index<K, V>[] indexes() {
+        return indexes;
+    }
+
+    @Override
+    public int size() {
+        return entities.size();
+    }
+
+    @Override
+    public V get(Object key) {
+        return entities.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entities.containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return entities.entrySet();
+    }
+}
@@ -0,0 +1,99 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Reducer} decorator which maintains secondary indexes of {@link EntityMap} reduced by wrapped reducer.
+ * <p>
+ * After every action, changes between previous and next versions of entities are computed with
+ * {@link EntityMap#compare(EntityMap, EntityMap, EntityMap.Delta)} and applied to every index,
+ * so indexes are updated together with the state in O(changes * log n)
+ * and filtered or sorted views are read without rescanning entities:
+ *
+ * <pre>{@code
+ * Reducer<IndexedMap<Integer, Note>> reducer = IndexedReducer.builder(notesReducer)
+ *         .index(BY_CHECKED)
+ *         .build();
+ * }</pre>
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public final class IndexedReducer<K, V> implements Reducer<IndexedMap<K, V>> {
+    private final Reducer<EntityMap<K, V>> reducer;
+    private final Index<K, V>[] definitions;
+
+    private IndexedReducer(Builder<K, V> builder) {
+        this.reducer = builder.reducer;
+        this.definitions = toArray(builder.definitions);
+    }
+
+    public static <K, V> Builder<K, V> builder(Reducer<EntityMap<K, V>> reducer) {
+        return new Builder<>(reducer);
+    }
+
+    @Override
+    public IndexedMap<K, V> reduce(IndexedMap<K, V> state, Action action) {
+        EntityMap<K, V> previous = state == null ? null : state.entities();
+        EntityMap<K, V> next = reducer.reduce(previous, action);
+        if (state != null && next == previous) return state;
+        return update(previous == null ? EntityMap.<K, V>empty() : previous,
+                state == null ? definitions : state.indexes(), next);
+    }
+
+    /**
+     * Build indexes for entities from scratch, e.g. for entities restored from snapshot.
+     */
+    public IndexedMap<K, V> index(EntityMap<K, V> entities) {
+        return update(EntityMap.<K, V>empty(), definitions, entities);
+    }
+
+    private static <K, V> IndexedMap<K, V> update(EntityMap<K, V> previous, Index<K, V>[] indexes, EntityMap<K, V> next) {
+        Index<K, V>[] updated = indexes.clone();
+        Object batch = new Object();
+        EntityMap.compareSlots(previous, next, (previousSlot, nextSlot) -> {
+            for (int i = 0; i < updated.length; i++) {
+                updated[i] = updated[i].update(previousSlot, nextSlot, batch);
+            }
+        });
+        return new IndexedMap<>(next, updated);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Index<K, V>[] toArray(List<Index<K, V>> definitions) {
+        return definitions.toArray((Index<K, V>[]) new Index<?, ?>[definitions.size()]);
+    }
+
+    public static final class Builder<K, V> {
+        private final Reducer<EntityMap<K, V>> reducer;
+        private final List<Index<K, V>> definitions = new ArrayList<>();
+
+        private Builder(Reducer<EntityMap<K, V>> reducer) {
+            if (reducer == null) throw new NullPointerException("reducer should not be null");
+            this.reducer = reducer;
+        }
+
+        /**
+         * @param definition index returned by one of {@link Index} factory methods
+         */
+        public Builder<K, V> index(Index<K, V> definition) {
+            if (definition == null) throw new NullPointerException("definition should not be null");
+            if (definition.definition != definition) {
+                throw new IllegalArgumentException("Index should be created with Index factory method");
+            }
+            if (definitions.contains(definition)) {
+                throw new IllegalArgumentException("Index " + definition + " is already registered");
+            }
+            definitions.add(definition);
+            return this;
+        }
+
+        public IndexedReducer<K, V> build() {
+            return new IndexedReducer<>(this);
+        }
+    }
+}
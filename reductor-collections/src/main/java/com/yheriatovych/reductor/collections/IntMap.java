@@ -0,0 +1,142 @@
+package com.yheriatovych.reductor.collections;
+
+/**
+ * Immutable map with primitive {@code int} keys.
+ * <p>
+ * Thin wrapper of {@link LongMap}, see it for details.
+ *
+ * @param <V> type of values
+ */
+public final class IntMap<V> {
+    private static final IntMap<?> EMPTY = new IntMap<>(LongMap.empty());
+
+    /**
+     * Receives entries of the map.
+     */
+    public interface Visitor<V> {
+        void visit(int key, V value);
+    }
+
+    final LongMap<V> map;
+
+    private IntMap(LongMap<V> map) {
+        this.map = map;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> IntMap<V> empty() {
+        return (IntMap<V>) EMPTY;
+    }
+
+    public static <V> Builder<V> builder() {
+        return IntMap.<V>empty().toBuilder();
+    }
+
+    /**
+     * @return builder initialized with entries of this map
+     */
+    public Builder<V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    private IntMap<V> wrap(LongMap<V> newMap) {
+        if (newMap == map) return this;
+        return newMap.isEmpty() ? IntMap.<V>empty() : new IntMap<>(newMap);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    /**
+     * @return value associated with key, or null if there is no such key
+     */
+    public V get(int key) {
+        return map.get(key);
+    }
+
+    public boolean containsKey(int key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * @return map with value associated with key, this map if key is already associated with the same value (by reference)
+     */
+    public IntMap<V> plus(int key, V value) {
+        return wrap(map.plus(key, value));
+    }
+
+    /**
+     * @return map without key, this map if there is no such key
+     */
+    public IntMap<V> minus(int key) {
+        return wrap(map.minus(key));
+    }
+
+    /**
+     * Visit every entry of the map in unspecified order.
+     */
+    public void forEach(final Visitor<? super V> visitor) {
+        map.forEach((key, value) -> visitor.visit((int) key, value));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IntMap)) return false;
+        return map.equals(((IntMap<?>) o).map);
+    }
+
+    @Override
+    public int hashCode() {
+        return map.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return map.toString();
+    }
+
+    /**
+     * Mutable builder of {@link IntMap}.
+     * {@link #build()} returns the map this builder was created from if nothing is changed.
+     * Builder cannot be used after {@link #build()}. Builder is not thread-safe.
+     *
+     * @param <V> type of values
+     */
+    public static final class Builder<V> {
+        private final IntMap<V> source;
+        private final LongMap.Builder<V> builder;
+
+        private Builder(IntMap<V> source) {
+            this.source = source;
+            this.builder = source.map.toBuilder();
+        }
+
+        public int size() {
+            return builder.size();
+        }
+
+        public V get(int key) {
+            return builder.get(key);
+        }
+
+        public Builder<V> put(int key, V value) {
+            builder.put(key, value);
+            return this;
+        }
+
+        public Builder<V> remove(int key) {
+            builder.remove(key);
+            return this;
+        }
+
+        public IntMap<V> build() {
+            return source.wrap(builder.build());
+        }
+    }
+}
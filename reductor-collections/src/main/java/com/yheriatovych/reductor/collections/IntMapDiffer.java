@@ -0,0 +1,34 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.Differ;
+import com.yheriatovych.reductor.diff.Patch;
+
+/**
+ * {@link Differ} for {@link IntMap}, see {@link LongMapDiffer}.
+ *
+ * @param <V> type of map values
+ */
+public class IntMapDiffer<V> implements Differ<IntMap<V>> {
+    private final LongMapDiffer<V> differ;
+
+    /**
+     * @param valueDiffer differ to compare changed values, or null to report changed values as a whole
+     */
+    public IntMapDiffer(Differ<V> valueDiffer) {
+        this.differ = new LongMapDiffer<>(valueDiffer);
+    }
+
+    public IntMapDiffer() {
+        this(null);
+    }
+
+    @Override
+    public void diff(String path, IntMap<V> previous, IntMap<V> next, Patch.Builder patch) {
+        if (previous == next) return;
+        if (previous == null || next == null) {
+            patch.changed(path, previous, next);
+            return;
+        }
+        differ.diff(path, previous.map, next.map, patch);
+    }
+}
@@ -0,0 +1,177 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link Reducer} of entities kept in {@link EntityMap} which routes every action to a single entity.
+ * <p>
+ * Key of target entity is extracted from action with {@link KeyExtractor}, then only this entity is reduced
+ * with per-entity reducer, so the cost of an action is O(log n) instead of scanning the whole collection.
+ * Actions without key or with key of missing entity do not change the state.
+ * <p>
+ * Only registered action types are routed: adding and removing entities are first-class operations,
+ * actions reduced by per-entity reducer are registered with {@link Builder#update(String)}.
+ * Other actions do not change the state.
+ *
+ * <pre>{@code
+ * KeyedReducer<Integer, Note> reducer = KeyedReducer.<Integer, Note>builder(KeyedReducer.keyAt(0))
+ *         .add(ADD_NOTE, action -> new Note((int) action.getValue(0), (String) action.getValue(1), false))
+ *         .remove(REMOVE_NOTE)
+ *         .update(TOGGLE_NOTE)
+ *         .entityReducer(noteReducer)
+ *         .build();
+ * }</pre>
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public final class KeyedReducer<K, V> implements Reducer<EntityMap<K, V>> {
+
+    /**
+     * Extracts key of entity targeted by action.
+     */
+    public interface KeyExtractor<K> {
+        /**
+         * @return key of target entity, or null if action does not target any entity
+         */
+        K key(Action action);
+    }
+
+    /**
+     * Creates new entity from action.
+     */
+    public interface Factory<V> {
+        V create(Action action);
+    }
+
+    private final KeyExtractor<K> keyExtractor;
+    private final Reducer<V> entityReducer;
+    private final Map<String, Factory<V>> factories;
+    private final Set<String> removals;
+    private final Map<String, KeyExtractor<K>> updates;
+
+    private KeyedReducer(Builder<K, V> builder) {
+        this.keyExtractor = builder.keyExtractor;
+        this.entityReducer = builder.entityReducer;
+        this.factories = new HashMap<>(builder.factories);
+        this.removals = new HashSet<>(builder.removals);
+        this.updates = new HashMap<>(builder.updates);
+    }
+
+    public static <K, V> Builder<K, V> builder(KeyExtractor<K> keyExtractor) {
+        return new Builder<>(keyExtractor);
+    }
+
+    /**
+     * @return extractor which takes the key from action value at position, null if action has no such value
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> KeyExtractor<K> keyAt(int position) {
+        if (position < 0) throw new IllegalArgumentException("position should not be negative");
+        return action -> action.values.length > position ? (K) action.values[position] : null;
+    }
+
+    @Override
+    public EntityMap<K, V> reduce(EntityMap<K, V> state, Action action) {
+        if (state == null) {
+            state = EntityMap.empty();
+        }
+
+        Factory<V> factory = factories.get(action.type);
+        boolean removal = removals.contains(action.type);
+        KeyExtractor<K> updateKeyExtractor = updates.get(action.type);
+        if (factory == null && !removal && updateKeyExtractor == null) return state;
+
+        K key = (updateKeyExtractor != null ? updateKeyExtractor : keyExtractor).key(action);
+        if (key == null) return state;
+        if (factory != null) {
+            return state.plus(key, factory.create(action));
+        }
+        if (removal) {
+            return state.minus(key);
+        }
+
+        V entity = state.get(key);
+        if (entity == null && !state.containsKey(key)) return state;
+        return state.plus(key, entityReducer.reduce(entity, action));
+    }
+
+    public static final class Builder<K, V> {
+        private final KeyExtractor<K> keyExtractor;
+        private Reducer<V> entityReducer;
+        private final Map<String, Factory<V>> factories = new HashMap<>();
+        private final Set<String> removals = new HashSet<>();
+        private final Map<String, KeyExtractor<K>> updates = new HashMap<>();
+
+        private Builder(KeyExtractor<K> keyExtractor) {
+            if (keyExtractor == null) throw new NullPointerException("keyExtractor should not be null");
+            this.keyExtractor = keyExtractor;
+        }
+
+        /**
+         * @param entityReducer reducer applied to entity targeted by action of type registered with {@link #update(String)},
+         *                      entity is updated only if reducer returns different instance
+         */
+        public Builder<K, V> entityReducer(Reducer<V> entityReducer) {
+            if (entityReducer == null) throw new NullPointerException("entityReducer should not be null");
+            this.entityReducer = entityReducer;
+            return this;
+        }
+
+        /**
+         * Register action type which adds new entity to the end, or replaces existing entity with the same key in place.
+         */
+        public Builder<K, V> add(String actionType, Factory<V> factory) {
+            if (factory == null) throw new NullPointerException("factory should not be null");
+            checkNotRegistered(actionType);
+            factories.put(actionType, factory);
+            return this;
+        }
+
+        /**
+         * Register action type which removes targeted entity.
+         */
+        public Builder<K, V> remove(String actionType) {
+            checkNotRegistered(actionType);
+            removals.add(actionType);
+            return this;
+        }
+
+        /**
+         * Register action type which is reduced by entity reducer for targeted entity.
+         */
+        public Builder<K, V> update(String actionType) {
+            return update(actionType, keyExtractor);
+        }
+
+        /**
+         * Register action type which is reduced by entity reducer for entity targeted by key extracted with given extractor.
+         */
+        public Builder<K, V> update(String actionType, KeyExtractor<K> keyExtractor) {
+            if (keyExtractor == null) throw new NullPointerException("keyExtractor should not be null");
+            checkNotRegistered(actionType);
+            updates.put(actionType, keyExtractor);
+            return this;
+        }
+
+        private void checkNotRegistered(String actionType) {
+            if (actionType == null) throw new NullPointerException("actionType should not be null");
+            if (factories.containsKey(actionType) || removals.contains(actionType) || updates.containsKey(actionType)) {
+                throw new IllegalArgumentException("Action type " + actionType + " is already registered");
+            }
+        }
+
+        public KeyedReducer<K, V> build() {
+            if (!updates.isEmpty() && entityReducer == null) {
+                throw new IllegalStateException("entityReducer should be set to reduce " + updates.keySet());
+            }
+            return new KeyedReducer<>(this);
+        }
+    }
+}
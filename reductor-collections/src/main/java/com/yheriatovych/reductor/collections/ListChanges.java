@@ -0,0 +1,81 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.ListPatch;
+
+import java.util.Comparator;
+
+/**
+ * Records {@link ListPatch} of list view backed by {@link SortedTree} while index is updated.
+ * <p>
+ * Changes are collected for every batch of updates (one reduced action) and are relative to
+ * the tree before the batch, so list consumers which have seen that version can apply them instead of diffing.
+ */
+final class ListChanges<V> {
+    private final Object batch;
+    //root of the tree before the batch
+    final SortedTree.Node base;
+    private ListPatch.Builder<V> builder = ListPatch.builder();
+    private ListPatch<V> patch;
+
+    private ListChanges(Object batch, SortedTree.Node base) {
+        this.batch = batch;
+        this.base = base;
+    }
+
+    /**
+     * @return changes of the batch, new changes relative to root if batch is not started yet
+     */
+    static <V> ListChanges<V> forBatch(ListChanges<V> changes, Object batch, SortedTree.Node root) {
+        return changes != null && changes.batch == batch ? changes : new ListChanges<V>(batch, root);
+    }
+
+    /**
+     * @return operations turning list of previous tree into list of current tree,
+     * null if changes are recorded relative to another version
+     */
+    static <V> ListPatch<V> since(SortedTree.Node previous, SortedTree.Node current, ListChanges<V> changes) {
+        if (previous == current) return ListPatch.empty();
+        return changes != null && changes.base == previous ? changes.patch() : null;
+    }
+
+    private synchronized ListPatch<V> patch() {
+        if (patch == null) {
+            patch = builder.build();
+            builder = null;
+        }
+        return patch;
+    }
+
+    SortedTree.Node inserted(SortedTree.Node root, Object key, V value, Comparator<Object> comparator) {
+        SortedTree.Node newRoot = SortedTree.put(root, key, value, comparator);
+        builder.inserted(SortedTree.rank(newRoot, key, comparator), value);
+        return newRoot;
+    }
+
+    SortedTree.Node removed(SortedTree.Node root, Object key, V value, Comparator<Object> comparator) {
+        builder.removed(SortedTree.rank(root, key, comparator), value);
+        return SortedTree.remove(root, key, comparator);
+    }
+
+    /**
+     * Replace value, moving it if its new key has different position.
+     */
+    SortedTree.Node changed(SortedTree.Node root, Object previousKey, Object nextKey, V previous, V next,
+                            Comparator<Object> comparator) {
+        int from = SortedTree.rank(root, previousKey, comparator);
+        SortedTree.Node newRoot;
+        int to;
+        if (comparator.compare(previousKey, nextKey) == 0) {
+            newRoot = SortedTree.put(root, nextKey, next, comparator);
+            to = from;
+        } else {
+            newRoot = SortedTree.put(SortedTree.remove(root, previousKey, comparator), nextKey, next, comparator);
+            to = SortedTree.rank(newRoot, nextKey, comparator);
+        }
+        if (from != to) {
+            builder.moved(from, to, previous);
+        }
+        builder.changed(to, previous, next);
+        return newRoot;
+    }
+}
@@ -0,0 +1,404 @@
+package com.yheriatovych.reductor.collections;
+
+import java.util.Arrays;
+
+/**
+ * Immutable map with primitive {@code long} keys, implemented as compressed hash array mapped trie (CHAMP).
+ * <p>
+ * Keys are stored in {@code long[]} arrays of trie nodes, so updates and lookups do not box keys.
+ * Trie is indexed by bijective mix of the key, so keys never collide
+ * and the trie is at most 13 levels deep.
+ * <p>
+ * Updates which do not change the map (putting the same value by reference, removing missing key)
+ * return the same instance. Batch updates should use {@link Builder}.
+ * Use {@link LongMapDiffer} to compare versions of the map, it skips shared trie nodes.
+ *
+ * @param <V> type of values
+ */
+public final class LongMap<V> {
+    static final int BITS = 5;
+    static final int MASK = (1 << BITS) - 1;
+
+    private static final LongMap<?> EMPTY = new LongMap<>(Node.EMPTY, 0);
+
+    /**
+     * Receives entries of the map.
+     */
+    public interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+    final Node root;
+    private final int size;
+
+    private LongMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> LongMap<V> empty() {
+        return (LongMap<V>) EMPTY;
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>(LongMap.<V>empty());
+    }
+
+    /**
+     * @return builder initialized with entries of this map
+     */
+    public Builder<V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return value associated with key, or null if there is no such key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Object value = root.find(key, mix(key), 0);
+        return value == Node.NOT_FOUND ? null : (V) value;
+    }
+
+    public boolean containsKey(long key) {
+        return root.find(key, mix(key), 0) != Node.NOT_FOUND;
+    }
+
+    /**
+     * @return map with value associated with key, this map if key is already associated with the same value (by reference)
+     */
+    public LongMap<V> plus(long key, V value) {
+        Node.Change change = new Node.Change();
+        Node newRoot = root.put(null, key, value, mix(key), 0, change);
+        if (newRoot == root) return this;
+        return new LongMap<>(newRoot, change.added ? size + 1 : size);
+    }
+
+    /**
+     * @return map without key, this map if there is no such key
+     */
+    public LongMap<V> minus(long key) {
+        Node newRoot = root.remove(null, key, mix(key), 0, new Node.Change());
+        if (newRoot == root) return this;
+        return new LongMap<>(newRoot, size - 1);
+    }
+
+    /**
+     * Visit every entry of the map in unspecified order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<? super V> visitor) {
+        root.forEach((Visitor<Object>) visitor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LongMap)) return false;
+        LongMap<?> that = (LongMap<?>) o;
+        //canonical tries of equal maps have the same shape
+        return size == that.size && root.deepEquals(that.root);
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] hash = {0};
+        forEach((key, value) -> hash[0] += (int) (key ^ (key >>> 32)) ^ (value == null ? 0 : value.hashCode()));
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+
+    static final class Node {
+        static final Object NOT_FOUND = new Object();
+        static final Node EMPTY = new Node(null, 0, 0, new long[0], new Object[0]);
+
+        static final class Change {
+            boolean added;
+            boolean removed;
+        }
+
+        //builder which is allowed to mutate this node in place, null for persistent nodes
+        final Object owner;
+        final int dataMap;
+        final int nodeMap;
+        final long[] keys;
+        //values in bit order followed by child nodes in reversed bit order
+        final Object[] content;
+
+        Node(Object owner, int dataMap, int nodeMap, long[] keys, Object[] content) {
+            this.owner = owner;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.content = content;
+        }
+
+        static int bit(long hash, int shift) {
+            return 1 << (int) ((hash >>> shift) & MASK);
+        }
+
+        int dataIndex(int bit) {
+            return Integer.bitCount(dataMap & (bit - 1));
+        }
+
+        int nodeIndex(int bit) {
+            return Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        int entryCount() {
+            return keys.length;
+        }
+
+        int nodeCount() {
+            return content.length - keys.length;
+        }
+
+        Node node(int index) {
+            return (Node) content[content.length - 1 - index];
+        }
+
+        Object find(long key, long hash, int shift) {
+            Node node = this;
+            while (true) {
+                int bit = bit(hash, shift);
+                if ((node.dataMap & bit) != 0) {
+                    int index = node.dataIndex(bit);
+                    return node.keys[index] == key ? node.content[index] : NOT_FOUND;
+                }
+                if ((node.nodeMap & bit) == 0) return NOT_FOUND;
+                node = node.node(node.nodeIndex(bit));
+                shift += BITS;
+            }
+        }
+
+        private Node editable(Object owner) {
+            if (owner != null && this.owner == owner) return this;
+            return new Node(owner, dataMap, nodeMap, keys, content.clone());
+        }
+
+        Node put(Object owner, long key, Object value, long hash, int shift, Change change) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                long currentKey = keys[index];
+                if (currentKey == key) {
+                    if (content[index] == value) return this;
+                    Node result = editable(owner);
+                    result.content[index] = value;
+                    return result;
+                }
+                Node merged = merge(owner, currentKey, content[index], mix(currentKey), key, value, hash, shift + BITS);
+                change.added = true;
+                return migrateToNode(owner, bit, index, merged);
+            }
+            if ((nodeMap & bit) != 0) {
+                int index = nodeIndex(bit);
+                Node child = node(index);
+                Node newChild = child.put(owner, key, value, hash, shift + BITS, change);
+                if (newChild == child) return this;
+                Node result = editable(owner);
+                result.content[content.length - 1 - index] = newChild;
+                return result;
+            }
+
+            change.added = true;
+            int index = dataIndex(bit);
+            long[] newKeys = new long[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            newKeys[index] = key;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            Object[] newContent = new Object[content.length + 1];
+            System.arraycopy(content, 0, newContent, 0, index);
+            newContent[index] = value;
+            System.arraycopy(content, index, newContent, index + 1, content.length - index);
+            return new Node(owner, dataMap | bit, nodeMap, newKeys, newContent);
+        }
+
+        private static Node merge(Object owner, long key0, Object value0, long hash0, long key1, Object value1, long hash1, int shift) {
+            //mix is bijective, so different keys have different hashes and are split before all bits are used
+            int index0 = (int) ((hash0 >>> shift) & MASK);
+            int index1 = (int) ((hash1 >>> shift) & MASK);
+            if (index0 != index1) {
+                return index0 < index1
+                        ? new Node(owner, 1 << index0 | 1 << index1, 0, new long[]{key0, key1}, new Object[]{value0, value1})
+                        : new Node(owner, 1 << index0 | 1 << index1, 0, new long[]{key1, key0}, new Object[]{value1, value0});
+            }
+            Node node = merge(owner, key0, value0, hash0, key1, value1, hash1, shift + BITS);
+            return new Node(owner, 0, 1 << index0, new long[0], new Object[]{node});
+        }
+
+        private Node migrateToNode(Object owner, int bit, int dataIndex, Node node) {
+            long[] newKeys = new long[keys.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, dataIndex);
+            System.arraycopy(keys, dataIndex + 1, newKeys, dataIndex, keys.length - dataIndex - 1);
+
+            //remove value and insert node at its position in reversed nodes part
+            int nodePosition = content.length - 1 - nodeIndex(bit);
+            Object[] newContent = new Object[content.length];
+            System.arraycopy(content, 0, newContent, 0, dataIndex);
+            System.arraycopy(content, dataIndex + 1, newContent, dataIndex, nodePosition - dataIndex);
+            newContent[nodePosition] = node;
+            System.arraycopy(content, nodePosition + 1, newContent, nodePosition + 1, content.length - nodePosition - 1);
+            return new Node(owner, dataMap & ~bit, nodeMap | bit, newKeys, newContent);
+        }
+
+        private Node migrateToInline(Object owner, int bit, Node node) {
+            int dataIndex = dataIndex(bit);
+            long[] newKeys = new long[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, dataIndex);
+            newKeys[dataIndex] = node.keys[0];
+            System.arraycopy(keys, dataIndex, newKeys, dataIndex + 1, keys.length - dataIndex);
+
+            //remove node from reversed nodes part and insert the only value of node at its position
+            int nodePosition = content.length - 1 - nodeIndex(bit);
+            Object[] newContent = new Object[content.length];
+            System.arraycopy(content, 0, newContent, 0, dataIndex);
+            newContent[dataIndex] = node.content[0];
+            System.arraycopy(content, dataIndex, newContent, dataIndex + 1, nodePosition - dataIndex);
+            System.arraycopy(content, nodePosition + 1, newContent, nodePosition + 1, content.length - nodePosition - 1);
+            return new Node(owner, dataMap | bit, nodeMap & ~bit, newKeys, newContent);
+        }
+
+        Node remove(Object owner, long key, long hash, int shift, Change change) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                if (keys[index] != key) return this;
+                change.removed = true;
+                long[] newKeys = new long[keys.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, index);
+                System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+                Object[] newContent = new Object[content.length - 1];
+                System.arraycopy(content, 0, newContent, 0, index);
+                System.arraycopy(content, index + 1, newContent, index, content.length - index - 1);
+                return new Node(owner, dataMap & ~bit, nodeMap, newKeys, newContent);
+            }
+            if ((nodeMap & bit) != 0) {
+                int index = nodeIndex(bit);
+                Node child = node(index);
+                Node newChild = child.remove(owner, key, hash, shift + BITS, change);
+                if (newChild == child) return this;
+                if (newChild.nodeCount() == 0 && newChild.entryCount() == 1) {
+                    //keep trie compact: single entry is inlined into parent
+                    return migrateToInline(owner, bit, newChild);
+                }
+                Node result = editable(owner);
+                result.content[content.length - 1 - index] = newChild;
+                return result;
+            }
+            return this;
+        }
+
+        void forEach(Visitor<Object> visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                visitor.visit(keys[i], content[i]);
+            }
+            for (int i = keys.length; i < content.length; i++) {
+                ((Node) content[i]).forEach(visitor);
+            }
+        }
+
+        boolean deepEquals(Node that) {
+            if (this == that) return true;
+            if (dataMap != that.dataMap || nodeMap != that.nodeMap || !Arrays.equals(keys, that.keys)) return false;
+            for (int i = 0; i < content.length; i++) {
+                Object value = content[i];
+                Object thatValue = that.content[i];
+                if (i < keys.length) {
+                    if (value == null ? thatValue != null : !value.equals(thatValue)) return false;
+                } else if (!((Node) value).deepEquals((Node) thatValue)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Mutable builder of {@link LongMap}.
+     * <p>
+     * Builder copies trie nodes on first write and then updates them in place when possible.
+     * {@link #build()} returns the map this builder was created from if nothing is changed.
+     * Builder cannot be used after {@link #build()}. Builder is not thread-safe.
+     *
+     * @param <V> type of values
+     */
+    public static final class Builder<V> {
+        private final LongMap<V> source;
+        private Object owner = new Object();
+        private Node root;
+        private int size;
+
+        private Builder(LongMap<V> map) {
+            this.source = map;
+            this.root = map.root;
+            this.size = map.size;
+        }
+
+        private void ensureEditable() {
+            if (owner == null) throw new IllegalStateException("Builder cannot be used after build()");
+        }
+
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(long key) {
+            ensureEditable();
+            Object value = root.find(key, mix(key), 0);
+            return value == Node.NOT_FOUND ? null : (V) value;
+        }
+
+        public Builder<V> put(long key, V value) {
+            ensureEditable();
+            Node.Change change = new Node.Change();
+            root = root.put(owner, key, value, mix(key), 0, change);
+            if (change.added) size++;
+            return this;
+        }
+
+        public Builder<V> remove(long key) {
+            ensureEditable();
+            Node.Change change = new Node.Change();
+            root = root.remove(owner, key, mix(key), 0, change);
+            if (change.removed) size--;
+            return this;
+        }
+
+        public LongMap<V> build() {
+            ensureEditable();
+            owner = null;
+            //updates which change nothing keep the root node, updates which change anything copy it
+            if (root == source.root) return source;
+            return size == 0 ? LongMap.<V>empty() : new LongMap<V>(root, size);
+        }
+    }
+}
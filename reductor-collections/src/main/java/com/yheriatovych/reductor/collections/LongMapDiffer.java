@@ -0,0 +1,134 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.Differ;
+import com.yheriatovych.reductor.diff.Patch;
+
+/**
+ * {@link Differ} for {@link LongMap} which walks both tries together and skips nodes shared by both versions,
+ * so the cost of a diff is proportional to the number of updated nodes, not to the size of the map.
+ * <p>
+ * Path of every change is built from {@code String.valueOf(key)}.
+ * Changed values are either reported as a whole or passed to optional value differ.
+ *
+ * @param <V> type of map values
+ */
+public class LongMapDiffer<V> implements Differ<LongMap<V>> {
+    private final Differ<V> valueDiffer;
+
+    /**
+     * @param valueDiffer differ to compare changed values, or null to report changed values as a whole
+     */
+    public LongMapDiffer(Differ<V> valueDiffer) {
+        this.valueDiffer = valueDiffer;
+    }
+
+    public LongMapDiffer() {
+        this(null);
+    }
+
+    @Override
+    public void diff(String path, LongMap<V> previous, LongMap<V> next, Patch.Builder patch) {
+        if (previous == next) return;
+        if (previous == null || next == null) {
+            patch.changed(path, previous, next);
+            return;
+        }
+        diffNodes(path, previous.root, next.root, 0, patch);
+    }
+
+    private void diffNodes(String path, LongMap.Node previous, LongMap.Node next, int shift, Patch.Builder patch) {
+        if (previous == next) return;
+        int bits = previous.dataMap | previous.nodeMap | next.dataMap | next.nodeMap;
+        while (bits != 0) {
+            int bit = Integer.lowestOneBit(bits);
+            bits &= ~bit;
+
+            boolean previousData = (previous.dataMap & bit) != 0;
+            boolean nextData = (next.dataMap & bit) != 0;
+            LongMap.Node previousChild = (previous.nodeMap & bit) != 0 ? previous.node(previous.nodeIndex(bit)) : null;
+            LongMap.Node nextChild = (next.nodeMap & bit) != 0 ? next.node(next.nodeIndex(bit)) : null;
+
+            if (previousChild != null && nextChild != null) {
+                diffNodes(path, previousChild, nextChild, shift + LongMap.BITS, patch);
+                continue;
+            }
+            if (previousData && nextData) {
+                int previousIndex = previous.dataIndex(bit);
+                int nextIndex = next.dataIndex(bit);
+                long previousKey = previous.keys[previousIndex];
+                long nextKey = next.keys[nextIndex];
+                if (previousKey == nextKey) {
+                    changed(path, previousKey, previous.content[previousIndex], next.content[nextIndex], patch);
+                } else {
+                    patch.changed(Patch.path(path, String.valueOf(previousKey)), previous.content[previousIndex], null);
+                    patch.changed(Patch.path(path, String.valueOf(nextKey)), null, next.content[nextIndex]);
+                }
+                continue;
+            }
+
+            //entry against subtree or missing slot: lookups below start at the slot level
+            if (previousData) {
+                int index = previous.dataIndex(bit);
+                removedOrChanged(path, previous.keys[index], previous.content[index], nextChild, shift + LongMap.BITS, patch);
+            } else if (previousChild != null) {
+                removedOrChanged(path, previousChild, nextData ? next : null, shift, patch);
+            }
+            if (nextData) {
+                int index = next.dataIndex(bit);
+                added(path, next.keys[index], next.content[index], previousChild, shift + LongMap.BITS, patch);
+            } else if (nextChild != null) {
+                added(path, nextChild, previousData ? previous : null, shift, patch);
+            }
+        }
+    }
+
+    /**
+     * @param shift shift of next subtree
+     */
+    private void removedOrChanged(String path, LongMap.Node previous, LongMap.Node next, int shift, Patch.Builder patch) {
+        for (int i = 0; i < previous.entryCount(); i++) {
+            removedOrChanged(path, previous.keys[i], previous.content[i], next, shift, patch);
+        }
+        for (int i = 0; i < previous.nodeCount(); i++) {
+            removedOrChanged(path, previous.node(i), next, shift, patch);
+        }
+    }
+
+    private void removedOrChanged(String path, long key, Object previousValue, LongMap.Node next, int shift, Patch.Builder patch) {
+        Object nextValue = next == null ? LongMap.Node.NOT_FOUND : next.find(key, LongMap.mix(key), shift);
+        if (nextValue == LongMap.Node.NOT_FOUND) {
+            patch.changed(Patch.path(path, String.valueOf(key)), previousValue, null);
+        } else {
+            changed(path, key, previousValue, nextValue, patch);
+        }
+    }
+
+    /**
+     * @param shift shift of previous subtree
+     */
+    private void added(String path, LongMap.Node next, LongMap.Node previous, int shift, Patch.Builder patch) {
+        for (int i = 0; i < next.entryCount(); i++) {
+            added(path, next.keys[i], next.content[i], previous, shift, patch);
+        }
+        for (int i = 0; i < next.nodeCount(); i++) {
+            added(path, next.node(i), previous, shift, patch);
+        }
+    }
+
+    private void added(String path, long key, Object nextValue, LongMap.Node previous, int shift, Patch.Builder patch) {
+        if (previous == null || previous.find(key, LongMap.mix(key), shift) == LongMap.Node.NOT_FOUND) {
+            patch.changed(Patch.path(path, String.valueOf(key)), null, nextValue);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void changed(String path, long key, Object previousValue, Object nextValue, Patch.Builder patch) {
+        if (previousValue == nextValue) return;
+        String valuePath = Patch.path(path, String.valueOf(key));
+        if (valueDiffer != null) {
+            valueDiffer.diff(valuePath, (V) previousValue, (V) nextValue, patch);
+        } else {
+            patch.changed(valuePath, previousValue, nextValue);
+        }
+    }
+}
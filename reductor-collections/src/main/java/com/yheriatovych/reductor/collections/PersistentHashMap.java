@@ -0,0 +1,556 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Draft;
+import com.yheriatovych.reductor.Draftable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable hash map implemented as compressed hash array mapped trie (CHAMP).
+ * <p>
+ * Every trie node keeps bitmap of inlined entries and bitmap of child nodes indexed by 5 bits of key hash,
+ * so lookups and updates take O(log32 n) and updated map shares all untouched nodes with the original one.
+ * Removal keeps the trie in canonical compact form, so equal maps built by different sequences of updates
+ * have the same shape.
+ * <p>
+ * Updates which do not change the map (putting the same value by reference, removing missing key)
+ * return the same instance. Batch updates should use {@link Builder}, which is also {@link Draft} of the map.
+ * Use {@link HashMapDiffer} to compare versions of the map, it skips shared trie nodes.
+ * <p>
+ * Null keys are not supported, null values are.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V>
+        implements Draftable<PersistentHashMap<K, V>, PersistentHashMap.Builder<K, V>> {
+    static final int BITS = 5;
+    static final int MASK = (1 << BITS) - 1;
+    //the last level uses the remaining 2 bits of hash, deeper keys with equal hashes are kept in collision nodes
+    static final int MAX_SHIFT = 30;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    final Node root;
+    private final int size;
+    private Set<Entry<K, V>> entrySet;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @return map with entries of provided map, map itself if it's already {@link PersistentHashMap}
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> from(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentHashMap) return (PersistentHashMap<K, V>) map;
+        Builder<K, V> builder = builder();
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(PersistentHashMap.<K, V>empty());
+    }
+
+    /**
+     * @return builder initialized with entries of this map
+     */
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * Same as {@link #toBuilder()}, {@link Builder#finish()} returns this map if nothing is changed.
+     */
+    @Override
+    public Builder<K, V> draft() {
+        return toBuilder();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        if (key == null) return null;
+        Object value = root.find(key, key.hashCode(), 0, NOT_FOUND);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && root.find(key, key.hashCode(), 0, NOT_FOUND) != NOT_FOUND;
+    }
+
+    /**
+     * @return map with value associated with key, this map if key is already associated with the same value (by reference)
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        if (key == null) throw new NullPointerException("key should not be null");
+        Change change = new Change();
+        Node newRoot = root.put(null, key, value, key.hashCode(), 0, change);
+        if (newRoot == root) return this;
+        return new PersistentHashMap<>(newRoot, change.added ? size + 1 : size);
+    }
+
+    /**
+     * @return map without key, this map if there is no such key
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+        if (key == null) return this;
+        Node newRoot = root.remove(null, key, key.hashCode(), 0, new Change());
+        if (newRoot == root) return this;
+        return new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    static final Object NOT_FOUND = new Object();
+
+    static final class Change {
+        boolean added;
+        boolean removed;
+    }
+
+    abstract static class Node {
+        //builder which is allowed to mutate this node in place, null for persistent nodes
+        Object owner;
+
+        abstract Object find(Object key, int hash, int shift, Object notFound);
+
+        abstract Node put(Object owner, Object key, Object value, int hash, int shift, Change change);
+
+        abstract Node remove(Object owner, Object key, int hash, int shift, Change change);
+
+        abstract int entryCount();
+
+        abstract Object key(int index);
+
+        abstract Object value(int index);
+
+        abstract int nodeCount();
+
+        abstract Node node(int index);
+    }
+
+    static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, 0, new Object[0]);
+
+        final int dataMap;
+        final int nodeMap;
+        //key, value pairs in bit order followed by child nodes in reversed bit order
+        final Object[] content;
+
+        BitmapNode(Object owner, int dataMap, int nodeMap, Object[] content) {
+            this.owner = owner;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        int dataIndex(int bit) {
+            return Integer.bitCount(dataMap & (bit - 1));
+        }
+
+        int nodeIndex(int bit) {
+            return Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        @Override
+        int entryCount() {
+            return Integer.bitCount(dataMap);
+        }
+
+        @Override
+        Object key(int index) {
+            return content[2 * index];
+        }
+
+        @Override
+        Object value(int index) {
+            return content[2 * index + 1];
+        }
+
+        @Override
+        int nodeCount() {
+            return Integer.bitCount(nodeMap);
+        }
+
+        @Override
+        Node node(int index) {
+            return (Node) content[content.length - 1 - index];
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift, Object notFound) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                Object candidate = content[2 * index];
+                return candidate == key || candidate.equals(key) ? content[2 * index + 1] : notFound;
+            }
+            if ((nodeMap & bit) != 0) {
+                return node(nodeIndex(bit)).find(key, hash, shift + BITS, notFound);
+            }
+            return notFound;
+        }
+
+        private BitmapNode editable(Object owner) {
+            if (owner != null && this.owner == owner) return this;
+            return new BitmapNode(owner, dataMap, nodeMap, content.clone());
+        }
+
+        @Override
+        Node put(Object owner, Object key, Object value, int hash, int shift, Change change) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                Object currentKey = content[2 * index];
+                if (currentKey == key || currentKey.equals(key)) {
+                    if (content[2 * index + 1] == value) return this;
+                    BitmapNode result = editable(owner);
+                    result.content[2 * index + 1] = value;
+                    return result;
+                }
+                Object currentValue = content[2 * index + 1];
+                Node merged = merge(owner, currentKey, currentValue, currentKey.hashCode(), key, value, hash, shift + BITS);
+                change.added = true;
+                return migrateToNode(owner, bit, index, merged);
+            }
+            if ((nodeMap & bit) != 0) {
+                int index = nodeIndex(bit);
+                Node child = node(index);
+                Node newChild = child.put(owner, key, value, hash, shift + BITS, change);
+                if (newChild == child) return this;
+                BitmapNode result = editable(owner);
+                result.content[content.length - 1 - index] = newChild;
+                return result;
+            }
+
+            change.added = true;
+            int index = dataIndex(bit);
+            Object[] newContent = new Object[content.length + 2];
+            System.arraycopy(content, 0, newContent, 0, 2 * index);
+            newContent[2 * index] = key;
+            newContent[2 * index + 1] = value;
+            System.arraycopy(content, 2 * index, newContent, 2 * index + 2, content.length - 2 * index);
+            return new BitmapNode(owner, dataMap | bit, nodeMap, newContent);
+        }
+
+        private BitmapNode migrateToNode(Object owner, int bit, int dataIndex, Node node) {
+            //remove entry pair and insert node at its position in reversed nodes part
+            int nodePosition = content.length - 2 - nodeIndex(bit);
+            Object[] newContent = new Object[content.length - 1];
+            System.arraycopy(content, 0, newContent, 0, 2 * dataIndex);
+            System.arraycopy(content, 2 * dataIndex + 2, newContent, 2 * dataIndex, nodePosition - 2 * dataIndex);
+            newContent[nodePosition] = node;
+            System.arraycopy(content, nodePosition + 2, newContent, nodePosition + 1, content.length - nodePosition - 2);
+            return new BitmapNode(owner, dataMap & ~bit, nodeMap | bit, newContent);
+        }
+
+        private BitmapNode migrateToInline(Object owner, int bit, Node node) {
+            //remove node from reversed nodes part and insert the only entry of node at its position
+            int nodePosition = content.length - 1 - nodeIndex(bit);
+            int dataIndex = dataIndex(bit);
+            Object[] newContent = new Object[content.length + 1];
+            System.arraycopy(content, 0, newContent, 0, 2 * dataIndex);
+            newContent[2 * dataIndex] = node.key(0);
+            newContent[2 * dataIndex + 1] = node.value(0);
+            System.arraycopy(content, 2 * dataIndex, newContent, 2 * dataIndex + 2, nodePosition - 2 * dataIndex);
+            System.arraycopy(content, nodePosition + 1, newContent, nodePosition + 2, content.length - nodePosition - 1);
+            return new BitmapNode(owner, dataMap | bit, nodeMap & ~bit, newContent);
+        }
+
+        @Override
+        Node remove(Object owner, Object key, int hash, int shift, Change change) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                Object currentKey = content[2 * index];
+                if (currentKey != key && !currentKey.equals(key)) return this;
+                change.removed = true;
+                Object[] newContent = new Object[content.length - 2];
+                System.arraycopy(content, 0, newContent, 0, 2 * index);
+                System.arraycopy(content, 2 * index + 2, newContent, 2 * index, content.length - 2 * index - 2);
+                return new BitmapNode(owner, dataMap & ~bit, nodeMap, newContent);
+            }
+            if ((nodeMap & bit) != 0) {
+                int index = nodeIndex(bit);
+                Node child = node(index);
+                Node newChild = child.remove(owner, key, hash, shift + BITS, change);
+                if (newChild == child) return this;
+                if (newChild.nodeCount() == 0 && newChild.entryCount() == 1) {
+                    //keep trie compact: single entry is inlined into parent
+                    return migrateToInline(owner, bit, newChild);
+                }
+                BitmapNode result = editable(owner);
+                result.content[content.length - 1 - index] = newChild;
+                return result;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Node of entries with equal hashes.
+     */
+    static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] content;
+
+        CollisionNode(Object owner, int hash, Object[] content) {
+            this.owner = owner;
+            this.hash = hash;
+            this.content = content;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < content.length; i += 2) {
+                if (content[i] == key || content[i].equals(key)) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift, Object notFound) {
+            int index = indexOf(key);
+            return index < 0 ? notFound : content[index + 1];
+        }
+
+        @Override
+        Node put(Object owner, Object key, Object value, int hash, int shift, Change change) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (content[index + 1] == value) return this;
+                Object[] newContent = content.clone();
+                newContent[index + 1] = value;
+                return new CollisionNode(owner, hash, newContent);
+            }
+            change.added = true;
+            Object[] newContent = Arrays.copyOf(content, content.length + 2);
+            newContent[content.length] = key;
+            newContent[content.length + 1] = value;
+            return new CollisionNode(owner, hash, newContent);
+        }
+
+        @Override
+        Node remove(Object owner, Object key, int hash, int shift, Change change) {
+            int index = indexOf(key);
+            if (index < 0) return this;
+            change.removed = true;
+            Object[] newContent = new Object[content.length - 2];
+            System.arraycopy(content, 0, newContent, 0, index);
+            System.arraycopy(content, index + 2, newContent, index, content.length - index - 2);
+            return new CollisionNode(owner, hash, newContent);
+        }
+
+        @Override
+        int entryCount() {
+            return content.length / 2;
+        }
+
+        @Override
+        Object key(int index) {
+            return content[2 * index];
+        }
+
+        @Override
+        Object value(int index) {
+            return content[2 * index + 1];
+        }
+
+        @Override
+        int nodeCount() {
+            return 0;
+        }
+
+        @Override
+        Node node(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    static Node merge(Object owner, Object key0, Object value0, int hash0, Object key1, Object value1, int hash1, int shift) {
+        if (shift > MAX_SHIFT) {
+            return new CollisionNode(owner, hash0, new Object[]{key0, value0, key1, value1});
+        }
+        int index0 = (hash0 >>> shift) & MASK;
+        int index1 = (hash1 >>> shift) & MASK;
+        int bit0 = 1 << index0;
+        if (index0 != index1) {
+            Object[] content = index0 < index1
+                    ? new Object[]{key0, value0, key1, value1}
+                    : new Object[]{key1, value1, key0, value0};
+            return new BitmapNode(owner, bit0 | 1 << index1, 0, content);
+        }
+        Node node = merge(owner, key0, value0, hash0, key1, value1, hash1, shift + BITS);
+        return new BitmapNode(owner, 0, bit0, new Object[]{node});
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final Node[] nodes = new Node[MAX_SHIFT / BITS + 3];
+        private final int[] nodeIndexes = new int[nodes.length];
+        private int depth;
+        private Node current;
+        private int entryIndex;
+
+        EntryIterator(Node root) {
+            nodes[0] = root;
+            current = root;
+            advance();
+        }
+
+        private void advance() {
+            while (current != null && entryIndex >= current.entryCount()) {
+                //descend into the next child node or go up
+                current = null;
+                while (depth >= 0) {
+                    Node node = nodes[depth];
+                    if (nodeIndexes[depth] < node.nodeCount()) {
+                        Node child = node.node(nodeIndexes[depth]++);
+                        depth++;
+                        nodes[depth] = child;
+                        nodeIndexes[depth] = 0;
+                        current = child;
+                        entryIndex = 0;
+                        break;
+                    }
+                    depth--;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Entry<K, V> next() {
+            if (current == null) throw new NoSuchElementException();
+            Entry<K, V> entry = new SimpleImmutableEntry<>((K) current.key(entryIndex), (V) current.value(entryIndex));
+            entryIndex++;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Mutable builder of {@link PersistentHashMap}.
+     * <p>
+     * Builder copies trie nodes on first write and then updates them in place when possible.
+     * Builder cannot be used after {@link #build()}. Builder is not thread-safe.
+     *
+     * @param <K> type of keys
+     * @param <V> type of values
+     */
+    public static final class Builder<K, V> implements Draft<PersistentHashMap<K, V>> {
+        private final PersistentHashMap<K, V> source;
+        private Object owner = new Object();
+        private Node root;
+        private int size;
+
+        private Builder(PersistentHashMap<K, V> map) {
+            this.source = map;
+            this.root = map.root;
+            this.size = map.size;
+        }
+
+        private void ensureEditable() {
+            if (owner == null) throw new IllegalStateException("Builder cannot be used after build()");
+        }
+
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            ensureEditable();
+            if (key == null) return null;
+            Object value = root.find(key, key.hashCode(), 0, NOT_FOUND);
+            return value == NOT_FOUND ? null : (V) value;
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            ensureEditable();
+            if (key == null) throw new NullPointerException("key should not be null");
+            Change change = new Change();
+            root = root.put(owner, key, value, key.hashCode(), 0, change);
+            if (change.added) size++;
+            return this;
+        }
+
+        public Builder<K, V> remove(Object key) {
+            ensureEditable();
+            if (key == null) return this;
+            Change change = new Change();
+            root = root.remove(owner, key, key.hashCode(), 0, change);
+            if (change.removed) size--;
+            return this;
+        }
+
+        public PersistentHashMap<K, V> build() {
+            ensureEditable();
+            owner = null;
+            return size == 0 ? PersistentHashMap.<K, V>empty() : new PersistentHashMap<K, V>(root, size);
+        }
+
+        /**
+         * Same as {@link #build()}, but returns the map this builder was created from if nothing is changed.
+         */
+        @Override
+        public PersistentHashMap<K, V> finish() {
+            ensureEditable();
+            //updates which change nothing keep the root node, updates which change anything copy it
+            if (root != source.root) return build();
+            owner = null;
+            return source;
+        }
+    }
+}
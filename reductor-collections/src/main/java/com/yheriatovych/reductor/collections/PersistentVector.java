@@ -0,0 +1,540 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Draft;
+import com.yheriatovych.reductor.Draftable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable vector implemented as 32-way trie with tail buffer.
+ * <p>
+ * {@link #get(int)}, {@link #with(int, Object)} and {@link #minusLast()} take O(log32 n),
+ * {@link #plus(Object)} takes amortized O(1). Updated vector shares all untouched trie nodes with the original one,
+ * so updates copy at most one node per trie level.
+ * <p>
+ * Updates which do not change the vector (e.g. setting the same element) return the same instance,
+ * so reducers can detect no-op updates by reference.
+ * Batch updates should use {@link Builder}, which mutates nodes it owns in place.
+ * The same builder serves as {@link Draft} of the vector.
+ * <p>
+ * Use {@link VectorDiffer} to compare versions of the vector, it skips shared trie nodes.
+ *
+ * @param <E> type of elements
+ */
+public final class PersistentVector<E> extends AbstractList<E>
+        implements RandomAccess, Draftable<PersistentVector<E>, PersistentVector.Builder<E>> {
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+
+    static final class Node {
+        //builder which is allowed to mutate this node in place, null for persistent nodes
+        Object owner;
+        final Object[] array;
+
+        Node(Object owner, Object[] array) {
+            this.owner = owner;
+            this.array = array;
+        }
+
+        Node(Object owner) {
+            this(owner, new Object[WIDTH]);
+        }
+    }
+
+    private static final Node EMPTY_NODE = new Node(null);
+    private static final Object[] EMPTY_ARRAY = new Object[0];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, EMPTY_ARRAY);
+
+    private final int size;
+    final int shift;
+    final Node root;
+    final Object[] tail;
+
+    private PersistentVector(int size, int shift, Node root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    @SafeVarargs
+    public static <E> PersistentVector<E> of(E... elements) {
+        Builder<E> builder = builder();
+        for (E element : elements) {
+            builder.add(element);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return vector with elements of collection, collection itself if it's already {@link PersistentVector}
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> from(Collection<? extends E> elements) {
+        if (elements instanceof PersistentVector) return (PersistentVector<E>) elements;
+        Builder<E> builder = builder();
+        for (E element : elements) {
+            builder.add(element);
+        }
+        return builder.build();
+    }
+
+    public static <E> Builder<E> builder() {
+        return new Builder<>(PersistentVector.<E>empty());
+    }
+
+    /**
+     * @return builder initialized with elements of this vector
+     */
+    public Builder<E> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * Same as {@link #toBuilder()}, {@link Builder#finish()} returns this vector if nothing is changed.
+     */
+    @Override
+    public Builder<E> draft() {
+        return toBuilder();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    int tailOffset() {
+        return tailOffset(size);
+    }
+
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * @return array of 32 elements block which contains element at index
+     */
+    Object[] arrayFor(int index) {
+        if (index >= tailOffset()) return tail;
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.array[(index >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        checkIndex(index, size);
+        return (E) arrayFor(index)[index & MASK];
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * @return vector with element appended to the end
+     */
+    public PersistentVector<E> plus(E element) {
+        int tailSize = size - tailOffset();
+        if (tailSize < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tailSize + 1);
+            newTail[tailSize] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+
+        Node tailNode = new Node(null, tail);
+        Node newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Node(null);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(null, size, shift, root, tailNode);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    /**
+     * @return vector with all elements appended to the end
+     */
+    public PersistentVector<E> plusAll(Collection<? extends E> elements) {
+        if (elements.isEmpty()) return this;
+        Builder<E> builder = toBuilder();
+        for (E element : elements) {
+            builder.add(element);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return vector with element at index replaced, this vector if element at index is the same (by reference)
+     */
+    public PersistentVector<E> with(int index, E element) {
+        checkIndex(index, size);
+        if (arrayFor(index)[index & MASK] == element) return this;
+
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, assoc(null, shift, root, index, element), tail);
+    }
+
+    /**
+     * @return vector without the last element
+     */
+    public PersistentVector<E> minusLast() {
+        if (size == 0) throw new IllegalStateException("Vector is empty");
+        if (size == 1) return empty();
+
+        if (size - tailOffset() > 1) {
+            return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        Object[] newTail = arrayFor(size - 2);
+        Node newRoot = popTail(null, size, shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot.array[1] == null) {
+            newRoot = (Node) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Remove element at index. Elements after index are shifted, so it takes O(n) unless index is the last one.
+     *
+     * @return vector without element at index
+     */
+    public PersistentVector<E> minus(int index) {
+        checkIndex(index, size);
+        if (index == size - 1) return minusLast();
+
+        Builder<E> builder = builder();
+        for (int i = 0; i < size; i++) {
+            if (i != index) builder.add(get(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return vector without the first occurrence of element (compared with equals), this vector if there is no such element
+     */
+    public PersistentVector<E> minus(Object element) {
+        int index = indexOf(element);
+        return index < 0 ? this : minus(index);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index;
+            private int base = -WIDTH;
+            private Object[] array;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public E next() {
+                if (index >= size) throw new NoSuchElementException();
+                if (index - base == WIDTH) {
+                    array = arrayFor(index);
+                    base = index;
+                }
+                return (E) array[index++ & MASK];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Receives elements which differ between two versions of the vector.
+     */
+    interface Changes {
+        /**
+         * @param previous element of previous version, null if index is out of its bounds
+         * @param next     element of next version, null if index is out of its bounds
+         */
+        void changed(int index, Object previous, Object next);
+    }
+
+    /**
+     * Report every index where elements of two vectors differ (by reference), skipping trie nodes shared by both.
+     */
+    static void compare(PersistentVector<?> previous, PersistentVector<?> next, Changes changes) {
+        if (previous == next) return;
+        int previousSize = previous.size;
+        int nextSize = next.size;
+        int commonSize = Math.min(previousSize, nextSize);
+        //elements before both tails are stored in tries
+        int trieSize = Math.min(commonSize, Math.min(previous.tailOffset(), next.tailOffset()));
+        int from = 0;
+        if (trieSize > 0 && previous.shift == next.shift) {
+            compareNodes(previous.shift, previous.root, next.root, 0, trieSize, changes);
+            from = trieSize;
+        }
+        for (int base = from; base < commonSize; base = (base | MASK) + 1) {
+            Object[] previousArray = previous.arrayFor(base);
+            Object[] nextArray = next.arrayFor(base);
+            int end = Math.min(commonSize, (base | MASK) + 1);
+            if (previousArray != nextArray) {
+                compareElements(previousArray, nextArray, base, end, changes);
+            }
+        }
+        for (int i = commonSize; i < previousSize; i++) {
+            changes.changed(i, previous.get(i), null);
+        }
+        for (int i = commonSize; i < nextSize; i++) {
+            changes.changed(i, null, next.get(i));
+        }
+    }
+
+    private static void compareNodes(int level, Node previous, Node next, int base, int limit, Changes changes) {
+        if (previous == next) return;
+        if (level == 0) {
+            compareElements(previous.array, next.array, base, Math.min(limit, base + WIDTH), changes);
+            return;
+        }
+        for (int i = 0; i < WIDTH; i++) {
+            int childBase = base + (i << level);
+            if (childBase >= limit) break;
+            compareNodes(level - BITS, (Node) previous.array[i], (Node) next.array[i], childBase, limit, changes);
+        }
+    }
+
+    private static void compareElements(Object[] previous, Object[] next, int from, int to, Changes changes) {
+        for (int i = from; i < to; i++) {
+            Object previousElement = previous[i & MASK];
+            Object nextElement = next[i & MASK];
+            if (previousElement != nextElement) {
+                changes.changed(i, previousElement, nextElement);
+            }
+        }
+    }
+
+    private static Node newPath(Object owner, int level, Node node) {
+        if (level == 0) return node;
+        Node path = new Node(owner);
+        path.array[0] = newPath(owner, level - BITS, node);
+        return path;
+    }
+
+    private static Node editable(Object owner, Node node) {
+        if (owner != null && node.owner == owner) return node;
+        return new Node(owner, node.array.clone());
+    }
+
+    /**
+     * @param size size of the vector before tail is pushed
+     */
+    private static Node pushTail(Object owner, int size, int level, Node parent, Node tailNode) {
+        int index = ((size - 1) >>> level) & MASK;
+        Node result = editable(owner, parent);
+        Node nodeToInsert;
+        if (level == BITS) {
+            nodeToInsert = tailNode;
+        } else {
+            Node child = (Node) parent.array[index];
+            nodeToInsert = child != null
+                    ? pushTail(owner, size, level - BITS, child, tailNode)
+                    : newPath(owner, level - BITS, tailNode);
+        }
+        result.array[index] = nodeToInsert;
+        return result;
+    }
+
+    private static Node assoc(Object owner, int level, Node node, int index, Object element) {
+        Node result = editable(owner, node);
+        if (level == 0) {
+            result.array[index & MASK] = element;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            result.array[subIndex] = assoc(owner, level - BITS, (Node) node.array[subIndex], index, element);
+        }
+        return result;
+    }
+
+    /**
+     * @param size size of the vector before the last leaf is removed
+     * @return node without the last leaf, null if node becomes empty
+     */
+    private static Node popTail(Object owner, int size, int level, Node node) {
+        int index = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Node newChild = popTail(owner, size, level - BITS, (Node) node.array[index]);
+            if (newChild == null && index == 0) return null;
+            Node result = editable(owner, node);
+            result.array[index] = newChild;
+            return result;
+        } else if (index == 0) {
+            return null;
+        } else {
+            Node result = editable(owner, node);
+            result.array[index] = null;
+            return result;
+        }
+    }
+
+    /**
+     * Mutable builder of {@link PersistentVector}.
+     * <p>
+     * Builder copies trie nodes on first write and then mutates them in place,
+     * so batch of updates copies every node at most once. Builder cannot be used after {@link #build()}.
+     * Builder is not thread-safe.
+     *
+     * @param <E> type of elements
+     */
+    public static final class Builder<E> implements Draft<PersistentVector<E>> {
+        private final PersistentVector<E> source;
+        private Object owner = new Object();
+        private boolean modified;
+        private int size;
+        private int shift;
+        private Node root;
+        private Object[] tail;
+
+        private Builder(PersistentVector<E> vector) {
+            this.source = vector;
+            this.size = vector.size;
+            this.shift = vector.shift;
+            this.root = vector.root;
+            this.tail = Arrays.copyOf(vector.tail, WIDTH);
+        }
+
+        private void ensureEditable() {
+            if (owner == null) throw new IllegalStateException("Builder cannot be used after build()");
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private Object[] arrayFor(int index) {
+            if (index >= tailOffset(size)) return tail;
+            Node node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                node = (Node) node.array[(index >>> level) & MASK];
+            }
+            return node.array;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            ensureEditable();
+            checkIndex(index, size);
+            return (E) arrayFor(index)[index & MASK];
+        }
+
+        public Builder<E> add(E element) {
+            ensureEditable();
+            modified = true;
+            int tailSize = size - tailOffset(size);
+            if (tailSize < WIDTH) {
+                tail[tailSize] = element;
+                size++;
+                return this;
+            }
+
+            Node tailNode = new Node(owner, tail);
+            tail = new Object[WIDTH];
+            tail[0] = element;
+            if ((size >>> BITS) > (1 << shift)) {
+                Node newRoot = new Node(owner);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(owner, shift, tailNode);
+                root = newRoot;
+                shift += BITS;
+            } else {
+                root = pushTail(owner, size, shift, root, tailNode);
+            }
+            size++;
+            return this;
+        }
+
+        public Builder<E> set(int index, E element) {
+            ensureEditable();
+            checkIndex(index, size);
+            if (arrayFor(index)[index & MASK] == element) return this;
+            modified = true;
+            if (index >= tailOffset(size)) {
+                tail[index & MASK] = element;
+            } else {
+                root = assoc(owner, shift, root, index, element);
+            }
+            return this;
+        }
+
+        public Builder<E> removeLast() {
+            ensureEditable();
+            if (size == 0) throw new IllegalStateException("Builder is empty");
+            modified = true;
+            if (size == 1 || size - tailOffset(size) > 1) {
+                size--;
+                tail[size & MASK] = null;
+                return this;
+            }
+
+            Object[] newTail = arrayFor(size - 2).clone();
+            Node newRoot = popTail(owner, size, shift, root);
+            if (newRoot == null) {
+                newRoot = EMPTY_NODE;
+            }
+            if (shift > BITS && newRoot.array[1] == null) {
+                newRoot = (Node) newRoot.array[0];
+                shift -= BITS;
+            }
+            root = newRoot;
+            tail = Arrays.copyOf(newTail, WIDTH);
+            size--;
+            return this;
+        }
+
+        public PersistentVector<E> build() {
+            ensureEditable();
+            owner = null;
+            if (size == 0) return empty();
+            int tailSize = size - tailOffset(size);
+            return new PersistentVector<>(size, shift, root, Arrays.copyOf(tail, tailSize));
+        }
+
+        /**
+         * Same as {@link #build()}, but returns the vector this builder was created from if nothing is changed.
+         */
+        @Override
+        public PersistentVector<E> finish() {
+            ensureEditable();
+            if (modified) return build();
+            owner = null;
+            return source;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.ListPatch;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link Index} of entities sorted with comparator, see {@link Index#sortedBy(Comparator)}.
+ *
+ * @param <K> type of entity keys
+ * @param <V> type of entities
+ */
+public final class SortedIndex<K, V> extends Index<K, V> {
+    private final Comparator<? super V> comparator;
+    private final Comparator<Object> slotOrder;
+    //slots ordered by comparator, then by insertion sequence
+    private final SortedTree.Node root;
+    private final ListChanges<V> changes;
+
+    @SuppressWarnings("unchecked")
+    SortedIndex(Index<K, V> definition, Comparator<? super V> comparator, SortedTree.Node root, ListChanges<V> changes) {
+        super(definition);
+        this.comparator = comparator;
+        this.slotOrder = definition == null ? (a, b) -> {
+            EntityMap.Slot<K, V> first = (EntityMap.Slot<K, V>) a;
+            EntityMap.Slot<K, V> second = (EntityMap.Slot<K, V>) b;
+            int compare = comparator.compare(first.getValue(), second.getValue());
+            return compare != 0 ? compare : Long.compare(first.sequence, second.sequence);
+        } : ((SortedIndex<K, V>) definition).slotOrder;
+        this.root = root;
+        this.changes = changes;
+    }
+
+    /**
+     * @return sorted entities, {@code get(index)} takes O(log n)
+     */
+    public List<V> values() {
+        return SortedTree.values(root);
+    }
+
+    public int size() {
+        return SortedTree.size(root);
+    }
+
+    /**
+     * @return the lowest entity, null if index is empty
+     */
+    @SuppressWarnings("unchecked")
+    public V first() {
+        SortedTree.Node first = SortedTree.first(root);
+        return first == null ? null : (V) first.value;
+    }
+
+    /**
+     * @return the highest entity, null if index is empty
+     */
+    @SuppressWarnings("unchecked")
+    public V last() {
+        SortedTree.Node last = SortedTree.last(root);
+        return last == null ? null : (V) last.value;
+    }
+
+    /**
+     * @param previous previous version of this index
+     * @return operations turning {@code previous.values()} into {@link #values()},
+     * updated entities which change their order are reported as moves.
+     * Null if previous version is older than the last reduced action which changed this index
+     */
+    public ListPatch<V> changesSince(SortedIndex<K, V> previous) {
+        return ListChanges.since(previous.root, root, changes);
+    }
+
+    @Override
+    SortedIndex<K, V> update(EntityMap.Slot<K, V> previous, EntityMap.Slot<K, V> next, Object batch) {
+        ListChanges<V> newChanges = ListChanges.forBatch(changes, batch, root);
+        SortedTree.Node newRoot;
+        if (previous != null && next != null && previous.sequence == next.sequence) {
+            newRoot = newChanges.changed(root, previous, next, previous.getValue(), next.getValue(), slotOrder);
+        } else {
+            newRoot = root;
+            if (previous != null) {
+                newRoot = newChanges.removed(newRoot, previous, previous.getValue(), slotOrder);
+            }
+            if (next != null) {
+                newRoot = newChanges.inserted(newRoot, next, next.getValue(), slotOrder);
+            }
+        }
+        return new SortedIndex<>(definition, comparator, newRoot, newChanges);
+    }
+}
@@ -0,0 +1,231 @@
+package com.yheriatovych.reductor.collections;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Persistent AVL tree of key-value pairs ordered by comparator, augmented with subtree sizes
+ * so elements can be accessed by rank (order statistics).
+ * <p>
+ * All operations take O(log n) and copy only nodes on the path to updated key.
+ * Empty tree is represented with null.
+ */
+final class SortedTree {
+    private SortedTree() {
+    }
+
+    static final class Node {
+        final Object key;
+        final Object value;
+        final Node left;
+        final Node right;
+        final int height;
+        final int size;
+
+        Node(Object key, Object value, Node left, Node right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * @return tree with value associated with key, the same tree if key is already associated with the same value
+     */
+    static Node put(Node node, Object key, Object value, Comparator<Object> comparator) {
+        if (node == null) return new Node(key, value, null, null);
+        int compare = comparator.compare(key, node.key);
+        if (compare == 0) {
+            return node.value == value ? node : new Node(key, value, node.left, node.right);
+        }
+        if (compare < 0) {
+            Node left = put(node.left, key, value, comparator);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        } else {
+            Node right = put(node.right, key, value, comparator);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+    }
+
+    /**
+     * @return tree without key, the same tree if there is no such key
+     */
+    static Node remove(Node node, Object key, Comparator<Object> comparator) {
+        if (node == null) return null;
+        int compare = comparator.compare(key, node.key);
+        if (compare < 0) {
+            Node left = remove(node.left, key, comparator);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        } else if (compare > 0) {
+            Node right = remove(node.right, key, comparator);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        Node successor = first(node.right);
+        return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+    }
+
+    private static Node removeFirst(Node node) {
+        if (node.left == null) return node.right;
+        return balance(node.key, node.value, removeFirst(node.left), node.right);
+    }
+
+    static Node find(Node node, Object key, Comparator<Object> comparator) {
+        while (node != null) {
+            int compare = comparator.compare(key, node.key);
+            if (compare == 0) return node;
+            node = compare < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * @return number of keys less than key
+     */
+    static int rank(Node node, Object key, Comparator<Object> comparator) {
+        int rank = 0;
+        while (node != null) {
+            int compare = comparator.compare(key, node.key);
+            if (compare <= 0) {
+                if (compare == 0) return rank + size(node.left);
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    static Node get(Node node, int index) {
+        if (index < 0 || index >= size(node)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size(node));
+        }
+        while (true) {
+            int leftSize = size(node.left);
+            if (index == leftSize) return node;
+            if (index < leftSize) {
+                node = node.left;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    static Node first(Node node) {
+        if (node == null) return null;
+        while (node.left != null) node = node.left;
+        return node;
+    }
+
+    static Node last(Node node) {
+        if (node == null) return null;
+        while (node.right != null) node = node.right;
+        return node;
+    }
+
+    private static Node balance(Object key, Object value, Node left, Node right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left.key, left.value, left.left, left.right);
+            }
+            return rotateRight(key, value, left, right);
+        } else if (difference < -1) {
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right.key, right.value, right.left, right.right);
+            }
+            return rotateLeft(key, value, left, right);
+        }
+        return new Node(key, value, left, right);
+    }
+
+    private static Node rotateRight(Object key, Object value, Node left, Node right) {
+        return new Node(left.key, left.value, left.left, new Node(key, value, left.right, right));
+    }
+
+    private static Node rotateLeft(Object key, Object value, Node left, Node right) {
+        return new Node(right.key, right.value, new Node(key, value, left, right.left), right.right);
+    }
+
+    /**
+     * @return read-only list view of tree values in key order, {@code get(index)} takes O(log n)
+     */
+    static <E> List<E> values(Node root) {
+        return new Values<>(root);
+    }
+
+    private static final class Values<E> extends AbstractList<E> implements RandomAccess {
+        private final Node root;
+
+        Values(Node root) {
+            this.root = root;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E get(int index) {
+            return (E) SortedTree.get(root, index).value;
+        }
+
+        @Override
+        public int size() {
+            return SortedTree.size(root);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private final ArrayDeque<Node> stack = new ArrayDeque<>();
+
+                {
+                    pushLeft(root);
+                }
+
+                private void pushLeft(Node node) {
+                    while (node != null) {
+                        stack.push(node);
+                        node = node.left;
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return !stack.isEmpty();
+                }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public E next() {
+                    if (stack.isEmpty()) throw new NoSuchElementException();
+                    Node node = stack.pop();
+                    pushLeft(node.right);
+                    return (E) node.value;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.Differ;
+import com.yheriatovych.reductor.diff.Patch;
+
+/**
+ * {@link Differ} for {@link PersistentVector} which reports the same changes as
+ * {@link com.yheriatovych.reductor.diff.ListDiffer}, but skips trie nodes shared by both versions,
+ * so the cost of a diff is proportional to the number of updated nodes, not to the size of the vector.
+ *
+ * @param <E> type of vector elements
+ */
+public class VectorDiffer<E> implements Differ<PersistentVector<E>> {
+    private final Differ<E> elementDiffer;
+
+    /**
+     * @param elementDiffer differ to compare changed elements, or null to report changed elements as a whole
+     */
+    public VectorDiffer(Differ<E> elementDiffer) {
+        this.elementDiffer = elementDiffer;
+    }
+
+    public VectorDiffer() {
+        this(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void diff(String path, PersistentVector<E> previous, PersistentVector<E> next, Patch.Builder patch) {
+        if (previous == next) return;
+        if (previous == null || next == null) {
+            patch.changed(path, previous, next);
+            return;
+        }
+
+        int commonSize = Math.min(previous.size(), next.size());
+        PersistentVector.compare(previous, next, (index, previousElement, nextElement) -> {
+            if (elementDiffer != null && index < commonSize) {
+                elementDiffer.diff(Patch.path(path, index), (E) previousElement, (E) nextElement, patch);
+            } else {
+                patch.changed(Patch.path(path, index), previousElement, nextElement);
+            }
+        });
+    }
+}
@@ -0,0 +1,169 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AggregateTest {
+    private static final String PUT = "PUT";
+    private static final String REMOVE = "REMOVE";
+
+    private static final AggregateIndex<Integer, Integer> TOTAL = Index.aggregate(value -> value);
+    private static final GroupAggregateIndex<Integer, Integer, Integer> BY_DIGIT = Index.aggregateBy(value -> value % 10, value -> value);
+    private static final GroupAggregateIndex<Integer, Integer, Boolean> COUNT_EVEN = Index.aggregateBy(value -> value % 2 == 0, null);
+
+    private final IndexedReducer<Integer, Integer> reducer = IndexedReducer.builder(new Reducer<EntityMap<Integer, Integer>>() {
+        @Override
+        public EntityMap<Integer, Integer> reduce(EntityMap<Integer, Integer> state, Action action) {
+            if (state == null) return EntityMap.empty();
+            switch (action.type) {
+                case PUT:
+                    return state.plus((Integer) action.getValue(0), (Integer) action.getValue(1));
+                case REMOVE:
+                    return state.minus(action.getValue(0));
+                default:
+                    return state;
+            }
+        }
+    })
+            .index(TOTAL)
+            .index(BY_DIGIT)
+            .index(COUNT_EVEN)
+            .build();
+
+    @Test
+    public void testAggregates() {
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        assertTrue(state.index(TOTAL).get().isEmpty());
+
+        state = reducer.reduce(state, Action.create(PUT, 1, 12));
+        state = reducer.reduce(state, Action.create(PUT, 2, 5));
+        state = reducer.reduce(state, Action.create(PUT, 3, 22));
+
+        Aggregate total = state.index(TOTAL).get();
+        assertEquals(3, total.count());
+        assertEquals(39, total.sum());
+        assertEquals(5, total.min());
+        assertEquals(22, total.max());
+        assertEquals(12, total.valueAt(1));
+
+        Aggregate two = state.index(BY_DIGIT).get(2);
+        assertEquals(2, two.count());
+        assertEquals(34, two.sum());
+        assertEquals(2, state.index(COUNT_EVEN).get(true).count());
+        assertEquals(1, state.index(COUNT_EVEN).get(false).count());
+
+        state = reducer.reduce(state, Action.create(PUT, 3, 7));
+        assertEquals(24, state.index(TOTAL).get().sum());
+        assertEquals(12, state.index(BY_DIGIT).get(2).max());
+    }
+
+    @Test
+    public void testUnchangedAggregateKeepsInstance() {
+        IndexedMap<Integer, Integer> state = reducer.reduce(reducer.reduce(null, Action.create("INIT")), Action.create(PUT, 1, 12));
+        state = reducer.reduce(state, Action.create(PUT, 2, 5));
+        Aggregate even = state.index(COUNT_EVEN).get(true);
+        Aggregate five = state.index(BY_DIGIT).get(5);
+
+        //new instance of equal value
+        IndexedMap<Integer, Integer> next = reducer.reduce(state, Action.create(PUT, 1, new Integer(12)));
+        assertNotSame(state, next);
+        assertSame(even, next.index(COUNT_EVEN).get(true));
+        //value changed, but stays even
+        next = reducer.reduce(next, Action.create(PUT, 1, 14));
+        assertSame(even, next.index(COUNT_EVEN).get(true));
+        assertSame(five, next.index(BY_DIGIT).get(5));
+    }
+
+    @Test
+    public void testEqualityComparesAllValues() {
+        Aggregate first = aggregate(0, 4, 6, 10);
+        Aggregate second = aggregate(0, 5, 5, 10);
+        //the same count, sum, min and max, but different median
+        assertFalse(first.equals(second));
+
+        Aggregate same = aggregate(10, 6, 0, 4);
+        assertEquals(first, same);
+        assertEquals(first.hashCode(), same.hashCode());
+    }
+
+    private Aggregate aggregate(int... values) {
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        for (int i = 0; i < values.length; i++) {
+            state = reducer.reduce(state, Action.create(PUT, i, values[i]));
+        }
+        return state.index(TOTAL).get();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testMinOfCountOnlyAggregate() {
+        IndexedMap<Integer, Integer> state = reducer.reduce(reducer.reduce(null, Action.create("INIT")), Action.create(PUT, 1, 12));
+        state.index(COUNT_EVEN).get(true).min();
+    }
+
+    @Test
+    public void testRandomUpdatesMatchRescan() {
+        Random random = new Random(42);
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(500);
+            Action action = random.nextInt(3) == 0
+                    ? Action.create(REMOVE, key)
+                    : Action.create(PUT, key, random.nextInt(1000) - 500);
+            state = reducer.reduce(state, action);
+
+            if (i % 1000 == 0) {
+                assertAggregatesMatchRescan(state);
+            }
+        }
+        assertAggregatesMatchRescan(state);
+    }
+
+    private static void assertAggregatesMatchRescan(IndexedMap<Integer, Integer> state) {
+        List<Integer> values = new ArrayList<>(state.values());
+        assertAggregate(values, state.index(TOTAL).get());
+
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        for (Integer value : values) {
+            List<Integer> group = groups.get(value % 10);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(value % 10, group);
+            }
+            group.add(value);
+        }
+        assertEquals(groups.keySet(), state.index(BY_DIGIT).groups());
+        for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+            assertAggregate(group.getValue(), state.index(BY_DIGIT).get(group.getKey()));
+        }
+    }
+
+    private static void assertAggregate(List<Integer> values, Aggregate aggregate) {
+        assertEquals(values.size(), aggregate.count());
+        if (values.isEmpty()) return;
+        long sum = 0;
+        for (Integer value : values) {
+            sum += value;
+        }
+        List<Integer> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        assertEquals(sum, aggregate.sum());
+        assertEquals((long) sorted.get(0), aggregate.min());
+        assertEquals((long) sorted.get(sorted.size() - 1), aggregate.max());
+        assertEquals((long) sorted.get(sorted.size() / 2), aggregate.valueAt(sorted.size() / 2));
+    }
+}
@@ -0,0 +1,82 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Drafts;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class DraftsTest {
+
+    @Test
+    public void testVectorDraft() {
+        PersistentVector<Integer> vector = PersistentVector.of(1, 2, 3);
+        PersistentVector<Integer> next = Drafts.produce(vector, draft -> {
+            draft.set(0, 10);
+            draft.add(4);
+        });
+
+        assertEquals(Arrays.asList(10, 2, 3, 4), next);
+        assertEquals(Arrays.asList(1, 2, 3), vector);
+    }
+
+    @Test
+    public void testUnchangedDraftsReturnSameInstance() {
+        PersistentVector<Integer> vector = PersistentVector.of(1, 2, 3);
+        assertSame(vector, Drafts.produce(vector, draft -> draft.set(1, vector.get(1))));
+
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().plus("a", 1);
+        assertSame(map, Drafts.produce(map, draft -> draft.put("a", map.get("a")).remove("b")));
+
+        EntityMap<Integer, String> entities = EntityMap.<Integer, String>empty().plus(1, "one");
+        assertSame(entities, Drafts.produce(entities, draft -> draft.put(1, entities.get(1)).remove(2)));
+    }
+
+    @Test
+    public void testChangedMapDraft() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().plus("a", 1);
+        PersistentHashMap<String, Integer> next = Drafts.produce(map, draft -> draft.put("a", 2));
+
+        assertNotSame(map, next);
+        assertEquals(2, (int) next.get("a"));
+        assertEquals(1, (int) map.get("a"));
+    }
+
+    @Test
+    public void testRandomEntityMapDraftMatchesPersistentUpdates() {
+        Random random = new Random(42);
+        EntityMap<Integer, Integer> expected = EntityMap.empty();
+        EntityMap<Integer, Integer> actual = EntityMap.empty();
+        for (int round = 0; round < 200; round++) {
+            EntityMap.Builder<Integer, Integer> draft = actual.draft();
+            for (int i = 0; i < 50; i++) {
+                int key = random.nextInt(300);
+                if (random.nextInt(3) == 0) {
+                    expected = expected.minus(key);
+                    draft.remove(key);
+                } else {
+                    Integer value = random.nextInt(1000);
+                    expected = expected.plus(key, value);
+                    draft.put(key, value);
+                }
+                assertEquals(expected.get(key), draft.get(key));
+            }
+            actual = draft.finish();
+
+            assertEquals(expected.size(), actual.size());
+            assertEquals(Arrays.asList(expected.keySet().toArray()), Arrays.asList(actual.keySet().toArray()));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDraftCannotBeUsedAfterFinish() {
+        PersistentVector.Builder<Integer> draft = PersistentVector.of(1).draft();
+        draft.finish();
+        draft.add(2);
+    }
+}
@@ -0,0 +1,216 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+import com.yheriatovych.reductor.diff.ListPatch;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IndexedReducerTest {
+    private static final String PUT = "PUT";
+    private static final String REMOVE = "REMOVE";
+
+    private static final FilterIndex<Integer, Integer> EVEN = Index.filter(value -> value % 2 == 0);
+    private static final GroupIndex<Integer, Integer, Integer> BY_DIGIT = Index.groupBy(value -> value % 10);
+    private static final SortedIndex<Integer, Integer> SORTED = Index.sortedBy(Comparator.<Integer>naturalOrder());
+
+    private final IndexedReducer<Integer, Integer> reducer = IndexedReducer.builder(new Reducer<EntityMap<Integer, Integer>>() {
+        @Override
+        public EntityMap<Integer, Integer> reduce(EntityMap<Integer, Integer> state, Action action) {
+            if (state == null) return EntityMap.empty();
+            switch (action.type) {
+                case PUT:
+                    return state.plus((Integer) action.getValue(0), (Integer) action.getValue(1));
+                case REMOVE:
+                    return state.minus(action.getValue(0));
+                default:
+                    return state;
+            }
+        }
+    })
+            .index(EVEN)
+            .index(BY_DIGIT)
+            .index(SORTED)
+            .build();
+
+    @Test
+    public void testIndexes() {
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        state = reducer.reduce(state, Action.create(PUT, 1, 12));
+        state = reducer.reduce(state, Action.create(PUT, 2, 5));
+        state = reducer.reduce(state, Action.create(PUT, 3, 22));
+        state = reducer.reduce(state, Action.create(PUT, 4, 8));
+
+        assertEquals(Arrays.asList(12, 22, 8), state.index(EVEN).values());
+        assertEquals(Arrays.asList(12, 22), state.index(BY_DIGIT).get(2));
+        assertEquals(new HashSet<>(Arrays.asList(2, 5, 8)), state.index(BY_DIGIT).groups());
+        assertEquals(Arrays.asList(5, 8, 12, 22), state.index(SORTED).values());
+        assertEquals(5, (int) state.index(SORTED).first());
+        assertEquals(22, (int) state.index(SORTED).last());
+
+        state = reducer.reduce(state, Action.create(PUT, 1, 7));
+        state = reducer.reduce(state, Action.create(REMOVE, 3));
+
+        assertEquals(Collections.singletonList(8), state.index(EVEN).values());
+        assertEquals(Collections.emptyList(), state.index(BY_DIGIT).get(2));
+        assertEquals(new HashSet<>(Arrays.asList(5, 7, 8)), state.index(BY_DIGIT).groups());
+        assertEquals(Arrays.asList(5, 7, 8), state.index(SORTED).values());
+    }
+
+    @Test
+    public void testNoOpActionKeepsState() {
+        IndexedMap<Integer, Integer> state = reducer.reduce(reducer.reduce(null, Action.create("INIT")), Action.create(PUT, 1, 1));
+
+        assertSame(state, reducer.reduce(state, Action.create(REMOVE, 2)));
+        assertSame(state, reducer.reduce(state, Action.create("UNKNOWN")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnregisteredIndex() {
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        state.index(Index.<Integer, Integer>filter(value -> true));
+    }
+
+    @Test
+    public void testRandomUpdatesMatchRescan() {
+        Random random = new Random(42);
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(500);
+            Action action = random.nextInt(3) == 0
+                    ? Action.create(REMOVE, key)
+                    : Action.create(PUT, key, random.nextInt(1000));
+            state = reducer.reduce(state, action);
+
+            if (i % 1000 == 0) {
+                assertIndexesMatchRescan(state);
+            }
+        }
+        assertIndexesMatchRescan(state);
+        assertIndexesMatchRescan(reducer.index(state.entities()));
+    }
+
+    @Test
+    public void testChangesSince() {
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        state = reducer.reduce(state, Action.create(PUT, 1, 12));
+        state = reducer.reduce(state, Action.create(PUT, 2, 5));
+        IndexedMap<Integer, Integer> next = reducer.reduce(state, Action.create(PUT, 3, 8));
+
+        assertEquals(ListPatch.<Integer>builder().inserted(1, 8).build(),
+                next.index(SORTED).changesSince(state.index(SORTED)));
+        assertEquals(ListPatch.<Integer>builder().inserted(1, 8).build(),
+                next.index(EVEN).changesSince(state.index(EVEN)));
+        assertEquals(ListPatch.<Integer>empty(), next.index(BY_DIGIT).changesSince(state.index(BY_DIGIT), 2));
+        assertEquals(ListPatch.<Integer>empty(), next.index(EVEN).changesSince(next.index(EVEN)));
+
+        IndexedMap<Integer, Integer> last = reducer.reduce(next, Action.create(PUT, 1, 2));
+        assertEquals(ListPatch.<Integer>builder().moved(2, 0, 12).changed(0, 12, 2).build(),
+                last.index(SORTED).changesSince(next.index(SORTED)));
+        assertEquals(ListPatch.<Integer>builder().changed(0, 12, 2).build(),
+                last.index(BY_DIGIT).changesSince(next.index(BY_DIGIT), 2));
+        //older versions are not tracked
+        assertNull(last.index(SORTED).changesSince(state.index(SORTED)));
+    }
+
+    @Test
+    public void testRandomChangesApplyToPreviousLists() {
+        Random random = new Random(42);
+        IndexedMap<Integer, Integer> state = reducer.reduce(null, Action.create("INIT"));
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(200);
+            Action action = random.nextInt(3) == 0
+                    ? Action.create(REMOVE, key)
+                    : Action.create(PUT, key, random.nextInt(100));
+            IndexedMap<Integer, Integer> next = reducer.reduce(state, action);
+
+            assertPatchApplies(state.index(EVEN).values(), next.index(EVEN).values(),
+                    next.index(EVEN).changesSince(state.index(EVEN)));
+            assertPatchApplies(state.index(SORTED).values(), next.index(SORTED).values(),
+                    next.index(SORTED).changesSince(state.index(SORTED)));
+            for (int digit = 0; digit < 10; digit++) {
+                assertPatchApplies(state.index(BY_DIGIT).get(digit), next.index(BY_DIGIT).get(digit),
+                        next.index(BY_DIGIT).changesSince(state.index(BY_DIGIT), digit));
+            }
+            state = next;
+        }
+    }
+
+    private static void assertPatchApplies(List<Integer> previous, List<Integer> next, ListPatch<Integer> patch) {
+        assertNotNull(patch);
+        assertEquals(next, patch.apply(previous));
+    }
+
+    @Test
+    public void testCompareReportsChanges() {
+        Random random = new Random(42);
+        EntityMap<Integer, Integer> previous = EntityMap.empty();
+        for (int i = 0; i < 2000; i++) {
+            previous = previous.plus(random.nextInt(1000), i);
+        }
+        for (int round = 0; round < 50; round++) {
+            EntityMap<Integer, Integer> next = previous;
+            for (int i = 0; i < 100; i++) {
+                int key = random.nextInt(1000);
+                next = random.nextBoolean() ? next.minus(key) : next.plus(key, random.nextInt(5));
+            }
+
+            Map<Integer, Integer> expected = new LinkedHashMap<>(previous);
+            EntityMap.compare(previous, next, new EntityMap.Delta<Integer, Integer>() {
+                @Override
+                public void added(Integer key, Integer value) {
+                    assertNull(expected.put(key, value));
+                }
+
+                @Override
+                public void removed(Integer key, Integer value) {
+                    assertEquals(value, expected.remove(key));
+                }
+
+                @Override
+                public void updated(Integer key, Integer previousValue, Integer nextValue) {
+                    assertEquals(previousValue, expected.put(key, nextValue));
+                }
+            });
+            assertEquals(next, expected);
+            previous = next;
+        }
+    }
+
+    private static void assertIndexesMatchRescan(IndexedMap<Integer, Integer> state) {
+        List<Integer> even = new ArrayList<>();
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (Integer value : state.values()) {
+            if (value % 2 == 0) even.add(value);
+            List<Integer> group = groups.get(value % 10);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(value % 10, group);
+            }
+            group.add(value);
+        }
+        List<Integer> sorted = new ArrayList<>(state.values());
+        Collections.sort(sorted);
+
+        assertEquals(even, state.index(EVEN).values());
+        assertEquals(groups.keySet(), state.index(BY_DIGIT).groups());
+        for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+            assertEquals(group.getValue(), state.index(BY_DIGIT).get(group.getKey()));
+        }
+        assertEquals(sorted, state.index(SORTED).values());
+    }
+}
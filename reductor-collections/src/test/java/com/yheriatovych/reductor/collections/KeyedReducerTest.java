@@ -0,0 +1,119 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class KeyedReducerTest {
+    private static final String ADD = "ADD";
+    private static final String REMOVE = "REMOVE";
+    private static final String RENAME = "RENAME";
+
+    private final KeyedReducer<Integer, String> reducer = KeyedReducer.<Integer, String>builder(KeyedReducer.keyAt(0))
+            .add(ADD, action -> (String) action.getValue(1))
+            .remove(REMOVE)
+            .update(RENAME)
+            .entityReducer(new Reducer<String>() {
+                @Override
+                public String reduce(String state, Action action) {
+                    return action.type.equals(RENAME) ? (String) action.getValue(1) : state;
+                }
+            })
+            .build();
+
+    @Test
+    public void testInitialState() {
+        assertSame(EntityMap.empty(), reducer.reduce(null, Action.create("INIT")));
+    }
+
+    @Test
+    public void testAddUpdateRemove() {
+        EntityMap<Integer, String> state = EntityMap.empty();
+        state = reducer.reduce(state, Action.create(ADD, 3, "c"));
+        state = reducer.reduce(state, Action.create(ADD, 1, "a"));
+        state = reducer.reduce(state, Action.create(ADD, 2, "b"));
+        state = reducer.reduce(state, Action.create(RENAME, 1, "A"));
+
+        assertEquals(Arrays.asList(3, 1, 2), new ArrayList<>(state.keySet()));
+        assertEquals(Arrays.asList("c", "A", "b"), new ArrayList<>(state.values()));
+
+        state = reducer.reduce(state, Action.create(REMOVE, 3));
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(state.keySet()));
+        assertEquals(2, state.size());
+    }
+
+    @Test
+    public void testNoOpActionsKeepState() {
+        EntityMap<Integer, String> state = reducer.reduce(null, Action.create(ADD, 1, "a"));
+
+        assertSame(state, reducer.reduce(state, Action.create(RENAME, 2, "b")));
+        assertSame(state, reducer.reduce(state, Action.create(REMOVE, 2)));
+        assertSame(state, reducer.reduce(state, Action.create("UNKNOWN", 1)));
+        assertSame(state, reducer.reduce(state, Action.create(RENAME)));
+    }
+
+    @Test
+    public void testNotRegisteredActionsAreNotRouted() {
+        final int[] reduced = new int[1];
+        KeyedReducer<Integer, String> reducer = KeyedReducer.<Integer, String>builder(KeyedReducer.keyAt(0))
+                .add(ADD, action -> (String) action.getValue(1))
+                .update(RENAME, action -> (Integer) action.getValue(1))
+                .entityReducer((state, action) -> {
+                    reduced[0]++;
+                    return (String) action.getValue(0);
+                })
+                .build();
+        EntityMap<Integer, String> state = reducer.reduce(null, Action.create(ADD, 1, "a"));
+
+        //first value of unrelated action equals to entity id
+        assertSame(state, reducer.reduce(state, Action.create("UNRELATED", 1)));
+        assertEquals(0, reduced[0]);
+
+        state = reducer.reduce(state, Action.create(RENAME, "A", 1));
+        assertEquals("A", state.get(1));
+        assertEquals(1, reduced[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdateWithoutEntityReducer() {
+        KeyedReducer.<Integer, String>builder(KeyedReducer.keyAt(0))
+                .update(RENAME)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateActionType() {
+        KeyedReducer.<Integer, String>builder(KeyedReducer.keyAt(0))
+                .add(ADD, action -> "")
+                .remove(ADD);
+    }
+
+    @Test
+    public void testRandomUpdatesKeepInsertionOrder() {
+        Random random = new Random(42);
+        EntityMap<Integer, Integer> map = EntityMap.empty();
+        Map<Integer, Integer> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(2) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+}
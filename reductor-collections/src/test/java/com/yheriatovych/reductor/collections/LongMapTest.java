@@ -0,0 +1,134 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.MapDiffer;
+import com.yheriatovych.reductor.diff.Patch;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LongMapTest {
+
+    private static Map<Long, Object> toMap(LongMap<?> map) {
+        final Map<Long, Object> result = new HashMap<>();
+        map.forEach((key, value) -> result.put(key, value));
+        return result;
+    }
+
+    @Test
+    public void testRandomUpdatesMatchHashMap() {
+        Random random = new Random(42);
+        LongMap<Integer> map = LongMap.empty();
+        Map<Long, Object> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            long key = random.nextInt(3) == 0 ? random.nextLong() : random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected, toMap(map));
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Object> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testNoOpUpdatesReturnSameInstance() {
+        String value = "value";
+        LongMap<String> map = LongMap.<String>empty().plus(1, value);
+        assertSame(map, map.plus(1, value));
+        assertSame(map, map.minus(2));
+    }
+
+    @Test
+    public void testEqualsIgnoresUpdateOrder() {
+        LongMap<String> first = LongMap.empty();
+        LongMap<String> second = LongMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            first = first.plus(i, "v" + i);
+            second = second.plus(999 - i, "v" + (999 - i));
+        }
+        second = second.plus(5000, "extra").minus(5000);
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+
+    @Test
+    public void testBuilder() {
+        LongMap.Builder<Integer> builder = LongMap.builder();
+        for (int i = 0; i < 3000; i++) {
+            builder.put(i, i);
+        }
+        for (int i = 0; i < 3000; i += 2) {
+            builder.remove(i);
+        }
+        LongMap<Integer> map = builder.build();
+        assertEquals(1500, map.size());
+        assertNull(map.get(0));
+        assertEquals(1, (int) map.get(1));
+
+        LongMap<Integer> updated = map.toBuilder().put(0, 0).build();
+        assertFalse(map.containsKey(0));
+        assertTrue(updated.containsKey(0));
+    }
+
+    @Test
+    public void testUnchangedBuilderReturnsSameMap() {
+        LongMap<Integer> map = LongMap.<Integer>empty().plus(1, 1).plus(2, 2);
+        assertSame(map, map.toBuilder().put(1, map.get(1)).remove(3).build());
+
+        IntMap<Integer> intMap = IntMap.<Integer>empty().plus(1, 1);
+        assertSame(intMap, intMap.toBuilder().put(1, intMap.get(1)).remove(3).build());
+        assertNotSame(intMap, intMap.toBuilder().put(1, 2).build());
+    }
+
+    @Test
+    public void testIntMap() {
+        IntMap<String> map = IntMap.<String>empty().plus(-1, "a").plus(2, "b");
+        assertEquals("a", map.get(-1));
+        assertEquals(2, map.size());
+        assertSame(IntMap.empty(), map.minus(-1).minus(2));
+
+        final Map<Integer, String> entries = new HashMap<>();
+        map.forEach((key, value) -> entries.put(key, value));
+        assertEquals("a", entries.get(-1));
+        assertEquals("b", entries.get(2));
+    }
+
+    @Test
+    public void testDiffMatchesMapDiffer() {
+        Random random = new Random(7);
+        LongMap<Integer> previous = LongMap.empty();
+        for (int i = 0; i < 3000; i++) {
+            previous = previous.plus(i, i);
+        }
+        for (int round = 0; round < 30; round++) {
+            LongMap<Integer> next = previous;
+            for (int i = random.nextInt(20); i >= 0; i--) {
+                long key = random.nextInt(4000);
+                next = random.nextBoolean() ? next.plus(key, -round) : next.minus(key);
+            }
+
+            Patch.Builder expected = Patch.builder();
+            new MapDiffer<Long, Object>().diff("", toMap(previous), toMap(next), expected);
+            Patch.Builder actual = Patch.builder();
+            new LongMapDiffer<Integer>().diff("", previous, next, actual);
+            assertEquals(new HashSet<>(expected.build().getChanges()), new HashSet<>(actual.build().getChanges()));
+            previous = next;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.MapDiffer;
+import com.yheriatovych.reductor.diff.Patch;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PersistentHashMapTest {
+
+    /**
+     * Key with poor hash code to exercise collision nodes.
+     */
+    private static final class Key {
+        final int id;
+
+        Key(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % 50;
+        }
+
+        @Override
+        public String toString() {
+            return "key" + id;
+        }
+    }
+
+    @Test
+    public void testRandomUpdatesMatchHashMap() {
+        Random random = new Random(42);
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void testCollisions() {
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 500; i++) {
+            map = map.plus(new Key(i), i);
+        }
+        assertEquals(500, map.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, (int) map.get(new Key(i)));
+        }
+        for (int i = 0; i < 500; i += 2) {
+            map = map.minus(new Key(i));
+        }
+        assertEquals(250, map.size());
+        assertEquals(250, new HashSet<>(map.keySet()).size());
+        assertEquals(null, map.get(new Key(0)));
+        assertEquals(1, (int) map.get(new Key(1)));
+    }
+
+    @Test
+    public void testNoOpUpdatesReturnSameInstance() {
+        String value = "value";
+        PersistentHashMap<String, String> map = PersistentHashMap.<String, String>empty().plus("key", value);
+        assertSame(map, map.plus("key", value));
+        assertSame(map, map.minus("missing"));
+    }
+
+    @Test
+    public void testRemovalKeepsCanonicalShape() {
+        PersistentHashMap<Integer, Integer> small = PersistentHashMap.<Integer, Integer>empty().plus(1, 1);
+        PersistentHashMap<Integer, Integer> map = small;
+        for (int i = 2; i < 1000; i++) {
+            map = map.plus(i, i);
+        }
+        for (int i = 2; i < 1000; i++) {
+            map = map.minus(i);
+        }
+        assertEquals(small, map);
+        assertEquals(((PersistentHashMap.BitmapNode) small.root).dataMap, ((PersistentHashMap.BitmapNode) map.root).dataMap);
+        assertEquals(0, map.root.nodeCount());
+    }
+
+    @Test
+    public void testBuilder() {
+        PersistentHashMap<Integer, Integer> original = PersistentHashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            original = original.plus(i, i);
+        }
+        Map<Integer, Integer> expected = new HashMap<>(original);
+
+        PersistentHashMap.Builder<Integer, Integer> builder = original.toBuilder();
+        for (int i = 500; i < 3000; i++) {
+            builder.put(i, -i);
+            expected.put(i, -i);
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            builder.remove(i);
+            expected.remove(i);
+        }
+        assertEquals(expected, builder.build());
+        assertEquals(1000, original.size());
+        assertEquals(700, (int) original.get(700));
+    }
+
+    @Test
+    public void testDiffMatchesMapDiffer() {
+        Random random = new Random(7);
+        PersistentHashMap<Key, Integer> previous = PersistentHashMap.empty();
+        for (int i = 0; i < 2000; i++) {
+            previous = previous.plus(new Key(i), i);
+        }
+        for (int round = 0; round < 30; round++) {
+            PersistentHashMap<Key, Integer> next = previous;
+            for (int i = random.nextInt(20); i >= 0; i--) {
+                Key key = new Key(random.nextInt(2500));
+                next = random.nextBoolean() ? next.plus(key, -round) : next.minus(key);
+            }
+
+            Patch.Builder expected = Patch.builder();
+            new MapDiffer<Key, Integer>().diff("", previous, next, expected);
+            Patch.Builder actual = Patch.builder();
+            new HashMapDiffer<Key, Integer>().diff("", previous, next, actual);
+            assertEquals(new HashSet<>(expected.build().getChanges()), new HashSet<>(actual.build().getChanges()));
+            previous = next;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.yheriatovych.reductor.collections;
+
+import com.yheriatovych.reductor.diff.ListDiffer;
+import com.yheriatovych.reductor.diff.Patch;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PersistentVectorTest {
+
+    @Test
+    public void testPlusAndGet() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 40000; i++) {
+            vector = vector.plus(i);
+            expected.add(i);
+        }
+        assertEquals(expected, vector);
+        assertEquals(expected.hashCode(), vector.hashCode());
+        for (int i = 0; i < expected.size(); i += 997) {
+            assertEquals(expected.get(i), vector.get(i));
+        }
+    }
+
+    @Test
+    public void testVersionsAreIndependent() {
+        PersistentVector<String> first = PersistentVector.of("a", "b", "c");
+        PersistentVector<String> second = first.with(1, "B").plus("d");
+
+        assertEquals(Arrays.asList("a", "b", "c"), first);
+        assertEquals(Arrays.asList("a", "B", "c", "d"), second);
+    }
+
+    @Test
+    public void testNoOpUpdatesReturnSameInstance() {
+        String element = "b";
+        PersistentVector<String> vector = PersistentVector.of("a", element, "c");
+        assertSame(vector, vector.with(1, element));
+        assertSame(vector, vector.minus("z"));
+        assertSame(vector, vector.plusAll(Collections.<String>emptyList()));
+        assertSame(vector, PersistentVector.from(vector));
+    }
+
+    @Test
+    public void testRandomUpdatesMatchArrayList() {
+        Random random = new Random(42);
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || expected.isEmpty()) {
+                vector = vector.plus(i);
+                expected.add(i);
+            } else if (operation < 8) {
+                int index = random.nextInt(expected.size());
+                vector = vector.with(index, -i);
+                expected.set(index, -i);
+            } else if (operation < 9) {
+                vector = vector.minusLast();
+                expected.remove(expected.size() - 1);
+            } else if (expected.size() < 2000) {
+                int index = random.nextInt(expected.size());
+                vector = vector.minus(index);
+                expected.remove(index);
+            }
+        }
+        assertEquals(expected, vector);
+    }
+
+    @Test
+    public void testBuilder() {
+        PersistentVector<Integer> original = PersistentVector.empty();
+        for (int i = 0; i < 5000; i++) {
+            original = original.plus(i);
+        }
+        List<Integer> expected = new ArrayList<>(original);
+
+        PersistentVector.Builder<Integer> builder = original.toBuilder();
+        for (int i = 0; i < 3000; i++) {
+            builder.add(i);
+            expected.add(i);
+        }
+        for (int i = 0; i < expected.size(); i += 7) {
+            builder.set(i, -i);
+            expected.set(i, -i);
+        }
+        for (int i = 0; i < 4000; i++) {
+            builder.removeLast();
+            expected.remove(expected.size() - 1);
+        }
+        PersistentVector<Integer> built = builder.build();
+
+        assertEquals(expected, built);
+        assertEquals(5000, original.size());
+        assertEquals(4999, (int) original.get(4999));
+        assertEquals(0, (int) original.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuilderCannotBeUsedAfterBuild() {
+        PersistentVector.Builder<String> builder = PersistentVector.builder();
+        builder.build();
+        builder.add("a");
+    }
+
+    @Test
+    public void testDiffMatchesListDiffer() {
+        Random random = new Random(7);
+        PersistentVector<Integer> previous = PersistentVector.empty();
+        for (int i = 0; i < 10000; i++) {
+            previous = previous.plus(i);
+        }
+        for (int round = 0; round < 20; round++) {
+            PersistentVector<Integer> next = previous;
+            for (int i = random.nextInt(5); i >= 0; i--) {
+                next = next.with(random.nextInt(next.size()), -round - i - 1);
+            }
+            for (int i = random.nextInt(40); i > 0; i--) {
+                next = random.nextBoolean() ? next.plus(i) : next.minusLast();
+            }
+
+            assertEquals(diff(new ListDiffer<Integer>(), previous, next), diff(new VectorDiffer<Integer>(), previous, next));
+            previous = next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Patch diff(Object differ, PersistentVector<Integer> previous, PersistentVector<Integer> next) {
+        Patch.Builder patch = Patch.builder();
+        if (differ instanceof VectorDiffer) {
+            ((VectorDiffer<Integer>) differ).diff("items", previous, next, patch);
+        } else {
+            ((ListDiffer<Integer>) differ).diff("items", previous, next, patch);
+        }
+        return patch.build();
+    }
+}
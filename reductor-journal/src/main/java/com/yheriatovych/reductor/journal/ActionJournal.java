@@ -0,0 +1,983 @@
+package com.yheriatovych.reductor.journal;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+import com.yheriatovych.reductor.SlicedReducer;
+import com.yheriatovych.reductor.SpeculativeReducer;
+import com.yheriatovych.reductor.Store;
+import com.yheriatovych.reductor.annotations.ActionCreator;
+import com.yheriatovych.reductor.codec.Codec;
+import com.yheriatovych.reductor.codec.CompactionPolicy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of dispatched actions stored in memory-mapped segment files.
+ * <p>
+ * Every appended action gets a sequence number (starting from 1) and is written with provided {@link Codec}
+ * into the current segment. When segment is full, a new one is created, so no segment is ever rewritten.
+ * <p>
+ * Writes land in the page cache immediately and survive process crash.
+ * To survive OS crash, segments are flushed to the disk with group commit:
+ * background thread forces all pending writes every {@code syncIntervalMillis}
+ * (or each append forces its write if interval is zero).
+ * <p>
+ * On open, only the last segment is scanned and a torn record at its tail (if any) is discarded,
+ * so recovery time is bounded by segment size.
+ * State can be rebuilt by replaying journal from a snapshot with
+ * {@link #replay(Reducer, Object, long)} or from the newest checkpoint embedded into the journal
+ * with {@link #recover(Reducer, Codec)}. Replay decodes segments on background threads
+ * (see {@link Builder#replayThreads(int)}), decoded batches of {@link SlicedReducer} can be reduced
+ * speculatively in parallel (see {@link Builder#speculativeReplay(Executor)}).
+ * <p>
+ * With {@link Builder#compaction(CompactionPolicy)}, closed segments are compacted in background:
+ * superseded actions are dropped, so replay time and disk usage depend on live data rather than on history.
+ * <p>
+ * Usage:
+ * <pre><code>
+ * ActionJournal journal = ActionJournal.builder()
+ *         .directory(new File(context.getFilesDir(), "journal"))
+ *         .codec(actionCodec)
+ *         .build();
+ * AppState state = journal.replay(reducer, null, 0);
+ * Store&lt;AppState&gt; store = Store.create(journal.journaling(reducer), state);
+ * </code></pre>
+ */
+public final class ActionJournal implements Closeable {
+    private static final String COMPACTED_SUFFIX = ".compact";
+    private static final ThreadFactory DECODER_THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "ActionJournal-decoder");
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private final File directory;
+    private final Codec<Action> codec;
+    private final int segmentSize;
+    private final long syncIntervalMillis;
+    private final int replayThreads;
+    private final Executor speculativeExecutor;
+    private final SpeculativeReducer.Stats replayStats = new SpeculativeReducer.Stats();
+    private final CRC32 crc = new CRC32();
+    private final Flusher flusher;
+    private final Object syncLock = new Object();
+    private final CompactionPolicy compactionPolicy;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final Object compactionLock = new Object();
+    //compaction replaces segment files only under write lock, so readers see consistent set of segments
+    private final ReadWriteLock filesLock = new ReentrantReadWriteLock();
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private Segment current;
+    private volatile long syncedSequence;
+    //written under lock of the journal
+    private volatile long appendedBytes;
+    private boolean closed;
+    //seqlock guarding committed state/sequence pair, odd version means write in progress
+    private volatile long commitVersion;
+    private volatile Object committedState;
+    private volatile long committedSequence;
+
+    private ActionJournal(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.codec = builder.codec;
+        this.segmentSize = builder.segmentSize;
+        this.syncIntervalMillis = builder.syncIntervalMillis;
+        this.replayThreads = builder.replayThreads;
+        this.speculativeExecutor = builder.speculativeExecutor;
+        this.compactionPolicy = builder.compactionPolicy;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        //leftovers of interrupted compaction
+        File[] compacted = directory.listFiles(file -> file.getName().endsWith(COMPACTED_SUFFIX));
+        if (compacted != null) {
+            for (File file : compacted) {
+                file.delete();
+            }
+        }
+        File[] segments = listSegments(directory);
+        current = segments.length == 0
+                ? Segment.create(directory, 0, segmentSize)
+                : Segment.openForAppend(segments[segments.length - 1]);
+        syncedSequence = current.lastSequence();
+
+        if (syncIntervalMillis > 0) {
+            flusher = new Flusher();
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+        compactor = compactionPolicy != null
+                ? Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "ActionJournal-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Append action to the journal.
+     *
+     * @param action action to append
+     * @return sequence number of appended action
+     * @throws IOException              if new segment cannot be created
+     * @throws IllegalArgumentException if encoded action is bigger than segment
+     * @throws IllegalStateException    if journal is closed
+     */
+    public synchronized long append(Action action) throws IOException {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        scratch.clear();
+        int length = encode(codec, action);
+        write(length, false, action);
+        appendedBytes += length;
+        long sequence = current.lastSequence();
+        if (flusher == null) {
+            current.force();
+            syncedSequence = sequence;
+        }
+        return sequence;
+    }
+
+    /**
+     * Append checkpoint of state to the journal.
+     * <p>
+     * Checkpoint allows {@link #recover(Reducer, Codec)} and {@link #stateAt(long, Reducer, Codec)}
+     * to replay only actions appended after it.
+     * Checkpoints do not get own sequence numbers.
+     *
+     * @param state state with all appended actions reduced into it
+     * @param codec codec to write state with
+     * @param <S>   type of state
+     * @return sequence number of the last action reduced into checkpoint
+     * @throws IOException              if new segment cannot be created
+     * @throws IllegalArgumentException if encoded state is bigger than segment
+     * @throws IllegalStateException    if journal is closed
+     */
+    public synchronized <S> long checkpoint(S state, Codec<S> codec) throws IOException {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        long sequence = current.lastSequence();
+        scratch.clear();
+        scratch.putLong(sequence);
+        write(encode(codec, state), true, state);
+        if (flusher == null) {
+            current.force();
+        }
+        return sequence;
+    }
+
+    private void write(int length, boolean checkpoint, Object value) throws IOException {
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        int checksum = (int) crc.getValue();
+
+        if (!current.append(scratch.array(), length, checksum, checkpoint)) {
+            roll();
+            if (!current.append(scratch.array(), length, checksum, checkpoint)) {
+                throw new IllegalArgumentException(String.format("%s does not fit into segment of %d bytes", value, segmentSize));
+            }
+        }
+    }
+
+    /**
+     * Encode value after already written scratch content.
+     *
+     * @return length of scratch content
+     */
+    private <T> int encode(Codec<T> codec, T value) {
+        int start = scratch.position();
+        while (true) {
+            try {
+                codec.write(value, scratch);
+                return scratch.position();
+            } catch (BufferOverflowException e) {
+                if (scratch.capacity() >= segmentSize) {
+                    throw new IllegalArgumentException(String.format("%s does not fit into segment of %d bytes", value, segmentSize));
+                }
+                ByteBuffer grown = ByteBuffer.allocate(Math.min(scratch.capacity() * 2, segmentSize));
+                grown.put(scratch.array(), 0, start);
+                scratch = grown;
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        Segment previous = current;
+        current = Segment.create(directory, previous.lastSequence(), segmentSize);
+        previous.force();
+        previous.close();
+        if (flusher == null) {
+            syncedSequence = previous.lastSequence();
+        }
+        if (compactor != null && compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                compactionScheduled.set(false);
+                try {
+                    compact();
+                } catch (IOException e) {
+                    //journal is still valid, compaction will be retried after next segment is closed
+                }
+            });
+        }
+    }
+
+    /**
+     * @return sequence number of the last appended action, or 0 if journal is empty
+     */
+    public synchronized long lastSequence() {
+        return current.lastSequence();
+    }
+
+    /**
+     * @return number of bytes of encoded actions appended since the journal was opened
+     */
+    public long appendedBytes() {
+        return appendedBytes;
+    }
+
+    /**
+     * @return sequence number of the last action which is known to be flushed to the disk
+     */
+    public long syncedSequence() {
+        return syncedSequence;
+    }
+
+    /**
+     * Flush all appended actions to the disk.
+     */
+    public void sync() {
+        Segment segment;
+        long sequence;
+        synchronized (this) {
+            if (closed) return;
+            segment = current;
+            sequence = segment.lastSequence();
+        }
+        synchronized (syncLock) {
+            if (sequence > syncedSequence) {
+                segment.force();
+                syncedSequence = sequence;
+            }
+        }
+    }
+
+    /**
+     * Read actions with sequence number greater than {@code afterSequence} in order they were appended.
+     *
+     * @param afterSequence sequence number to start after, 0 to read the whole journal
+     * @param visitor       callback to receive actions
+     * @throws IOException if segment cannot be read
+     */
+    public void forEach(long afterSequence, Visitor visitor) throws IOException {
+        filesLock.readLock().lock();
+        try {
+            long lastSequence = lastSequence();
+            File[] segments = listSegments(directory);
+            for (int i = firstSegment(segments, afterSequence); i < segments.length; i++) {
+                if (Segment.parseBaseSequence(segments[i]) >= lastSequence) break;
+                readSegment(segments[i], codec, afterSequence, lastSequence, visitor);
+            }
+        } finally {
+            filesLock.readLock().unlock();
+        }
+    }
+
+    private static void readSegment(File file, Codec<Action> codec, long afterSequence, long upToSequence, Visitor visitor) throws IOException {
+        Segment segment = Segment.openForRead(file);
+        try {
+            Segment.Reader reader = segment.reader();
+            while (reader.advance()) {
+                if (reader.isCheckpoint()) continue;
+                long sequence = reader.sequence();
+                if (sequence > upToSequence) break;
+                if (sequence <= afterSequence) continue;
+                ByteBuffer record = reader.payload();
+                if (record == null) {
+                    throw new IOException(String.format("Record of action %d in %s is corrupted", sequence, file));
+                }
+                visitor.visit(sequence, codec.read(record));
+            }
+        } finally {
+            segment.close();
+        }
+    }
+
+    /**
+     * Rebuild state by reducing journaled actions after given snapshot.
+     * <p>
+     * Segments are decoded and validated on {@code replayThreads} background threads,
+     * while calling thread only reduces already decoded actions.
+     *
+     * @param reducer       reducer to apply actions with
+     * @param snapshot      state snapshot, or null to start with initial state of reducer
+     * @param afterSequence sequence number of the last action included into snapshot, 0 if snapshot is null
+     * @param <S>           type of state
+     * @return state after all journaled actions are applied
+     * @throws IOException if segment cannot be read
+     */
+    public <S> S replay(Reducer<S> reducer, S snapshot, long afterSequence) throws IOException {
+        filesLock.readLock().lock();
+        try {
+            return replay(reducer, snapshot, afterSequence, lastSequence());
+        } finally {
+            filesLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild the latest state starting from the newest checkpoint.
+     *
+     * @param reducer    reducer to apply actions with
+     * @param stateCodec codec used to write checkpoints
+     * @param <S>        type of state
+     * @return state after all journaled actions are applied
+     * @throws IOException if segment cannot be read
+     * @see #checkpoint(Object, Codec)
+     */
+    public <S> S recover(Reducer<S> reducer, Codec<S> stateCodec) throws IOException {
+        return stateAt(lastSequence(), reducer, stateCodec);
+    }
+
+    /**
+     * Rebuild state right after action with given sequence number was reduced ("time travel").
+     * <p>
+     * Only actions after the nearest checkpoint preceding the action are replayed.
+     * If journal is compacted, superseded actions are not replayed,
+     * so states in the middle of compacted history only include live actions.
+     *
+     * @param sequence   sequence number of action, 0 for initial state
+     * @param reducer    reducer to apply actions with
+     * @param stateCodec codec used to write checkpoints
+     * @param <S>        type of state
+     * @return state after action with given sequence number is applied
+     * @throws IOException              if segment cannot be read
+     * @throws IllegalArgumentException if there is no action with given sequence number
+     */
+    public <S> S stateAt(long sequence, Reducer<S> reducer, Codec<S> stateCodec) throws IOException {
+        if (sequence < 0 || sequence > lastSequence()) {
+            throw new IllegalArgumentException(String.format("No action with sequence %d, last sequence is %d", sequence, lastSequence()));
+        }
+        filesLock.readLock().lock();
+        try {
+            Snapshot<S> checkpoint = findCheckpoint(sequence, stateCodec);
+            return checkpoint == null
+                    ? replay(reducer, null, 0, sequence)
+                    : replay(reducer, checkpoint.state, checkpoint.sequence, sequence);
+        } finally {
+            filesLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return counters of speculative replay accumulated over all replays of this journal,
+     * see {@link Builder#speculativeReplay(Executor)}
+     */
+    public SpeculativeReducer.Stats replayStats() {
+        return replayStats;
+    }
+
+    /**
+     * Rewrite closed segments keeping only the latest action for every compaction key
+     * (see {@link CompactionPolicy#compactionKey(Action)}) and the newest checkpoint.
+     * Actions without compaction key are kept in order.
+     * <p>
+     * Called automatically on background thread when segment is closed.
+     *
+     * @throws IOException           if segment cannot be read or written
+     * @throws IllegalStateException if compaction policy is not set
+     */
+    public void compact() throws IOException {
+        if (compactionPolicy == null) throw new IllegalStateException("Compaction policy is not set");
+        synchronized (compactionLock) {
+            long lastSequence = lastSequence();
+            File[] segments = listSegments(directory);
+            //the last segment is not closed yet
+            int closed = segments.length - 1;
+            if (closed <= 0) return;
+
+            //actions are decoded once, sequences of actions replaced by later ones with the same key are collected
+            final Map<Object, Long> latest = new HashMap<>();
+            final Set<Long> superseded = new HashSet<>();
+            for (File segment : segments) {
+                readSegment(segment, codec, 0, lastSequence, (sequence, action) -> {
+                    Object key = compactionPolicy.compactionKey(action);
+                    if (key != null) {
+                        Long previous = latest.put(key, sequence);
+                        if (previous != null) superseded.add(previous);
+                    }
+                });
+            }
+
+            int checkpointSegment = -1;
+            int checkpointPosition = -1;
+            for (int i = closed - 1; i >= 0 && checkpointSegment == -1; i--) {
+                Segment segment = Segment.openForRead(segments[i]);
+                try {
+                    Segment.Reader reader = segment.reader();
+                    int start = reader.position;
+                    while (reader.advance()) {
+                        if (reader.isCheckpoint()) {
+                            checkpointSegment = i;
+                            checkpointPosition = start;
+                        }
+                        start = reader.position;
+                    }
+                } finally {
+                    segment.close();
+                }
+            }
+
+            for (int i = 0; i < closed; i++) {
+                compactSegment(segments[i], superseded, i == checkpointSegment ? checkpointPosition : -1);
+            }
+        }
+    }
+
+    private void compactSegment(File file, Set<Long> superseded, int checkpointPosition) throws IOException {
+        Segment segment = Segment.openForRead(file);
+        Segment.Writer writer = new Segment.Writer(segment.baseSequence);
+        boolean changed = false;
+        try {
+            Segment.Reader reader = segment.reader();
+            int start = reader.position;
+            while (reader.advance()) {
+                ByteBuffer record = reader.payload();
+                if (record == null) {
+                    throw new IOException(String.format("Record at %d in %s is corrupted", start, file));
+                }
+                if (reader.isCheckpoint()) {
+                    if (start == checkpointPosition) {
+                        writer.writeCheckpoint(record);
+                    } else {
+                        changed = true;
+                    }
+                } else {
+                    long sequence = reader.sequence();
+                    if (!superseded.contains(sequence)) {
+                        writer.writeAction(sequence, record);
+                    } else {
+                        changed = true;
+                    }
+                }
+                start = reader.position;
+            }
+        } finally {
+            segment.close();
+        }
+        if (!changed) return;
+
+        File compacted = new File(file.getPath() + COMPACTED_SUFFIX);
+        if (writer.size() > 0) {
+            FileOutputStream output = new FileOutputStream(compacted);
+            try {
+                output.write(writer.array(), 0, writer.size());
+                output.getFD().sync();
+            } finally {
+                output.close();
+            }
+        }
+
+        filesLock.writeLock().lock();
+        try {
+            if (writer.size() == 0) {
+                if (!file.delete()) throw new IOException("Cannot delete " + file);
+            } else if (!compacted.renameTo(file)) {
+                throw new IOException("Cannot rename " + compacted + " to " + file);
+            }
+            Segment.syncDirectory(directory);
+        } finally {
+            filesLock.writeLock().unlock();
+        }
+    }
+
+    private <S> S replay(Reducer<S> reducer, S snapshot, long afterSequence, long upToSequence) throws IOException {
+        SpeculativeReducer<S> speculative = speculativeExecutor != null && reducer instanceof SlicedReducer
+                ? new SpeculativeReducer<>((SlicedReducer<S>) reducer, speculativeExecutor, replayStats)
+                : null;
+        Replay<S> replay = new Replay<>(reducer, speculative, snapshot == null ? reducer.reduce(null, Action.create(Store.INIT_ACTION)) : snapshot);
+        File[] segments = listSegments(directory);
+        int first = firstSegment(segments, afterSequence);
+        int last = first;
+        while (last < segments.length && Segment.parseBaseSequence(segments[last]) < upToSequence) {
+            last++;
+        }
+
+        if (replayThreads == 0) {
+            for (int i = first; i < last; i++) {
+                readSegment(segments[i], codec, afterSequence, upToSequence, replay);
+            }
+            return replay.finish();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(replayThreads, DECODER_THREAD_FACTORY);
+        try {
+            //only replayThreads + 1 segments are decoded ahead, each holding a few batches, to bound memory
+            ArrayDeque<SegmentDecoder> decoders = new ArrayDeque<>();
+            int next = first;
+            while (next < last || !decoders.isEmpty()) {
+                while (next < last && decoders.size() <= replayThreads) {
+                    SegmentDecoder decoder = new SegmentDecoder(segments[next++], codec, afterSequence, upToSequence);
+                    executor.execute(decoder);
+                    decoders.add(decoder);
+                }
+                SegmentDecoder decoder = decoders.poll();
+                Action[] batch;
+                while ((batch = decoder.take()) != null) {
+                    replay.reduce(batch);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return replay.finish();
+    }
+
+    /**
+     * Find the newest checkpoint with sequence not greater than {@code maxSequence}.
+     * Checkpoints are appended in order of their sequences, so segments are scanned from the newest one.
+     */
+    private <S> Snapshot<S> findCheckpoint(long maxSequence, Codec<S> stateCodec) throws IOException {
+        File[] segments = listSegments(directory);
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if (Segment.parseBaseSequence(segments[i]) > maxSequence) continue;
+
+            Segment segment = Segment.openForRead(segments[i]);
+            try {
+                Segment.Reader reader = segment.reader();
+                int found = -1;
+                long foundSequence = 0;
+                int start = reader.position;
+                while (reader.advance()) {
+                    if (reader.isCheckpoint()) {
+                        ByteBuffer record = reader.payload();
+                        if (record == null || record.getLong() > maxSequence) break;
+                        found = start;
+                        foundSequence = reader.sequence();
+                    }
+                    start = reader.position;
+                }
+                if (found >= 0) {
+                    reader.seek(found, foundSequence);
+                    reader.advance();
+                    ByteBuffer record = reader.payload();
+                    long sequence = record.getLong();
+                    return new Snapshot<>(sequence, stateCodec.read(record));
+                }
+            } finally {
+                segment.close();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return index of segment containing action following {@code afterSequence}
+     */
+    private static int firstSegment(File[] segments, long afterSequence) {
+        int first = 0;
+        while (first + 1 < segments.length && Segment.parseBaseSequence(segments[first + 1]) <= afterSequence) {
+            first++;
+        }
+        return first;
+    }
+
+    /**
+     * Wrap reducer to append every reduced action to this journal.
+     * <p>
+     * Actions are appended after they are reduced (so actions failed to reduce are not journaled)
+     * and in the same order they are reduced by {@link Store}.
+     * {@link Store#INIT_ACTION} is not journaled.
+     *
+     * @param reducer reducer to wrap
+     * @param <S>     type of state
+     * @return reducer which journals actions
+     */
+    public <S> Reducer<S> journaling(Reducer<S> reducer) {
+        return journaling(reducer, null, 0);
+    }
+
+    /**
+     * Wrap reducer to append every reduced action to this journal
+     * and {@link #checkpoint(Object, Codec) checkpoint} state every {@code checkpointInterval} actions.
+     * <p>
+     * Checkpoints are written synchronously, so interval should be big enough to amortize state encoding.
+     *
+     * @param reducer            reducer to wrap
+     * @param stateCodec         codec to write checkpoints with
+     * @param checkpointInterval number of actions between checkpoints
+     * @param <S>                type of state
+     * @return reducer which journals actions
+     * @see #journaling(Reducer)
+     */
+    public <S> Reducer<S> journaling(Reducer<S> reducer, Codec<S> stateCodec, int checkpointInterval) {
+        if (stateCodec != null && checkpointInterval <= 0) {
+            throw new IllegalArgumentException("checkpointInterval should be positive");
+        }
+        return (state, action) -> {
+            S next = reducer.reduce(state, action);
+            long sequence;
+            if (Store.INIT_ACTION.equals(action.type)) {
+                sequence = lastSequence();
+            } else {
+                try {
+                    sequence = append(action);
+                    if (stateCodec != null && sequence % checkpointInterval == 0) {
+                        checkpoint(next, stateCodec);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to journal action " + action, e);
+                }
+            }
+            commit(next, sequence);
+            return next;
+        };
+    }
+
+    //called only from journaling reducer which is guarded by Store lock, so there is a single writer
+    private void commit(Object state, long sequence) {
+        commitVersion++;
+        committedState = state;
+        committedSequence = sequence;
+        commitVersion++;
+    }
+
+    /**
+     * Get the latest state produced by {@link #journaling(Reducer)} reducer
+     * together with sequence number of the last action reduced into it.
+     * <p>
+     * Unlike pair of {@link Store#getState()} and {@link #lastSequence()}, returned values are always consistent,
+     * so this can be used to take snapshots while actions are dispatched concurrently.
+     *
+     * @param <S> type of state
+     * @return committed snapshot or null if journaling reducer was not called yet
+     */
+    @SuppressWarnings("unchecked")
+    public <S> Snapshot<S> committed() {
+        while (true) {
+            long version = commitVersion;
+            if ((version & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            Object state = committedState;
+            long sequence = committedSequence;
+            if (version == commitVersion) {
+                return version == 0 ? null : new Snapshot<>(sequence, (S) state);
+            }
+        }
+    }
+
+    /**
+     * Flush pending writes and release segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (closed) return;
+            sync();
+            closed = true;
+            current.close();
+        }
+    }
+
+    private static File[] listSegments(File directory) {
+        File[] files = directory.listFiles(file -> Segment.parseBaseSequence(file) >= 0);
+        if (files == null) return new File[0];
+        //names are zero-padded, so lexicographical order is the same as order of sequences
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Callback for {@link #forEach(long, Visitor)}.
+     */
+    public interface Visitor {
+        void visit(long sequence, Action action);
+    }
+
+    /**
+     * Reduces replayed actions one by one, or in batches with {@link SpeculativeReducer} if it's provided.
+     */
+    private static final class Replay<S> implements Visitor {
+        private static final int BATCH_SIZE = 1024;
+        private final Reducer<S> reducer;
+        private final SpeculativeReducer<S> speculative;
+        private Action[] pending;
+        private int size;
+        private S state;
+
+        Replay(Reducer<S> reducer, SpeculativeReducer<S> speculative, S state) {
+            this.reducer = reducer;
+            this.speculative = speculative;
+            this.state = state;
+        }
+
+        @Override
+        public void visit(long sequence, Action action) {
+            if (speculative == null) {
+                state = reducer.reduce(state, action);
+                return;
+            }
+            if (pending == null) pending = new Action[BATCH_SIZE];
+            pending[size++] = action;
+            if (size == BATCH_SIZE) flush();
+        }
+
+        void reduce(Action[] batch) {
+            if (speculative == null) {
+                for (Action action : batch) {
+                    state = reducer.reduce(state, action);
+                }
+            } else {
+                flush();
+                state = speculative.reduce(state, batch);
+            }
+        }
+
+        S finish() {
+            flush();
+            return state;
+        }
+
+        private void flush() {
+            if (size == 0) return;
+            state = speculative.reduce(state, size == BATCH_SIZE ? pending : Arrays.copyOf(pending, size));
+            size = 0;
+        }
+    }
+
+    /**
+     * Decodes actions of one segment on replay thread and hands them over in small batches.
+     */
+    private static final class SegmentDecoder implements Runnable {
+        private static final int BATCH_SIZE = 1024;
+        private static final Action[] END = new Action[0];
+
+        private final BlockingQueue<Object> batches = new ArrayBlockingQueue<>(8);
+        private final File file;
+        private final Codec<Action> codec;
+        private final long afterSequence;
+        private final long upToSequence;
+        private Action[] batch = new Action[BATCH_SIZE];
+        private int size;
+
+        SegmentDecoder(File file, Codec<Action> codec, long afterSequence, long upToSequence) {
+            this.file = file;
+            this.codec = codec;
+            this.afterSequence = afterSequence;
+            this.upToSequence = upToSequence;
+        }
+
+        @Override
+        public void run() {
+            try {
+                readSegment(file, codec, afterSequence, upToSequence, (sequence, action) -> {
+                    batch[size++] = action;
+                    if (size == BATCH_SIZE) {
+                        put(batch);
+                        batch = new Action[BATCH_SIZE];
+                        size = 0;
+                    }
+                });
+                if (size > 0) put(Arrays.copyOf(batch, size));
+                put(END);
+            } catch (CancellationException e) {
+                //replay is finished or failed
+            } catch (Throwable e) {
+                batches.clear();
+                batches.offer(e);
+            }
+        }
+
+        private void put(Object batch) {
+            try {
+                batches.put(batch);
+            } catch (InterruptedException e) {
+                throw new CancellationException();
+            }
+        }
+
+        /**
+         * @return next batch of decoded actions or null if segment is finished
+         */
+        Action[] take() throws IOException {
+            Object batch;
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    batch = batches.take();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+
+            if (batch instanceof IOException) throw (IOException) batch;
+            if (batch instanceof RuntimeException) throw (RuntimeException) batch;
+            if (batch instanceof Error) throw (Error) batch;
+            return batch == END ? null : (Action[]) batch;
+        }
+    }
+
+    private final class Flusher extends Thread {
+        Flusher() {
+            super("ActionJournal-flusher");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                try {
+                    Thread.sleep(syncIntervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sync();
+            }
+        }
+    }
+
+    public static final class Builder {
+        private File directory;
+        private Codec<Action> codec;
+        private int segmentSize = 16 * 1024 * 1024;
+        private long syncIntervalMillis = 10;
+        private int replayThreads = Runtime.getRuntime().availableProcessors() - 1;
+        private Executor speculativeExecutor;
+        private CompactionPolicy compactionPolicy;
+
+        private Builder() {
+        }
+
+        /**
+         * @param directory directory to store segment files in, created if it does not exist
+         */
+        public Builder directory(File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param codec codec to encode actions with, should be thread-safe as actions are decoded concurrently on replay.
+         *              For example {@link com.yheriatovych.reductor.codec.Codecs#union}
+         *              of generated action codecs
+         */
+        public Builder codec(Codec<Action> codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * @param segmentSize size of a segment file in bytes (16MB by default).
+         *                    Bounds the time to recover journal on open.
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize <= Segment.HEADER_SIZE || segmentSize > Segment.MAX_RECORD_LENGTH) {
+                throw new IllegalArgumentException(String.format("segmentSize should be in range (%d, %d]", Segment.HEADER_SIZE, Segment.MAX_RECORD_LENGTH));
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param syncIntervalMillis interval of group commit (10ms by default),
+         *                           0 to flush every appended action synchronously
+         */
+        public Builder syncIntervalMillis(long syncIntervalMillis) {
+            if (syncIntervalMillis < 0) {
+                throw new IllegalArgumentException("syncIntervalMillis should not be negative");
+            }
+            this.syncIntervalMillis = syncIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param replayThreads number of threads to decode segments on replay,
+         *                      0 to decode on the replaying thread
+         *                      (number of available processors minus one by default)
+         */
+        public Builder replayThreads(int replayThreads) {
+            if (replayThreads < 0) {
+                throw new IllegalArgumentException("replayThreads should not be negative");
+            }
+            this.replayThreads = replayThreads;
+            return this;
+        }
+
+        /**
+         * @param executor executor to reduce slices on, when replayed reducer is {@link SlicedReducer}
+         *                 (e.g. generated for {@code @CombinedState(sliced = true)})
+         *                 batches of replayed actions are reduced with {@link SpeculativeReducer}
+         *                 (disabled by default)
+         * @see #replayStats()
+         */
+        public Builder speculativeReplay(Executor executor) {
+            this.speculativeExecutor = executor;
+            return this;
+        }
+
+        /**
+         * @param compactionPolicy policy to compact closed segments with on background thread, for example
+         *                         generated action codec with {@link ActionCreator.Action#compactable()} actions
+         *                         (compaction is disabled by default)
+         * @see #compact()
+         */
+        public Builder compaction(CompactionPolicy compactionPolicy) {
+            this.compactionPolicy = compactionPolicy;
+            return this;
+        }
+
+        public ActionJournal build() throws IOException {
+            if (directory == null) throw new IllegalStateException("directory is not set");
+            if (codec == null) throw new IllegalStateException("codec is not set");
+            return new ActionJournal(this);
+        }
+    }
+}
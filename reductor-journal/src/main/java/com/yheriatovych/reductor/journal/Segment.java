@@ -0,0 +1,302 @@
+package com.yheriatovych.reductor.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file with sequence of records.
+ * <p>
+ * Record layout: {@code [int length][int crc32][length bytes of payload]}.
+ * Zero length marks the end of written records, as newly created segment files are filled with zeros.
+ * Records are either encoded actions or state checkpoints marked with {@link #CHECKPOINT_FLAG} in length.
+ * Checkpoint payload is {@code [long sequence][encoded state]}, checkpoints do not have own sequence numbers.
+ * <p>
+ * Action sequence numbers are implicit: every action has sequence of the previous one plus one.
+ * Compacted segments have gaps in sequences, so the first action after a gap is marked with {@link #SEQUENCE_FLAG}
+ * and has payload {@code [long sequence][encoded action]}.
+ */
+final class Segment implements Closeable {
+    static final int HEADER_SIZE = 8;
+    /**
+     * Bit of record length marking state checkpoint records.
+     */
+    static final int CHECKPOINT_FLAG = 0x40000000;
+    /**
+     * Bit of record length marking action records with explicit sequence number.
+     */
+    static final int SEQUENCE_FLAG = 0x20000000;
+    static final int MAX_RECORD_LENGTH = SEQUENCE_FLAG - 1;
+    private static final Pattern FILE_NAME = Pattern.compile("segment-(\\d{20})\\.log");
+
+    final File file;
+    /**
+     * Sequence number of the last record before this segment.
+     */
+    final long baseSequence;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+    private long lastSequence;
+
+    private Segment(File file, long baseSequence, RandomAccessFile randomAccessFile, MappedByteBuffer buffer) {
+        this.file = file;
+        this.baseSequence = baseSequence;
+        this.randomAccessFile = randomAccessFile;
+        this.buffer = buffer;
+        this.lastSequence = baseSequence;
+    }
+
+    static File fileName(File directory, long baseSequence) {
+        return new File(directory, String.format(Locale.US, "segment-%020d.log", baseSequence));
+    }
+
+    /**
+     * @return base sequence of segment file, or -1 if given file is not a segment
+     */
+    static long parseBaseSequence(File file) {
+        Matcher matcher = FILE_NAME.matcher(file.getName());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Flush directory entry changes (e.g. rename of file into place) to storage,
+     * otherwise renamed file may be lost on crash even if its content was synced.
+     * Does nothing on platforms where directory cannot be opened (e.g. Windows).
+     */
+    static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    static Segment create(File directory, long baseSequence, int size) throws IOException {
+        File file = fileName(directory, baseSequence);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(size);
+        return map(file, baseSequence, randomAccessFile, FileChannel.MapMode.READ_WRITE);
+    }
+
+    /**
+     * Open existing segment for writing: scan it to find the end of valid records
+     * and erase everything after it (leftovers of interrupted write).
+     */
+    static Segment openForAppend(File file) throws IOException {
+        Segment segment = map(file, parseBaseSequence(file), new RandomAccessFile(file, "rw"), FileChannel.MapMode.READ_WRITE);
+        Reader reader = segment.reader();
+        int end = 0;
+        while (reader.advance() && reader.payload() != null) {
+            if (!reader.isCheckpoint()) segment.lastSequence = reader.sequence();
+            end = reader.position;
+        }
+        ByteBuffer buffer = segment.buffer;
+        buffer.position(end);
+        for (int i = end; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) buffer.put(i, (byte) 0);
+        }
+        return segment;
+    }
+
+    static Segment openForRead(File file) throws IOException {
+        return map(file, parseBaseSequence(file), new RandomAccessFile(file, "r"), FileChannel.MapMode.READ_ONLY);
+    }
+
+    private static Segment map(File file, long baseSequence, RandomAccessFile randomAccessFile, FileChannel.MapMode mode) throws IOException {
+        try {
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(mode, 0, randomAccessFile.length());
+            return new Segment(file, baseSequence, randomAccessFile, buffer);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param checkpoint true if record is a state checkpoint, false if record is an action
+     * @return true if record was written, false if there is not enough space left in segment
+     */
+    boolean append(byte[] payload, int length, int crc, boolean checkpoint) {
+        if (buffer.remaining() < HEADER_SIZE + length) return false;
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.put(payload, 0, length);
+        buffer.putInt(start + 4, crc);
+        //length is written last as non-zero length marks record as present
+        buffer.putInt(start, checkpoint ? length | CHECKPOINT_FLAG : length);
+        if (!checkpoint) lastSequence++;
+        return true;
+    }
+
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    Reader reader() {
+        return new Reader(buffer.duplicate(), baseSequence);
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    /**
+     * Sequential reader of records.
+     */
+    static final class Reader {
+        private final ByteBuffer buffer;
+        private final CRC32 crc = new CRC32();
+        private byte[] payload = new byte[256];
+        private int recordStart;
+        private int recordLength;
+        private int flags;
+        private long sequence;
+        /**
+         * Position of the next record.
+         */
+        int position;
+
+        private Reader(ByteBuffer buffer, long baseSequence) {
+            this.buffer = buffer;
+            this.sequence = baseSequence;
+        }
+
+        /**
+         * Move to the next record reading only its header.
+         *
+         * @return false if there are no more records
+         */
+        boolean advance() {
+            if (buffer.limit() - position < HEADER_SIZE) return false;
+            int header = buffer.getInt(position);
+            int length = header & MAX_RECORD_LENGTH;
+            int flags = header & ~MAX_RECORD_LENGTH;
+            if (header <= 0 || length == 0 || length > buffer.limit() - position - HEADER_SIZE) return false;
+            if (flags == (CHECKPOINT_FLAG | SEQUENCE_FLAG)) return false;
+            if (flags == SEQUENCE_FLAG) {
+                if (length < 8) return false;
+                sequence = buffer.getLong(position + HEADER_SIZE);
+            } else if (flags == 0) {
+                sequence++;
+            }
+            this.recordStart = position;
+            this.recordLength = length;
+            this.flags = flags;
+            position += HEADER_SIZE + length;
+            return true;
+        }
+
+        /**
+         * @return true if current record is a checkpoint, false if it's an action
+         */
+        boolean isCheckpoint() {
+            return flags == CHECKPOINT_FLAG;
+        }
+
+        /**
+         * @return sequence number of the current action, or of the last action before current checkpoint
+         */
+        long sequence() {
+            return sequence;
+        }
+
+        /**
+         * Move to record at given position (previously obtained from {@link #position}).
+         *
+         * @param position  position of record
+         * @param sequence  sequence of the last action before the record
+         */
+        void seek(int position, long sequence) {
+            this.position = position;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Read and validate payload of the current record.
+         *
+         * @return buffer with payload (without explicit action sequence) or null if record is corrupted.
+         * Returned buffer is valid until next call.
+         */
+        ByteBuffer payload() {
+            if (payload.length < recordLength) {
+                payload = new byte[Math.max(recordLength, payload.length * 2)];
+            }
+            buffer.position(recordStart + HEADER_SIZE);
+            buffer.get(payload, 0, recordLength);
+            crc.reset();
+            crc.update(payload, 0, recordLength);
+            if ((int) crc.getValue() != buffer.getInt(recordStart + 4)) return null;
+            int offset = flags == SEQUENCE_FLAG ? 8 : 0;
+            return ByteBuffer.wrap(payload, offset, recordLength - offset);
+        }
+    }
+
+    /**
+     * Writes records of compacted segment to a byte array.
+     */
+    static final class Writer {
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+        private long lastSequence;
+
+        Writer(long baseSequence) {
+            this.lastSequence = baseSequence;
+        }
+
+        void writeAction(long sequence, ByteBuffer payload) {
+            boolean explicit = sequence != lastSequence + 1;
+            write(payload, explicit ? SEQUENCE_FLAG : 0, explicit ? sequence : -1);
+            lastSequence = sequence;
+        }
+
+        void writeCheckpoint(ByteBuffer payload) {
+            write(payload, CHECKPOINT_FLAG, -1);
+        }
+
+        private void write(ByteBuffer payload, int flag, long sequence) {
+            int length = payload.remaining() + (sequence >= 0 ? 8 : 0);
+            if (buffer.remaining() < HEADER_SIZE + length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + HEADER_SIZE + length));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            int start = buffer.position();
+            buffer.position(start + HEADER_SIZE);
+            if (sequence >= 0) buffer.putLong(sequence);
+            buffer.put(payload);
+            crc.reset();
+            crc.update(buffer.array(), start + HEADER_SIZE, length);
+            buffer.putInt(start, length | flag);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+
+        byte[] array() {
+            return buffer.array();
+        }
+
+        int size() {
+            return buffer.position();
+        }
+    }
+}
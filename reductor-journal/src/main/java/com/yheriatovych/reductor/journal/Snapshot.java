@@ -0,0 +1,27 @@
+package com.yheriatovych.reductor.journal;
+
+/**
+ * State paired with sequence number of the last journaled action reduced into it.
+ * <p>
+ * Journal actions after {@link #sequence} should be replayed on top of {@link #state}
+ * with {@link ActionJournal#replay(com.yheriatovych.reductor.Reducer, Object, long)} to get up-to-date state.
+ *
+ * @param <S> type of state
+ */
+public final class Snapshot<S> {
+    public final long sequence;
+    public final S state;
+
+    public Snapshot(long sequence, S state) {
+        this.sequence = sequence;
+        this.state = state;
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot{" +
+                "sequence=" + sequence +
+                ", state=" + state +
+                '}';
+    }
+}
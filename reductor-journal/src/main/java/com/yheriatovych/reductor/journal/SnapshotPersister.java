@@ -0,0 +1,425 @@
+package com.yheriatovych.reductor.journal;
+
+import com.yheriatovych.reductor.Cancelable;
+import com.yheriatovych.reductor.Store;
+import com.yheriatovych.reductor.codec.Codec;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind persister of {@link Store} state snapshots.
+ * <p>
+ * Persister subscribes to the store and writes state snapshot on background thread
+ * when {@code intervalMillis} passed after the first unsaved change,
+ * or immediately when {@code changesThreshold} unsaved changes are accumulated
+ * or {@code bytesThreshold} bytes of actions are appended to {@link ActionJournal} since the last snapshot.
+ * State is expected to be immutable, so a reference to it is a consistent point-in-time copy.
+ * <p>
+ * At most one snapshot is written at a time: changes happened while snapshot is written are coalesced
+ * into the next one, so intermediate states are skipped under high dispatch rate.
+ * <p>
+ * Snapshot is written to temporary file which then is renamed over the previous one,
+ * so snapshot file is never observed partially written.
+ * When {@link ActionJournal} is provided, snapshots are taken from {@link ActionJournal#committed()}
+ * (store should use {@link ActionJournal#journaling} reducer),
+ * so the journal can be replayed from the snapshot sequence:
+ * <pre><code>
+ * Snapshot&lt;AppState&gt; snapshot = SnapshotPersister.load(file, stateCodec);
+ * AppState state = snapshot == null
+ *         ? journal.replay(reducer, null, 0)
+ *         : journal.replay(reducer, snapshot.state, snapshot.sequence);
+ * </code></pre>
+ *
+ * @param <S> type of state
+ */
+public final class SnapshotPersister<S> implements Closeable {
+    private final Store<S> store;
+    private final ActionJournal journal;
+    private final File file;
+    private final File tempFile;
+    private final Codec<S> codec;
+    private final long intervalMillis;
+    private final int changesThreshold;
+    private final long bytesThreshold;
+    private final ScheduledExecutorService executor;
+    private final Cancelable subscription;
+    private final Runnable snapshotTask = this::writeSnapshot;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    //guarded by this
+    private S lastState;
+    private int pendingChanges;
+    //appended bytes of the journal when the last snapshot was captured
+    private long snapshotBytes;
+    private int flushWaiters;
+    private boolean inFlight;
+    private ScheduledFuture<?> scheduled;
+    private boolean closed;
+
+    //metrics, guarded by this
+    private long snapshotCount;
+    private long skippedCount;
+    private long failureCount;
+    private long lastLatencyNanos;
+    private long maxLatencyNanos;
+    private long totalLatencyNanos;
+    private IOException lastError;
+
+    private SnapshotPersister(Builder<S> builder) {
+        this.store = builder.store;
+        this.journal = builder.journal;
+        this.file = builder.file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.codec = builder.codec;
+        this.intervalMillis = builder.intervalMillis;
+        this.changesThreshold = builder.changesThreshold;
+        this.bytesThreshold = builder.bytesThreshold;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SnapshotPersister");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lastState = store.getState();
+        this.subscription = store.subscribe(this::onStateChanged);
+    }
+
+    public static <S> Builder<S> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Read snapshot written by persister.
+     *
+     * @param file  snapshot file
+     * @param codec codec used to write state
+     * @param <S>   type of state
+     * @return snapshot or null if file does not exist or is corrupted
+     * @throws IOException if file cannot be read
+     */
+    public static <S> Snapshot<S> load(File file, Codec<S> codec) throws IOException {
+        if (!file.isFile()) return null;
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            input.readFully(bytes);
+        } finally {
+            input.close();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < 12) return null;
+        long sequence = buffer.getLong();
+        int checksum = buffer.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, buffer.position(), buffer.remaining());
+        if ((int) crc.getValue() != checksum) return null;
+        return new Snapshot<>(sequence, codec.read(buffer));
+    }
+
+    private synchronized void onStateChanged(S state) {
+        //store notifies listeners even if action did not change the state
+        if (closed || state == lastState) return;
+        lastState = state;
+        pendingChanges++;
+        if (!inFlight) schedule();
+    }
+
+    private void schedule() {
+        if (scheduled != null && scheduled.isDone()) scheduled = null;
+        if (pendingChanges >= changesThreshold || pendingBytes() >= bytesThreshold || flushWaiters > 0) {
+            if (scheduled != null) scheduled.cancel(false);
+            scheduled = executor.schedule(snapshotTask, 0, TimeUnit.MILLISECONDS);
+        } else if (scheduled == null) {
+            scheduled = executor.schedule(snapshotTask, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private long pendingBytes() {
+        return journal != null ? journal.appendedBytes() - snapshotBytes : 0;
+    }
+
+    private void writeSnapshot() {
+        Snapshot<S> snapshot;
+        int changes;
+        long previousBytes;
+        synchronized (this) {
+            if (inFlight || pendingChanges == 0) return;
+            inFlight = true;
+            scheduled = null;
+            changes = pendingChanges;
+            pendingChanges = 0;
+            previousBytes = snapshotBytes;
+            if (journal != null) snapshotBytes = journal.appendedBytes();
+            snapshot = capture();
+        }
+
+        long start = System.nanoTime();
+        IOException error = null;
+        try {
+            write(snapshot);
+        } catch (IOException e) {
+            error = e;
+        }
+        long latency = System.nanoTime() - start;
+
+        synchronized (this) {
+            inFlight = false;
+            if (error == null) {
+                snapshotCount++;
+                skippedCount += changes - 1;
+                lastLatencyNanos = latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                totalLatencyNanos += latency;
+            } else {
+                failureCount++;
+                lastError = error;
+                pendingChanges += changes;
+                snapshotBytes = previousBytes;
+            }
+            if (error != null && !closed) {
+                //do not retry failed write immediately
+                scheduled = executor.schedule(snapshotTask, intervalMillis, TimeUnit.MILLISECONDS);
+            } else if (pendingChanges > 0 && !closed) {
+                schedule();
+            }
+            notifyAll();
+        }
+    }
+
+    private Snapshot<S> capture() {
+        if (journal != null) {
+            Snapshot<S> committed = journal.committed();
+            if (committed != null) return committed;
+        }
+        return new Snapshot<>(0, store.getState());
+    }
+
+    private void write(Snapshot<S> snapshot) throws IOException {
+        int length = encode(snapshot.state);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length);
+
+        FileOutputStream output = new FileOutputStream(tempFile);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putLong(snapshot.sequence).putInt((int) crc.getValue());
+            output.write(header.array());
+            output.write(buffer.array(), 0, length);
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Cannot rename " + tempFile + " to " + file);
+        }
+        Segment.syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    private int encode(S state) {
+        while (true) {
+            buffer.clear();
+            try {
+                codec.write(state, buffer);
+                return buffer.position();
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Write pending changes (if any) and wait until snapshot is written.
+     *
+     * @throws IOException if snapshot cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            flushWaiters++;
+            boolean interrupted = false;
+            long failures = failureCount;
+            try {
+                if (pendingChanges > 0 && !inFlight) schedule();
+                while ((pendingChanges > 0 || inFlight) && failureCount == failures) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                flushWaiters--;
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+            if (failureCount != failures) throw lastError;
+        }
+    }
+
+    /**
+     * @return number of written snapshots
+     */
+    public synchronized long snapshotCount() {
+        return snapshotCount;
+    }
+
+    /**
+     * @return number of state changes which were not written separately as they were coalesced with later ones
+     */
+    public synchronized long skippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return number of failed snapshot writes
+     */
+    public synchronized long failureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return time to serialize and write the last snapshot in nanoseconds
+     */
+    public synchronized long lastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    /**
+     * @return maximum time to serialize and write a snapshot in nanoseconds
+     */
+    public synchronized long maxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * @return average time to serialize and write a snapshot in nanoseconds
+     */
+    public synchronized long averageLatencyNanos() {
+        return snapshotCount == 0 ? 0 : totalLatencyNanos / snapshotCount;
+    }
+
+    /**
+     * @return the last error happened while snapshot was written, or null
+     */
+    public synchronized IOException lastError() {
+        return lastError;
+    }
+
+    /**
+     * Unsubscribe from the store and write pending changes.
+     */
+    @Override
+    public void close() throws IOException {
+        subscription.cancel();
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                closed = true;
+            }
+            executor.shutdown();
+        }
+    }
+
+    public static final class Builder<S> {
+        private Store<S> store;
+        private ActionJournal journal;
+        private File file;
+        private Codec<S> codec;
+        private long intervalMillis = 1000;
+        private int changesThreshold = Integer.MAX_VALUE;
+        private long bytesThreshold = Long.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        /**
+         * @param store store to take snapshots of
+         */
+        public Builder<S> store(Store<S> store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * @param journal journal to take snapshots consistent with,
+         *                store should use {@link ActionJournal#journaling} reducer of this journal
+         */
+        public Builder<S> journal(ActionJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param file file to write snapshot to
+         */
+        public Builder<S> file(File file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * @param codec codec to write state with
+         */
+        public Builder<S> codec(Codec<S> codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * @param intervalMillis maximum delay between state change and snapshot containing it (1 second by default)
+         */
+        public Builder<S> intervalMillis(long intervalMillis) {
+            if (intervalMillis < 0) {
+                throw new IllegalArgumentException("intervalMillis should not be negative");
+            }
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * @param changesThreshold number of unsaved state changes to trigger snapshot without waiting for interval
+         *                         (disabled by default)
+         */
+        public Builder<S> changesThreshold(int changesThreshold) {
+            if (changesThreshold <= 0) {
+                throw new IllegalArgumentException("changesThreshold should be positive");
+            }
+            this.changesThreshold = changesThreshold;
+            return this;
+        }
+
+        /**
+         * @param bytesThreshold size of actions appended to the journal since the last snapshot in bytes
+         *                       to trigger snapshot without waiting for interval (disabled by default).
+         *                       Bounds the number of bytes to replay on recovery, requires {@link #journal(ActionJournal)}
+         */
+        public Builder<S> bytesThreshold(long bytesThreshold) {
+            if (bytesThreshold <= 0) {
+                throw new IllegalArgumentException("bytesThreshold should be positive");
+            }
+            this.bytesThreshold = bytesThreshold;
+            return this;
+        }
+
+        public SnapshotPersister<S> build() {
+            if (store == null) throw new IllegalStateException("store is not set");
+            if (file == null) throw new IllegalStateException("file is not set");
+            if (codec == null) throw new IllegalStateException("codec is not set");
+            if (bytesThreshold != Long.MAX_VALUE && journal == null) {
+                throw new IllegalStateException("bytesThreshold requires journal");
+            }
+            return new SnapshotPersister<>(this);
+        }
+    }
+}
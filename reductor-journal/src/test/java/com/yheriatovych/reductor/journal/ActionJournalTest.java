@@ -0,0 +1,413 @@
+package com.yheriatovych.reductor.journal;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+import com.yheriatovych.reductor.SlicedReducer;
+import com.yheriatovych.reductor.SpeculativeReducer;
+import com.yheriatovych.reductor.Store;
+import com.yheriatovych.reductor.codec.Codec;
+import com.yheriatovych.reductor.codec.Codecs;
+import com.yheriatovych.reductor.codec.CompactionPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActionJournalTest {
+    private static final Codec<Action> CODEC = new Codec<Action>() {
+        @Override
+        public void write(Action action, ByteBuffer buffer) {
+            Codecs.STRING.write(action.type, buffer);
+            Codecs.INTEGER.write((Integer) action.getValue(0), buffer);
+        }
+
+        @Override
+        public Action read(ByteBuffer buffer) {
+            return Action.create(Codecs.STRING.read(buffer), Codecs.INTEGER.read(buffer));
+        }
+    };
+
+    private static final Reducer<Integer> SUM = (state, action) -> {
+        if (state == null) state = 0;
+        return "ADD".equals(action.type) ? state + (Integer) action.getValue(0) : state;
+    };
+
+    private static final Reducer<Integer> SET_AND_ADD = (state, action) -> {
+        if (state == null) state = 0;
+        if ("SET".equals(action.type)) return (Integer) action.getValue(0);
+        return SUM.reduce(state, action);
+    };
+
+    private static final CompactionPolicy SET_POLICY = action -> "SET".equals(action.type) ? action.type : null;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File directory;
+    private ActionJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("journal");
+        journal = open(128);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+    }
+
+    private ActionJournal open(int segmentSize) throws IOException {
+        return ActionJournal.builder()
+                .directory(directory)
+                .codec(CODEC)
+                .segmentSize(segmentSize)
+                .build();
+    }
+
+    private List<Integer> readValues(long afterSequence) throws IOException {
+        final List<Integer> values = new ArrayList<>();
+        final long[] expectedSequence = {afterSequence};
+        journal.forEach(afterSequence, (sequence, action) -> {
+            assertEquals(++expectedSequence[0], sequence);
+            values.add((Integer) action.getValue(0));
+        });
+        return values;
+    }
+
+    @Test
+    public void testAppendReturnsSequence() throws IOException {
+        assertEquals(0, journal.lastSequence());
+        assertEquals(1, journal.append(Action.create("ADD", 1)));
+        assertEquals(2, journal.append(Action.create("ADD", 2)));
+        assertEquals(2, journal.lastSequence());
+    }
+
+    @Test
+    public void testForEachAcrossSegments() throws IOException {
+        for (int i = 1; i <= 50; i++) {
+            journal.append(Action.create("ADD", i));
+        }
+        assertTrue("should roll to several segments", directory.list().length > 1);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 31; i <= 50; i++) expected.add(i);
+        assertEquals(expected, readValues(30));
+        assertEquals(50, readValues(0).size());
+    }
+
+    @Test
+    public void testReopenContinuesSequence() throws IOException {
+        for (int i = 1; i <= 20; i++) {
+            journal.append(Action.create("ADD", i));
+        }
+        journal.close();
+
+        journal = open(128);
+        assertEquals(20, journal.lastSequence());
+        assertEquals(21, journal.append(Action.create("ADD", 21)));
+        assertEquals(21, readValues(0).size());
+    }
+
+    @Test
+    public void testReplayFromSnapshot() throws IOException {
+        Store<Integer> store = Store.create(journal.journaling(SUM));
+        for (int i = 1; i <= 10; i++) {
+            store.dispatch(Action.create("ADD", i));
+        }
+        assertEquals(10, journal.lastSequence());
+
+        assertEquals(55, (int) journal.replay(SUM, null, 0));
+        //snapshot of state after first 4 actions
+        assertEquals(55, (int) journal.replay(SUM, 10, 4));
+    }
+
+    private static class CountingReducer implements Reducer<Integer> {
+        int count;
+
+        @Override
+        public Integer reduce(Integer state, Action action) {
+            count++;
+            return SUM.reduce(state, action);
+        }
+    }
+
+    private void dispatchWithCheckpoints(int count, int checkpointInterval) {
+        Store<Integer> store = Store.create(journal.journaling(SUM, Codecs.INTEGER, checkpointInterval));
+        for (int i = 1; i <= count; i++) {
+            store.dispatch(Action.create("ADD", i));
+        }
+    }
+
+    @Test
+    public void testRecoverFromNewestCheckpoint() throws IOException {
+        dispatchWithCheckpoints(35, 10);
+
+        CountingReducer reducer = new CountingReducer();
+        assertEquals(630, (int) journal.recover(reducer, Codecs.INTEGER));
+        assertEquals(5, reducer.count);
+        //checkpoints are not visible as actions
+        assertEquals(35, readValues(0).size());
+    }
+
+    @Test
+    public void testStateAt() throws IOException {
+        dispatchWithCheckpoints(35, 10);
+
+        CountingReducer reducer = new CountingReducer();
+        assertEquals(153, (int) journal.stateAt(17, reducer, Codecs.INTEGER));
+        assertEquals(7, reducer.count);
+
+        reducer = new CountingReducer();
+        assertEquals(15, (int) journal.stateAt(5, reducer, Codecs.INTEGER));
+        //INIT and 5 actions
+        assertEquals(6, reducer.count);
+
+        assertEquals(0, (int) journal.stateAt(0, SUM, Codecs.INTEGER));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStateAtUnknownSequence() throws IOException {
+        dispatchWithCheckpoints(3, 10);
+        journal.stateAt(4, SUM, Codecs.INTEGER);
+    }
+
+    @Test
+    public void testParallelReplay() throws IOException {
+        journal.close();
+        journal = ActionJournal.builder()
+                .directory(directory)
+                .codec(CODEC)
+                .segmentSize(128)
+                .replayThreads(3)
+                .build();
+        int expected = 0;
+        for (int i = 1; i <= 1000; i++) {
+            journal.append(Action.create("ADD", i));
+            expected += i;
+        }
+        assertEquals(expected, (int) journal.replay(SUM, null, 0));
+        assertEquals(expected - 55, (int) journal.replay(SUM, 0, 10));
+    }
+
+    private static class PairReducer implements SlicedReducer<Integer[]> {
+        @Override
+        public Integer[] reduce(Integer[] state, Action action) {
+            if (state == null) return new Integer[]{0, 0};
+            if ("SWAP".equals(action.type)) return new Integer[]{state[1], state[0]};
+            int slice = sliceOf(action.type);
+            return slice == UNKNOWN_SLICE ? state : withSlice(state, slice, reduceSlice(slice, state[slice], action));
+        }
+
+        @Override
+        public int sliceCount() {
+            return 2;
+        }
+
+        @Override
+        public int sliceOf(String actionType) {
+            return "LEFT".equals(actionType) ? 0 : "RIGHT".equals(actionType) ? 1 : UNKNOWN_SLICE;
+        }
+
+        @Override
+        public Object getSlice(Integer[] state, int slice) {
+            return state[slice];
+        }
+
+        @Override
+        public Object reduceSlice(int slice, Object value, Action action) {
+            return (Integer) value * 3 + (Integer) action.getValue(0);
+        }
+
+        @Override
+        public Integer[] withSlice(Integer[] state, int slice, Object value) {
+            Integer[] next = state.clone();
+            next[slice] = (Integer) value;
+            return next;
+        }
+    }
+
+    @Test
+    public void testSpeculativeReplay() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int replayThreads = 0; replayThreads <= 2; replayThreads++) {
+                journal.close();
+                for (File file : directory.listFiles()) {
+                    file.delete();
+                }
+                journal = ActionJournal.builder()
+                        .directory(directory)
+                        .codec(CODEC)
+                        .replayThreads(replayThreads)
+                        .speculativeReplay(executor)
+                        .build();
+                PairReducer reducer = new PairReducer();
+                Integer[] expected = reducer.reduce(null, Action.create(Store.INIT_ACTION));
+                for (int i = 1; i <= 3000; i++) {
+                    Action action = Action.create(i % 100 == 0 ? "SWAP" : i % 3 == 0 ? "LEFT" : "RIGHT", i % 7);
+                    journal.append(action);
+                    expected = reducer.reduce(expected, action);
+                }
+
+                assertArrayEquals(expected, journal.replay(reducer, null, 0));
+                SpeculativeReducer.Stats stats = journal.replayStats();
+                assertEquals(3000, stats.actions());
+                assertEquals(2970, stats.speculatedActions());
+                assertTrue(stats.conflicts() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedSegmentFailsReplay() throws IOException {
+        for (int i = 1; i <= 20; i++) {
+            journal.append(Action.create("ADD", i));
+        }
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(Segment.HEADER_SIZE + 2);
+            file.write(0x7f);
+        }
+        journal.replay(SUM, null, 0);
+    }
+
+    private ActionJournal openCompacted() throws IOException {
+        return ActionJournal.builder()
+                .directory(directory)
+                .codec(CODEC)
+                .segmentSize(128)
+                .compaction(SET_POLICY)
+                .build();
+    }
+
+    private List<String> readRecords() throws IOException {
+        final List<String> records = new ArrayList<>();
+        journal.forEach(0, (sequence, action) -> records.add(sequence + ":" + action.type + action.getValue(0)));
+        return records;
+    }
+
+    private long journalSize() {
+        long size = 0;
+        for (File file : directory.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    @Test
+    public void testCompactionKeepsLatestActionPerKey() throws IOException {
+        journal.close();
+        journal = ActionJournal.builder()
+                .directory(directory)
+                .codec(CODEC)
+                .segmentSize(128)
+                .compaction(SET_POLICY)
+                .build();
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 72; i++) {
+            //the last segment is not compacted, so it's filled with unkeyed actions only
+            String type = i % 10 == 0 || i > 60 ? "ADD" : "SET";
+            journal.append(Action.create(type, i));
+            if (type.equals("ADD") || i == 59) expected.add(i + ":" + type + i);
+        }
+        int expectedState = journal.replay(SET_AND_ADD, null, 0);
+        long size = journalSize();
+
+        journal.compact();
+
+        assertEquals(expected, readRecords());
+        assertEquals(expectedState, (int) journal.replay(SET_AND_ADD, null, 0));
+        assertTrue(journalSize() < size);
+
+        journal.close();
+        journal = openCompacted();
+        assertEquals(72, journal.lastSequence());
+        assertEquals(expected, readRecords());
+        assertEquals(73, journal.append(Action.create("ADD", 73)));
+    }
+
+    @Test
+    public void testCompactionKeepsNewestCheckpoint() throws IOException {
+        journal.close();
+        journal = openCompacted();
+        Store<Integer> store = Store.create(journal.journaling(SET_AND_ADD, Codecs.INTEGER, 7));
+        for (int i = 1; i <= 60; i++) {
+            store.dispatch(Action.create(i % 10 == 0 ? "ADD" : "SET", i));
+        }
+        journal.compact();
+
+        assertEquals((int) store.getState(), (int) journal.recover(SET_AND_ADD, Codecs.INTEGER));
+        assertEquals((int) store.getState(), (int) journal.replay(SET_AND_ADD, null, 0));
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws IOException {
+        journal.close();
+        journal = openCompacted();
+        for (int i = 1; i <= 1000; i++) {
+            journal.append(Action.create("SET", i));
+        }
+        //waits for scheduled compaction
+        journal.close();
+
+        journal = openCompacted();
+        assertTrue(readRecords().size() < 100);
+        assertEquals(1000, (int) journal.replay(SET_AND_ADD, null, 0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCompactionWithoutPolicy() throws IOException {
+        journal.compact();
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws IOException {
+        journal.append(Action.create("ADD", 1));
+        journal.append(Action.create("ADD", 2));
+        journal.close();
+
+        //corrupt payload of the second record as if process died in the middle of write
+        File segment = directory.listFiles()[0];
+        int recordSize = Segment.HEADER_SIZE + 4 + "ADD".length() + 5;
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(recordSize + Segment.HEADER_SIZE + 2);
+            file.write(0x7f);
+        }
+
+        journal = open(128);
+        assertEquals(1, journal.lastSequence());
+        assertEquals(2, journal.append(Action.create("ADD", 3)));
+        assertEquals(Arrays.asList(1, 3), readValues(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testActionBiggerThanSegment() throws IOException {
+        char[] chars = new char[200];
+        Arrays.fill(chars, 'a');
+        journal.append(Action.create(new String(chars), 1));
+    }
+
+    @Test
+    public void testSyncedSequence() throws IOException {
+        journal.append(Action.create("ADD", 1));
+        journal.sync();
+        assertEquals(1, journal.syncedSequence());
+    }
+}
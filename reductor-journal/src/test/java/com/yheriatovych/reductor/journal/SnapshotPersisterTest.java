@@ -0,0 +1,178 @@
+package com.yheriatovych.reductor.journal;
+
+import com.yheriatovych.reductor.Action;
+import com.yheriatovych.reductor.Reducer;
+import com.yheriatovych.reductor.Store;
+import com.yheriatovych.reductor.codec.Codec;
+import com.yheriatovych.reductor.codec.Codecs;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotPersisterTest {
+    private static final Codec<Action> ACTION_CODEC = new Codec<Action>() {
+        @Override
+        public void write(Action action, ByteBuffer buffer) {
+            Codecs.STRING.write(action.type, buffer);
+            Codecs.INTEGER.write((Integer) action.getValue(0), buffer);
+        }
+
+        @Override
+        public Action read(ByteBuffer buffer) {
+            return Action.create(Codecs.STRING.read(buffer), Codecs.INTEGER.read(buffer));
+        }
+    };
+
+    private static final Reducer<Integer> SUM = (state, action) -> {
+        if (state == null) state = 0;
+        return "ADD".equals(action.type) ? state + (Integer) action.getValue(0) : state;
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "state.snapshot");
+    }
+
+    private SnapshotPersister.Builder<Integer> persister(Store<Integer> store) {
+        return SnapshotPersister.<Integer>builder()
+                .store(store)
+                .file(file)
+                .codec(Codecs.INTEGER);
+    }
+
+    @Test
+    public void testCoalescesBurst() throws IOException {
+        Store<Integer> store = Store.create(SUM);
+        SnapshotPersister<Integer> persister = persister(store)
+                .intervalMillis(10)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            store.dispatch(Action.create("ADD", 1));
+        }
+        persister.close();
+
+        assertTrue(persister.snapshotCount() >= 1);
+        assertTrue(persister.snapshotCount() < 1000);
+        assertEquals(1000, persister.snapshotCount() + persister.skippedCount());
+        Snapshot<Integer> snapshot = SnapshotPersister.load(file, Codecs.INTEGER);
+        assertEquals(1000, (int) snapshot.state);
+        assertEquals(0, snapshot.sequence);
+    }
+
+    @Test
+    public void testChangesThreshold() throws Exception {
+        Store<Integer> store = Store.create(SUM);
+        SnapshotPersister<Integer> persister = persister(store)
+                .intervalMillis(60 * 60 * 1000)
+                .changesThreshold(10)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            store.dispatch(Action.create("ADD", 1));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (persister.snapshotCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, persister.snapshotCount());
+        assertEquals(10, (int) SnapshotPersister.load(file, Codecs.INTEGER).state);
+        persister.close();
+    }
+
+    @Test
+    public void testBytesThreshold() throws Exception {
+        ActionJournal journal = ActionJournal.builder()
+                .directory(folder.newFolder("journal"))
+                .codec(ACTION_CODEC)
+                .build();
+        Store<Integer> store = Store.create(journal.journaling(SUM));
+        SnapshotPersister<Integer> persister = persister(store)
+                .journal(journal)
+                .intervalMillis(60 * 60 * 1000)
+                .bytesThreshold(100)
+                .build();
+
+        while (journal.appendedBytes() < 100) {
+            store.dispatch(Action.create("ADD", 1));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (persister.snapshotCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, persister.snapshotCount());
+        persister.close();
+        journal.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBytesThresholdRequiresJournal() {
+        persister(Store.create(SUM)).bytesThreshold(100).build();
+    }
+
+    @Test
+    public void testUnchangedStateIsNotPersisted() throws IOException {
+        Store<Integer> store = Store.create(SUM);
+        SnapshotPersister<Integer> persister = persister(store).build();
+
+        store.dispatch(Action.create("NOOP", 0));
+        persister.close();
+
+        assertEquals(0, persister.snapshotCount());
+        assertNull(SnapshotPersister.load(file, Codecs.INTEGER));
+    }
+
+    @Test
+    public void testSnapshotIsConsistentWithJournal() throws IOException {
+        ActionJournal journal = ActionJournal.builder()
+                .directory(folder.newFolder("journal"))
+                .codec(ACTION_CODEC)
+                .build();
+        Store<Integer> store = Store.create(journal.journaling(SUM));
+        SnapshotPersister<Integer> persister = persister(store)
+                .journal(journal)
+                .build();
+
+        for (int i = 1; i <= 5; i++) {
+            store.dispatch(Action.create("ADD", i));
+        }
+        persister.close();
+        for (int i = 6; i <= 10; i++) {
+            store.dispatch(Action.create("ADD", i));
+        }
+
+        Snapshot<Integer> snapshot = SnapshotPersister.load(file, Codecs.INTEGER);
+        assertEquals(5, snapshot.sequence);
+        assertEquals(15, (int) snapshot.state);
+        assertEquals(55, (int) journal.replay(SUM, snapshot.state, snapshot.sequence));
+        journal.close();
+    }
+
+    @Test
+    public void testLoadCorruptedSnapshot() throws IOException {
+        Store<Integer> store = Store.create(SUM);
+        SnapshotPersister<Integer> persister = persister(store).build();
+        store.dispatch(Action.create("ADD", 42));
+        persister.close();
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(randomAccessFile.length() - 1);
+            randomAccessFile.write(0x7f);
+        }
+        assertNull(SnapshotPersister.load(file, Codecs.INTEGER));
+    }
+}